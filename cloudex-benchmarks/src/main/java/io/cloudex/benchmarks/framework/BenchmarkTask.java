@@ -0,0 +1,121 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.benchmarks.framework;
+
+import io.cloudex.framework.task.CommonTask;
+
+import java.io.IOException;
+
+/**
+ * A task with typical properties of both types, populated from the context by the coordinator or from
+ * the metadata by the processors
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class BenchmarkTask extends CommonTask {
+
+    private String bucket;
+
+    private String table;
+
+    private String files;
+
+    private Integer count;
+
+    private Double ratio;
+
+    /**
+     * @return the bucket
+     */
+    public String getBucket() {
+        return bucket;
+    }
+
+    /**
+     * @param bucket the bucket to set
+     */
+    public void setBucket(String bucket) {
+        this.bucket = bucket;
+    }
+
+    /**
+     * @return the table
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @param table the table to set
+     */
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    /**
+     * @return the files
+     */
+    public String getFiles() {
+        return files;
+    }
+
+    /**
+     * @param files the files to set
+     */
+    public void setFiles(String files) {
+        this.files = files;
+    }
+
+    /**
+     * @return the count
+     */
+    public Integer getCount() {
+        return count;
+    }
+
+    /**
+     * @param count the count to set
+     */
+    public void setCount(Integer count) {
+        this.count = count;
+    }
+
+    /**
+     * @return the ratio
+     */
+    public Double getRatio() {
+        return ratio;
+    }
+
+    /**
+     * @param ratio the ratio to set
+     */
+    public void setRatio(Double ratio) {
+        this.ratio = ratio;
+    }
+
+    @Override
+    public void run() throws IOException {
+        // nothing to do, only the creation of the task is measured
+    }
+
+}
@@ -0,0 +1,236 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.benchmarks.framework;
+
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.components.Context;
+import io.cloudex.framework.config.TaskConfig;
+import io.cloudex.framework.exceptions.ClassInstantiationException;
+import io.cloudex.framework.exceptions.InstancePopulationException;
+import io.cloudex.framework.partition.entities.Item;
+import io.cloudex.framework.partition.entities.Partition;
+import io.cloudex.framework.task.CommonTask;
+import io.cloudex.framework.task.Task;
+import io.cloudex.framework.task.factory.TaskBinder;
+import io.cloudex.framework.task.factory.TaskFactory;
+import io.cloudex.framework.task.factory.TaskFactoryImpl;
+import io.cloudex.framework.types.TargetType;
+import io.cloudex.framework.utils.ObjectUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The time and allocations of the framework code that runs for every task or work item, e.g. resolving
+ * the task input from the context, creating and populating a task and reading its input from the metadata
+ * on the processors and joining and splitting the partition items. Run the {@link #main(String[])} of this
+ * class to include the allocation rate and the bytes allocated per operation (gc.alloc.rate.norm):
+ * <pre>
+ * java -cp target/benchmarks.jar io.cloudex.benchmarks.framework.FrameworkBenchmark
+ * </pre>
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameworkBenchmark {
+
+    private static final String TASK_CLASS = BenchmarkTask.class.getName();
+
+    // the number of files in a partition item
+    @Param({"10", "100"})
+    private int files;
+
+    private Context context;
+
+    private TaskConfig taskConfig;
+
+    // the resolved input of the task
+    private Map<String, Object> input;
+
+    private VmMetaData metaData;
+
+    private TaskFactory taskFactory;
+
+    private List<Partition> partitions;
+
+    private String item;
+
+    @Setup
+    public void setup() {
+
+        List<String> names = new ArrayList<>();
+        for(int i = 0; i < this.files; i++) {
+            names.add("gs://bucket/data/file" + i + ".nt.gz");
+        }
+        this.item = StringUtils.join(names, ',');
+
+        this.context = new Context();
+        this.context.put("bucket", "bucket");
+        this.context.put("table", "dataset.table");
+        this.context.put("count", 10);
+        this.context.putReadOnly("files", this.item);
+
+        Map<String, String> references = new HashMap<>();
+        references.put("bucket", "#bucket");
+        references.put("table", "#table");
+        references.put("files", "#files");
+        references.put("count", "#count");
+        references.put("ratio", "0.5");
+
+        this.taskConfig = new TaskConfig();
+        this.taskConfig.setTarget(TargetType.COORDINATOR);
+        this.taskConfig.setClassName(TASK_CLASS);
+        this.taskConfig.setInput(references);
+
+        this.input = this.context.resolveValues(references);
+
+        this.metaData = new VmMetaData();
+        this.metaData.setTaskClass(TASK_CLASS);
+        this.metaData.addValue(VmMetaData.CLOUDEX_STATUS, "BUSY");
+        for(Map.Entry<String, Object> entry: this.input.entrySet()) {
+            this.metaData.addValue(VmMetaData.USER_PREFIX + entry.getKey(), entry.getValue().toString());
+        }
+
+        this.taskFactory = new TaskFactoryImpl();
+
+        // ten bins of the files
+        this.partitions = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            Partition partition = new Partition();
+            for(String name: names) {
+                partition.add(new Item(name, 1024L));
+            }
+            this.partitions.add(partition);
+        }
+    }
+
+    @Benchmark
+    public Object resolveValue() {
+        return this.context.resolveValue("#table");
+    }
+
+    @Benchmark
+    public Map<String, Object> resolveValues() {
+        return this.context.resolveValues(this.taskConfig.getInput());
+    }
+
+    @Benchmark
+    public CommonTask createInstance() throws ClassInstantiationException {
+        return ObjectUtils.createInstance(CommonTask.class, TASK_CLASS);
+    }
+
+    @Benchmark
+    public Object populate() throws InstancePopulationException {
+        BenchmarkTask task = new BenchmarkTask();
+        ObjectUtils.populate(task, this.input);
+        return task;
+    }
+
+    @Benchmark
+    public Object populateWithoutValidation() throws InstancePopulationException {
+        BenchmarkTask task = new BenchmarkTask();
+        ObjectUtils.populate(task, this.input, false);
+        return task;
+    }
+
+    @Benchmark
+    public Task newTask() throws ClassInstantiationException {
+        return TaskBinder.forClass(TASK_CLASS).newTask();
+    }
+
+    @Benchmark
+    public Object bind() throws ClassInstantiationException, InstancePopulationException {
+        BenchmarkTask task = new BenchmarkTask();
+        TaskBinder.forClass(TASK_CLASS).bind(task, this.input);
+        return task;
+    }
+
+    @Benchmark
+    public Task getCoordinatorTask() throws ClassInstantiationException, InstancePopulationException, IOException {
+        return this.taskFactory.getTask(this.taskConfig, this.context, null);
+    }
+
+    @Benchmark
+    public Task getProcessorTask() throws ClassInstantiationException, InstancePopulationException, IOException {
+        return this.taskFactory.getTask(this.metaData, null);
+    }
+
+    @Benchmark
+    public Map<String, String> getUserMetaData() {
+        return this.metaData.getUserMetaData();
+    }
+
+    @Benchmark
+    public List<String> joinPartitionItems() {
+        return Partition.joinPartitionItems(this.partitions);
+    }
+
+    @Benchmark
+    public Set<String> csvToSet() {
+        return ObjectUtils.csvToSet(this.item);
+    }
+
+    /**
+     * Run the benchmarks with the GC profiler to report the allocation rate
+     * @param args - JMH command line options
+     * @throws RunnerException if the benchmarks fail
+     * @throws CommandLineOptionException if the options are invalid
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(FrameworkBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.benchmarks.partition;
+
+import io.cloudex.framework.partition.entities.Item;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Realistic distributions of the weights of the items given to the partition functions, the weights are
+ * file sizes in bytes
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public enum ItemWeights {
+
+    /**
+     * Files between 1MB and 100MB
+     */
+    UNIFORM {
+        @Override
+        long weight(Random random, int rank, int size) {
+            return MB + (long) (random.nextDouble() * 99 * MB);
+        }
+    },
+
+    /**
+     * A few large files and a long tail of small ones, the size of a file is inversely proportional to
+     * its rank
+     */
+    ZIPFIAN {
+        @Override
+        long weight(Random random, int rank, int size) {
+            return Math.max(KB, (long) (GB / Math.pow(rank + 1, ZIPF_EXPONENT)));
+        }
+    },
+
+    /**
+     * Files between 1MB and 10MB and a handful of files 1000 times larger
+     */
+    HUGE_FILES {
+        @Override
+        long weight(Random random, int rank, int size) {
+            long weight = MB + (long) (random.nextDouble() * 9 * MB);
+            return (rank < HUGE_FILES_COUNT) ? (weight * 1000) : weight;
+        }
+    };
+
+    private static final long KB = 1024;
+
+    private static final long MB = KB * KB;
+
+    private static final long GB = MB * KB;
+
+    private static final double ZIPF_EXPONENT = 1.1;
+
+    private static final int HUGE_FILES_COUNT = 5;
+
+    /**
+     * @param random - the random source
+     * @param rank - the rank of the item
+     * @param size - the number of items
+     * @return the weight of the item
+     */
+    abstract long weight(Random random, int rank, int size);
+
+    /**
+     * Create the items in random order
+     * @param size - the number of items
+     * @param seed - the random seed, the same seed gives the same items
+     * @return the items
+     */
+    public List<Item> create(int size, long seed) {
+        Random random = new Random(seed);
+        List<Item> items = new ArrayList<>(size);
+
+        for(int i = 0; i < size; i++) {
+            items.add(new Item("file" + i, this.weight(random, i, size)));
+        }
+
+        Collections.shuffle(items, random);
+
+        return items;
+    }
+
+}
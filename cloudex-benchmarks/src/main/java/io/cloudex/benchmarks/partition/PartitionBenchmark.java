@@ -0,0 +1,209 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.benchmarks.partition;
+
+import io.cloudex.framework.partition.PartitionFunction;
+import io.cloudex.framework.partition.builtin.BinPackingPartition;
+import io.cloudex.framework.partition.builtin.BinPackingPartition1;
+import io.cloudex.framework.partition.entities.Item;
+import io.cloudex.framework.partition.entities.Partition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of the bin packing partition functions for a number of item weight distributions and sizes.
+ * Run the {@link #main(String[])} of this class to print the quality of the partitions produced by each
+ * function followed by the throughput and allocation rate of each:
+ * <pre>
+ * java -cp target/benchmarks.jar io.cloudex.benchmarks.partition.PartitionBenchmark -p size=1000,10000
+ * </pre>
+ * Any JMH command line options can be provided, the largest sizes take a long time as both functions are
+ * quadratic in the number of items.
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PartitionBenchmark {
+
+    private static final long SEED = 42;
+
+    /**
+     * The partition functions, both are stateful so a new instance is used for each run
+     */
+    public enum Function {
+
+        BIN_PACKING {
+            @Override
+            PartitionFunction create(Integer bins) {
+                BinPackingPartition function = new BinPackingPartition();
+                function.setNumberOfBins(bins);
+                return function;
+            }
+        },
+
+        BIN_PACKING_1 {
+            @Override
+            PartitionFunction create(Integer bins) {
+                BinPackingPartition1 function = new BinPackingPartition1();
+                function.setNumberOfBins(bins);
+                return function;
+            }
+        };
+
+        abstract PartitionFunction create(Integer bins);
+    }
+
+    @Param({"BIN_PACKING", "BIN_PACKING_1"})
+    private Function function;
+
+    @Param({"UNIFORM", "ZIPFIAN", "HUGE_FILES"})
+    private ItemWeights weights;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int size;
+
+    // the number of bins, e.g. processors, 0 to let the function use bins the size of the largest item
+    @Param({"100"})
+    private int bins;
+
+    private List<Item> items;
+
+    // the functions consume their input, so each run is given a copy
+    private List<Item> input;
+
+    @Setup(Level.Trial)
+    public void createItems() {
+        this.items = this.weights.create(this.size, SEED);
+    }
+
+    @Setup(Level.Invocation)
+    public void copyItems() {
+        this.input = new ArrayList<>(this.items);
+    }
+
+    @Benchmark
+    public List<Partition> partition() {
+        PartitionFunction partitionFunction = this.function.create((this.bins > 0) ? this.bins : null);
+        partitionFunction.setItems(this.input);
+        return partitionFunction.partition();
+    }
+
+    /**
+     * Print the quality of the partitions then run the benchmarks with the GC profiler to report the
+     * allocation rate
+     * @param args - JMH command line options
+     * @throws RunnerException if the benchmarks fail
+     * @throws CommandLineOptionException if the options are invalid
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+
+        CommandLineOptions options = new CommandLineOptions(args);
+
+        Collection<String> sizes = options.getParameter("size")
+                .orElse(Arrays.asList("1000", "10000", "100000", "1000000"));
+        Collection<String> binCounts = options.getParameter("bins").orElse(Arrays.asList("100"));
+
+        System.out.println(String.format("%-14s %-11s %8s %6s %8s %12s %12s", 
+                "function", "weights", "size", "bins", "used", "max / mean", "best"));
+
+        for(String bins: binCounts) {
+            for(String size: sizes) {
+                for(ItemWeights weights: ItemWeights.values()) {
+                    for(Function function: Function.values()) {
+                        
+                        int numberOfBins = Integer.parseInt(bins);
+                        PartitionFunction partitionFunction = function.create((numberOfBins > 0) ? numberOfBins : null);
+                        partitionFunction.setItems(weights.create(Integer.parseInt(size), SEED));
+                        
+                        printQuality(function, weights, size, bins, partitionFunction.partition());
+                    }
+                }
+            }
+        }
+
+        new Runner(new OptionsBuilder()
+                .parent(options)
+                .include(PartitionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    /**
+     * Print the number of bins that have items and the ratio of the largest bin to the mean bin, 1 is a
+     * perfectly balanced partition. The best ratio possible is limited by the largest item
+     */
+    private static void printQuality(Function function, ItemWeights weights, String size, String bins,
+            List<Partition> partitions) {
+
+        long max = 0;
+        long largest = 0;
+        long total = 0;
+        int used = 0;
+
+        for(Partition partition: partitions) {
+            long sum = partition.sum();
+            max = Math.max(max, sum);
+            total += sum;
+
+            if(partition.size() > 0) {
+                used++;
+            }
+
+            for(Item item: partition.getItems()) {
+                largest = Math.max(largest, item.getWeight());
+            }
+        }
+
+        double mean = (double) total / partitions.size();
+
+        System.out.println(String.format("%-14s %-11s %8s %6s %8d %12.3f %12.3f", 
+                function, weights, size, bins, used, max / mean, Math.max(largest, mean) / mean));
+    }
+
+}
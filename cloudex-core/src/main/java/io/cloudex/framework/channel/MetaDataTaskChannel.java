@@ -0,0 +1,80 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.channel;
+
+import io.cloudex.framework.cloud.api.ApiUtils;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+
+import java.io.IOException;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The default {@link TaskChannel}, the coordinator writes the item to the processor instance metadata and 
+ * the processor waits for a change in its metadata
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class MetaDataTaskChannel implements TaskChannel {
+
+    /**
+     * The item replaces the processor metadata, the fingerprint of the current metadata is needed for the update
+     */
+    @Override
+    public String send(CloudService cloudService, String instanceId, VmMetaData metaData, String zoneId) 
+            throws IOException {
+        VmMetaData processorMetaData = cloudService.getMetaData(instanceId, zoneId);
+        processorMetaData.getFollowUp(metaData);
+        return cloudService.updateMetadata(metaData, zoneId, instanceId, false);
+    }
+
+    @Override
+    public void open(CloudService cloudService) throws IOException {
+        // nothing to open
+    }
+
+    @Override
+    public void advertise(VmMetaData metaData) {
+        // the coordinator reaches the processor through its instance metadata
+    }
+
+    @Override
+    public VmMetaData receive(CloudService cloudService, VmMetaData metaData) throws IOException {
+        // FIXME better solution for race condition
+        // avoid race condition
+        ApiUtils.block(2);
+        VmMetaData current = cloudService.getMetaData(false);
+        // if we still have a status then wait, otherwise proceed
+        if(StringUtils.isNotBlank(current.getStatus())) {
+            current = cloudService.getMetaData(true);
+        }
+
+        return current;
+    }
+
+    @Override
+    public void close() {
+        // nothing to close
+    }
+
+}
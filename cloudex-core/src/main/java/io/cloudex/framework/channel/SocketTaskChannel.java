@@ -0,0 +1,497 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.framework.channel;
+
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.utils.ObjectUtils;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.common.io.BaseEncoding;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * A {@link TaskChannel} that pushes items straight to the processors. Each processor listens on a TCP port and 
+ * publishes its host:port in its metadata, the coordinator connects to it and sends the item metadata as a 
+ * line of JSON. The processor replies as soon as it has taken the item, so the item is handed over in about 
+ * the time of a round trip rather than the seconds taken by the metadata update operation and the processor 
+ * wait, and the coordinator can push items to many processors one after the other.
+ * 
+ * If an item can't be pushed, e.g. the processor doesn't publish an address or is no longer listening on it, 
+ * the item is sent through the processor metadata instead, which the processor also checks whilst it waits. 
+ * The processors of the slots of a multi-slot processor don't publish an address, so they are always sent 
+ * items through their metadata.
+ * 
+ * Each item carries an id that the processor publishes with every status once it has taken the item, so 
+ * the coordinator doesn't mistake the status the processor has published for its previous item, e.g. READY, 
+ * for the status of the new one. If the reply is lost, the item is only written to the processor metadata if 
+ * the processor hasn't published the id, and a processor never runs an item with an id it has already taken, 
+ * so an item is never run twice.
+ * 
+ * <p>
+ * Security: the processor only listens on its internal address, the address it publishes, and only accepts 
+ * the items that carry the random token of the job. The coordinator generates the token and writes it to the 
+ * processor metadata with every item it sends, a processor doesn't publish its address until it has received 
+ * the token through its metadata, so the first item of a processor always goes through its metadata. Anyone who 
+ * can read the processors metadata can read the token and the items are sent in clear text, so the port must 
+ * be closed to anything but the coordinator, e.g. with a firewall rule of the VM network that only allows the 
+ * port from the coordinator VM, and the VMs must not be given external addresses that expose the port.
+ * </p>
+ * 
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class SocketTaskChannel extends MetaDataTaskChannel {
+
+    private static final Log log = LogFactory.getLog(SocketTaskChannel.class);
+
+    private static final String ACCEPTED = "OK";
+
+    private static final String REJECTED = "REJECTED";
+
+    private static final Type ATTRIBUTES_TYPE = new TypeToken<Map<String, String>>(){}.getType();
+
+    // the default time to wait for a processor to accept an item in milliseconds
+    public static final int DEFAULT_ACCEPT_TIMEOUT = 60_000;
+
+    // how often a waiting processor checks its metadata for items that couldn't be pushed, in seconds
+    private static final int METADATA_CHECK_INTERVAL = 2;
+
+    private static final int CONNECT_TIMEOUT = 2_000;
+
+    // the maximum length of a pushed item in characters, larger items are rejected unread
+    static final int MAX_ITEM_LENGTH = 1_048_576;
+
+    private static final int TOKEN_BYTES = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // the port the processor listens on, 0 for any free port
+    private int port;
+
+    private int acceptTimeout = DEFAULT_ACCEPT_TIMEOUT;
+
+    // coordinator, processor instance id => the address it listens on
+    private Map<String, String> addresses = new ConcurrentHashMap<>();
+
+    // coordinator, the token of the job that is sent with every item
+    private String token;
+
+    // processor, the listening socket and its address
+    private volatile ServerSocket serverSocket;
+
+    private volatile String address;
+
+    // processor, the token the pushed items must carry, received with the items sent through the metadata
+    private volatile String acceptedToken;
+
+    // processor, the id of the item last taken
+    private volatile String delivery;
+
+    // processor, hands the pushed items over to the processor whilst it's waiting
+    private BlockingQueue<VmMetaData> deliveries = new SynchronousQueue<>();
+
+    /**
+     * Listen on any free port
+     */
+    public SocketTaskChannel() {
+        this(0);
+    }
+
+    /**
+     * @param port - the port the processor listens on, 0 for any free port
+     */
+    public SocketTaskChannel(int port) {
+        super();
+        Validate.isTrue(port >= 0, "port must not be negative");
+        this.port = port;
+    }
+
+    /**
+     * The address of a processor is read from its metadata the first time it's sent an item. The item is given 
+     * an id and the token of the job before it's sent
+     */
+    @Override
+    public String send(CloudService cloudService, String instanceId, VmMetaData metaData, String zoneId) 
+            throws IOException {
+
+        metaData.addValue(VmMetaData.CLOUDEX_CHANNEL_TOKEN, this.getToken());
+        metaData.addValue(VmMetaData.CLOUDEX_DELIVERY, UUID.randomUUID().toString());
+
+        String processorAddress = this.addresses.get(instanceId);
+
+        if(processorAddress == null) {
+            VmMetaData processorMetaData = cloudService.getMetaData(instanceId, zoneId);
+            processorAddress = processorMetaData.getValue(VmMetaData.CLOUDEX_CHANNEL);
+
+            if(processorAddress == null) {
+                processorMetaData.getFollowUp(metaData);
+                return cloudService.updateMetadata(metaData, zoneId, instanceId, false);
+            }
+
+            this.addresses.put(instanceId, processorAddress);
+        }
+
+        try {
+            String reply = this.push(processorAddress, metaData);
+
+            if(ACCEPTED.equals(reply)) {
+                return null;
+            }
+
+            // the processor might have taken the item if it hasn't replied
+            log.warn("Processor " + instanceId + " has not accepted the item, reply: " + reply 
+                    + ", using its metadata instead");
+
+        } catch(IOException e) {
+            log.warn("Failed to push the item to processor " + instanceId + " at " + processorAddress 
+                    + ", using its metadata instead: " + e.getMessage());
+            this.addresses.remove(instanceId);
+        }
+
+        return this.sendMetaData(cloudService, instanceId, metaData, zoneId);
+    }
+
+    /**
+     * Write an item that couldn't be pushed to the processor metadata, unless the processor has published the id 
+     * of the item, i.e. it has taken the item but its reply was lost. The update is made with the fingerprint of the metadata 
+     * that was checked, so it fails if the processor publishes in the meantime, in which case the metadata is 
+     * checked again
+     * @param cloudService - the coordinator cloud service
+     * @param instanceId - the processor instance id
+     * @param metaData - the item metadata
+     * @param zoneId - the zone id of the processor
+     * @return the reference of the metadata update operation or null if the processor has taken the item
+     * @throws IOException if the metadata can't be updated
+     */
+    private String sendMetaData(CloudService cloudService, String instanceId, VmMetaData metaData, String zoneId) 
+            throws IOException {
+
+        String id = metaData.getValue(VmMetaData.CLOUDEX_DELIVERY);
+
+        for(int attempt = 1; ; attempt++) {
+            VmMetaData processorMetaData = cloudService.getMetaData(instanceId, zoneId);
+
+            if(id.equals(processorMetaData.getValue(VmMetaData.CLOUDEX_DELIVERY))) {
+                log.info("Processor " + instanceId + " has already taken the item " + id);
+                return null;
+            }
+
+            try {
+                processorMetaData.getFollowUp(metaData);
+                return cloudService.updateMetadata(metaData, zoneId, instanceId, false);
+
+            } catch(IOException e) {
+                if(attempt > 1) {
+                    throw e;
+                }
+                log.warn("Failed to write the item to processor " + instanceId + ", checking its metadata again: " 
+                        + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Send the item to a processor and wait for its reply
+     * @param processorAddress - the host:port of the processor
+     * @param metaData - the item metadata
+     * @return the reply of the processor, {@link #ACCEPTED} if it has taken the item
+     * @throws IOException if the processor can't be reached or doesn't reply
+     */
+    private String push(String processorAddress, VmMetaData metaData) throws IOException {
+
+        Map<String, String> attributes = new HashMap<>();
+
+        for(Entry<String, Object> entry: metaData.getAttributes().entrySet()) {
+            if(entry.getValue() != null) {
+                attributes.put(entry.getKey(), entry.getValue().toString());
+            }
+        }
+
+        String host = StringUtils.substringBeforeLast(processorAddress, ":");
+        int processorPort = Integer.parseInt(StringUtils.substringAfterLast(processorAddress, ":"));
+
+        try(Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, processorPort), CONNECT_TIMEOUT);
+            // the processor waits for up to the accept timeout to take the item
+            socket.setSoTimeout(this.acceptTimeout + CONNECT_TIMEOUT);
+
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            writer.write(ObjectUtils.GSON.toJson(attributes));
+            writer.write('\n');
+            writer.flush();
+
+            return readLine(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), 
+                    MAX_ITEM_LENGTH);
+        }
+    }
+
+    /**
+     * Read a line of up to a maximum length
+     * @param reader - the reader
+     * @param maxLength - the maximum length of the line
+     * @return the line without its line terminator or null if the stream has ended before any character
+     * @throws IOException if the line is longer than the maximum length or can't be read
+     */
+    static String readLine(Reader reader, int maxLength) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+
+        while(((c = reader.read()) != -1) && (c != '\n')) {
+            if(line.length() == maxLength) {
+                throw new IOException("Line is longer than " + maxLength + " characters");
+            }
+            line.append((char) c);
+        }
+
+        if((c == -1) && (line.length() == 0)) {
+            return null;
+        }
+
+        return StringUtils.removeEnd(line.toString(), "\r");
+    }
+
+    /**
+     * Listen on the internal address of the processor, which is published for the coordinator to connect to
+     */
+    @Override
+    public void open(CloudService cloudService) throws IOException {
+
+        InetAddress internal = InetAddress.getLocalHost();
+
+        this.serverSocket = new ServerSocket(this.port, 0, internal);
+        this.address = internal.getHostAddress() + ':' + this.serverSocket.getLocalPort();
+
+        Thread listener = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                listen();
+            }
+        }, "cloudex-channel");
+
+        listener.setDaemon(true);
+        listener.start();
+
+        log.info("Accepting items on " + this.address);
+    }
+
+    /**
+     * Accept the items pushed by the coordinator one at a time until the channel is closed, items that don't 
+     * carry the token of the job are rejected
+     */
+    private void listen() {
+
+        while(!this.serverSocket.isClosed()) {
+
+            try(Socket socket = this.serverSocket.accept()) {
+                socket.setSoTimeout(this.acceptTimeout);
+
+                String line = readLine(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), 
+                        MAX_ITEM_LENGTH);
+
+                Map<String, String> attributes = ObjectUtils.GSON.fromJson(line, ATTRIBUTES_TYPE);
+                String reply = REJECTED;
+
+                if((attributes != null) && this.isAuthorised(attributes)) {
+
+                    VmMetaData item = new VmMetaData(new HashMap<String, Object>(attributes), null);
+
+                    // only taken if the processor is waiting
+                    if(this.deliveries.offer(item, this.acceptTimeout, TimeUnit.MILLISECONDS)) {
+                        reply = ACCEPTED;
+                    }
+
+                } else {
+                    log.warn("Rejected an item without the job token from " + socket.getRemoteSocketAddress());
+                }
+
+                Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                writer.write(reply);
+                writer.write('\n');
+                writer.flush();
+
+            } catch(IOException | RuntimeException e) {
+                if(!this.serverSocket.isClosed()) {
+                    log.warn("Failed to accept an item", e);
+                }
+
+            } catch(InterruptedException e) {
+                log.warn("Interrupted whilst accepting an item", e);
+                break;
+            }
+        }
+    }
+
+    /**
+     * @param attributes - the attributes of a pushed item
+     * @return true if the item carries the token the processor has received through its metadata
+     */
+    private boolean isAuthorised(Map<String, String> attributes) {
+        String expected = this.acceptedToken;
+        String actual = attributes.get(VmMetaData.CLOUDEX_CHANNEL_TOKEN);
+
+        return (expected != null) && (actual != null) && MessageDigest.isEqual(
+                expected.getBytes(StandardCharsets.UTF_8), actual.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The address is only published once the token of the job has been received with an item. The id of the 
+     * item last taken is published with every status
+     */
+    @Override
+    public void advertise(VmMetaData metaData) {
+
+        String itemToken = metaData.getValue(VmMetaData.CLOUDEX_CHANNEL_TOKEN);
+        if(itemToken != null) {
+            this.acceptedToken = itemToken;
+        }
+
+        String id = metaData.getValue(VmMetaData.CLOUDEX_DELIVERY);
+        if(id != null) {
+            this.delivery = id;
+
+        } else if(this.delivery != null) {
+            metaData.addValue(VmMetaData.CLOUDEX_DELIVERY, this.delivery);
+        }
+
+        if((this.address != null) && (this.acceptedToken != null)) {
+            metaData.addValue(VmMetaData.CLOUDEX_CHANNEL, this.address);
+        }
+    }
+
+    /**
+     * Waits for an item to be pushed, the metadata is checked every few seconds for items that couldn't be pushed. 
+     * An item in the metadata that was already taken, e.g. pushed and then written by a coordinator that didn't
+     * get the reply in time, is not run again and the last status is published back. The current metadata is 
+     * returned once the channel is closed
+     */
+    @Override
+    public VmMetaData receive(CloudService cloudService, VmMetaData metaData) throws IOException {
+
+        if(this.serverSocket == null) {
+            return super.receive(cloudService, metaData);
+        }
+
+        while(!this.serverSocket.isClosed()) {
+            VmMetaData item;
+
+            try {
+                item = this.deliveries.poll(METADATA_CHECK_INTERVAL, TimeUnit.SECONDS);
+
+            } catch(InterruptedException e) {
+                throw new IOException("Interrupted whilst waiting for instructions", e);
+            }
+
+            if(item != null) {
+                // the processor replaces its own metadata with the item
+                item.setFingerprint(metaData.getFingerprint());
+                return item;
+            }
+
+            VmMetaData current = cloudService.getMetaData(false);
+
+            if(StringUtils.isBlank(current.getStatus())) {
+                String id = current.getValue(VmMetaData.CLOUDEX_DELIVERY);
+
+                if((id == null) || !id.equals(this.delivery)) {
+                    return current;
+                }
+
+                log.warn("Item " + id + " has already been taken, publishing the last status again");
+                metaData.setFingerprint(current.getFingerprint());
+                cloudService.updateMetadata(metaData);
+            }
+        }
+
+        return cloudService.getMetaData(false);
+    }
+
+    /**
+     * The processor stops publishing its address and accepting items
+     */
+    @Override
+    public void close() {
+        this.address = null;
+        
+        if(this.serverSocket != null) {
+            try {
+                this.serverSocket.close();
+
+            } catch(IOException e) {
+                log.warn("Failed to close the channel", e);
+            }
+        }
+    }
+
+    /**
+     * @return the token of the job, generated the first time it's needed
+     */
+    public synchronized String getToken() {
+        if(this.token == null) {
+            byte[] bytes = new byte[TOKEN_BYTES];
+            RANDOM.nextBytes(bytes);
+            this.token = BaseEncoding.base16().lowerCase().encode(bytes);
+        }
+
+        return token;
+    }
+
+    /**
+     * @return the address the processor listens on or null if the channel is not open
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * @param acceptTimeout the time to wait for a processor to accept an item in milliseconds
+     */
+    public void setAcceptTimeout(int acceptTimeout) {
+        Validate.isTrue(acceptTimeout > 0, "acceptTimeout must be positive");
+        this.acceptTimeout = acceptTimeout;
+    }
+
+}
@@ -0,0 +1,165 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.channel;
+
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.utils.Constants;
+import io.cloudex.framework.utils.FileUtils;
+import io.cloudex.framework.utils.ObjectUtils;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * A {@link TaskChannel} for items that are too large for the processor metadata. The metadata of an item larger 
+ * than {@link CloudService#getMaximumMetaDataSize()} is uploaded to a cloud storage bucket and the processor 
+ * metadata only references the uploaded object, the processor downloads the item when it receives the reference. 
+ * Smaller items are written to the processor metadata as usual. Unlike the long item values that are saved to 
+ * files by the coordinator, the whole item including the task inputs is stored, so any item can be sent
+ * 
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class StorageTaskChannel extends MetaDataTaskChannel {
+
+    private static final Log log = LogFactory.getLog(StorageTaskChannel.class);
+
+    private static final String PAYLOAD_PREFIX = "cloudex-payload_";
+
+    private static final char BUCKET_SEPARATOR = '/';
+
+    private static final Type ATTRIBUTES_TYPE = new TypeToken<Map<String, String>>(){}.getType();
+
+    // the bucket the large items are uploaded to, only needed by the coordinator
+    private String bucket;
+
+    private AtomicLong payloads = new AtomicLong();
+
+    /**
+     * Create a channel for the processor, the bucket of each item is in its reference
+     */
+    public StorageTaskChannel() {
+        super();
+    }
+
+    /**
+     * Create a channel for the coordinator
+     * @param bucket - the bucket the large items are uploaded to
+     */
+    public StorageTaskChannel(String bucket) {
+        super();
+        this.bucket = bucket;
+    }
+
+    /**
+     * Items that are too large for the metadata are uploaded and the processor is sent a reference instead
+     */
+    @Override
+    public String send(CloudService cloudService, String instanceId, VmMetaData metaData, String zoneId) 
+            throws IOException {
+
+        int size = metaData.getSize();
+
+        if(size <= cloudService.getMaximumMetaDataSize()) {
+            return super.send(cloudService, instanceId, metaData, zoneId);
+        }
+
+        Validate.notBlank(this.bucket, "bucket is needed as metadata is larger than maximum allowed.");
+
+        log.info("Metadata too large, sending the item through cloud storage. Size = " + size);
+
+        Map<String, String> attributes = new HashMap<>();
+
+        for(Entry<String, Object> entry: metaData.getAttributes().entrySet()) {
+            if(entry.getValue() != null) {
+                attributes.put(entry.getKey(), entry.getValue().toString());
+            }
+        }
+
+        String filename = new StringBuilder(PAYLOAD_PREFIX).append(FileUtils.encodeFilename(instanceId))
+                .append('_').append(System.currentTimeMillis()).append('_').append(this.payloads.incrementAndGet())
+                .append(Constants.DOT_TEXT).toString();
+
+        String payloadFile = FileUtils.TEMP_FOLDER + filename;
+
+        try {
+            FileUtils.objectToJsonFile(payloadFile, attributes);
+            cloudService.uploadFileToCloudStorage(payloadFile, this.bucket);
+
+        } finally {
+            FileUtils.deleteFile(payloadFile);
+        }
+
+        VmMetaData reference = new VmMetaData();
+        reference.addValue(VmMetaData.CLOUDEX_PAYLOAD, this.bucket + BUCKET_SEPARATOR + filename);
+
+        return super.send(cloudService, instanceId, reference, zoneId);
+    }
+
+    /**
+     * An item sent as a reference is downloaded and replaces the reference
+     */
+    @Override
+    public VmMetaData receive(CloudService cloudService, VmMetaData metaData) throws IOException {
+
+        VmMetaData current = super.receive(cloudService, metaData);
+        String payload = current.getValue(VmMetaData.CLOUDEX_PAYLOAD);
+
+        if((payload == null) || StringUtils.isNotBlank(current.getStatus())) {
+            return current;
+        }
+
+        String object = StringUtils.substringAfter(payload, String.valueOf(BUCKET_SEPARATOR));
+        String payloadFile = FileUtils.TEMP_FOLDER + object;
+
+        log.info("Downloading the item " + object + " from cloud storage");
+
+        Map<String, String> attributes;
+
+        try {
+            cloudService.downloadObjectFromCloudStorage(object, payloadFile, 
+                    StringUtils.substringBefore(payload, String.valueOf(BUCKET_SEPARATOR)));
+
+            try(FileReader reader = new FileReader(payloadFile)) {
+                attributes = ObjectUtils.GSON.fromJson(reader, ATTRIBUTES_TYPE);
+            }
+
+        } finally {
+            FileUtils.deleteFile(payloadFile);
+        }
+
+        return new VmMetaData(new HashMap<String, Object>(attributes), current.getFingerprint());
+    }
+
+}
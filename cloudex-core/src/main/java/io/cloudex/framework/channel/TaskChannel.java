@@ -0,0 +1,79 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.channel;
+
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+
+import java.io.IOException;
+
+/**
+ * Carries the items the coordinator hands to idle processors. The coordinator sends the metadata of an item 
+ * to a processor and the processor receives it whilst it's waiting for instructions. The processor status is 
+ * always reported through its metadata regardless of the channel. {@link MetaDataTaskChannel} is the default
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public interface TaskChannel {
+
+    /**
+     * Send the metadata of an item to an idle processor, this is used by the Coordinator
+     * @param cloudService - the coordinator cloud service
+     * @param instanceId - the processor instance id
+     * @param metaData - the item metadata
+     * @param zoneId - the zone id of the processor
+     * @return the reference of the metadata update operation to wait for or null if the processor has 
+     * already accepted the item
+     * @throws IOException if the item can't be sent
+     */
+    public String send(CloudService cloudService, String instanceId, VmMetaData metaData, String zoneId) 
+            throws IOException;
+
+    /**
+     * Start accepting items, this is used by the Processor before it runs its first item
+     * @param cloudService - the processor cloud service
+     * @throws IOException if the channel can't be opened
+     */
+    public void open(CloudService cloudService) throws IOException;
+
+    /**
+     * Add what the coordinator needs to reach this processor to the metadata the processor is about to 
+     * publish, this is used by the Processor
+     * @param metaData - the processor metadata
+     */
+    public void advertise(VmMetaData metaData);
+
+    /**
+     * Wait for the next instructions from the coordinator, this is used by the Processor
+     * @param cloudService - the processor cloud service
+     * @param metaData - the metadata last published by the processor
+     * @return the metadata with the next instructions, the processor runs it if it has no status
+     * @throws IOException if any of the cloud api calls fail
+     */
+    public VmMetaData receive(CloudService cloudService, VmMetaData metaData) throws IOException;
+
+    /**
+     * Release the resources used by the channel
+     */
+    public void close();
+
+}
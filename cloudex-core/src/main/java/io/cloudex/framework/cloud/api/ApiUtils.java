@@ -47,9 +47,18 @@ public final class ApiUtils {
      * @param seconds - the number of seconds to block
      */
     public static void block(int seconds) {
+        block(seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Block for the provided duration
+     * @param duration - the duration to block
+     * @param unit - the unit of the duration
+     */
+    public static void block(long duration, TimeUnit unit) {
         try {
-            TimeUnit.SECONDS.sleep(seconds);
-            
+            unit.sleep(duration);
+
         } catch (InterruptedException e1) {
             log.warn("wait interrupted", e1);
         }
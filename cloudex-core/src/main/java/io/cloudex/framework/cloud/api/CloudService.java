@@ -27,6 +27,7 @@ import io.cloudex.framework.config.VmConfig;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 /**
  * An interface for cloud API operations. This is generic and is not cloud provider specific. Implementations are needed
@@ -81,6 +82,33 @@ public interface CloudService {
     public String updateMetadata(VmMetaData metaData, 
             String zoneId, String instanceId, boolean block) throws IOException;
     
+    /**
+     * Get the meta data of a number of instances with as few api calls as possible
+     * @param instanceIds - the instance ids
+     * @param zoneId - the zone id of the instances
+     * @return instance id => the metadata, instances that can't be retrieved are not included
+     * @throws IOException if any of the cloud api calls fail
+     */
+    public Map<String, VmMetaData> getMetaData(List<String> instanceIds, String zoneId) throws IOException;
+
+    /**
+     * Get the meta data of all the cloudex processor instances in a zone with a single paged list call
+     * @param zoneId - the zone id of the instances
+     * @return instance id => the metadata for every processor instance in the zone
+     * @throws IOException if any of the cloud api calls fail
+     */
+    public Map<String, VmMetaData> getProcessorsMetaData(String zoneId) throws IOException;
+
+    /**
+     * Update the meta data of a number of instances with as few api calls as possible, this method
+     * doesn't block until the updates are complete
+     * @param metaData - instance id => the new metadata
+     * @param zoneId - the zone id of the instances
+     * @return instance id => the reference of the update operation
+     * @throws IOException if any of the cloud api calls fail
+     */
+    public Map<String, String> updateMetadata(Map<String, VmMetaData> metaData, String zoneId) throws IOException;
+
     /**
      * Block and wait the operations with the provided references to complete
      * @param references - the operations references
@@ -98,6 +126,15 @@ public interface CloudService {
      */
     public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException;
 
+    /**
+     * Start the VMs provided in this config without blocking, the VMs are created concurrently
+     * and the listener is notified as soon as each VM is running or has failed to start
+     * @param configs - the {@link VmConfig} of the instances to start
+     * @param listener - notified of the status of each VM
+     * @throws IOException if any of the cloud api calls fail
+     */
+    public void startInstance(List<VmConfig> configs, ProvisioningListener listener) throws IOException;
+
     /**
      * Delete the VMs provided in this config
      * @param configs - the {@link VmConfig} of the instances to shutdown
@@ -0,0 +1,49 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2014, Ecarf.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.framework.cloud.api;
+
+import io.cloudex.framework.config.VmConfig;
+
+import java.io.IOException;
+
+/**
+ * Notified as soon as each VM started with {@link CloudService#startInstance(java.util.List, ProvisioningListener)}
+ * is running or has failed to start. Implementations must be thread-safe as the notifications can be made from
+ * any thread.
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public interface ProvisioningListener {
+
+    /**
+     * Called when a VM is running
+     * @param config - the {@link VmConfig} of the instance
+     */
+    public void instanceReady(VmConfig config);
+
+    /**
+     * Called when a VM has failed to start
+     * @param config - the {@link VmConfig} of the instance
+     * @param exception - the reason of the failure
+     */
+    public void instanceFailed(VmConfig config, IOException exception);
+
+}
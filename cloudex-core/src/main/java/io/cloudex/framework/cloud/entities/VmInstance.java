@@ -50,6 +50,9 @@ public class VmInstance implements Serializable {
     // end date time
     private Date end;
     
+    // the reason the VM was lost, e.g. it was terminated or its heartbeat has stalled
+    private String failure;
+    
     
     public VmInstance() {
         super();
@@ -86,20 +89,9 @@ public class VmInstance implements Serializable {
                 endDate = new Date();
             }
             
-            double elapsed = endDate.getTime() - this.start.getTime();
-            Long minUsage = this.vmConfig.getMinUsage();
-            if((minUsage != null) && (minUsage > elapsed)) {
-                elapsed = minUsage;
-            
-            } else {
-                elapsed = elapsed / 1000;
-                
-                // elapsed is in seconds, round up to the nearest minute
-                double mins = Math.ceil(elapsed / 60);
-                elapsed = (long) (mins * 60);
-            }
+            double elapsed = this.getBilledUsage(endDate);
             
-            Double hourlyCost = this.vmConfig.getCost();
+            Double hourlyCost = this.vmConfig.getHourlyCost();
             
             if(hourlyCost != null) {
                 cost = hourlyCost * elapsed / SECONDS_IN_HOUR;
@@ -109,6 +101,41 @@ public class VmInstance implements Serializable {
         
         return cost;
     }
+    
+    /**
+     * Get the billed usage of this VM if it's shutdown at the provided date. The usage is rounded up to 
+     * the nearest minute and is at least the minimum usage of the VM
+     * @param date - the shutdown date
+     * @return the billed usage in seconds
+     */
+    public long getBilledUsage(Date date) {
+        long billed = 0;
+        
+        if(this.start != null) {
+            double elapsed = (date.getTime() - this.start.getTime()) / 1000.0;
+            
+            // elapsed is in seconds, round up to the nearest minute
+            billed = (long) (Math.ceil(elapsed / 60) * 60);
+            
+            Long minUsage = this.vmConfig.getMinUsage();
+            if((minUsage != null) && (minUsage > billed)) {
+                billed = minUsage;
+            }
+        }
+        
+        return billed;
+    }
+    
+    /**
+     * Get the date at which the billed usage of this VM increases next, shutting down the VM any 
+     * time before this date costs the same
+     * @param date - the current date
+     * @return the date of the next billing increment
+     */
+    public Date getNextBillingIncrement(Date date) {
+        Validate.notNull(this.start);
+        return new Date(this.start.getTime() + (this.getBilledUsage(date) * 1000));
+    }
 
     /**
      * @return the vmConfig
@@ -152,11 +179,26 @@ public class VmInstance implements Serializable {
         this.end = end;
     }
     
+    /**
+     * @return the failure or null if the VM wasn't lost
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    /**
+     * @param failure the failure to set
+     */
+    public void setFailure(String failure) {
+        this.failure = failure;
+    }
+    
     @Override
     public String toString() {
         return new ToStringBuilder(this)
             .append("start", start)
             .append("end", end)
+            .append("failure", failure)
             .append("vmConfig", vmConfig)
             .append("cost", this.getCost())
             .toString();
@@ -22,9 +22,14 @@ package io.cloudex.framework.cloud.entities;
 import io.cloudex.framework.types.CodeLocation;
 import io.cloudex.framework.types.ProcessorStatus;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
@@ -62,6 +67,13 @@ public class VmMetaData {
 
     public static final String CLOUDEX_TASK_CODE_URL = CLOUDEX_PREFIX + "task-code-url";
 
+    public static final String CLOUDEX_TASK_CODE_HASH = CLOUDEX_PREFIX + "task-code-hash";
+
+    // the remote code of the next processor task, preloaded whilst this task runs
+    public static final String CLOUDEX_TASK_CODE_NEXT_URL = CLOUDEX_PREFIX + "task-code-next-url";
+
+    public static final String CLOUDEX_TASK_CODE_NEXT_HASH = CLOUDEX_PREFIX + "task-code-next-hash";
+
     // the status of the processor, ready, busy or error
     public static final String CLOUDEX_STATUS = CLOUDEX_PREFIX + "status";
 
@@ -71,10 +83,41 @@ public class VmMetaData {
     // cloudex-message
     public static final String CLOUDEX_MESSAGE = CLOUDEX_PREFIX + "message";
 
+    // the keys of the items or storage objects the processor holds in its local cache
+    public static final String CLOUDEX_CACHE = CLOUDEX_PREFIX + "cache";
+
+    private static final char CACHE_SEPARATOR = ',';
+
+    // the time of the last heartbeat of a busy processor in milliseconds
+    public static final String CLOUDEX_HEARTBEAT = CLOUDEX_PREFIX + "heartbeat";
+
+    // the progress reported by the running task with the last heartbeat
+    public static final String CLOUDEX_PROGRESS = CLOUDEX_PREFIX + "progress";
+
+    // the number of slots of a multi-slot processor, each slot has its own metadata prefixed with its index
+    public static final String CLOUDEX_SLOTS = CLOUDEX_PREFIX + "slots";
+
+    public static final String CLOUDEX_SLOT_PREFIX = CLOUDEX_PREFIX + "slot-";
+
+    // the host:port the coordinator pushes items to, published by processors that use a push task channel
+    public static final String CLOUDEX_CHANNEL = CLOUDEX_PREFIX + "channel";
+
+    // the random token of the job the pushed items must carry, written by the coordinator with the items
+    public static final String CLOUDEX_CHANNEL_TOKEN = CLOUDEX_PREFIX + "channel-token";
+
+    // the id of an item sent by the coordinator, published by the processor once it has taken the item
+    public static final String CLOUDEX_DELIVERY = CLOUDEX_PREFIX + "delivery";
+
+    // the bucket/object of an item that is too large for the metadata, see StorageTaskChannel
+    public static final String CLOUDEX_PAYLOAD = CLOUDEX_PREFIX + "payload";
+
     private Map<String, Object> attributes;
 
     private String fingerprint;
 
+    // the status of the VM itself as reported by the cloud provider, e.g. RUNNING or TERMINATED
+    private String instanceStatus;
+
     /**
      * 
      */
@@ -183,6 +226,56 @@ public class VmMetaData {
     public String getTaskCodeUrl() {
         return (String) this.attributes.get(CLOUDEX_TASK_CODE_URL);
     }
+    
+    /**
+     * Set the url of the task code
+     * @param url - the bucket/object of the task jar
+     */
+    public void setTaskCodeUrl(String url) {
+        this.attributes.put(CLOUDEX_TASK_CODE_URL, url);
+    }
+    
+    /**
+     * Get the hash of the task code, only if status is set to remote
+     * @return
+     */
+    public String getTaskCodeHash() {
+        return (String) this.attributes.get(CLOUDEX_TASK_CODE_HASH);
+    }
+    
+    /**
+     * Set the hash of the task code
+     * @param hash - the hex SHA-256 hash of the task jar
+     */
+    public void setTaskCodeHash(String hash) {
+        this.attributes.put(CLOUDEX_TASK_CODE_HASH, hash);
+    }
+    
+    /**
+     * Get the url of the remote code of the next processor task if any
+     * @return
+     */
+    public String getNextTaskCodeUrl() {
+        return (String) this.attributes.get(CLOUDEX_TASK_CODE_NEXT_URL);
+    }
+    
+    /**
+     * Get the hash of the remote code of the next processor task if any
+     * @return
+     */
+    public String getNextTaskCodeHash() {
+        return (String) this.attributes.get(CLOUDEX_TASK_CODE_NEXT_HASH);
+    }
+    
+    /**
+     * Set the remote code of the next processor task
+     * @param url - the bucket/object of the task jar
+     * @param hash - the hex SHA-256 hash of the task jar
+     */
+    public void setNextTaskCode(String url, String hash) {
+        this.attributes.put(CLOUDEX_TASK_CODE_NEXT_URL, url);
+        this.attributes.put(CLOUDEX_TASK_CODE_NEXT_HASH, hash);
+    }
 
     /**
      * Get the exception if any
@@ -226,6 +319,140 @@ public class VmMetaData {
         this.setMessage(exception.getMessage());
     }
     
+    /**
+     * @return the time of the last heartbeat in milliseconds or null if not set
+     */
+    public Long getHeartbeat() {
+        return this.getLongValue(CLOUDEX_HEARTBEAT);
+    }
+    
+    /**
+     * @param heartbeat the time of the heartbeat in milliseconds
+     */
+    public void setHeartbeat(long heartbeat) {
+        this.attributes.put(CLOUDEX_HEARTBEAT, Long.toString(heartbeat));
+    }
+    
+    /**
+     * @return the progress reported with the last heartbeat or null if not set
+     */
+    public Long getProgress() {
+        return this.getLongValue(CLOUDEX_PROGRESS);
+    }
+    
+    /**
+     * @param progress the progress of the running task
+     */
+    public void setProgress(long progress) {
+        this.attributes.put(CLOUDEX_PROGRESS, Long.toString(progress));
+    }
+    
+    /**
+     * Get a numeric value
+     * @param key - the metadata key
+     * @return the value or null if not set or not a number
+     */
+    private Long getLongValue(String key) {
+        Long value = null;
+        Object attribute = this.attributes.get(key);
+        if(attribute != null) {
+            try {
+                value = Long.valueOf(attribute.toString());
+                
+            } catch(NumberFormatException e) {
+                log.error("Failed to parse " + key, e);
+            }
+        }
+        return value;
+    }
+    
+    /**
+     * Get the keys of the items or storage objects the processor holds in its local cache
+     * @return the cached keys, empty if none are reported
+     */
+    public Set<String> getCachedKeys() {
+        Set<String> keys = new LinkedHashSet<>();
+        String value = this.getValue(CLOUDEX_CACHE);
+        
+        if(StringUtils.isNotBlank(value)) {
+            keys.addAll(Arrays.asList(StringUtils.split(value, CACHE_SEPARATOR)));
+        }
+        
+        return keys;
+    }
+    
+    /**
+     * Set the keys of the items or storage objects the processor holds in its local cache
+     * @param keys - the cached keys
+     */
+    public void setCachedKeys(Collection<String> keys) {
+        this.attributes.put(CLOUDEX_CACHE, StringUtils.join(keys, CACHE_SEPARATOR));
+    }
+    
+    /**
+     * @return the number of slots of a multi-slot processor or 0 if not set
+     */
+    public int getSlots() {
+        Long slots = this.getLongValue(CLOUDEX_SLOTS);
+        return (slots != null) ? slots.intValue() : 0;
+    }
+    
+    /**
+     * @param slots the number of slots of a multi-slot processor
+     */
+    public void setSlots(int slots) {
+        this.attributes.put(CLOUDEX_SLOTS, Integer.toString(slots));
+    }
+    
+    /**
+     * Get the metadata of a slot of a multi-slot processor, the fingerprint and instance status are those 
+     * of the processor
+     * @param slot - the slot index
+     * @return a copy of the slot metadata without the slot prefix
+     */
+    public VmMetaData getSlotMetaData(int slot) {
+        String prefix = getSlotPrefix(slot);
+        Map<String, Object> values = new HashMap<>();
+        
+        for(Entry<String, Object> entry: this.attributes.entrySet()) {
+            if(entry.getKey().startsWith(prefix)) {
+                values.put(entry.getKey().substring(prefix.length()), entry.getValue());
+            }
+        }
+        
+        VmMetaData metaData = new VmMetaData(values, this.fingerprint);
+        metaData.setInstanceStatus(this.instanceStatus);
+        
+        return metaData;
+    }
+    
+    /**
+     * Replace the metadata of a slot of a multi-slot processor
+     * @param slot - the slot index
+     * @param metaData - the new slot metadata
+     */
+    public void setSlotMetaData(int slot, VmMetaData metaData) {
+        String prefix = getSlotPrefix(slot);
+        
+        for(Iterator<String> iterator = this.attributes.keySet().iterator(); iterator.hasNext();) {
+            if(iterator.next().startsWith(prefix)) {
+                iterator.remove();
+            }
+        }
+        
+        for(Entry<String, Object> entry: metaData.getAttributes().entrySet()) {
+            this.attributes.put(prefix + entry.getKey(), entry.getValue());
+        }
+    }
+    
+    /**
+     * @param slot - the slot index
+     * @return the prefix of the metadata keys of the slot, e.g. cloudex-slot-2-
+     */
+    private static String getSlotPrefix(int slot) {
+        return CLOUDEX_SLOT_PREFIX + slot + '-';
+    }
+    
     /**
      * Return a map of all the user meta data
      * @return the user provided attributes
@@ -299,6 +526,23 @@ public class VmMetaData {
         attributes.clear();
     }
 
+    /**
+     * @return the size of the keys and values of the metadata in characters
+     */
+    public int getSize() {
+        int size = 0;
+        
+        for(Entry<String, Object> entry: attributes.entrySet()) {
+            size += entry.getKey().length();
+            
+            if(entry.getValue() != null) {
+                size += entry.getValue().toString().length();
+            }
+        }
+        
+        return size;
+    }
+
     /**
      * @return the attributes
      */
@@ -319,6 +563,20 @@ public class VmMetaData {
     public void setFingerprint(String fingerprint) {
         this.fingerprint = fingerprint;
     }
+
+    /**
+     * @return the instanceStatus, null if not known
+     */
+    public String getInstanceStatus() {
+        return instanceStatus;
+    }
+
+    /**
+     * @param instanceStatus the instanceStatus to set
+     */
+    public void setInstanceStatus(String instanceStatus) {
+        this.instanceStatus = instanceStatus;
+    }
     
     /**
      * Some cloud providers require that a follow up metadata to contain a fingerprint signature
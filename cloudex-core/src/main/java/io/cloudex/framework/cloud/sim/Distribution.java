@@ -0,0 +1,106 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.framework.cloud.sim;
+
+import java.util.Random;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A distribution of durations in milliseconds used by the simulated cloud service, e.g. for the time it
+ * takes to provision a VM or to process a partition item.
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public abstract class Distribution {
+
+    /**
+     * Draw a duration from this distribution
+     * @param random - the random source of the simulation
+     * @return a duration in milliseconds, never negative
+     */
+    public abstract long sample(Random random);
+
+    /**
+     * @param duration - the duration in milliseconds
+     * @return a distribution that always returns the provided duration
+     */
+    public static Distribution constant(final long duration) {
+        Validate.isTrue(duration >= 0, "duration must not be negative");
+
+        return new Distribution() {
+            @Override
+            public long sample(Random random) {
+                return duration;
+            }
+        };
+    }
+
+    /**
+     * @param min - the minimum duration in milliseconds
+     * @param max - the maximum duration in milliseconds
+     * @return a distribution with durations evenly spread between min and max
+     */
+    public static Distribution uniform(final long min, final long max) {
+        Validate.isTrue((min >= 0) && (max >= min), "expecting 0 <= min <= max");
+
+        return new Distribution() {
+            @Override
+            public long sample(Random random) {
+                return min + (long) (random.nextDouble() * (max - min));
+            }
+        };
+    }
+
+    /**
+     * @param mean - the mean duration in milliseconds
+     * @return an exponential distribution, e.g. for the time between failures
+     */
+    public static Distribution exponential(final long mean) {
+        Validate.isTrue(mean >= 0, "mean must not be negative");
+
+        return new Distribution() {
+            @Override
+            public long sample(Random random) {
+                return (long) (-mean * Math.log(1 - random.nextDouble()));
+            }
+        };
+    }
+
+    /**
+     * Item durations are usually skewed with a long tail of stragglers, which is modelled with a log-normal
+     * distribution
+     * @param median - the median duration in milliseconds
+     * @param sigma - the standard deviation of the log of the durations, 0 for a constant duration
+     * @return a log-normal distribution
+     */
+    public static Distribution logNormal(final long median, final double sigma) {
+        Validate.isTrue((median >= 0) && (sigma >= 0), "median and sigma must not be negative");
+
+        return new Distribution() {
+            @Override
+            public long sample(Random random) {
+                return (long) (median * Math.exp(sigma * random.nextGaussian()));
+            }
+        };
+    }
+
+}
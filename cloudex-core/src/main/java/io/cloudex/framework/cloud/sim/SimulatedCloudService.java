@@ -0,0 +1,896 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.framework.cloud.sim;
+
+import io.cloudex.framework.cloud.api.AuthenticationProvider;
+import io.cloudex.framework.cloud.api.Callback;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.api.ProvisioningListener;
+import io.cloudex.framework.cloud.entities.BigDataTable;
+import io.cloudex.framework.cloud.entities.QueryStats;
+import io.cloudex.framework.cloud.entities.StorageObject;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.config.VmConfig;
+import io.cloudex.framework.types.ProcessorStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A {@link CloudService} that simulates the compute api of a cloud provider on a {@link VirtualClock}, so the
+ * {@link io.cloudex.framework.components.Coordinator} can be run with thousands of processors and items without
+ * starting any VMs. The simulation models:
+ * <ul>
+ * <li>the provisioning latency of each VM, it reports no processor status until it's running</li>
+ * <li>the propagation delay of metadata updates, the coordinator blocks on these operations</li>
+ * <li>the duration of each partition item, drawn from a {@link Distribution}</li>
+ * <li>multi-slot processors, each slot advertised in the VM metadata runs its own item and reports its own 
+ * status, a slot only starts a new item when its metadata changes</li>
+ * <li>the latency of each api call, calls are serial so the clock advances by the latency of every call</li>
+ * <li>api errors, the metadata reads of busy processors fail with the configured error rate</li>
+ * <li>quotas, VMs over the instance quota fail to start and calls over the rate quota are throttled</li>
+ * </ul>
+ *
+ * The clock only moves when the coordinator calls the api, the virtual time at the end of a job is its makespan
+ * and the call counts are the api usage of the job. Timers of the coordinator such as timeouts, retry delays and
+ * idle processor reaping use the wall clock and should be disabled when simulating.
+ *
+ * Storage and big data operations are not simulated. The service is thread-safe, concurrent calls are
+ * serialized.
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class SimulatedCloudService implements CloudService {
+
+    private final static Log log = LogFactory.getLog(SimulatedCloudService.class);
+
+    public static final String COORDINATOR_ID = VmMetaData.CLOUDEX_PREFIX + "coordinator";
+
+    public static final String PROVISIONING = "PROVISIONING";
+
+    public static final String RUNNING = "RUNNING";
+
+    private static final String OPERATION_PREFIX = "operation-";
+
+    private static final String NOT_SIMULATED = " is not supported by the simulated cloud service";
+
+    private VirtualClock clock = new VirtualClock();
+
+    private Random random;
+
+    private Distribution apiLatency;
+
+    private Distribution provisioningLatency;
+
+    private Distribution propagationDelay;
+
+    private Distribution itemDuration;
+
+    private double apiErrorRate;
+
+    private int maxInstances;
+
+    private int maxRequestsPerSecond;
+
+    private int maximumMetaDataSize;
+
+    private VmMetaData metaData = new VmMetaData();
+
+    // instance id => the running instances
+    private Map<String, Instance> instances = new LinkedHashMap<>();
+
+    // operation reference => virtual time the operation completes
+    private Map<String, Long> operations = new HashMap<>();
+
+    // api method => number of calls
+    private Map<String, Long> apiCalls = new TreeMap<>();
+
+    private long apiErrors;
+
+    private long throttledCalls;
+
+    private long instancesStarted;
+
+    // virtual time used by the instances that have been shutdown
+    private long stoppedInstanceTime;
+
+    private long itemsRun;
+
+    private long lastOperation;
+
+    // the start of the current rate quota window and the number of calls made in it
+    private long windowStart;
+
+    private int windowCalls;
+
+    /**
+     * @param builder - the builder of this service
+     */
+    private SimulatedCloudService(Builder builder) {
+        super();
+        this.random = new Random(builder.seed);
+        this.apiLatency = builder.apiLatency;
+        this.provisioningLatency = builder.provisioningLatency;
+        this.propagationDelay = builder.propagationDelay;
+        this.itemDuration = builder.itemDuration;
+        this.apiErrorRate = builder.apiErrorRate;
+        this.maxInstances = builder.maxInstances;
+        this.maxRequestsPerSecond = builder.maxRequestsPerSecond;
+        this.maximumMetaDataSize = builder.maximumMetaDataSize;
+    }
+
+    @Override
+    public synchronized VmMetaData init() throws IOException {
+        return this.metaData;
+    }
+
+    @Override
+    public synchronized VmMetaData getMetaData(boolean waitForChange) throws IOException {
+        return this.metaData;
+    }
+
+    @Override
+    public synchronized void updateMetadata(VmMetaData metaData) throws IOException {
+        this.metaData = metaData;
+    }
+
+    @Override
+    public synchronized VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+        this.call("getMetaData");
+
+        Instance instance = this.getInstance(instanceId);
+        this.checkError(instance.isBusy(this.clock.now()));
+
+        return instance.getMetaData(this.clock.now());
+    }
+
+    @Override
+    public synchronized String updateMetadata(VmMetaData metaData, String zoneId, String instanceId, boolean block)
+            throws IOException {
+        this.call("updateMetadata");
+
+        String operation = this.program(this.getInstance(instanceId), metaData);
+
+        if(block) {
+            this.clock.advanceTo(this.operations.get(operation));
+        }
+
+        return operation;
+    }
+
+    @Override
+    public synchronized Map<String, VmMetaData> getMetaData(List<String> instanceIds, String zoneId)
+            throws IOException {
+        this.call("batchGetMetaData");
+
+        return this.getMetaData(instanceIds);
+    }
+
+    @Override
+    public synchronized Map<String, VmMetaData> getProcessorsMetaData(String zoneId) throws IOException {
+        this.call("listMetaData");
+
+        return this.getMetaData(this.instances.keySet());
+    }
+
+    @Override
+    public synchronized Map<String, String> updateMetadata(Map<String, VmMetaData> metaData, String zoneId)
+            throws IOException {
+        this.call("batchUpdateMetadata");
+
+        Map<String, String> references = new HashMap<>();
+
+        for(Map.Entry<String, VmMetaData> entry: metaData.entrySet()) {
+            references.put(entry.getKey(), this.program(this.getInstance(entry.getKey()), entry.getValue()));
+        }
+
+        return references;
+    }
+
+    @Override
+    public synchronized void blockOnComputeOperations(List<String> references, String zoneId) throws IOException {
+        this.call("blockOnComputeOperations");
+
+        for(String reference: references) {
+            Long done = this.operations.remove(reference);
+
+            if(done == null) {
+                throw new IOException("Unknown operation: " + reference);
+            }
+
+            this.clock.advanceTo(done);
+        }
+    }
+
+    @Override
+    public synchronized boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+        this.call("startInstance");
+
+        boolean success = true;
+        long running = this.clock.now();
+
+        for(VmConfig config: configs) {
+            try {
+                running = Math.max(running, this.create(config).running);
+
+            } catch(IOException e) {
+                log.warn("Failed to start instance " + config.getInstanceId(), e);
+                success = false;
+            }
+        }
+
+        if(block) {
+            this.clock.advanceTo(running);
+        }
+
+        return success;
+    }
+
+    /**
+     * Creation requests are accepted straight away, so the listener is notified as soon as each VM is created.
+     * The processor reports no status until the VM is running.
+     */
+    @Override
+    public synchronized void startInstance(List<VmConfig> configs, ProvisioningListener listener)
+            throws IOException {
+        this.call("startInstance");
+
+        for(VmConfig config: configs) {
+            try {
+                this.create(config);
+                listener.instanceReady(config);
+
+            } catch(IOException e) {
+                listener.instanceFailed(config, e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void shutdownInstance(List<VmConfig> configs) throws IOException {
+        this.call("shutdownInstance");
+
+        for(VmConfig config: configs) {
+            Instance instance = this.instances.remove(config.getInstanceId());
+
+            if(instance != null) {
+                this.stoppedInstanceTime += this.clock.now() - instance.created;
+            }
+        }
+    }
+
+    @Override
+    public void shutdownInstance() throws IOException {
+        log.info("Coordinator shutdown requested");
+    }
+
+    @Override
+    public String getInstanceId() {
+        return COORDINATOR_ID;
+    }
+
+    @Override
+    public int getMaximumMetaDataSize() {
+        return this.maximumMetaDataSize;
+    }
+
+    /**
+     * The coordinator polls without sleeping, the clock is advanced by the api calls instead
+     */
+    @Override
+    public int getApiRecheckDelay() {
+        return 0;
+    }
+
+    @Override
+    public void setRemote(boolean remote) {
+        // nothing to do
+    }
+
+    @Override
+    public <T> void setAuthenticationProvider(AuthenticationProvider<T> provider) {
+        // nothing to do
+    }
+
+    @Override
+    public void createCloudStorageBucket(String bucket, String location) throws IOException {
+        throw new UnsupportedOperationException("createCloudStorageBucket" + NOT_SIMULATED);
+    }
+
+    @Override
+    public StorageObject uploadFileToCloudStorage(String filename, String bucket, Callback callback)
+            throws IOException {
+        throw new UnsupportedOperationException("uploadFileToCloudStorage" + NOT_SIMULATED);
+    }
+
+    @Override
+    public StorageObject uploadFileToCloudStorage(String filename, String bucket) throws IOException {
+        throw new UnsupportedOperationException("uploadFileToCloudStorage" + NOT_SIMULATED);
+    }
+
+    @Override
+    public void downloadObjectFromCloudStorage(String object, String outFile, String bucket, Callback callback)
+            throws IOException {
+        throw new UnsupportedOperationException("downloadObjectFromCloudStorage" + NOT_SIMULATED);
+    }
+
+    @Override
+    public void downloadObjectFromCloudStorage(String object, String outFile, String bucket) throws IOException {
+        throw new UnsupportedOperationException("downloadObjectFromCloudStorage" + NOT_SIMULATED);
+    }
+
+    @Override
+    public List<StorageObject> listCloudStorageObjects(String bucket) throws IOException {
+        throw new UnsupportedOperationException("listCloudStorageObjects" + NOT_SIMULATED);
+    }
+
+    @Override
+    public String loadCloudStorageFilesIntoBigData(List<String> files, BigDataTable table, boolean createTable)
+            throws IOException {
+        throw new UnsupportedOperationException("loadCloudStorageFilesIntoBigData" + NOT_SIMULATED);
+    }
+
+    @Override
+    public List<String> loadLocalFilesIntoBigData(List<String> files, BigDataTable table, boolean createTable)
+            throws IOException {
+        throw new UnsupportedOperationException("loadLocalFilesIntoBigData" + NOT_SIMULATED);
+    }
+
+    @Override
+    public String startBigDataQuery(String querySql) throws IOException {
+        throw new UnsupportedOperationException("startBigDataQuery" + NOT_SIMULATED);
+    }
+
+    @Override
+    public String startBigDataQuery(String querySql, BigDataTable table) throws IOException {
+        throw new UnsupportedOperationException("startBigDataQuery" + NOT_SIMULATED);
+    }
+
+    @Override
+    public QueryStats saveBigQueryResultsToFile(String jobId, String filename) throws IOException {
+        throw new UnsupportedOperationException("saveBigQueryResultsToFile" + NOT_SIMULATED);
+    }
+
+    @Override
+    public QueryStats saveBigQueryResultsToFile(String jobId, String filename, String bucket, Integer minFiles,
+            int directDownloadRowLimit) throws IOException {
+        throw new UnsupportedOperationException("saveBigQueryResultsToFile" + NOT_SIMULATED);
+    }
+
+    @Override
+    public QueryStats saveBigQueryResultsToCloudStorage(String jobId, String bucket, String filename)
+            throws IOException {
+        throw new UnsupportedOperationException("saveBigQueryResultsToCloudStorage" + NOT_SIMULATED);
+    }
+
+    /**
+     * Record an api call, throttle it if the rate quota is used up and advance the clock by its latency
+     * @param method - the api method
+     */
+    private void call(String method) {
+        Long count = this.apiCalls.get(method);
+        this.apiCalls.put(method, (count == null) ? 1 : (count + 1));
+
+        if(this.maxRequestsPerSecond > 0) {
+            long window = TimeUnit.SECONDS.toMillis(1);
+
+            if((this.clock.now() - this.windowStart) >= window) {
+                this.windowStart = this.clock.now();
+                this.windowCalls = 0;
+            }
+
+            if(this.windowCalls >= this.maxRequestsPerSecond) {
+                this.throttledCalls++;
+                this.windowStart = this.clock.advanceTo(this.windowStart + window);
+                this.windowCalls = 0;
+            }
+
+            this.windowCalls++;
+        }
+
+        this.clock.advance(this.apiLatency.sample(this.random));
+    }
+
+    /**
+     * Fail a read of a busy processor with the configured error rate
+     * @param busy - true if the read includes a busy processor
+     * @throws IOException the simulated api error
+     */
+    private void checkError(boolean busy) throws IOException {
+        if(busy && (this.apiErrorRate > 0) && (this.random.nextDouble() < this.apiErrorRate)) {
+            this.apiErrors++;
+            throw new IOException("Simulated api error");
+        }
+    }
+
+    /**
+     * @param instanceId - the instance id
+     * @return the running instance
+     * @throws IOException if the instance doesn't exist or has been shutdown
+     */
+    private Instance getInstance(String instanceId) throws IOException {
+        Instance instance = this.instances.get(instanceId);
+
+        if(instance == null) {
+            throw new IOException("Instance not found: " + instanceId);
+        }
+
+        return instance;
+    }
+
+    /**
+     * Read the metadata of a number of instances with a single call, instances that don't exist are skipped
+     * @param instanceIds - the instances ids
+     * @return instance id => metadata
+     * @throws IOException the simulated api error
+     */
+    private Map<String, VmMetaData> getMetaData(Iterable<String> instanceIds) throws IOException {
+        long now = this.clock.now();
+        boolean busy = false;
+        Map<String, VmMetaData> metaData = new HashMap<>();
+
+        for(String instanceId: instanceIds) {
+            Instance instance = this.instances.get(instanceId);
+
+            if(instance != null) {
+                busy = busy || instance.isBusy(now);
+                metaData.put(instanceId, instance.getMetaData(now));
+            }
+        }
+
+        this.checkError(busy);
+
+        return metaData;
+    }
+
+    /**
+     * Create an instance, it runs the item in its metadata as soon as it's running
+     * @param config - the instance config
+     * @return the created instance
+     * @throws IOException if the instance quota is used up
+     */
+    private Instance create(VmConfig config) throws IOException {
+        Validate.notNull(config.getInstanceId(), "instanceId is required");
+
+        if((this.maxInstances > 0) && (this.instances.size() >= this.maxInstances)) {
+            throw new IOException("Quota exceeded, maximum number of instances: " + this.maxInstances);
+        }
+
+        Instance instance = new Instance(this.clock.now(), 
+                this.clock.now() + this.provisioningLatency.sample(this.random));
+
+        this.instances.put(config.getInstanceId(), instance);
+        this.instancesStarted++;
+
+        instance.metaData = copy((config.getMetaData() != null) ? config.getMetaData() : new VmMetaData());
+        this.run(instance, instance.running, null);
+
+        return instance;
+    }
+
+    /**
+     * Update the metadata of an instance, the processor sees the update once the operation completes
+     * @param instance - the instance
+     * @param metaData - the new metadata
+     * @return the reference of the update operation
+     */
+    private String program(Instance instance, VmMetaData metaData) {
+        long done = this.clock.now() + this.propagationDelay.sample(this.random);
+        String operation = OPERATION_PREFIX + (++this.lastOperation);
+
+        instance.refresh(this.clock.now());
+        instance.pending = copy(metaData);
+        instance.visible = done;
+
+        // the processor picks the update up once it's visible, see refresh
+        this.operations.put(operation, done);
+
+        return operation;
+    }
+
+    /**
+     * Start the item in the instance metadata if any, like a processor each slot of a multi-slot instance 
+     * only starts the item in its metadata if the coordinator has cleared the status of the slot
+     * @param instance - the instance
+     * @param start - the virtual time the item starts
+     * @param previous - the metadata before the update or null to start all the slots
+     */
+    private void run(Instance instance, long start, VmMetaData previous) {
+        int slots = instance.metaData.getSlots();
+
+        if(slots > 0) {
+            for(int i = 0; i < slots; i++) {
+                VmMetaData slot = instance.metaData.getSlotMetaData(i);
+
+                if((previous == null) || StringUtils.isBlank(slot.getStatus())) {
+                    instance.slots.put(i, this.start(instance, slot, start));
+                }
+            }
+
+        } else {
+            instance.finish = this.start(instance, instance.metaData, start);
+        }
+    }
+
+    /**
+     * @param instance - the instance
+     * @param metaData - the metadata of the instance or slot
+     * @param start - the virtual time the item starts
+     * @return the virtual time the item finishes or null if there is no item
+     */
+    private Long start(Instance instance, VmMetaData metaData, long start) {
+        Long finish = null;
+
+        if(metaData.getTaskClass() != null) {
+            finish = Math.max(start, instance.running) + this.itemDuration.sample(this.random);
+            this.itemsRun++;
+        }
+
+        return finish;
+    }
+
+    /**
+     * @param metaData - the metadata to copy
+     * @return a copy of the metadata that doesn't share its attributes
+     */
+    private static VmMetaData copy(VmMetaData metaData) {
+        return new VmMetaData(new HashMap<>(metaData.getAttributes()), metaData.getFingerprint());
+    }
+
+    /**
+     * @param metaData - the metadata of a processor or slot
+     * @param status - the status or null to remove it
+     */
+    private static void setStatus(VmMetaData metaData, ProcessorStatus status) {
+        if(status == null) {
+            metaData.getAttributes().remove(VmMetaData.CLOUDEX_STATUS);
+
+        } else {
+            metaData.setProcessorStatus(status);
+        }
+    }
+
+    /**
+     * @return the virtual clock of this simulation
+     */
+    public VirtualClock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return api method => the number of calls
+     */
+    public synchronized Map<String, Long> getApiCalls() {
+        return Collections.unmodifiableMap(new TreeMap<>(this.apiCalls));
+    }
+
+    /**
+     * @return the total number of api calls
+     */
+    public synchronized long getApiCallCount() {
+        long count = 0;
+
+        for(Long calls: this.apiCalls.values()) {
+            count += calls;
+        }
+
+        return count;
+    }
+
+    /**
+     * @return the number of simulated api errors
+     */
+    public synchronized long getApiErrors() {
+        return apiErrors;
+    }
+
+    /**
+     * @return the number of calls delayed by the rate quota
+     */
+    public synchronized long getThrottledCalls() {
+        return throttledCalls;
+    }
+
+    /**
+     * @return the number of instances started
+     */
+    public synchronized long getInstancesStarted() {
+        return instancesStarted;
+    }
+
+    /**
+     * @return the number of instances that are still running
+     */
+    public synchronized int getInstanceCount() {
+        return this.instances.size();
+    }
+
+    /**
+     * @return the number of items the processors have started, including re-runs
+     */
+    public synchronized long getItemsRun() {
+        return itemsRun;
+    }
+
+    /**
+     * The virtual time used by all the instances from creation until shutdown, or until now if still running.
+     * This is what the job is billed for
+     * @return the instance time in milliseconds
+     */
+    public synchronized long getInstanceTime() {
+        long time = this.stoppedInstanceTime;
+
+        for(Instance instance: this.instances.values()) {
+            time += this.clock.now() - instance.created;
+        }
+
+        return time;
+    }
+
+    /**
+     * A simulated processor VM
+     */
+    private class Instance {
+
+        // the virtual time the instance was created
+        private long created;
+
+        // the virtual time the instance is running
+        private long running;
+
+        // the metadata seen by the processor
+        private VmMetaData metaData;
+
+        // a metadata update that is not yet visible to the processor and the time it becomes visible
+        private VmMetaData pending;
+
+        private long visible;
+
+        // the virtual time the current item finishes or null if the processor is idle
+        private Long finish;
+
+        // slot => the virtual time its current item finishes or null if idle, for multi-slot processors
+        private Map<Integer, Long> slots = new HashMap<>();
+
+        // the metadata last returned and the statuses it was returned with, reused until a status changes
+        private VmMetaData snapshot;
+
+        private List<ProcessorStatus> snapshotStatus;
+
+        Instance(long created, long running) {
+            super();
+            this.created = created;
+            this.running = running;
+        }
+
+        /**
+         * Apply a pending metadata update once it's visible
+         * @param now - the virtual time
+         */
+        void refresh(long now) {
+            if((this.pending != null) && (now >= this.visible)) {
+                VmMetaData previous = this.metaData;
+                this.metaData = this.pending;
+                this.pending = null;
+                this.snapshot = null;
+                run(this, this.visible, previous);
+            }
+        }
+
+        /**
+         * @param now - the virtual time
+         * @return true if the processor is working on an item
+         */
+        boolean isBusy(long now) {
+            this.refresh(now);
+
+            if(now < this.running) {
+                return true;
+            }
+
+            for(Long slot: this.slots.values()) {
+                if((slot != null) && (now < slot)) {
+                    return true;
+                }
+            }
+
+            return (this.finish != null) && (now < this.finish);
+        }
+
+        /**
+         * @param now - the virtual time
+         * @param finish - the time the current item finishes or null if idle
+         * @return the status of the processor or slot at the provided time, null if the VM is not yet running
+         */
+        ProcessorStatus getStatus(long now, Long finish) {
+            if(now < this.running) {
+                return null;
+            }
+
+            return ((finish != null) && (now < finish)) ? ProcessorStatus.BUSY : ProcessorStatus.READY;
+        }
+
+        /**
+         * The copy is shared by the reads made whilst the status doesn't change, so list calls over thousands
+         * of processors don't dominate the time spent by the simulation
+         * @param now - the virtual time
+         * @return a copy of the metadata with the status of the processor at the provided time
+         */
+        VmMetaData getMetaData(long now) {
+            this.refresh(now);
+
+            int slots = this.metaData.getSlots();
+            List<ProcessorStatus> statuses = new ArrayList<>();
+
+            if(slots > 0) {
+                for(int i = 0; i < slots; i++) {
+                    statuses.add(this.getStatus(now, this.slots.get(i)));
+                }
+
+            } else {
+                statuses.add(this.getStatus(now, this.finish));
+            }
+
+            if((this.snapshot == null) || !statuses.equals(this.snapshotStatus)) {
+                this.snapshot = copy(this.metaData);
+                this.snapshotStatus = statuses;
+                this.snapshot.setInstanceStatus((now < this.running) ? PROVISIONING : RUNNING);
+
+                if(slots > 0) {
+                    for(int i = 0; i < slots; i++) {
+                        VmMetaData slot = this.snapshot.getSlotMetaData(i);
+                        setStatus(slot, statuses.get(i));
+                        this.snapshot.setSlotMetaData(i, slot);
+                    }
+
+                } else {
+                    setStatus(this.snapshot, statuses.get(0));
+                }
+            }
+
+            return this.snapshot;
+        }
+    }
+
+    /**
+     * Builds a {@link SimulatedCloudService}, by default api calls, provisioning, metadata updates and items
+     * take no time and there are no errors or quotas
+     */
+    public static class Builder {
+
+        private long seed;
+
+        private Distribution apiLatency = Distribution.constant(0);
+
+        private Distribution provisioningLatency = Distribution.constant(0);
+
+        private Distribution propagationDelay = Distribution.constant(0);
+
+        private Distribution itemDuration = Distribution.constant(0);
+
+        private double apiErrorRate;
+
+        private int maxInstances;
+
+        private int maxRequestsPerSecond;
+
+        private int maximumMetaDataSize = 32768;
+
+        /**
+         * Build a new instance of {@link SimulatedCloudService}
+         * @return the simulated cloud service
+         */
+        public SimulatedCloudService build() {
+            return new SimulatedCloudService(this);
+        }
+
+        /**
+         * @param seed the seed of the random source, the same seed gives the same simulation
+         */
+        public final Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * @param apiLatency the latency of each api call
+         */
+        public final Builder setApiLatency(Distribution apiLatency) {
+            Validate.notNull(apiLatency);
+            this.apiLatency = apiLatency;
+            return this;
+        }
+
+        /**
+         * @param provisioningLatency the time it takes a VM to start running
+         */
+        public final Builder setProvisioningLatency(Distribution provisioningLatency) {
+            Validate.notNull(provisioningLatency);
+            this.provisioningLatency = provisioningLatency;
+            return this;
+        }
+
+        /**
+         * @param propagationDelay the time it takes a metadata update to complete
+         */
+        public final Builder setPropagationDelay(Distribution propagationDelay) {
+            Validate.notNull(propagationDelay);
+            this.propagationDelay = propagationDelay;
+            return this;
+        }
+
+        /**
+         * @param itemDuration the time it takes a processor to complete an item
+         */
+        public final Builder setItemDuration(Distribution itemDuration) {
+            Validate.notNull(itemDuration);
+            this.itemDuration = itemDuration;
+            return this;
+        }
+
+        /**
+         * @param apiErrorRate the probability that a metadata read of busy processors fails
+         */
+        public final Builder setApiErrorRate(double apiErrorRate) {
+            Validate.isTrue((apiErrorRate >= 0) && (apiErrorRate < 1), "apiErrorRate must be in [0, 1)");
+            this.apiErrorRate = apiErrorRate;
+            return this;
+        }
+
+        /**
+         * @param maxInstances the instance quota, 0 for no limit
+         */
+        public final Builder setMaxInstances(int maxInstances) {
+            this.maxInstances = maxInstances;
+            return this;
+        }
+
+        /**
+         * @param maxRequestsPerSecond the api rate quota in virtual time, 0 for no limit
+         */
+        public final Builder setMaxRequestsPerSecond(int maxRequestsPerSecond) {
+            this.maxRequestsPerSecond = maxRequestsPerSecond;
+            return this;
+        }
+
+        /**
+         * @param maximumMetaDataSize the maximum metadata size
+         */
+        public final Builder setMaximumMetaDataSize(int maximumMetaDataSize) {
+            this.maximumMetaDataSize = maximumMetaDataSize;
+            return this;
+        }
+    }
+
+}
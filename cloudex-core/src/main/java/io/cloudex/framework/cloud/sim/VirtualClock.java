@@ -0,0 +1,63 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.framework.cloud.sim;
+
+/**
+ * A clock that only moves when it's advanced. The simulated cloud service advances it by the latency of
+ * every api call and to the completion of the operations the coordinator blocks on, so the virtual time at
+ * the end of a job is its makespan on a real cloud.
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class VirtualClock {
+
+    private long now;
+
+    /**
+     * @return the current virtual time in milliseconds
+     */
+    public synchronized long now() {
+        return now;
+    }
+
+    /**
+     * Move the clock forward
+     * @param duration - the duration in milliseconds, negative values are ignored
+     * @return the new virtual time
+     */
+    public synchronized long advance(long duration) {
+        if(duration > 0) {
+            this.now += duration;
+        }
+        return this.now;
+    }
+
+    /**
+     * Move the clock forward to the provided time, the clock never moves back
+     * @param time - the virtual time in milliseconds
+     * @return the new virtual time
+     */
+    public synchronized long advanceTo(long time) {
+        this.now = Math.max(this.now, time);
+        return this.now;
+    }
+
+}
@@ -0,0 +1,204 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import java.util.AbstractQueue;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * A queue of work items that is also indexed by the keys of each item, so the item that overlaps most with
+ * a processor cache can be found without scanning the whole queue. The keys of an item are computed once when
+ * it's added. Items are polled in the order they were added, e.g. largest first, and ties between items with
+ * the same overlap are broken by that order.
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+class AffinityQueue extends AbstractQueue<WorkItem> {
+
+    // item => its position and keys, in queue order, items are compared by identity
+    private Map<WorkItem, Queued> items = new LinkedHashMap<>();
+
+    // key => the queued items that have it, in queue order
+    private Map<String, Set<WorkItem>> index = new HashMap<>();
+
+    private long sequence;
+
+    @Override
+    public boolean offer(WorkItem workItem) {
+
+        if(this.items.containsKey(workItem)) {
+            return false;
+        }
+
+        Set<String> keys = ProcessorAffinity.getKeys(workItem);
+        this.items.put(workItem, new Queued(this.sequence++, keys));
+
+        for(String key: keys) {
+            Set<WorkItem> keyItems = this.index.get(key);
+
+            if(keyItems == null) {
+                keyItems = new LinkedHashSet<>();
+                this.index.put(key, keyItems);
+            }
+            keyItems.add(workItem);
+        }
+
+        return true;
+    }
+
+    @Override
+    public WorkItem poll() {
+        WorkItem head = this.peek();
+
+        if(head != null) {
+            this.remove(head);
+        }
+
+        return head;
+    }
+
+    /**
+     * Remove and return the queued item that has most of its keys in the provided cached keys, the earliest
+     * queued item wins a tie. If none of the queued items has any of the keys then the head of the queue
+     * is returned
+     * @param cached - the keys a processor has cached
+     * @return the next item or null if the queue is empty
+     */
+    WorkItem poll(Set<String> cached) {
+
+        WorkItem best = null;
+
+        if(!cached.isEmpty() && !this.index.isEmpty()) {
+
+            // item => the number of its keys that are cached
+            Map<WorkItem, Integer> scores = new HashMap<>();
+            int bestScore = 0;
+
+            for(String key: cached) {
+                Set<WorkItem> keyItems = this.index.get(key);
+
+                if(keyItems != null) {
+                    for(WorkItem workItem: keyItems) {
+                        Integer score = scores.get(workItem);
+                        scores.put(workItem, (score == null) ? 1 : (score + 1));
+                    }
+                }
+            }
+
+            for(Entry<WorkItem, Integer> entry: scores.entrySet()) {
+                int score = entry.getValue();
+                WorkItem workItem = entry.getKey();
+
+                if((score > bestScore) || ((score == bestScore) && 
+                        (this.getPosition(workItem) < this.getPosition(best)))) {
+                    best = workItem;
+                    bestScore = score;
+                }
+            }
+        }
+
+        if(best == null) {
+            return this.poll();
+        }
+
+        this.remove(best);
+        return best;
+    }
+
+    @Override
+    public WorkItem peek() {
+        return this.items.isEmpty() ? null : this.items.keySet().iterator().next();
+    }
+
+    @Override
+    public boolean remove(Object object) {
+        Queued queued = this.items.remove(object);
+
+        if(queued == null) {
+            return false;
+        }
+
+        for(String key: queued.keys) {
+            Set<WorkItem> keyItems = this.index.get(key);
+            keyItems.remove(object);
+
+            if(keyItems.isEmpty()) {
+                this.index.remove(key);
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return this.items.containsKey(object);
+    }
+
+    @Override
+    public void clear() {
+        this.items.clear();
+        this.index.clear();
+    }
+
+    @Override
+    public Iterator<WorkItem> iterator() {
+        return Collections.unmodifiableSet(this.items.keySet()).iterator();
+    }
+
+    @Override
+    public int size() {
+        return this.items.size();
+    }
+
+    /**
+     * @param workItem - a queued item
+     * @return the position of the item in the queue order
+     */
+    private long getPosition(WorkItem workItem) {
+        return this.items.get(workItem).position;
+    }
+
+    /**
+     * The position of a queued item and its keys
+     */
+    private static class Queued {
+
+        private long position;
+
+        private Set<String> keys;
+
+        Queued(long position, Set<String> keys) {
+            super();
+            this.position = position;
+            this.keys = keys;
+        }
+    }
+
+}
@@ -0,0 +1,545 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.framework.components;
+
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.config.VmConfig;
+import io.cloudex.framework.utils.FileUtils;
+import io.cloudex.framework.utils.ObjectUtils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.common.io.BaseEncoding;
+import com.google.gson.JsonParseException;
+
+/**
+ * An append only journal of the progress of a job, it records the completed tasks along with their context
+ * output, the start and completion of the processor task items and the processors that have been started.
+ * The journal is written to local disk as one json record per line and is optionally uploaded to cloud storage
+ * each time a task completes. The context output of the tasks is saved with Java serialization so values such as 
+ * a List of {@link io.cloudex.framework.partition.entities.Item} are restored with their element types, a task 
+ * with an output value that isn't serializable isn't recorded as completed and runs again when the job resumes.
+ *
+ * When a {@link Coordinator} is restarted with the same checkpoint it resumes the job from the last completed
+ * task or item and adopts the processors that are still running rather than starting over. A journal for a job
+ * that has completed is discarded and the job starts from the beginning.
+ *
+ * <p>
+ * Implementation is thread-safe.
+ * </p>
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class Checkpoint {
+
+    private static final Log log = LogFactory.getLog(Checkpoint.class);
+
+    private String filename;
+
+    private String bucket;
+
+    private CloudService cloudService;
+
+    // the indexes of the completed tasks
+    private Set<Integer> completedTasks = new HashSet<>();
+
+    // the context output of the completed tasks
+    private Map<String, Object> context = new HashMap<>();
+
+    // task index/item index of the completed items
+    private Set<String> completedItems = new HashSet<>();
+
+    // processor => task index/item index of the item it's working on
+    private Map<String, String> runningItems = new HashMap<>();
+
+    // processor => its VM config and start time
+    private Map<String, Record> processors = new LinkedHashMap<>();
+
+    /**
+     * @param filename - the local journal file
+     */
+    public Checkpoint(String filename) {
+        this(filename, null);
+    }
+
+    /**
+     * @param filename - the local journal file
+     * @param bucket - an optional cloud storage bucket to upload the journal to
+     */
+    public Checkpoint(String filename, String bucket) {
+        super();
+        Validate.notNull(filename, "filename is required");
+        this.filename = filename;
+        this.bucket = bucket;
+    }
+
+    /**
+     * Load the journal of a previous run of the job if any. If the journal doesn't exist locally and a
+     * bucket is set then it's downloaded from cloud storage
+     * @param cloudService - the cloud service implementation
+     * @throws IOException if the journal can't be read or downloaded
+     */
+    public synchronized void open(CloudService cloudService) throws IOException {
+
+        this.cloudService = cloudService;
+
+        File file = new File(this.filename);
+
+        if(!file.exists() && (this.bucket != null)) {
+            try {
+                cloudService.downloadObjectFromCloudStorage(this.getObjectName(), this.filename, this.bucket);
+
+            } catch(IOException e) {
+                log.info("No checkpoint found in bucket " + this.bucket + " for " + this.getObjectName());
+            }
+        }
+
+        if(!file.exists()) {
+            return;
+        }
+
+        boolean jobCompleted = false;
+
+        try(BufferedReader reader = new BufferedReader(new FileReader(file))) {
+
+            String line;
+
+            while((line = reader.readLine()) != null) {
+
+                if(StringUtils.isBlank(line)) {
+                    continue;
+                }
+
+                try {
+                    Record record = ObjectUtils.GSON.fromJson(line, Record.class);
+                    jobCompleted = RecordType.JOB_COMPLETED.equals(record.type);
+                    this.apply(record);
+
+                } catch(JsonParseException e) {
+                    // the coordinator might have died whilst writing the last record
+                    log.warn("Ignoring invalid checkpoint record: " + line, e);
+                }
+            }
+        }
+
+        if(jobCompleted) {
+            log.info("The job in checkpoint " + this.filename + " has completed, starting again");
+            this.clear();
+            FileUtils.deleteFile(this.filename);
+
+        } else {
+            log.info("Resuming from checkpoint " + this.filename + ", completed tasks: " + this.completedTasks
+                    + ", completed items: " + this.completedItems.size() + ", processors: "
+                    + this.processors.keySet());
+        }
+    }
+
+    /**
+     * Record that a processor has been started
+     * @param config - the processor VM config
+     * @param start - the start time
+     * @throws IOException if the journal can't be written
+     */
+    public synchronized void processorStarted(VmConfig config, Date start) throws IOException {
+        Record record = new Record(RecordType.PROCESSOR_STARTED);
+        record.instanceId = config.getInstanceId();
+        record.vmConfig = config;
+        record.time = start.getTime();
+        this.write(record);
+    }
+
+    /**
+     * Record that a processor has been shutdown
+     * @param instanceId - the processor instance id
+     * @throws IOException if the journal can't be written
+     */
+    public synchronized void processorStopped(String instanceId) throws IOException {
+        if(this.processors.containsKey(instanceId)) {
+            Record record = new Record(RecordType.PROCESSOR_STOPPED);
+            record.instanceId = instanceId;
+            this.write(record);
+        }
+    }
+
+    /**
+     * Record that a processor has been given an item
+     * @param task - the task index
+     * @param item - the item index
+     * @param instanceId - the processor instance id
+     * @throws IOException if the journal can't be written
+     */
+    public synchronized void itemStarted(int task, int item, String instanceId) throws IOException {
+        Record record = new Record(RecordType.ITEM_STARTED);
+        record.task = task;
+        record.item = item;
+        record.instanceId = instanceId;
+        this.write(record);
+    }
+
+    /**
+     * Record that a processor has completed an item
+     * @param task - the task index
+     * @param item - the item index
+     * @param instanceId - the processor instance id
+     * @throws IOException if the journal can't be written
+     */
+    public synchronized void itemCompleted(int task, int item, String instanceId) throws IOException {
+        Record record = new Record(RecordType.ITEM_COMPLETED);
+        record.task = task;
+        record.item = item;
+        record.instanceId = instanceId;
+        this.write(record);
+    }
+
+    /**
+     * Record that a task has completed and upload the journal if a bucket is set
+     * @param task - the task index
+     * @param output - the context values added by the task
+     * @throws IOException if the journal can't be written or uploaded
+     */
+    public synchronized void taskCompleted(int task, Map<String, Object> output) throws IOException {
+        Record record = new Record(RecordType.TASK_COMPLETED);
+        record.task = task;
+        record.objects = new HashMap<>();
+
+        for(Entry<String, Object> entry: output.entrySet()) {
+            if(entry.getValue() != null) {
+                String value = serialize(entry.getValue());
+
+                if(value == null) {
+                    log.warn("Output " + entry.getKey() + " of task " + task + " is not serializable, the task " 
+                            + "will run again if the job is resumed");
+                    return;
+                }
+
+                record.objects.put(entry.getKey(), value);
+            }
+        }
+
+        this.write(record);
+        this.upload();
+    }
+
+    /**
+     * Record that the job has completed and upload the journal if a bucket is set
+     * @throws IOException if the journal can't be written or uploaded
+     */
+    public synchronized void jobCompleted() throws IOException {
+        this.write(new Record(RecordType.JOB_COMPLETED));
+        this.upload();
+        this.clear();
+    }
+
+    /**
+     * @param task - the task index
+     * @return true if the task has completed
+     */
+    public synchronized boolean isTaskCompleted(int task) {
+        return this.completedTasks.contains(task);
+    }
+
+    /**
+     * @param task - the task index
+     * @param item - the item index
+     * @return true if the item has completed
+     */
+    public synchronized boolean isItemCompleted(int task, int item) {
+        return this.completedItems.contains(getItemKey(task, item));
+    }
+
+    /**
+     * @param instanceId - the processor instance id
+     * @return the task index and item index the processor is working on or null
+     */
+    public synchronized int [] getRunningItem(String instanceId) {
+        int [] item = null;
+        String key = this.runningItems.get(instanceId);
+
+        if(key != null) {
+            String [] parts = StringUtils.split(key, '/');
+            item = new int [] { Integer.parseInt(parts[0]), Integer.parseInt(parts[1]) };
+        }
+
+        return item;
+    }
+
+    /**
+     * @return the context output of the completed tasks
+     */
+    public synchronized Map<String, Object> getContext() {
+        return new HashMap<>(this.context);
+    }
+
+    /**
+     * @return the processors that have been started and not shutdown along with their VM config
+     */
+    public synchronized Map<String, VmConfig> getProcessors() {
+        Map<String, VmConfig> configs = new LinkedHashMap<>();
+
+        for(Entry<String, Record> entry: this.processors.entrySet()) {
+            VmConfig config = entry.getValue().vmConfig.copy();
+            config.setInstanceId(entry.getKey());
+            configs.put(entry.getKey(), config);
+        }
+
+        return configs;
+    }
+
+    /**
+     * @param instanceId - the processor instance id
+     * @return the start time of the processor or null if not known
+     */
+    public synchronized Date getProcessorStart(String instanceId) {
+        Record record = this.processors.get(instanceId);
+        return ((record != null) && (record.time != null)) ? new Date(record.time) : null;
+    }
+
+    /**
+     * @return the filename
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * @return the bucket
+     */
+    public String getBucket() {
+        return bucket;
+    }
+
+    /**
+     * Append a record to the journal and apply it to the current state
+     * @param record - the record
+     * @throws IOException if the journal can't be written
+     */
+    private void write(Record record) throws IOException {
+        try(Writer writer = new FileWriter(this.filename, true)) {
+            writer.write(ObjectUtils.GSON.toJson(record));
+            writer.write(System.lineSeparator());
+        }
+
+        this.apply(record);
+    }
+
+    /**
+     * Apply a record to the current state
+     * @param record - the record
+     */
+    private void apply(Record record) {
+
+        switch(record.type) {
+
+            case PROCESSOR_STARTED:
+                this.processors.put(record.instanceId, record);
+                break;
+
+            case PROCESSOR_STOPPED:
+                this.processors.remove(record.instanceId);
+                this.runningItems.remove(record.instanceId);
+                break;
+
+            case ITEM_STARTED:
+                this.runningItems.put(record.instanceId, getItemKey(record.task, record.item));
+                break;
+
+            case ITEM_COMPLETED:
+                this.completedItems.add(getItemKey(record.task, record.item));
+                this.runningItems.remove(record.instanceId);
+                break;
+
+            case TASK_COMPLETED:
+                Map<String, Object> output = new HashMap<>();
+
+                if(record.objects != null) {
+                    for(Entry<String, String> entry: record.objects.entrySet()) {
+                        Object value = deserialize(entry.getValue());
+
+                        if(value == null) {
+                            log.warn("Unable to restore output " + entry.getKey() + " of task " + record.task 
+                                    + ", the task will run again");
+                            return;
+                        }
+                        output.put(entry.getKey(), value);
+                    }
+                }
+
+                this.completedTasks.add(record.task);
+                this.context.putAll(output);
+                break;
+
+            case JOB_COMPLETED:
+                break;
+
+            default:
+                throw new IllegalArgumentException("Invalid RecordType: " + record.type);
+        }
+    }
+
+    /**
+     * Clear the current state
+     */
+    private void clear() {
+        this.completedTasks.clear();
+        this.context.clear();
+        this.completedItems.clear();
+        this.runningItems.clear();
+        this.processors.clear();
+    }
+
+    /**
+     * Upload the journal to cloud storage if a bucket is set
+     * @throws IOException if the upload fails
+     */
+    private void upload() throws IOException {
+        if((this.bucket != null) && (this.cloudService != null)) {
+            this.cloudService.uploadFileToCloudStorage(this.filename, this.bucket);
+        }
+    }
+
+    /**
+     * @return the name of the journal object in cloud storage
+     */
+    private String getObjectName() {
+        return (new File(this.filename)).getName();
+    }
+
+    /**
+     * Serialize a context value
+     * @param value - the value
+     * @return the base64 serialized value or null if the value isn't serializable
+     * @throws IOException if the serialization fails
+     */
+    private static String serialize(Object value) throws IOException {
+
+        if(!(value instanceof Serializable)) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+
+        } catch(NotSerializableException e) {
+            // e.g. a collection of values that are not serializable
+            log.debug("Unable to serialize checkpoint value " + value, e);
+            return null;
+        }
+
+        return BaseEncoding.base64().encode(bytes.toByteArray());
+    }
+
+    /**
+     * Deserialize a context value
+     * @param value - the base64 serialized value
+     * @return the value or null if it can't be deserialized, e.g. its class has changed
+     */
+    private static Object deserialize(String value) {
+
+        try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+                BaseEncoding.base64().decode(value)))) {
+            return in.readObject();
+
+        } catch(IOException | ClassNotFoundException | IllegalArgumentException e) {
+            log.warn("Unable to deserialize checkpoint value", e);
+            return null;
+        }
+    }
+
+    /**
+     * @param task - the task index
+     * @param item - the item index
+     * @return a key for the item
+     */
+    private static String getItemKey(int task, int item) {
+        return task + "/" + item;
+    }
+
+    /**
+     * The types of the journal records
+     */
+    enum RecordType {
+        PROCESSOR_STARTED, PROCESSOR_STOPPED, ITEM_STARTED, ITEM_COMPLETED, TASK_COMPLETED, JOB_COMPLETED
+    }
+
+    /**
+     * A journal record, only the fields relevant to the record type are set
+     */
+    static class Record {
+
+        private RecordType type;
+
+        private Integer task;
+
+        private Integer item;
+
+        private String instanceId;
+
+        private Long time;
+
+        private VmConfig vmConfig;
+
+        // key => base64 serialized value
+        private Map<String, String> objects;
+
+        /**
+         * @param type - the record type
+         */
+        Record(RecordType type) {
+            super();
+            this.type = type;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public synchronized String toString() {
+        return "Checkpoint [filename=" + filename + ", completedTasks=" + completedTasks + ", completedItems="
+                + completedItems.size() + ", processors=" + processors.keySet() + "]";
+    }
+
+}
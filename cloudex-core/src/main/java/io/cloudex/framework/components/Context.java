@@ -32,7 +32,8 @@ import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
 /**
- * Task execution context, responsible for resolving values.
+ * Task execution context, responsible for resolving values. The context can be 
+ * safely shared between tasks that run in parallel.
  * @author Omer Dawelbeit (omerio)
  *
  */
@@ -49,8 +50,8 @@ public class Context {
      * default constructor
      */
     public Context() {
-        this.context = new HashMap<>();
-        this.readOnly = new HashMap<>();
+        this.context = Collections.synchronizedMap(new HashMap<String, Object>());
+        this.readOnly = Collections.synchronizedMap(new HashMap<String, Object>());
     }
 
     /**
@@ -20,24 +20,36 @@
 package io.cloudex.framework.components;
 
 import io.cloudex.framework.CommonExecutable;
+import io.cloudex.framework.channel.MetaDataTaskChannel;
+import io.cloudex.framework.channel.TaskChannel;
 import io.cloudex.framework.cloud.api.ApiUtils;
 import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.api.ProvisioningListener;
 import io.cloudex.framework.cloud.entities.VmInstance;
 import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.config.CodeConfig;
 import io.cloudex.framework.config.Job;
 import io.cloudex.framework.config.PartitionConfig;
+import io.cloudex.framework.config.PlanConfig;
 import io.cloudex.framework.config.TaskConfig;
 import io.cloudex.framework.config.VmConfig;
 import io.cloudex.framework.exceptions.ClassInstantiationException;
 import io.cloudex.framework.exceptions.InstancePopulationException;
+import io.cloudex.framework.exceptions.ProcessorLostException;
+import io.cloudex.framework.metrics.InstrumentedCloudService;
+import io.cloudex.framework.metrics.MetricsRegistry;
 import io.cloudex.framework.partition.PartitionFunction;
+import io.cloudex.framework.partition.ProcessorPlanner;
+import io.cloudex.framework.partition.entities.Item;
 import io.cloudex.framework.partition.entities.Partition;
 import io.cloudex.framework.partition.factory.PartitionFunctionFactory;
 import io.cloudex.framework.partition.factory.PartitionFunctionFactoryImpl;
 import io.cloudex.framework.task.Task;
 import io.cloudex.framework.task.factory.TaskFactory;
 import io.cloudex.framework.task.factory.TaskFactoryImpl;
+import io.cloudex.framework.types.CodeLocation;
 import io.cloudex.framework.types.ErrorAction;
+import io.cloudex.framework.types.ExecutionMode;
 import io.cloudex.framework.types.PartitionType;
 import io.cloudex.framework.types.ProcessorStatus;
 import io.cloudex.framework.types.TargetType;
@@ -46,17 +58,28 @@ import io.cloudex.framework.utils.FileUtils;
 import io.cloudex.framework.utils.ObjectUtils;
 
 import java.io.IOException;
-import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -72,6 +95,54 @@ import com.google.common.collect.Lists;
  * 
  * This coordinator keeps track processor vms stats, such as start/end times, cost and vm config.
  * 
+ * When the job execution mode is {@link ExecutionMode#PARALLEL} the tasks are run as a {@link TaskGraph}, 
+ * independent tasks run at the same time and each running processor task is given a disjoint 
+ * set of processors.
+ * 
+ * When pre-warming is enabled the processors needed by the next processor task are started whilst the 
+ * coordinator tasks before it are running, so the VMs boot time overlaps with the coordinator work. The 
+ * number of processors is taken from the partition count or estimate of the processor task.
+ * 
+ * When reaping is enabled, idle processors that none of the remaining tasks can reuse are shutdown just 
+ * before their next billing increment, rather than at the end of the job.
+ * 
+ * When data affinity is enabled, items are preferably given to the processors that report having their 
+ * keys in their local cache, the other items are assigned with a consistent hash of the processors, see 
+ * {@link ProcessorAffinity}.
+ * 
+ * When a processor task uses the {@link ErrorAction#RETRY} error action, a failed item is given to a different 
+ * processor after a backoff delay, an item that fails all its retries is added to the task dead letters and 
+ * a processor that fails a number of items is quarantined, i.e. shutdown and no longer used.
+ * 
+ * A processor whose VM is terminated, e.g. a preempted VM, or whose heartbeat stalls when a heartbeat timeout 
+ * is set, is lost. The failure is recorded in its {@link VmInstance}, the VM is shutdown and its item is 
+ * rescheduled on an idle processor of the task if any, otherwise on a replacement VM.
+ * 
+ * If a {@link Checkpoint} is provided the progress of the job is recorded in it, a coordinator restarted 
+ * with the same checkpoint skips the completed tasks and items and adopts the processors that are still running.
+ * 
+ * If a {@link MetricsRegistry} is provided the cloud service is wrapped with an {@link InstrumentedCloudService}
+ * and the following are recorded, in milliseconds, in addition to the api calls metrics:
+ * <ul>
+ * <li>job.duration and task.[task].duration - the duration of the job and of each task</li>
+ * <li>task.[task].item.duration - the durations of the completed items of a processor task</li>
+ * <li>task.[task].utilisation - the time the processors of a task spent on completed items divided by the 
+ * time they were available to the task</li>
+ * </ul>
+ * Tasks are named by their id if set, otherwise by their class simple name. The metrics are reported 
+ * after each task and at the end of the job.
+ * 
+ * When multi-slot processors are enabled, each new processor VM has a number of slots, its VM config slots 
+ * or otherwise its cores, and each slot is given its own item. The slots are tracked as processors of their 
+ * own through a {@link SlotCloudService}, a VM is shutdown once all its slots are shutdown.
+ * 
+ * If a {@link Timeline} is provided the tasks, partition computations, long metadata uploads, VM provisioning, 
+ * processor re-programming, items and shutdowns are recorded in it. At the end of the job the critical path 
+ * and the processors idle time are logged and the timeline is written as a Chrome trace file.
+ * 
+ * Idle processors are sent their next items through a {@link TaskChannel}, by default the items are written 
+ * to the processors metadata, see {@link MetaDataTaskChannel}. The processors must use the same channel.
+ * 
  * @author Omer Dawelbeit (omerio)
  *
  */
@@ -81,13 +152,38 @@ public class Coordinator extends CommonExecutable {
 
     private static final String NO_TASK = "No Task";
 
+    // the fraction of the items of a task that must be completed before stragglers are speculatively re-executed
+    private static final double SPECULATION_MIN_COMPLETED = 0.5;
+
+    // how often idle processors are checked for reaping in milliseconds
+    private static final long REAP_INTERVAL = 5_000L;
+
+    // idle processors are reaped when their next billing increment is within this margin in milliseconds
+    public static final long DEFAULT_REAP_MARGIN = 15_000L;
+
+    // the number of failed items after which a processor is quarantined
+    public static final int DEFAULT_QUARANTINE_THRESHOLD = 2;
+
+    // the maximum number of times an item is rescheduled on a replacement VM
+    private static final int MAX_REPLACEMENTS = 3;
+    
+    private static final String JOB_DURATION = "job.duration";
+    
+    private static final String TASK_METRICS = "task";
+
     // Tasks execution context
     private Context context;
 
     // processor names
-    private Set<String> processors = new HashSet<>();
+    private Set<String> processors = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    // processors that are currently allocated to running processor tasks
+    private Set<String> leasedProcessors = new HashSet<>();
+
+    private Map<String, VmInstance> processorInstances = new ConcurrentHashMap<>();
 
-    private Map<String, VmInstance> processorInstances = new HashMap<>();
+    // the last generated instance id
+    private long lastInstanceId;
 
     private Job job;
 
@@ -97,6 +193,67 @@ public class Coordinator extends CommonExecutable {
 
     private boolean shutdownProcessors;
 
+    private int maxParallelTasks;
+
+    // optional journal used to resume the job
+    private Checkpoint checkpoint;
+
+    // dispatch work to each new processor as soon as it's running
+    private boolean streamingProvisioning;
+
+    // use batch api calls to re-program and poll processors
+    private boolean batchApiCalls;
+
+    // poll the status of all the processors with a single list call
+    private boolean listPolling;
+
+    // start the processors of the next processor task whilst coordinator tasks are running
+    private boolean prewarmProcessors;
+
+    // processors started ahead of processor tasks that are not yet ready
+    private List<Prewarm> prewarms = new ArrayList<>();
+
+    // the indexes of the processor tasks that have been pre-warmed
+    private Set<Integer> prewarmedTasks = new HashSet<>();
+
+    // shutdown idle processors that are not needed by the remaining tasks
+    private boolean reapIdleProcessors;
+
+    private long reapMargin;
+
+    // the indexes of the completed tasks
+    private Set<Integer> completedTasks = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+    // processor => the time it was last released by a task
+    private Map<String, Long> idleSince = new ConcurrentHashMap<>();
+
+    // prefer the processors that have the item keys in their cache
+    private boolean dataAffinity;
+
+    private ProcessorAffinity affinity = new ProcessorAffinity();
+
+    // run as many items on each new processor VM as it has slots
+    private boolean multiSlotProcessors;
+
+    private int quarantineThreshold;
+
+    // processor => the number of items that have failed on it in tasks that retry failed items
+    private Map<String, Integer> processorFailures = new ConcurrentHashMap<>();
+
+    // in milliseconds, 0 to disable heartbeat checks
+    private long heartbeatTimeout;
+
+    // the rate limit of the processors status checks, 0 for no limit
+    private int maxRequestsPerSecond;
+
+    // optional, the job, tasks and api calls metrics
+    private MetricsRegistry metrics;
+
+    // optional, the timeline of the job phases
+    private Timeline timeline;
+
+    // the channel the items are sent to idle processors through
+    private TaskChannel taskChannel;
 
     /**
      * 
@@ -121,8 +278,41 @@ public class Coordinator extends CommonExecutable {
         this.job = builder.getJob();
         this.partitionFunctionFactory = builder.getPartitionFunctionFactory();
         this.taskFactory = builder.getTaskFactory();
-        this.setCloudService(builder.getCloudService());
+        this.metrics = builder.getMetrics();
+        this.multiSlotProcessors = builder.isMultiSlotProcessors();
+        
+        CloudService cloudService = builder.getCloudService();
+        
+        if(this.metrics != null) {
+            cloudService = new InstrumentedCloudService(cloudService, this.metrics);
+        }
+        
+        if(this.multiSlotProcessors) {
+            cloudService = new SlotCloudService(cloudService);
+        }
+        
+        this.setCloudService(cloudService);
+        
         this.shutdownProcessors = builder.isShutdownProcessors();
+        this.maxParallelTasks = builder.getMaxParallelTasks();
+        this.checkpoint = builder.getCheckpoint();
+        this.timeline = builder.getTimeline();
+        this.taskChannel = builder.getTaskChannel();
+        
+        if(this.taskChannel == null) {
+            this.taskChannel = new MetaDataTaskChannel();
+        }
+        
+        this.streamingProvisioning = builder.isStreamingProvisioning();
+        this.batchApiCalls = builder.isBatchApiCalls();
+        this.listPolling = builder.isListPolling();
+        this.prewarmProcessors = builder.isPrewarmProcessors();
+        this.reapIdleProcessors = builder.isReapIdleProcessors();
+        this.reapMargin = builder.getReapMargin();
+        this.dataAffinity = builder.isDataAffinity();
+        this.quarantineThreshold = builder.getQuarantineThreshold();
+        this.heartbeatTimeout = builder.getHeartbeatTimeout();
+        this.maxRequestsPerSecond = builder.getMaxRequestsPerSecond();
 
         Validate.notNull(this.job, "job must be provided");
 
@@ -157,53 +347,61 @@ public class Coordinator extends CommonExecutable {
     @Override
     public void run() throws IOException {
 
-        Stopwatch stopwatch = Stopwatch.createStarted();
+        final Stopwatch stopwatch = Stopwatch.createStarted();
 
         List<TaskConfig> tasksConfig = job.getTasks();
+        
+        ScheduledExecutorService reaper = null;
 
         try {
+            
+            if(this.checkpoint != null) {
+                this.resume();
+            }
+            
+            if(this.reapIdleProcessors) {
+                reaper = Executors.newSingleThreadScheduledExecutor();
+                reaper.scheduleWithFixedDelay(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            Coordinator.this.reapProcessors();
+                            
+                        } catch(Exception e) {
+                            log.warn("Failed to reap idle processors", e);
+                        }
+                    }
+                    
+                }, REAP_INTERVAL, REAP_INTERVAL, TimeUnit.MILLISECONDS);
+            }
 
-            for(TaskConfig taskConfig: tasksConfig) {
-
-                Stopwatch stopwatch1 = Stopwatch.createStarted();
-
-                Set<String> outputKeys = taskConfig.getOutput();
-
-                String taskName;
-
-                log.info("TIMER# Job elapsed time: " + stopwatch);
-
-                if(TargetType.PROCESSOR.equals(taskConfig.getTarget())) {
-
-                    taskName = this.getTaskName(taskConfig);
-                    log.info("Starting processor task: " + taskName);
-
-                    this.runProcessorTask(taskConfig);
-
-                } else {
-
-                    Task task = taskFactory.getTask(taskConfig, context, getCloudService());
-                    taskName = this.getTaskName(task);
-
-                    log.info("Starting coordinator task: " + taskName);
+            final TaskGraph graph = new TaskGraph(tasksConfig);
 
-                    // run the task
-                    if(ErrorAction.CONTINUE.equals(taskConfig.getErrorAction())) {
-                        this.runTaskContinue(task);
+            if(ExecutionMode.PARALLEL.equals(this.job.getMode())) {
+                
+                final List<TaskConfig> tasks = tasksConfig;
+                
+                TaskScheduler scheduler = new TaskScheduler(graph, new TaskScheduler.TaskRunner() {
 
-                    } else {
-                        task.run(); 
+                    @Override
+                    public void runTask(TaskConfig taskConfig) throws Exception {
+                        Coordinator.this.runTask(graph.getPipeline(tasks.indexOf(taskConfig)), stopwatch);
                     }
+                    
+                }, this.maxParallelTasks);
+                
+                scheduler.run();
 
-                    // get the output of the task
-                    this.addTaskOutputToContext(task, outputKeys);
-
+            } else {
+                
+                for(int i = 0; i < graph.size(); i++) {
+                    this.runTask(graph.getPipeline(i), stopwatch);
                 }
-
-                stopwatch1.stop();
-                log.info("TIMER# Task " + taskName + " completed in " + stopwatch1);
-                log.info("Total processors usage cost: " + this.calculateProcessorsCost());
-
+            }
+            
+            if(this.checkpoint != null) {
+                this.checkpoint.jobCompleted();
             }
 
         } catch(Exception e) {
@@ -216,6 +414,11 @@ public class Coordinator extends CommonExecutable {
             }
 
         } finally {
+            
+            if(reaper != null) {
+                reaper.shutdownNow();
+            }
+            
             // shutdown the processors
             if(this.shutdownProcessors) {
                 log.info("Shutting down all processors");
@@ -223,6 +426,20 @@ public class Coordinator extends CommonExecutable {
             }
 
             log.info("Total processors usage cost: " + this.calculateProcessorsCost());
+            
+            if(this.metrics != null) {
+                this.metrics.histogram(JOB_DURATION).record(stopwatch.elapsed(TimeUnit.MILLISECONDS));
+                this.metrics.report();
+            }
+            
+            if(this.timeline != null) {
+                try {
+                    this.timeline.write();
+                    
+                } catch(IOException e) {
+                    log.warn("Failed to write the job timeline", e);
+                }
+            }
         }
 
         log.debug("Coordinator's context: " + this.context);
@@ -232,14 +449,222 @@ public class Coordinator extends CommonExecutable {
 
     }
 
+    /**
+     * Run a single coordinator or processor task or a pipeline of processor tasks
+     * @param tasks - the task config or the configs of the pipelined tasks, nothing is run if empty
+     * @param stopwatch - the job stopwatch
+     * @throws ClassInstantiationException if the population of the bean fails
+     * @throws InstancePopulationException if the population of the bean fails
+     * @throws IOException if cloud api calls fail
+     */
+    private void runTask(List<TaskConfig> tasks, Stopwatch stopwatch) throws ClassInstantiationException, 
+    InstancePopulationException, IOException {
+        
+        if(tasks.isEmpty()) {
+            // pipelined task that has already run with the previous task
+            return;
+        }
+        
+        if((this.checkpoint != null) && this.isCompleted(tasks)) {
+            log.info("Skipping task " + this.getTaskName(tasks.get(0)) + ", already completed");
+            this.taskCompleted(tasks);
+            return;
+        }
+
+        Stopwatch stopwatch1 = Stopwatch.createStarted();
+        long start = System.currentTimeMillis();
+        
+        TaskConfig taskConfig = tasks.get(0);
+
+        Set<String> outputKeys = taskConfig.getOutput();
+
+        String taskName;
+
+        log.info("TIMER# Job elapsed time: " + stopwatch);
+
+        if(TargetType.PROCESSOR.equals(taskConfig.getTarget())) {
+
+            List<String> taskNames = new ArrayList<>();
+            for(TaskConfig config: tasks) {
+                taskNames.add(this.getTaskName(config));
+            }
+            
+            taskName = StringUtils.join(taskNames, ", ");
+            log.info("Starting processor task: " + taskName);
+
+            this.runProcessorTasks(tasks);
+
+        } else {
+
+            if(this.prewarmProcessors) {
+                this.prewarm(taskConfig);
+            }
+
+            Task task = taskFactory.getTask(taskConfig, context, getCloudService());
+            taskName = this.getTaskName(task);
+
+            log.info("Starting coordinator task: " + taskName);
+
+            // run the task
+            if(ErrorAction.CONTINUE.equals(taskConfig.getErrorAction())) {
+                this.runTaskContinue(task);
+
+            } else {
+                task.run(); 
+            }
+
+            // get the output of the task
+            this.addTaskOutputToContext(task, outputKeys);
+
+        }
+        
+        if(this.checkpoint != null) {
+            for(TaskConfig config: tasks) {
+                this.checkpointTask(config);
+            }
+        }
+
+        stopwatch1.stop();
+        log.info("TIMER# Task " + taskName + " completed in " + stopwatch1);
+        
+        // processor tasks only contain the spans of their partitioning and processors
+        this.timelineSpan(taskConfig, TargetType.PROCESSOR.equals(taskConfig.getTarget()) ? 
+                Timeline.PROCESSOR_TASK : Timeline.TASK, taskName, start, null);
+        
+        this.taskCompleted(tasks);
+        
+        log.info("Total processors usage cost: " + this.calculateProcessorsCost());
+        
+        if(this.metrics != null) {
+            this.metrics.histogram(getTaskMetricName(taskConfig, "duration"))
+                .record(stopwatch1.elapsed(TimeUnit.MILLISECONDS));
+            this.metrics.report();
+        }
+    }
+    
+    /**
+     * Record the completion of tasks and reap any idle processors that are no longer needed
+     * @param tasks - the completed tasks
+     * @throws IOException if cloud api calls fail
+     */
+    private void taskCompleted(List<TaskConfig> tasks) throws IOException {
+        for(TaskConfig config: tasks) {
+            this.completedTasks.add(this.getTaskIndex(config));
+        }
+        
+        if(this.reapIdleProcessors) {
+            this.reapProcessors();
+        }
+    }
+    
+    /**
+     * Shutdown the idle processors that can't be reused by any of the remaining tasks, each processor is 
+     * shutdown when its next billing increment is within the reap margin as it's already paid for until then
+     * @throws IOException if cloud api calls fail
+     */
+    private synchronized void reapProcessors() throws IOException {
+        
+        Date now = new Date();
+        List<VmConfig> configs = new ArrayList<>();
+        List<String> reaped = new ArrayList<>();
+        
+        synchronized(this.leasedProcessors) {
+            for(String instanceId: this.processors) {
+                
+                VmInstance instance = this.processorInstances.get(instanceId);
+                
+                if(this.leasedProcessors.contains(instanceId) || (instance == null) || !instance.isRunning() 
+                        || this.isReusable(instance)) {
+                    continue;
+                }
+                
+                long remaining = instance.getNextBillingIncrement(now).getTime() - now.getTime();
+                
+                if(remaining <= this.reapMargin) {
+                    // lease the processor so no task can use it whilst it's shutdown
+                    this.leasedProcessors.add(instanceId);
+                    reaped.add(instanceId);
+                    
+                    Long idle = this.idleSince.remove(instanceId);
+                    long idleTime = now.getTime() - ((idle != null) ? idle : instance.getStart().getTime());
+                    
+                    log.info("Reaping processor " + instanceId + ", idle for " 
+                            + TimeUnit.MILLISECONDS.toSeconds(idleTime) + "s, billed for " 
+                            + instance.getBilledUsage(now) + "s");
+                    
+                    VmConfig config = new VmConfig();
+                    config.setInstanceId(instanceId);
+                    configs.add(config);
+                }
+            }
+        }
+        
+        if(!configs.isEmpty()) {
+            try {
+                this.getCloudService().shutdownInstance(configs);
+                this.updateVmInstances(configs, true);
+                this.timelineShutdown(configs, now.getTime());
+                
+            } finally {
+                this.releaseProcessors(reaped);
+            }
+        }
+    }
+    
+    /**
+     * Check if a processor can be used by any of the tasks that are not yet completed, processor tasks that
+     * use the job VM config can use any processor
+     * @param instance - the processor instance
+     * @return true if the processor can be reused
+     */
+    private boolean isReusable(VmInstance instance) {
+        List<TaskConfig> tasks = this.job.getTasks();
+        
+        for(int i = 0; i < tasks.size(); i++) {
+            TaskConfig taskConfig = tasks.get(i);
+            
+            if(this.completedTasks.contains(i) || !TargetType.PROCESSOR.equals(taskConfig.getTarget())) {
+                continue;
+            }
+            
+            // the job VM config or a VM config reference that is not yet resolved
+            if(taskConfig.getVmConfig() == null) {
+                return true;
+            }
+            
+            if(!Boolean.FALSE.equals(taskConfig.getVmConfig().getReuse()) 
+                    && this.job.getVmConfig().merge(taskConfig.getVmConfig()).equals(instance.getVmConfig())) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+
     /**
      * Calculate the cost of usage of the processor VMs
      * @return - the total cost
      */
     public double calculateProcessorsCost() {
         double cost = 0.0;
-        for(VmInstance instance: this.processorInstances.values()) {
-            cost += instance.getCost();
+        
+        // the slots of a multi-slot processor share the cost of their VM, which runs until its last slot ends
+        Map<String, Double> slotsCost = new HashMap<>();
+        
+        for(Entry<String, VmInstance> entry: this.processorInstances.entrySet()) {
+            
+            if(SlotCloudService.isSlotId(entry.getKey())) {
+                String instanceId = SlotCloudService.getInstanceId(entry.getKey());
+                Double vmCost = slotsCost.get(instanceId);
+                slotsCost.put(instanceId, Math.max((vmCost != null) ? vmCost : 0, entry.getValue().getCost()));
+                
+            } else {
+                cost += entry.getValue().getCost();
+            }
+        }
+        
+        for(Double vmCost: slotsCost.values()) {
+            cost += vmCost;
         }
 
         return cost;
@@ -256,6 +681,8 @@ public class Coordinator extends CommonExecutable {
             config.setInstanceId(processorId);
             configs.add(config);
         }
+        
+        long start = System.currentTimeMillis();
 
         try {
             this.getCloudService().shutdownInstance(configs);
@@ -268,24 +695,68 @@ public class Coordinator extends CommonExecutable {
 
             // mark all VmInstances as shutdown
             this.updateVmInstances(configs, true);
+            this.timelineShutdown(configs, start);
         }
     }
 
 
     /**
-     * Create and start a task on a number of processors
-     * @param task - the task to start
-     * @param taskConfig - the task config
+     * Run a number of consecutive processor tasks as a pipeline. A processor that completes item k of a task is
+     * re-programmed straightaway with item k of the next task rather than waiting for all the processors of the
+     * task to complete. Tasks can only be pipelined if they use the same VM config and have the same number of
+     * partition items, otherwise the previous tasks are run to completion before the next task is started.
+     * @param tasks - the processor tasks, a single task is run on its own
      * @throws ClassInstantiationException if the population of the bean fails
      * @throws InstancePopulationException if the population of the bean fails
      * @throws IOException if cloud api calls fail
      */
-    private void runProcessorTask(TaskConfig taskConfig) throws ClassInstantiationException, 
+    private void runProcessorTasks(List<TaskConfig> tasks) throws ClassInstantiationException, 
     InstancePopulationException, IOException {
 
-        final CloudService cloudService = this.getCloudService();
+        TaskConfig firstTask = null;
+        VmConfig taskVmConfig = null;
+        List<WorkItem> workItems = null;
+        List<WorkItem> lastItems = null;
 
-        VmConfig vmConfig = this.job.getVmConfig();
+        for(TaskConfig taskConfig: tasks) {
+
+            VmConfig vmConfig = this.getTaskVmConfig(taskConfig);
+            List<WorkItem> items = this.createWorkItems(taskConfig);
+
+            if((lastItems != null) 
+                    && (!Objects.equals(taskVmConfig, vmConfig) || (items.size() != lastItems.size()))) {
+
+                log.warn("Processor task " + this.getTaskName(taskConfig) + " can't be pipelined with task " 
+                        + this.getTaskName(firstTask) + ", the VM config or the number of partition items differ");
+
+                this.runProcessorTask(firstTask, workItems, taskVmConfig);
+                lastItems = null;
+            }
+
+            if(lastItems == null) {
+                firstTask = taskConfig;
+                taskVmConfig = vmConfig;
+                workItems = items;
+
+            } else {
+                // link each item with the same item of the next task
+                for(int i = 0; i < items.size(); i++) {
+                    lastItems.get(i).setNext(items.get(i));
+                }
+            }
+
+            lastItems = items;
+        }
+
+        this.runProcessorTask(firstTask, workItems, taskVmConfig);
+    }
+
+    /**
+     * Get the custom VM config of a processor task merged with the job VM config
+     * @param taskConfig - the task config
+     * @return the merged VM config or null if the task uses the job VM config
+     */
+    private VmConfig getTaskVmConfig(TaskConfig taskConfig) {
 
         // do we need to start custom vms for this task?
         VmConfig taskVmConfig = taskConfig.getVmConfig();
@@ -297,7 +768,24 @@ public class Coordinator extends CommonExecutable {
             taskConfig.setVmConfig(taskVmConfig);
         }
         
-        final boolean taskUsesCustomVms = (taskVmConfig != null);
+        if(taskVmConfig != null) {
+            log.debug("Task: " + this.getTaskName(taskConfig) + " uses custom vm config: " + taskConfig.getVmConfig());
+            taskVmConfig = this.job.getVmConfig().merge(taskVmConfig);
+        }
+        
+        return taskVmConfig;
+    }
+
+    /**
+     * Partition the work of a processor task and create the processor metadata for each of the partition items
+     * @param taskConfig - the task config
+     * @return the task work items
+     * @throws ClassInstantiationException if the population of the bean fails
+     * @throws InstancePopulationException if the population of the bean fails
+     * @throws IOException if cloud api calls fail
+     */
+    private List<WorkItem> createWorkItems(TaskConfig taskConfig) throws ClassInstantiationException, 
+    InstancePopulationException, IOException {
 
         // check the parition function
         PartitionConfig partitionConfig = taskConfig.getPartitioning();
@@ -320,38 +808,12 @@ public class Coordinator extends CommonExecutable {
 
         // bucket just in case we have long metadata
         String bucket = (String) this.getJobDataValue(Constants.CLOUD_STORAGE_BUCKET_KEY);
-        String zoneId = this.job.getVmConfig().getZoneId();
-
-        List<String> idleProcessors;
-
-        if(taskUsesCustomVms) {
-            idleProcessors = Lists.newArrayList();
-            log.debug("Task: " + this.getTaskName(taskConfig) + " uses custom vm config: " + taskConfig.getVmConfig());
-
-            taskVmConfig = vmConfig.merge(taskConfig.getVmConfig());
-            // do we have any existing config that matches what this task need?
-
-            for(String instanceId: this.processorInstances.keySet()) {
-                VmInstance instance = this.processorInstances.get(instanceId);
-                if(taskVmConfig.equals(instance.getVmConfig())) {
-                    log.debug("Found existing processor that matches task requirements: " + instance.getVmConfig());
-                    idleProcessors.add(instanceId);
-                }
-            }
-
-        } else {
-            idleProcessors = Lists.newArrayList(this.processors);
-        }
-
-        List<String> busyProcessors = new ArrayList<>();
 
-        List<VmConfig> vmsConfig = new ArrayList<>();
         long timestamp = (new Date()).getTime();
 
-        int count = 0;
         int index = 0;
 
-        int metaDataMaxSize = cloudService.getMaximumMetaDataSize();
+        int metaDataMaxSize = this.getCloudService().getMaximumMetaDataSize();
 
         Map<String, String> processorInput = new HashMap<>();
         Entry<String, String> partitionItemEntry = null;
@@ -390,15 +852,36 @@ public class Coordinator extends CommonExecutable {
             resolvedInputs.put(entry.getKey(), value);
         }
 
-        Collection<String> items = this.getPartitionItems(taskConfig, partitionConfig, itemsKey);
+        List<Long> weights = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        Collection<String> items = this.getPartitionItems(taskConfig, partitionConfig, itemsKey, weights);
         
-        List<String> operations = new ArrayList<>();
+        if(this.timeline != null) {
+            Map<String, Object> args = new HashMap<>();
+            args.put("items", items.size());
+            this.timelineSpan(taskConfig, Timeline.PARTITION, Timeline.PARTITION, start, args);
+        }
+        
+        List<WorkItem> workItems = new ArrayList<>();
+        
+        CodeConfig code = taskConfig.getCode();
+        CodeConfig nextCode = this.getNextTaskCode(taskConfig);
 
         for(String item: items) {
 
             // add the metadata
             VmMetaData metaData = new VmMetaData();
             metaData.setTaskClass(taskConfig.getClassName());
+            
+            if((code != null) && code.isRemote()) {
+                metaData.setTaskCodeType(CodeLocation.REMOTE);
+                metaData.setTaskCodeUrl(code.getUrl());
+                metaData.setTaskCodeHash(code.getHash());
+            }
+            
+            if(nextCode != null) {
+                metaData.setNextTaskCode(nextCode.getUrl(), nextCode.getHash());
+            }
 
             // add the task inputs
             metaData.addUserValues(resolvedInputs);
@@ -409,7 +892,10 @@ public class Coordinator extends CommonExecutable {
                 // add the item, first check if it's too long
                 if(item.length() > metaDataMaxSize) {
 
+                    long uploadStart = System.currentTimeMillis();
                     this.saveMetaDataItemToFile(metaData, item, itemMetaDataKey, bucket, index, timestamp);
+                    this.timelineSpan(taskConfig, Timeline.UPLOAD, "upload item " + workItems.size(), 
+                            uploadStart, null);
 
                     index++;
 
@@ -418,23 +904,160 @@ public class Coordinator extends CommonExecutable {
                     metaData.addUserValue(itemMetaDataKey, item);
                 }
             }
-
-            // re-program existing processors
-            if(idleProcessors.size() > 0) {
-
-                String instanceId = idleProcessors.iterator().next();
-                idleProcessors.remove(idleProcessors.indexOf(instanceId));
-                VmMetaData processorMetaData = cloudService.getMetaData(instanceId, zoneId);
-                processorMetaData.getFollowUp(metaData);
-                operations.add(cloudService.updateMetadata(metaData, zoneId, instanceId, false));
-                busyProcessors.add(instanceId);
-
-
+            
+            WorkItem workItem = new WorkItem(taskConfig, workItems.size(), item, metaData);
+            
+            if(!weights.isEmpty()) {
+                workItem.setWeight(weights.get(workItem.getIndex()));
+            }
+            
+            workItems.add(workItem);
+        }
+        
+        return workItems;
+    }
+    
+    /**
+     * Run the work items of a processor task and of any tasks pipelined with it
+     * @param taskConfig - the task config
+     * @param workItems - the task work items
+     * @param taskVmConfig - the custom VM config for this task or null if the job VM config is used
+     * @throws IOException if cloud api calls fail
+     */
+    private void runProcessorTask(TaskConfig taskConfig, List<WorkItem> workItems, VmConfig taskVmConfig) 
+            throws IOException {
+        
+        List<String> candidateProcessors;
+
+        if(taskVmConfig != null) {
+            candidateProcessors = Lists.newArrayList();
+            
+            // do we have any existing config that matches what this task need?
+            for(String instanceId: this.processorInstances.keySet()) {
+                VmInstance instance = this.processorInstances.get(instanceId);
+                if(taskVmConfig.equals(instance.getVmConfig())) {
+                    log.debug("Found existing processor that matches task requirements: " + instance.getVmConfig());
+                    candidateProcessors.add(instanceId);
+                }
+            }
+
+        } else {
+            // processors started ahead of this task must be ready before they can be re-programmed
+            this.awaitPrewarmed();
+            candidateProcessors = Lists.newArrayList(this.processors);
+        }
+        
+        if(this.checkpoint != null) {
+            workItems = this.getIncompleteItems(workItems);
+            
+            if(workItems.isEmpty()) {
+                log.info("All the items of task " + this.getTaskName(taskConfig) + " are already completed");
+                return;
+            }
+        }
+        
+        // take exclusive use of the idle processors we need for this task
+        List<String> leasedProcessors = this.leaseProcessors(candidateProcessors, 
+                this.getNumberOfProcessors(taskConfig, workItems));
+        
+        try {
+            this.runProcessorTask(taskConfig, workItems, taskVmConfig, leasedProcessors);
+            
+        } finally {
+            this.releaseProcessors(leasedProcessors);
+        }
+    }
+    
+    /**
+     * Program the idle processors and start new ones as needed for each of the work items, then 
+     * wait for all the processors to complete. If the task limits the number of processors then the 
+     * items that don't have a processor are queued largest first, each processor is given the next
+     * item in the queue as soon as it completes its current item.
+     * @param taskConfig - the task config
+     * @param workItems - the task work items
+     * @param taskVmConfig - the custom VM config for this task or null if the job VM config is used
+     * @param leasedProcessors - the idle processors leased for this task, new processors are added to it
+     * @throws IOException if cloud api calls fail
+     */
+    private void runProcessorTask(TaskConfig taskConfig, List<WorkItem> workItems, VmConfig taskVmConfig, 
+            List<String> leasedProcessors) throws IOException {
+        
+        final CloudService cloudService = this.getCloudService();
+        
+        VmConfig vmConfig = this.job.getVmConfig();
+        
+        final boolean taskUsesCustomVms = (taskVmConfig != null);
+        
+        List<String> idleProcessors = new ArrayList<>(leasedProcessors);
+        
+        String zoneId = this.job.getVmConfig().getZoneId();
+        
+        // processor => the item it's working on
+        Map<String, WorkItem> busyProcessors = new LinkedHashMap<>();
+
+        List<VmConfig> vmsConfig = new ArrayList<>();
+        
+        List<String> operations = new ArrayList<>();
+        
+        // idle processor => its new metadata
+        Map<String, VmMetaData> programs = new LinkedHashMap<>();
+        
+        int numberOfProcessors = this.getNumberOfProcessors(taskConfig, workItems);
+        
+        // the affinity queue indexes the items by their keys to match them with the processor caches
+        Queue<WorkItem> queue = this.dataAffinity ? new AffinityQueue() : new ArrayDeque<WorkItem>();
+        
+        // the slots of new multi-slot processors that are not yet given an item
+        List<String> newProcessors = new ArrayList<>();
+        
+        if(numberOfProcessors < workItems.size()) {
+            List<WorkItem> sorted = new ArrayList<>(workItems);
+            Collections.sort(sorted, Collections.reverseOrder());
+            
+            workItems = sorted.subList(0, numberOfProcessors);
+            queue.addAll(sorted.subList(numberOfProcessors, sorted.size()));
+            
+            log.info("Using " + numberOfProcessors + " processors for task " + this.getTaskName(taskConfig) 
+                    + ", queued items: " + queue.size());
+        }
+        
+        // item => the idle processor that has its data or owns it on the hash ring
+        Map<WorkItem, String> assigned = null;
+        
+        if(this.dataAffinity) {
+            assigned = this.affinity.assign(workItems, idleProcessors);
+            log.debug("Affinity assignment for task " + this.getTaskName(taskConfig) + ": " + assigned);
+        }
+
+        for(WorkItem workItem: workItems) {
+
+            VmMetaData metaData = workItem.getMetaData();
+
+            // re-program existing processors
+            if((assigned != null) && assigned.containsKey(workItem)) {
+                
+                String instanceId = assigned.get(workItem);
+                idleProcessors.remove(instanceId);
+                programs.put(instanceId, metaData);
+                busyProcessors.put(instanceId, workItem);
+                
+            } else if((assigned == null) && (idleProcessors.size() > 0)) {
+
+                String instanceId = idleProcessors.remove(0);
+                programs.put(instanceId, metaData);
+                busyProcessors.put(instanceId, workItem);
+
+
             } else {
                 // start new VMs
+                
+                if(newProcessors.isEmpty()) {
+                    newProcessors.addAll(this.newProcessorIds(taskUsesCustomVms ? taskVmConfig : vmConfig, 1));
+                }
 
-                String instanceId = VmMetaData.CLOUDEX_VM_PREFIX + (timestamp + count);
-                busyProcessors.add(instanceId);
+                String instanceId = newProcessors.remove(0);
+                busyProcessors.put(instanceId, workItem);
+                leasedProcessors.add(instanceId);
 
                 VmConfig conf;
 
@@ -452,31 +1075,74 @@ public class Coordinator extends CommonExecutable {
                 vmsConfig.add(conf);
 
                 log.info("Create VM Config for " + instanceId);
-                count++;
             }
 
         }
         
+        // the spare slots of the last multi-slot processor, they are given queued items once they are ready
+        for(String instanceId: newProcessors) {
+            leasedProcessors.add(instanceId);
+            
+            VmConfig conf = taskUsesCustomVms ? taskVmConfig.copy() : vmConfig.copy();
+            conf.setInstanceId(instanceId);
+            conf.setMetaData(new VmMetaData());
+            
+            vmsConfig.add(conf);
+        }
+        
+        long start = System.currentTimeMillis();
+        operations.addAll(this.programProcessors(programs, zoneId));
+        
         // wait for the metadata operations to complete
         if(!operations.isEmpty()) {
             this.waitForOperations(operations, zoneId);
         }
+        
+        if(this.timeline != null) {
+            for(String instanceId: programs.keySet()) {
+                this.timeline.processorSpan(instanceId, Timeline.DISPATCH, Timeline.DISPATCH, start, 
+                        System.currentTimeMillis(), null);
+            }
+        }
 
         if(!taskUsesCustomVms || (taskUsesCustomVms && !Boolean.FALSE.equals(taskConfig.getVmConfig().getReuse()))) {
-            this.processors.addAll(busyProcessors);
+            this.processors.addAll(busyProcessors.keySet());
+            this.processors.addAll(newProcessors);
         }
 
+        List<VmConfig> provisioning = new ArrayList<>();
+
         if(!vmsConfig.isEmpty()) {
-            boolean success = cloudService.startInstance(vmsConfig, true);
-            if(!success) {
-                throw new IOException("Some processors have failed to start");
-                // TODO better error handling and retry
+            
+            if(this.streamingProvisioning) {
+                // the VMs are started whilst waiting for the processors
+                provisioning.addAll(vmsConfig);
+                
+            } else {
+                this.timelineProvisionStarted(vmsConfig);
+                boolean success = cloudService.startInstance(vmsConfig, true);
+                
+                if(this.timeline != null) {
+                    for(VmConfig config: vmsConfig) {
+                        this.timeline.provisionCompleted(config.getInstanceId(), !success);
+                    }
+                }
+                
+                if(!success) {
+                    throw new IOException("Some processors have failed to start");
+                    // TODO better error handling and retry
+                }
             }
 
             this.updateVmInstances(vmsConfig, false);
         }
+        
+        if(this.checkpoint != null) {
+            this.checkpointProcessors(vmsConfig, busyProcessors);
+        }
 
-        IOException processorException = this.waitForProcessors(busyProcessors, zoneId);
+        IOException processorException = this.waitForProcessors(busyProcessors, queue, provisioning, 
+                zoneId, taskConfig, leasedProcessors, vmsConfig);
 
         // if any of the nodes has failed then throw an exception
         if((processorException != null) && ErrorAction.EXIT.equals(taskConfig.getErrorAction())) {
@@ -485,162 +1151,1653 @@ public class Coordinator extends CommonExecutable {
         }
 
         if(taskUsesCustomVms && Boolean.FALSE.equals(taskConfig.getVmConfig().getReuse())) {
+            
+            // quarantined vms are already shutdown
+            for(Iterator<VmConfig> iterator = vmsConfig.iterator(); iterator.hasNext();) {
+                if(this.processorInstances.get(iterator.next().getInstanceId()).getEnd() != null) {
+                    iterator.remove();
+                }
+            }
+            
             // shutdown the custom vms
             log.debug("Shutting down custom vms: " + vmsConfig + " for task: " + this.getTaskName(taskConfig));
+            long shutdownStart = System.currentTimeMillis();
             this.getCloudService().shutdownInstance(vmsConfig);
             // just in case if we have this vm in the processors then remove it
 
             this.updateVmInstances(vmsConfig, true);
+            this.timelineShutdown(vmsConfig, shutdownStart);
         }
 
         log.info("Successfully completed processor task " + this.getTaskName(taskConfig));
-        log.info("Number of idle processors: " + this.processors.size() + ", instance Ids: " + this.processors);
+        log.info("Number of processors: " + this.processors.size() + ", instance Ids: " + this.processors);
 
     }
-
+    
     /**
-     * Update the VmInstances with start & end date
-     * @param configs - the VmConfigs of started/ended processors
-     * @param setEnd - true to update the end date on the VmInstance
+     * Load the checkpoint of a previous run of the job if any, restore the context output of the completed
+     * tasks and adopt the processors that are still running and can be reused. Processors that are still working 
+     * on an item are waited for, the item is marked as completed if the processor completes successfully. 
+     * Processors that are stopped, can't be reused or fail whilst being waited for are shutdown
+     * @throws IOException if the checkpoint can't be read or cloud api calls fail
      */
-    private void updateVmInstances(List<VmConfig> configs, boolean setEnd) {
+    private void resume() throws IOException {
+        
+        this.checkpoint.open(this.getCloudService());
+        
+        this.context.putAll(this.checkpoint.getContext());
+        
+        final CloudService cloudService = this.getCloudService();
+        final String zoneId = this.job.getVmConfig().getZoneId();
+        
+        List<String> busy = new ArrayList<>();
+        
+        for(Entry<String, VmConfig> entry: this.checkpoint.getProcessors().entrySet()) {
+            
+            String instanceId = entry.getKey();
+            VmMetaData metaData;
+            
+            try {
+                metaData = cloudService.getMetaData(instanceId, zoneId);
+                
+            } catch(IOException e) {
+                log.warn("Processor " + instanceId + " is no longer available", e);
+                this.checkpoint.processorStopped(instanceId);
+                continue;
+            }
+            
+            Date start = this.checkpoint.getProcessorStart(instanceId);
+            this.processorInstances.put(instanceId, new VmInstance(entry.getValue(), 
+                    (start != null) ? start : new Date()));
+            
+            String instanceStatus = metaData.getInstanceStatus();
+            
+            if(ProcessorTracker.LOST_STATUSES.contains(instanceStatus) 
+                    || Boolean.FALSE.equals(entry.getValue().getReuse())) {
+                
+                log.warn("Not adopting processor " + instanceId + ", instance status: " + instanceStatus 
+                        + ", reuse: " + entry.getValue().getReuse());
+                this.abandon(instanceId, zoneId);
+                continue;
+            }
+            
+            log.info("Adopting processor " + instanceId + ", status: " + metaData.getProcessorStatus());
+            
+            this.processors.add(instanceId);
+            
+            if(!ProcessorStatus.READY.equals(metaData.getProcessorStatus()) 
+                    && !ProcessorStatus.ERROR.equals(metaData.getProcessorStatus())) {
+                busy.add(instanceId);
+            }
+        }
+        
+        if(!busy.isEmpty()) {
+            
+            log.info("Waiting for adopted processors: " + busy);
+            
+            ProcessorTracker tracker = new ProcessorTracker(cloudService, zoneId, new ProcessorTracker.Listener() {
 
-        Date now = new Date();
+                @Override
+                public void processorReady(String instanceId, VmMetaData metaData) throws IOException {
+                    int [] item = checkpoint.getRunningItem(instanceId);
+                    
+                    if(item != null) {
+                        checkpoint.itemCompleted(item[0], item[1], instanceId);
+                    }
+                }
 
-        for(VmConfig config: configs) {
-            String instanceId = config.getInstanceId();
-            VmInstance instance = this.processorInstances.get(instanceId);
-            if(instance == null) {
-                instance = new VmInstance(config, now);
-                this.processorInstances.put(instanceId, instance);
-            }
+                @Override
+                public void processorFailed(String instanceId, IOException exception) throws IOException {
+                    log.warn("Adopted processor " + instanceId + " has failed, shutting it down", exception);
+                    abandon(instanceId, zoneId);
+                }
 
-            if(setEnd) {
-                instance.setEnd(now);
-                this.processors.remove(instanceId);
+                @Override
+                public void roundCompleted(Set<String> pending) throws IOException {
+                }
+                
+            });
+            
+            tracker.setMetrics(this.metrics);
+            tracker.track(busy);
+            tracker.await();
+        }
+    }
+    
+    /**
+     * Shutdown a processor of a previous run of the job that can't be adopted, it's removed from the processors 
+     * and recorded as stopped in the checkpoint
+     * @param instanceId - the processor instance id
+     * @param zoneId - the cloud zoneId
+     */
+    private void abandon(String instanceId, String zoneId) {
+        
+        VmConfig config = new VmConfig();
+        config.setInstanceId(instanceId);
+        config.setZoneId(zoneId);
+        List<VmConfig> configs = Lists.newArrayList(config);
+        
+        try {
+            this.getCloudService().shutdownInstance(configs);
+            
+        } catch(IOException e) {
+            log.warn("Failed to shutdown processor " + instanceId, e);
+        }
+        
+        this.updateVmInstances(configs, true);
+    }
+    
+    /**
+     * @param tasks - the tasks of a pipeline
+     * @return true if all the tasks are completed according to the checkpoint
+     */
+    private boolean isCompleted(List<TaskConfig> tasks) {
+        boolean completed = true;
+        
+        for(TaskConfig taskConfig: tasks) {
+            completed = completed && this.checkpoint.isTaskCompleted(this.getTaskIndex(taskConfig));
+        }
+        
+        return completed;
+    }
+    
+    /**
+     * Record the completion of a task and the context values it has added in the checkpoint
+     * @param taskConfig - the completed task
+     * @throws IOException if the checkpoint can't be written
+     */
+    private void checkpointTask(TaskConfig taskConfig) throws IOException {
+        Map<String, Object> output = new HashMap<>();
+        
+        for(String key: TaskGraph.getOutputKeys(taskConfig)) {
+            if(this.context.containsKey(key)) {
+                output.put(key, this.context.get(key));
             }
         }
+        
+        this.checkpoint.taskCompleted(this.getTaskIndex(taskConfig), output);
     }
-
-
+    
     /**
-     * Save the meta data for the provide metaData item into a file, then reference it
-     * @param metaData - metaData object
-     * @param item - the string item to save
-     * @param itemMetaDataKey - the item metadata key to use
-     * @param bucket - the cloud bucket to use for storing the file
-     * @param index - the current index
-     * @param timestamp - the timestamp
-     * @throws IOException if cloud api calls fail
+     * Record the processors that have been started for a task and the items given to each processor
+     * @param vmsConfig - the configs of the started processors
+     * @param busyProcessors - the processors and the items they are working on
+     * @throws IOException if the checkpoint can't be written
      */
-    private void saveMetaDataItemToFile(VmMetaData metaData, String item, String itemMetaDataKey, String bucket, 
-            int index, long timestamp) throws IOException {
-
-        Validate.notBlank(bucket, "bucket is needed as metadata is larger than maximum allowed.");
-
-        log.info("Metadata too large, using file. Size = " + item.length());
-        // use files instead
-        String itemFilename = new StringBuilder(itemMetaDataKey).append('_').append(timestamp)
-                .append('_').append(index).append(Constants.DOT_TEXT).toString();  
-
-        String itemFile = FileUtils.TEMP_FOLDER + itemFilename;
-        // save to file
-        FileUtils.objectToJsonFile(itemFile, ObjectUtils.csvToSet(item));
-
-        // upload the file to cloud storage
-        this.getCloudService().uploadFileToCloudStorage(itemFile, bucket);
-        // update the meta data with the file value
-        metaData.addUserValue(itemMetaDataKey + VmMetaData.LONG_METADATA_FILE_Suffix, itemFilename);
+    private void checkpointProcessors(List<VmConfig> vmsConfig, Map<String, WorkItem> busyProcessors) 
+            throws IOException {
+        
+        for(VmConfig config: vmsConfig) {
+            if(this.processors.contains(config.getInstanceId())) {
+                VmInstance instance = this.processorInstances.get(config.getInstanceId());
+                this.checkpoint.processorStarted(config, (instance != null) ? instance.getStart() : new Date());
+            }
+        }
+        
+        for(Entry<String, WorkItem> entry: busyProcessors.entrySet()) {
+            WorkItem workItem = entry.getValue();
+            this.checkpoint.itemStarted(this.getTaskIndex(workItem.getTaskConfig()), workItem.getIndex(), 
+                    entry.getKey());
+        }
     }
     
     /**
-     * Wait for the cloud operations to complete
-     * @param operations - the reference of the operations to check
-     * @param zoneId - the cloud provider zoneId
-     * @throws IOException IOException if the cloud api calls fail
+     * Remove the items that are completed according to the checkpoint. If a pipelined item is completed
+     * then it's replaced with the first of its pipelined items that is not completed
+     * @param workItems - the work items of a task
+     * @return the items that still need to run
      */
-    private void waitForOperations(List<String> operations, String zoneId) throws IOException {
-        boolean success = false;
-        int retries = 0;
-        // block and wait for the meta data operations to complete
-        do {
-            try {
-                this.getCloudService().blockOnComputeOperations(operations, zoneId);
-                
-                success = true;
-                
-                retries = 0;
-                
-            } catch(IOException e) {
-                
-                log.error("Exception whilst waiting for operations completion", e);
+    private List<WorkItem> getIncompleteItems(List<WorkItem> workItems) {
+        List<WorkItem> incomplete = new ArrayList<>();
+        
+        for(WorkItem workItem: workItems) {
+            
+            WorkItem item = workItem;
+            
+            while((item != null) 
+                    && this.checkpoint.isItemCompleted(this.getTaskIndex(item.getTaskConfig()), item.getIndex())) {
+                item = item.getNext();
+            }
+            
+            if(item != null) {
+                incomplete.add(item);
+            }
+        }
+        
+        if(incomplete.size() < workItems.size()) {
+            log.info("Resuming with " + incomplete.size() + " of " + workItems.size() + " items");
+        }
+        
+        return incomplete;
+    }
+    
+    /**
+     * Get the remote code of the processor task that follows this one, if it's a different version
+     * than the code of this task, so that processors can preload it whilst this task runs
+     * @param taskConfig - the task config
+     * @return the code of the next processor task or null
+     */
+    private CodeConfig getNextTaskCode(TaskConfig taskConfig) {
+        List<TaskConfig> tasks = this.job.getTasks();
+        CodeConfig code = taskConfig.getCode();
+        int index = this.getTaskIndex(taskConfig);
+        
+        for(int i = index + 1; (index >= 0) && (i < tasks.size()); i++) {
+            TaskConfig next = tasks.get(i);
+            
+            if(TargetType.PROCESSOR.equals(next.getTarget())) {
+                CodeConfig nextCode = next.getCode();
                 
-                // retry 3 times
-                if(retries == 3) {
-                    throw e;
-                    
-                } else {
-                    
-                    retries++;
+                if((nextCode != null) && nextCode.isRemote() 
+                        && ((code == null) || !nextCode.getHash().equals(code.getHash()))) {
+                    return nextCode;
                 }
+                
+                return null;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * @param taskConfig - the task config
+     * @return the index of the task in the job
+     */
+    private int getTaskIndex(TaskConfig taskConfig) {
+        List<TaskConfig> tasks = this.job.getTasks();
+        
+        for(int i = 0; i < tasks.size(); i++) {
+            if(tasks.get(i) == taskConfig) {
+                return i;
+            }
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * Start the processors needed by the next processor task after the provided coordinator task without 
+     * waiting for them. Only tasks that use the job VM config are pre-warmed and the idle processors are 
+     * taken into account. The new processors have no task to run, so they become ready as soon as they boot.
+     * @param taskConfig - the coordinator task about to run
+     * @throws IOException if cloud api calls fail
+     */
+    private void prewarm(TaskConfig taskConfig) throws IOException {
+
+        List<TaskConfig> tasks = this.job.getTasks();
+        TaskConfig next = null;
+        int index = this.getTaskIndex(taskConfig) + 1;
+
+        for(; index < tasks.size(); index++) {
+            if(TargetType.PROCESSOR.equals(tasks.get(index).getTarget())) {
+                next = tasks.get(index);
+                break;
+            }
+        }
+
+        if((next == null) || (next.getVmConfig() != null) || (next.getVmConfigReference() != null)) {
+            return;
+        }
+
+        List<VmConfig> configs = new ArrayList<>();
+
+        synchronized(this.leasedProcessors) {
+
+            Integer estimate = this.getEstimatedItems(next);
+
+            if((estimate == null) || !this.prewarmedTasks.add(index)) {
+                return;
+            }
+
+            Integer max = next.getMaxProcessors();
+            if((max != null) && (max < estimate)) {
+                estimate = max;
+            }
+
+            int idle = 0;
+            for(String instanceId: this.processors) {
+                if(!this.leasedProcessors.contains(instanceId)) {
+                    idle++;
+                }
+            }
+
+            // the new processors stay leased until they are ready
+            for(String instanceId: this.newProcessorIds(this.job.getVmConfig(), estimate - idle)) {
+                VmConfig config = this.job.getVmConfig().copy();
+                config.setInstanceId(instanceId);
+                config.setMetaData(new VmMetaData());
+                configs.add(config);
+            }
+        }
+
+        if(configs.isEmpty()) {
+            return;
+        }
+
+        log.info("Pre-warming " + configs.size() + " processors for task " + this.getTaskName(next));
+
+        for(VmConfig config: configs) {
+            this.processors.add(config.getInstanceId());
+        }
+
+        this.updateVmInstances(configs, false);
+
+        if(this.checkpoint != null) {
+            this.checkpointProcessors(configs, Collections.<String, WorkItem>emptyMap());
+        }
+
+        Prewarm prewarm = new Prewarm(configs, this.timeline);
+        this.timelineProvisionStarted(configs);
+
+        synchronized(this.prewarms) {
+            this.prewarms.add(prewarm);
+        }
+
+        this.getCloudService().startInstance(configs, prewarm);
+    }
+
+    /**
+     * Choose the number of processors for the items of a FUNCTION partition and write it to the job context
+     * before the partition function runs
+     * @param taskConfig - the processor task config
+     * @param partitionConfig - the partition config with a plan
+     */
+    @SuppressWarnings("unchecked")
+    private void planProcessors(TaskConfig taskConfig, PartitionConfig partitionConfig) {
+        
+        PlanConfig planConfig = partitionConfig.getPlan();
+        
+        List<? extends Item> items = (List<? extends Item>) this.context.resolveValue(
+                partitionConfig.getInput().get(PartitionFunction.ITEMS_KEY));
+        
+        Validate.notEmpty(items, "items to plan are required for task " + this.getTaskName(taskConfig));
+        
+        VmConfig vmConfig = this.getTaskVmConfig(taskConfig);
+        
+        if(vmConfig == null) {
+            vmConfig = this.job.getVmConfig();
+        }
+        
+        int processors = new ProcessorPlanner(planConfig, vmConfig).plan(items);
+        
+        log.info("Task " + this.getTaskName(taskConfig) + " is planned to use " + processors + " processors");
+        
+        this.context.put(planConfig.getOutput(), processors);
+    }
+    
+    /**
+     * Get the expected number of items of a processor task before its partitioning is done
+     * @param taskConfig - the processor task config
+     * @return the expected number of items or null if not known
+     */
+    private Integer getEstimatedItems(TaskConfig taskConfig) {
+        PartitionConfig partitionConfig = taskConfig.getPartitioning();
+        Integer estimate = partitionConfig.getEstimate();
+
+        if(PartitionType.COUNT.equals(partitionConfig.getType())) {
+            if(partitionConfig.getCount() != null) {
+                estimate = partitionConfig.getCount();
+
+            } else {
+                Object value = this.context.resolveValue(partitionConfig.getCountRef());
+                if(value instanceof Double) {
+                    estimate = ((Double) value).intValue();
+                }
+            }
+        }
+
+        return estimate;
+    }
+
+    /**
+     * Wait for the pre-warmed processors to be ready and release them so they can be used by processor tasks,
+     * processors that fail to start or to become ready are shutdown
+     * @throws IOException if cloud api calls fail
+     */
+    private void awaitPrewarmed() throws IOException {
+
+        List<Prewarm> pending;
+
+        synchronized(this.prewarms) {
+            pending = new ArrayList<>(this.prewarms);
+            this.prewarms.clear();
+        }
+
+        String zoneId = this.job.getVmConfig().getZoneId();
+
+        for(Prewarm prewarm: pending) {
+
+            final Map<String, VmConfig> configs = new HashMap<>();
+            final List<VmConfig> failed = new ArrayList<>();
+            List<String> instanceIds = new ArrayList<>();
+
+            for(VmConfig config: prewarm.configs) {
+                configs.put(config.getInstanceId(), config);
+                instanceIds.add(config.getInstanceId());
+            }
+
+            failed.addAll(prewarm.await());
+
+            List<String> started = new ArrayList<>(instanceIds);
+            for(VmConfig config: failed) {
+                started.remove(config.getInstanceId());
+            }
+
+            ProcessorTracker tracker = new ProcessorTracker(this.getCloudService(), zoneId, 
+                    new ProcessorTracker.Listener() {
+
+                @Override
+                public void processorReady(String instanceId, VmMetaData metaData) throws IOException {
+                    log.debug("Pre-warmed processor " + instanceId + " is ready");
+                }
+
+                @Override
+                public void processorFailed(String instanceId, IOException exception) throws IOException {
+                    log.warn("Pre-warmed processor " + instanceId + " has failed", exception);
+                    failed.add(configs.get(instanceId));
+                }
+
+                @Override
+                public void roundCompleted(Set<String> pending) throws IOException {
+                }
+            });
+
+            tracker.setBatchPolling(this.batchApiCalls);
+            tracker.setListPolling(this.listPolling);
+            tracker.setMaxRequestsPerSecond(this.maxRequestsPerSecond);
+            tracker.setMetrics(this.metrics);
+            tracker.track(started);
+            tracker.await();
+
+            if(!failed.isEmpty()) {
+                this.getCloudService().shutdownInstance(failed);
+                this.updateVmInstances(failed, true);
+            }
+
+            this.releaseProcessors(instanceIds);
+        }
+    }
+
+    /**
+     * Get the number of processors to use for a task
+     * @param taskConfig - the task config
+     * @param workItems - the work items of the task
+     * @return the number of processors
+     */
+    private int getNumberOfProcessors(TaskConfig taskConfig, List<WorkItem> workItems) {
+        int number = workItems.size();
+        Integer max = taskConfig.getMaxProcessors();
+        
+        if((max != null) && (max > 0) && (max < number)) {
+            number = max;
+        }
+        
+        return number;
+    }
+    
+    /**
+     * Re-program a number of idle processors with new metadata, batch api calls are used if enabled
+     * @param programs - processor instance id => the new metadata
+     * @param zoneId - the cloud zoneId
+     * @return the references of the metadata update operations
+     * @throws IOException if cloud api calls fail
+     */
+    private List<String> programProcessors(Map<String, VmMetaData> programs, String zoneId) throws IOException {
+        
+        List<String> operations = new ArrayList<>();
+        
+        if(programs.isEmpty()) {
+            return operations;
+        }
+        
+        // other channels send each item themselves
+        if(this.batchApiCalls && MetaDataTaskChannel.class.equals(this.taskChannel.getClass())) {
+            CloudService cloudService = this.getCloudService();
+            List<String> instanceIds = new ArrayList<>(programs.keySet());
+            
+            Map<String, VmMetaData> current = cloudService.getMetaData(instanceIds, zoneId);
+            
+            for(String instanceId: instanceIds) {
+                VmMetaData processorMetaData = current.get(instanceId);
+                
+                if(processorMetaData == null) {
+                    throw new IOException("Unable to get the metadata of processor " + instanceId);
+                }
+                
+                processorMetaData.getFollowUp(programs.get(instanceId));
+            }
+            
+            operations.addAll(cloudService.updateMetadata(programs, zoneId).values());
+            
+        } else {
+            for(Entry<String, VmMetaData> entry: programs.entrySet()) {
+                String operation = this.programProcessor(entry.getKey(), entry.getValue(), zoneId);
+                
+                if(operation != null) {
+                    operations.add(operation);
+                }
+            }
+        }
+        
+        return operations;
+    }
+    
+    /**
+     * Re-program an idle processor with new metadata, the metadata is sent through the task channel
+     * @param instanceId - the processor instance id
+     * @param metaData - the new metadata
+     * @param zoneId - the cloud zoneId
+     * @return the reference of the metadata update operation or null if the processor has already accepted it
+     * @throws IOException if cloud api calls fail
+     */
+    private String programProcessor(String instanceId, VmMetaData metaData, String zoneId) throws IOException {
+        return this.taskChannel.send(this.getCloudService(), instanceId, metaData, zoneId);
+    }
+    
+    /**
+     * Take exclusive use of up to the provided number of processors from the candidates, processors that are 
+     * used by other running tasks are skipped
+     * @param candidates - the candidate processors
+     * @param max - the maximum number of processors needed
+     * @return the leased processors
+     */
+    private List<String> leaseProcessors(List<String> candidates, int max) {
+        List<String> leased = new ArrayList<>();
+        
+        synchronized(this.leasedProcessors) {
+            for(String instanceId: candidates) {
+                if(leased.size() == max) {
+                    break;
+                }
+                
+                if(this.leasedProcessors.add(instanceId)) {
+                    leased.add(instanceId);
+                    this.idleSince.remove(instanceId);
+                }
+            }
+        }
+        
+        return leased;
+    }
+    
+    /**
+     * Release processors leased by a task
+     * @param leased - the leased processors
+     */
+    private void releaseProcessors(List<String> leased) {
+        synchronized(this.leasedProcessors) {
+            this.leasedProcessors.removeAll(leased);
+            
+            Long now = System.currentTimeMillis();
+            for(String instanceId: leased) {
+                this.idleSince.put(instanceId, now);
+            }
+        }
+    }
+    
+    /**
+     * Generate a unique instance id for a new processor, the new processor is leased to the caller
+     * @return the instance id
+     */
+    private String newInstanceId() {
+        synchronized(this.leasedProcessors) {
+            this.lastInstanceId = Math.max((new Date()).getTime(), this.lastInstanceId + 1);
+            String instanceId = VmMetaData.CLOUDEX_VM_PREFIX + this.lastInstanceId;
+            this.leasedProcessors.add(instanceId);
+            return instanceId;
+        }
+    }
+
+    /**
+     * Create the ids of new processors, with multi-slot processors these are the ids of the slots of as many 
+     * new VMs as needed, so more ids than requested can be returned. The new processors are leased
+     * @param vmConfig - the VM config of the new processors
+     * @param count - the number of processors needed
+     * @return the new processors ids
+     */
+    private List<String> newProcessorIds(VmConfig vmConfig, int count) {
+        List<String> instanceIds = new ArrayList<>();
+        int slots = this.multiSlotProcessors ? vmConfig.getSlotCount() : 1;
+        
+        synchronized(this.leasedProcessors) {
+            while(instanceIds.size() < count) {
+                String instanceId = this.newInstanceId();
+                
+                if(slots > 1) {
+                    this.leasedProcessors.remove(instanceId);
+                    
+                    for(int i = 0; i < slots; i++) {
+                        String slotId = SlotCloudService.getSlotId(instanceId, i);
+                        this.leasedProcessors.add(slotId);
+                        instanceIds.add(slotId);
+                    }
+                    
+                } else {
+                    instanceIds.add(instanceId);
+                }
+            }
+        }
+        
+        return instanceIds;
+    }
+
+    /**
+     * Update the VmInstances with start & end date
+     * @param configs - the VmConfigs of started/ended processors
+     * @param setEnd - true to update the end date on the VmInstance
+     */
+    private void updateVmInstances(List<VmConfig> configs, boolean setEnd) {
+
+        Date now = new Date();
+
+        for(VmConfig config: configs) {
+            String instanceId = config.getInstanceId();
+            VmInstance instance = this.processorInstances.get(instanceId);
+            if(instance == null) {
+                instance = new VmInstance(config, now);
+                this.processorInstances.put(instanceId, instance);
+            }
+
+            if(setEnd) {
+                instance.setEnd(now);
+                this.processors.remove(instanceId);
+                this.affinity.remove(instanceId);
+                
+                if(this.checkpoint != null) {
+                    try {
+                        this.checkpoint.processorStopped(instanceId);
+                        
+                    } catch(IOException e) {
+                        log.warn("Failed to checkpoint the shutdown of processor " + instanceId, e);
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @param instanceId - the processor instance id
+     * @return true if the processor has been shutdown
+     */
+    private boolean isShutdown(String instanceId) {
+        VmInstance instance = this.processorInstances.get(instanceId);
+        return (instance != null) && (instance.getEnd() != null);
+    }
+
+    /**
+     * Save the meta data for the provide metaData item into a file, then reference it
+     * @param metaData - metaData object
+     * @param item - the string item to save
+     * @param itemMetaDataKey - the item metadata key to use
+     * @param bucket - the cloud bucket to use for storing the file
+     * @param index - the current index
+     * @param timestamp - the timestamp
+     * @throws IOException if cloud api calls fail
+     */
+    private void saveMetaDataItemToFile(VmMetaData metaData, String item, String itemMetaDataKey, String bucket, 
+            int index, long timestamp) throws IOException {
+
+        Validate.notBlank(bucket, "bucket is needed as metadata is larger than maximum allowed.");
+
+        log.info("Metadata too large, using file. Size = " + item.length());
+        // use files instead
+        String itemFilename = new StringBuilder(itemMetaDataKey).append('_').append(timestamp)
+                .append('_').append(index).append(Constants.DOT_TEXT).toString();  
+
+        String itemFile = FileUtils.TEMP_FOLDER + itemFilename;
+        // save to file
+        FileUtils.objectToJsonFile(itemFile, ObjectUtils.csvToSet(item));
+
+        // upload the file to cloud storage
+        this.getCloudService().uploadFileToCloudStorage(itemFile, bucket);
+        // update the meta data with the file value
+        metaData.addUserValue(itemMetaDataKey + VmMetaData.LONG_METADATA_FILE_Suffix, itemFilename);
+    }
+    
+    /**
+     * Wait for the cloud operations to complete
+     * @param operations - the reference of the operations to check
+     * @param zoneId - the cloud provider zoneId
+     * @throws IOException IOException if the cloud api calls fail
+     */
+    private void waitForOperations(List<String> operations, String zoneId) throws IOException {
+        boolean success = false;
+        int retries = 0;
+        // block and wait for the meta data operations to complete
+        do {
+            try {
+                this.getCloudService().blockOnComputeOperations(operations, zoneId);
+                
+                success = true;
+                
+                retries = 0;
+                
+            } catch(IOException e) {
+                
+                log.error("Exception whilst waiting for operations completion", e);
+                
+                // retry 3 times
+                if(retries == 3) {
+                    throw e;
+                    
+                } else {
+                    
+                    retries++;
+                }
+            }
+            
+        } while(success == false);
+        
+    }
+
+    /**
+     * Wait for all the processors to complete return exceptions if they are thrown by the processors. All the
+     * processors are tracked at the same time, if the task error action is {@link ErrorAction#EXIT} then the
+     * first processor failure is thrown straightaway without waiting for the remaining processors. Processors
+     * working on pipelined items are given the next item as soon as they complete, otherwise they are given 
+     * the next item in the queue if any
+     * @param processors - the processors and the items they are working on
+     * @param queue - the items waiting for a processor
+     * @param provisioning - the new processors to start, each is tracked as soon as it's running
+     * @param zoneId - the cloud zoneId
+     * @param taskConfig - the task config
+     * @param leasedProcessors - the processors leased for the task, replacement processors are added to it
+     * @param vmsConfig - the configs of the processors started for the task, replacements are added to it
+     * @return IOException if any of the processors throws it
+     * @throws IOException if the cloud api calls fail or if a processor fails and the task error action is EXIT
+     */
+    private IOException waitForProcessors(Map<String, WorkItem> processors, Queue<WorkItem> queue, 
+            List<VmConfig> provisioning, String zoneId, TaskConfig taskConfig, List<String> leasedProcessors, 
+            List<VmConfig> vmsConfig) throws IOException {
+        
+        ProcessorTaskListener listener = new ProcessorTaskListener(processors, queue, zoneId);
+        listener.leased = leasedProcessors;
+        listener.started = vmsConfig;
+        
+        ProcessorTracker tracker = new ProcessorTracker(this.getCloudService(), zoneId, listener);
+        tracker.setBatchPolling(this.batchApiCalls);
+        tracker.setListPolling(this.listPolling);
+        tracker.setHeartbeatTimeout(this.heartbeatTimeout);
+        tracker.setMaxRequestsPerSecond(this.maxRequestsPerSecond);
+        tracker.setMetrics(this.metrics);
+        listener.tracker = tracker;
+        
+        if(taskConfig.getTimeout() != null) {
+            tracker.setTaskTimeout(TimeUnit.SECONDS.toMillis(taskConfig.getTimeout()));
+        }
+        
+        if(taskConfig.getProcessorTimeout() != null) {
+            tracker.setProcessorTimeout(TimeUnit.SECONDS.toMillis(taskConfig.getProcessorTimeout()));
+        }
+        
+        Set<String> busy = new HashSet<>(processors.keySet());
+        
+        // the spare slots of new multi-slot processors are tracked until they are ready
+        for(VmConfig config: vmsConfig) {
+            busy.add(config.getInstanceId());
+        }
+        
+        if(!provisioning.isEmpty()) {
+            
+            List<String> instanceIds = new ArrayList<>();
+            for(VmConfig config: provisioning) {
+                instanceIds.add(config.getInstanceId());
+            }
+            
+            busy.removeAll(instanceIds);
+            tracker.provision(instanceIds);
+            this.timelineProvisionStarted(provisioning);
+            
+            final ProvisioningListener provisioningListener = tracker.getProvisioningListener();
+            
+            this.getCloudService().startInstance(provisioning, new ProvisioningListener() {
+                
+                @Override
+                public void instanceReady(VmConfig config) {
+                    Coordinator.this.timelineProvisionCompleted(config, false);
+                    provisioningListener.instanceReady(config);
+                }
+                
+                @Override
+                public void instanceFailed(VmConfig config, IOException exception) {
+                    // a processor that has failed to start can't be reused
+                    Coordinator.this.processors.remove(config.getInstanceId());
+                    Coordinator.this.timelineProvisionCompleted(config, true);
+                    provisioningListener.instanceFailed(config, exception);
+                }
+            });
+        }
+        
+        for(String instanceId: busy) {
+            WorkItem workItem = processors.get(instanceId);
+            tracker.track(instanceId, (workItem != null) ? 
+                    workItem.getMetaData().getValue(VmMetaData.CLOUDEX_DELIVERY) : null);
+        }
+        tracker.await();
+        
+        // the failed items that are waiting for their backoff delay when all the processors are idle
+        while(listener.hasRetries()) {
+            listener.awaitRetries();
+            tracker.await();
+        }
+        
+        listener.addDeadLetters();
+        
+        if(this.metrics != null) {
+            this.metrics.gauge(getTaskMetricName(taskConfig, "utilisation")).set(listener.getUtilisation());
+        }
+
+        return listener.exception;
+    }
+    
+    /**
+     * Receives the processors transitions whilst a processor task is running. The start and completion
+     * times of the items are recorded, if the task enables speculation then straggler items are also given
+     * to idle processors
+     */
+    private class ProcessorTaskListener implements ProcessorTracker.Listener {
+        
+        private ProcessorTracker tracker;
+        
+        // processor => the item it's working on
+        private Map<String, WorkItem> running;
+        
+        // processor => the time it has started its current item
+        private Map<String, Long> startTimes = new HashMap<>();
+        
+        // the time the task has started and the processors given items since
+        private long created = System.currentTimeMillis();
+        
+        private Set<String> used = new HashSet<>();
+        
+        // the total duration of the completed items in milliseconds
+        private long busyTime;
+        
+        // task => the durations of its completed items in milliseconds
+        private Map<TaskConfig, List<Long>> durations = new HashMap<>();
+        
+        // task => the total number of its items
+        private Map<TaskConfig, Integer> totals = new HashMap<>();
+        
+        // items that are running on more than one processor
+        private Set<WorkItem> speculated = new HashSet<>();
+        
+        // processors that have no more items to work on
+        private List<String> idle = new ArrayList<>();
+        
+        // items waiting for a processor
+        private Queue<WorkItem> queue;
+        
+        // item => the number of times it has failed
+        private Map<WorkItem, Integer> attempts = new HashMap<>();
+        
+        // item => the processors it has failed on
+        private Map<WorkItem, Set<String>> failedOn = new HashMap<>();
+        
+        // failed items waiting to be retried
+        private List<Retry> retries = new ArrayList<>();
+        
+        // task => the items that have failed all their retries
+        private Map<TaskConfig, List<String>> deadLetters = new LinkedHashMap<>();
+        
+        // item => the number of times it was rescheduled on a replacement VM
+        private Map<WorkItem, Integer> replacements = new HashMap<>();
+        
+        // the processors leased for the task
+        private List<String> leased;
+        
+        // the configs of the processors started for the task
+        private List<VmConfig> started;
+        
+        private String zoneId;
+        
+        private IOException exception;
+        
+        /**
+         * @param running - the processors and the items they are working on
+         * @param queue - the items waiting for a processor
+         * @param zoneId - the cloud zoneId
+         */
+        ProcessorTaskListener(Map<String, WorkItem> running, Queue<WorkItem> queue, String zoneId) {
+            super();
+            this.running = new HashMap<>(running);
+            this.queue = queue;
+            this.zoneId = zoneId;
+            
+            long now = System.currentTimeMillis();
+            
+            for(String instanceId: running.keySet()) {
+                this.startTimes.put(instanceId, now);
+                this.used.add(instanceId);
+            }
+            
+            List<WorkItem> items = new ArrayList<>(running.values());
+            items.addAll(queue);
+            
+            for(WorkItem item: items) {
+                for(WorkItem next = item; next != null; next = next.getNext()) {
+                    Integer total = this.totals.get(next.getTaskConfig());
+                    this.totals.put(next.getTaskConfig(), (total == null) ? 1 : (total + 1));
+                }
+            }
+        }
+
+        @Override
+        public void processorReady(String instanceId, VmMetaData metaData) throws IOException {
+            
+            WorkItem workItem = this.running.remove(instanceId);
+            Long started = this.startTimes.remove(instanceId);
+            log.debug("Processor " + instanceId + " has completed " + workItem);
+            
+            if(dataAffinity && (metaData != null)) {
+                affinity.setCachedKeys(instanceId, metaData.getCachedKeys());
+            }
+            
+            if(workItem != null) {
+                
+                if(started != null) {
+                    TaskConfig taskConfig = workItem.getTaskConfig();
+                    
+                    if(!this.durations.containsKey(taskConfig)) {
+                        this.durations.put(taskConfig, new ArrayList<Long>());
+                    }
+                    
+                    long duration = System.currentTimeMillis() - started;
+                    this.durations.get(taskConfig).add(duration);
+                    this.busyTime += duration;
+                    
+                    if(metrics != null) {
+                        metrics.histogram(getTaskMetricName(taskConfig, "item", "duration")).record(duration);
+                    }
+                }
+                
+                if(checkpoint != null) {
+                    checkpoint.itemCompleted(getTaskIndex(workItem.getTaskConfig()), workItem.getIndex(), instanceId);
+                }
+                
+                this.timelineItem(instanceId, workItem, started, "completed");
+                
+                // stop any processor still working on the same item
+                for(String loser: this.getProcessors(workItem)) {
+                    this.cancel(loser);
+                }
+            }
+            
+            this.next(instanceId, workItem);
+        }
+
+        @Override
+        public void processorFailed(String instanceId, IOException exception) throws IOException {
+            
+            WorkItem workItem = this.running.remove(instanceId);
+            Long started = this.startTimes.remove(instanceId);
+            this.timelineItem(instanceId, workItem, started, 
+                    (exception instanceof ProcessorLostException) ? "lost" : "failed");
+            
+            if(exception instanceof ProcessorLostException) {
+                this.lost(instanceId, exception);
+                
+                // the items of a timed out task are not rescheduled
+                if((workItem != null) && !this.tracker.isTimedOut() && this.getProcessors(workItem).isEmpty() 
+                        && this.replace(workItem, instanceId)) {
+                    return;
+                }
+            }
+            
+            if((workItem != null) && !this.getProcessors(workItem).isEmpty()) {
+                log.warn("Processor " + instanceId + " has failed, item " + workItem.getIndex() 
+                        + " is still running on another processor", exception);
+                
+                // the other copy completes the item and its pipelined items
+                if(this.quarantine(instanceId)) {
+                    this.idle.remove(instanceId);
+                    
+                } else {
+                    this.next(instanceId, null);
+                }
+                return;
+            }
+            
+            if((workItem != null) && ErrorAction.RETRY.equals(workItem.getTaskConfig().getErrorAction())) {
+                this.retry(instanceId, workItem, exception);
+                return;
+            }
+            
+            this.exception = exception;
+            
+            // fail fast
+            if((workItem != null) && ErrorAction.EXIT.equals(workItem.getTaskConfig().getErrorAction())) {
+                throw exception;
+            }
+            
+            this.next(instanceId, workItem);
+        }
+        
+        @Override
+        public void roundCompleted(Set<String> pending) throws IOException {
+            
+            this.dispatchRetries();
+            
+            if(this.idle.isEmpty() || !this.queue.isEmpty() || this.tracker.isTimedOut()) {
+                return;
+            }
+            
+            long now = System.currentTimeMillis();
+            
+            for(Entry<String, WorkItem> entry: new ArrayList<>(this.running.entrySet())) {
+                
+                WorkItem workItem = entry.getValue();
+                Long started = this.startTimes.get(entry.getKey());
+                
+                if(this.idle.isEmpty()) {
+                    break;
+                }
+                
+                if((started == null) || this.speculated.contains(workItem)) {
+                    continue;
+                }
+                
+                Long median = this.getMedianDuration(workItem.getTaskConfig());
+                
+                if((median != null) && 
+                        ((now - started) > (workItem.getTaskConfig().getSpeculationThreshold() * median))) {
+                    
+                    String spare = this.idle.remove(0);
+                    
+                    log.info("Item " + workItem.getIndex() + " of task " + getTaskName(workItem.getTaskConfig()) 
+                            + " has been running on processor " + entry.getKey() + " for " + (now - started) 
+                            + "ms, median: " + median + "ms, speculatively running it on processor " + spare);
+                    
+                    this.speculated.add(workItem);
+                    this.dispatch(spare, workItem);
+                }
+            }
+        }
+        
+        /**
+         * Get the median duration of the completed items of a task if speculation is enabled for the task
+         * and most of its items are completed
+         * @param taskConfig - the task config
+         * @return the median duration in milliseconds or null if speculation doesn't apply
+         */
+        private Long getMedianDuration(TaskConfig taskConfig) {
+            
+            Long median = null;
+            List<Long> completed = this.durations.get(taskConfig);
+            Integer total = this.totals.get(taskConfig);
+            
+            if((taskConfig.getSpeculationThreshold() != null) && (completed != null) && (total != null)
+                    && (completed.size() >= (total * SPECULATION_MIN_COMPLETED))) {
+                
+                List<Long> sorted = new ArrayList<>(completed);
+                Collections.sort(sorted);
+                median = sorted.get(sorted.size() / 2);
+            }
+            
+            return median;
+        }
+        
+        /**
+         * Get the processors that are still working on the provided item
+         * @param workItem - the work item
+         * @return the processors instance ids
+         */
+        private List<String> getProcessors(WorkItem workItem) {
+            List<String> instanceIds = new ArrayList<>();
+            
+            for(Entry<String, WorkItem> entry: this.running.entrySet()) {
+                if(entry.getValue() == workItem) {
+                    instanceIds.add(entry.getKey());
+                }
+            }
+            
+            return instanceIds;
+        }
+        
+        /**
+         * Stop a processor that has lost a speculative race. A running task can't be interrupted and waiting 
+         * for the VM to be reset would delay the task, so the processor is no longer tracked and it's shut 
+         * down, the task completes without it
+         * @param instanceId - the processor instance id
+         * @throws IOException if cloud api calls fail
+         */
+        private void cancel(String instanceId) throws IOException {
+            
+            log.info("Processor " + instanceId + " has lost a speculative race, shutting it down");
+            
+            WorkItem workItem = this.running.remove(instanceId);
+            this.timelineItem(instanceId, workItem, this.startTimes.remove(instanceId), "cancelled");
+            this.tracker.untrack(instanceId);
+            
+            VmConfig config = new VmConfig();
+            config.setInstanceId(instanceId);
+            config.setZoneId(this.zoneId);
+            List<VmConfig> configs = Lists.newArrayList(config);
+            long start = System.currentTimeMillis();
+            
+            getCloudService().shutdownInstance(configs);
+            updateVmInstances(configs, true);
+            timelineShutdown(configs, start);
+        }
+        
+        /**
+         * Give the processor the next pipelined item if any, otherwise the next item in the queue. Once the 
+         * task has timed out no more items are given to processors
+         * @param instanceId - the processor instance id
+         * @param workItem - the item the processor has completed
+         * @throws IOException if cloud api calls fail
+         */
+        private void next(String instanceId, WorkItem workItem) throws IOException {
+            
+            if(isShutdown(instanceId)) {
+                return;
+            }
+            
+            if(this.tracker.isTimedOut()) {
+                this.idle.add(instanceId);
+                return;
+            }
+            
+            WorkItem next = (workItem != null) ? workItem.getNext() : null;
+            
+            if(next == null) {
+                next = this.pollRetry(instanceId);
+            }
+            
+            if(next == null) {
+                next = dataAffinity ? affinity.poll((AffinityQueue) this.queue, instanceId) : this.queue.poll();
+            }
+            
+            if(next != null) {
+                
+                log.info("Dispatching item " + next.getIndex() + " of task " + getTaskName(next.getTaskConfig()) 
+                        + " to processor " + instanceId + ", queued items: " + this.queue.size());
+                
+                this.dispatch(instanceId, next);
+            
+            } else {
+                this.idle.add(instanceId);
+            }
+        }
+        
+        /**
+         * Record the failure of an item, the item is retried after a backoff delay unless it has failed all its 
+         * retries in which case it's added to the dead letters. The processor is given its next item unless
+         * it has failed too many items and is quarantined
+         * @param instanceId - the processor instance id
+         * @param workItem - the failed item
+         * @param exception - the processor failure
+         * @throws IOException if cloud api calls fail
+         */
+        private void retry(String instanceId, WorkItem workItem, IOException exception) throws IOException {
+            
+            TaskConfig taskConfig = workItem.getTaskConfig();
+            int maxRetries = (taskConfig.getMaxRetries() != null) ? 
+                    taskConfig.getMaxRetries() : TaskConfig.DEFAULT_MAX_RETRIES;
+            
+            Integer attempt = this.attempts.get(workItem);
+            attempt = (attempt == null) ? 1 : (attempt + 1);
+            this.attempts.put(workItem, attempt);
+            
+            if(!this.failedOn.containsKey(workItem)) {
+                this.failedOn.put(workItem, new HashSet<String>());
+            }
+            this.failedOn.get(workItem).add(instanceId);
+            
+            if((attempt > maxRetries) || this.tracker.isTimedOut()) {
+                log.error("Item " + workItem.getIndex() + " of task " + getTaskName(taskConfig) + " has failed " 
+                        + attempt + " times or the task has timed out, adding it to the dead letters", exception);
+                
+                if(!this.deadLetters.containsKey(taskConfig)) {
+                    this.deadLetters.put(taskConfig, new ArrayList<String>());
+                }
+                this.deadLetters.get(taskConfig).add(workItem.getItem());
+                
+            } else {
+                long delay = (taskConfig.getRetryDelay() != null) ? 
+                        (TimeUnit.SECONDS.toMillis(taskConfig.getRetryDelay()) << (attempt - 1)) : 0;
+                
+                log.warn("Item " + workItem.getIndex() + " of task " + getTaskName(taskConfig) 
+                        + " has failed on processor " + instanceId + ", retry " + attempt + " of " + maxRetries 
+                        + " in " + delay + "ms", exception);
+                
+                this.retries.add(new Retry(workItem, System.currentTimeMillis() + delay));
+            }
+            
+            if(this.quarantine(instanceId)) {
+                this.idle.remove(instanceId);
+                
+            } else {
+                // the pipelined items of the failed item are not run
+                this.next(instanceId, null);
+            }
+            
+            this.dispatchRetries();
+        }
+        
+        /**
+         * Record the failure of a lost processor and shut it down
+         * @param instanceId - the processor instance id
+         * @param exception - the reason the processor is lost
+         */
+        private void lost(String instanceId, IOException exception) {
+            
+            VmInstance instance = processorInstances.get(instanceId);
+            
+            if((instance != null) && (instance.getVmConfig() != null) && instance.getVmConfig().isPreemptible()) {
+                log.warn("Preemptible processor " + instanceId + " is lost, it was most likely preempted: " 
+                        + exception.getMessage());
+                
+            } else {
+                log.warn("Processor " + instanceId + " is lost, shutting it down: " + exception.getMessage());
+            }
+            
+            if(instance != null) {
+                instance.setFailure(exception.getMessage());
+            }
+            
+            VmConfig config = new VmConfig();
+            config.setInstanceId(instanceId);
+            config.setZoneId(this.zoneId);
+            List<VmConfig> configs = Lists.newArrayList(config);
+            long start = System.currentTimeMillis();
+            
+            try {
+                getCloudService().shutdownInstance(configs);
+                
+            } catch(IOException e) {
+                log.warn("Failed to shutdown lost processor " + instanceId, e);
+            }
+            
+            updateVmInstances(configs, true);
+            timelineShutdown(configs, start);
+        }
+        
+        /**
+         * Re-run the item of a lost processor on an idle processor of the task if any, otherwise start a 
+         * replacement VM with the same config for the item
+         * @param workItem - the item of the lost processor
+         * @param instanceId - the lost processor instance id
+         * @return true if the item is rescheduled, false if the item was rescheduled too many times
+         * @throws IOException if cloud api calls fail
+         */
+        private boolean replace(WorkItem workItem, String instanceId) throws IOException {
+            
+            Integer count = this.replacements.get(workItem);
+            count = (count == null) ? 1 : (count + 1);
+            VmInstance instance = processorInstances.get(instanceId);
+            
+            if((count > MAX_REPLACEMENTS) || (instance == null) || (instance.getVmConfig() == null)) {
+                return false;
+            }
+            
+            this.replacements.put(workItem, count);
+            
+            if(!this.idle.isEmpty()) {
+                String spare = this.idle.remove(0);
+                
+                log.info("Rescheduling item " + workItem.getIndex() + " of task " 
+                        + getTaskName(workItem.getTaskConfig()) + " on idle processor " + spare);
+                
+                this.dispatch(spare, workItem);
+                return true;
+            }
+            
+            String replacementId = newInstanceId();
+            
+            VmConfig config = instance.getVmConfig().copy();
+            config.setInstanceId(replacementId);
+            config.setMetaData(workItem.getMetaData());
+            
+            log.info("Rescheduling item " + workItem.getIndex() + " of task " + getTaskName(workItem.getTaskConfig()) 
+                    + " on replacement processor " + replacementId);
+            
+            List<VmConfig> configs = Lists.newArrayList(config);
+            
+            this.leased.add(replacementId);
+            this.started.add(config);
+            
+            VmConfig taskVmConfig = workItem.getTaskConfig().getVmConfig();
+            if((taskVmConfig == null) || !Boolean.FALSE.equals(taskVmConfig.getReuse())) {
+                processors.add(replacementId);
+            }
+            
+            updateVmInstances(configs, false);
+            
+            Map<String, WorkItem> replacement = new HashMap<>();
+            replacement.put(replacementId, workItem);
+            
+            if(checkpoint != null) {
+                checkpointProcessors(configs, replacement);
+            }
+            
+            this.running.put(replacementId, workItem);
+            this.startTimes.put(replacementId, System.currentTimeMillis());
+            this.used.add(replacementId);
+            this.tracker.provision(replacement.keySet());
+            timelineProvisionStarted(configs);
+            
+            final ProvisioningListener provisioningListener = this.tracker.getProvisioningListener();
+            
+            getCloudService().startInstance(configs, new ProvisioningListener() {
+                
+                @Override
+                public void instanceReady(VmConfig config) {
+                    timelineProvisionCompleted(config, false);
+                    provisioningListener.instanceReady(config);
+                }
+                
+                @Override
+                public void instanceFailed(VmConfig config, IOException exception) {
+                    Coordinator.this.processors.remove(config.getInstanceId());
+                    timelineProvisionCompleted(config, true);
+                    provisioningListener.instanceFailed(config, exception);
+                }
+            });
+            
+            return true;
+        }
+        
+        /**
+         * Shutdown a processor that has failed too many items so it's no longer used by this or later tasks
+         * @param instanceId - the processor instance id
+         * @return true if the processor is quarantined
+         * @throws IOException if cloud api calls fail
+         */
+        private boolean quarantine(String instanceId) throws IOException {
+            
+            if(isShutdown(instanceId)) {
+                return true;
+            }
+            
+            Integer failures = processorFailures.get(instanceId);
+            failures = (failures == null) ? 1 : (failures + 1);
+            processorFailures.put(instanceId, failures);
+            
+            if(failures < quarantineThreshold) {
+                return false;
+            }
+            
+            log.warn("Processor " + instanceId + " has failed " + failures + " items, quarantining it");
+            
+            VmConfig config = new VmConfig();
+            config.setInstanceId(instanceId);
+            config.setZoneId(this.zoneId);
+            List<VmConfig> configs = Lists.newArrayList(config);
+            long start = System.currentTimeMillis();
+            
+            getCloudService().shutdownInstance(configs);
+            updateVmInstances(configs, true);
+            timelineShutdown(configs, start);
+            
+            return true;
+        }
+        
+        /**
+         * Remove a failed item that is due for retry and that can run on the provided processor. A failed item
+         * runs on a processor it hasn't failed on, unless it has failed on all the processors of the task
+         * @param instanceId - the processor instance id
+         * @return the item or null if none
+         */
+        private WorkItem pollRetry(String instanceId) {
+            
+            if(this.retries.isEmpty()) {
+                return null;
+            }
+            
+            long now = System.currentTimeMillis();
+            
+            Set<String> processors = new HashSet<>(this.idle);
+            processors.addAll(this.running.keySet());
+            processors.add(instanceId);
+            
+            for(Iterator<Retry> iterator = this.retries.iterator(); iterator.hasNext();) {
+                
+                Retry retry = iterator.next();
+                Set<String> failed = this.failedOn.get(retry.workItem);
+                
+                if((retry.due <= now) && (!failed.contains(instanceId) || failed.containsAll(processors))) {
+                    iterator.remove();
+                    return retry.workItem;
+                }
+            }
+            
+            return null;
+        }
+        
+        /**
+         * Give the failed items that are due for retry to the idle processors
+         * @throws IOException if cloud api calls fail
+         */
+        private void dispatchRetries() throws IOException {
+            
+            if(this.retries.isEmpty() || this.tracker.isTimedOut()) {
+                return;
+            }
+            
+            for(String instanceId: new ArrayList<>(this.idle)) {
+                
+                WorkItem workItem = this.pollRetry(instanceId);
+                
+                if(workItem != null) {
+                    log.info("Retrying item " + workItem.getIndex() + " of task " 
+                            + getTaskName(workItem.getTaskConfig()) + " on processor " + instanceId);
+                    
+                    this.idle.remove(instanceId);
+                    this.dispatch(instanceId, workItem);
+                }
+            }
+        }
+        
+        /**
+         * @return true if there are failed items waiting to be retried
+         */
+        boolean hasRetries() {
+            return !this.retries.isEmpty() && !this.tracker.isTimedOut();
+        }
+        
+        /**
+         * Called when none of the processors is busy, wait until the next failed item is due then give the
+         * due items to the idle processors. If all the processors are quarantined the items are added to the
+         * dead letters
+         * @throws IOException if cloud api calls fail
+         */
+        void awaitRetries() throws IOException {
+            
+            if(this.idle.isEmpty()) {
+                
+                for(Retry retry: this.retries) {
+                    TaskConfig taskConfig = retry.workItem.getTaskConfig();
+                    log.error("No processors left to retry item " + retry.workItem.getIndex() + " of task " 
+                            + getTaskName(taskConfig) + ", adding it to the dead letters");
+                    
+                    if(!this.deadLetters.containsKey(taskConfig)) {
+                        this.deadLetters.put(taskConfig, new ArrayList<String>());
+                    }
+                    this.deadLetters.get(taskConfig).add(retry.workItem.getItem());
+                }
+                
+                this.retries.clear();
+                return;
+            }
+            
+            long due = Long.MAX_VALUE;
+            for(Retry retry: this.retries) {
+                due = Math.min(due, retry.due);
+            }
+            
+            long delay = due - System.currentTimeMillis();
+            if(delay > 0) {
+                ApiUtils.block(delay, TimeUnit.MILLISECONDS);
+            }
+            
+            this.dispatchRetries();
+        }
+        
+        /**
+         * Add the items that have failed all their retries to the context of the tasks that have a dead 
+         * letter key. If the task has timed out, the items waiting to be retried and the queued items of 
+         * tasks with a RETRY error action are added to the dead letters as well
+         */
+        void addDeadLetters() {
+            
+            if(this.tracker.isTimedOut()) {
+                
+                List<WorkItem> remaining = new ArrayList<>(this.queue);
+                for(Retry retry: this.retries) {
+                    remaining.add(retry.workItem);
+                }
+                
+                if(!remaining.isEmpty()) {
+                    log.error("The task has timed out, " + remaining.size() + " items were not run");
+                }
+                
+                for(WorkItem workItem: remaining) {
+                    TaskConfig taskConfig = workItem.getTaskConfig();
+                    
+                    if(ErrorAction.RETRY.equals(taskConfig.getErrorAction())) {
+                        if(!this.deadLetters.containsKey(taskConfig)) {
+                            this.deadLetters.put(taskConfig, new ArrayList<String>());
+                        }
+                        this.deadLetters.get(taskConfig).add(workItem.getItem());
+                    }
+                }
+                
+                this.queue.clear();
+                this.retries.clear();
+            }
+            
+            for(TaskConfig taskConfig: this.totals.keySet()) {
+                
+                List<String> items = this.deadLetters.get(taskConfig);
+                
+                if(taskConfig.getDeadLetter() != null) {
+                    context.put(taskConfig.getDeadLetter(), (items != null) ? items : new ArrayList<String>());
+                }
+            }
+        }
+        
+        /**
+         * @return the time the processors spent on completed items divided by the time they were available 
+         * to the task, 0 if no processor was given an item
+         */
+        double getUtilisation() {
+            long available = this.used.size() * (System.currentTimeMillis() - this.created);
+            return (available > 0) ? Math.min(1d, (double) this.busyTime / available) : 0;
+        }
+        
+        /**
+         * Program a processor with an item and start tracking it
+         * @param instanceId - the processor instance id
+         * @param workItem - the item
+         * @throws IOException if cloud api calls fail
+         */
+        private void dispatch(String instanceId, WorkItem workItem) throws IOException {
+            
+            long start = System.currentTimeMillis();
+            String operation = programProcessor(instanceId, workItem.getMetaData(), this.zoneId);
+            // the metadata of the item is shared by its speculative copies
+            String delivery = workItem.getMetaData().getValue(VmMetaData.CLOUDEX_DELIVERY);
+            
+            if(operation != null) {
+                waitForOperations(Lists.newArrayList(operation), this.zoneId);
+            }
+            
+            long now = System.currentTimeMillis();
+            
+            if(timeline != null) {
+                timeline.processorSpan(instanceId, Timeline.DISPATCH, Timeline.DISPATCH, start, now, null);
             }
             
-        } while(success == false);
+            this.running.put(instanceId, workItem);
+            this.startTimes.put(instanceId, now);
+            this.used.add(instanceId);
+            this.tracker.track(instanceId, delivery);
+            
+            if(checkpoint != null) {
+                checkpoint.itemStarted(getTaskIndex(workItem.getTaskConfig()), workItem.getIndex(), instanceId);
+            }
+        }
         
+        /**
+         * Record the time a processor has spent on an item in the timeline
+         * @param instanceId - the processor instance id
+         * @param workItem - the item or null if the processor had no item
+         * @param started - the time the processor has started the item or null if unknown
+         * @param status - completed, failed, lost or cancelled
+         */
+        private void timelineItem(String instanceId, WorkItem workItem, Long started, String status) {
+            
+            if((timeline == null) || (workItem == null) || (started == null)) {
+                return;
+            }
+            
+            Map<String, Object> args = new HashMap<>();
+            args.put("task", getTaskName(workItem.getTaskConfig()));
+            args.put("index", workItem.getIndex());
+            args.put("status", status);
+            
+            timeline.processorSpan(instanceId, Timeline.ITEM, getTaskName(workItem.getTaskConfig()) + " item " 
+                    + workItem.getIndex(), started, System.currentTimeMillis(), args);
+        }
     }
 
     /**
-     * Wait for all the processors to complete return exceptions if they are thrown by the processors
-     * @param processors - the processors
-     * @param zoneId - the cloud zoneId
-     * @return IOException if any of the processors throws it
-     * @throws IOException if the cloud api calls fail
+     * Record a span of the coordinator work for a task in the timeline, ending now
+     * @param taskConfig - the task config
+     * @param category - the span category
+     * @param name - the span name
+     * @param start - the start time in milliseconds
+     * @param args - optional details of the span
      */
-    private IOException waitForProcessors(List<String> processors, String zoneId) throws IOException {
-        IOException processorException = null;
-        
-        int retries = 0;
-
-        // wait for the VMs to finish their loading
-        for(String instanceId: processors) {   
-            boolean ready = false;
-            // TODO this code waits for one processor until it's available then moves to the next
-            // need to restructure it such that each processor failure is reported immediately
-            
-            // TODO add timeout, in case one processor crashes
-            do {
-                ApiUtils.block(this.getCloudService().getApiRecheckDelay());
-                try {
-                    VmMetaData metaData = this.getCloudService().getMetaData(instanceId, zoneId);
-                    ready = ProcessorStatus.READY.equals(metaData.getProcessorStatus());
-                    // check for ERROR status
-                    if(ProcessorStatus.ERROR.equals(metaData.getProcessorStatus())) {
-                        processorException = ApiUtils.exceptionFromCloudExError(metaData, instanceId);
-                        log.error(instanceId + " processor has failed", processorException);
-                        break;
-                    }
-                    
-                    retries = 0;
-                    
-                } catch(SocketTimeoutException e) {
-                    log.warn("Timeout exception whilst waiting for processor metadata update", e);
-                
-                } catch(IOException e) {
-                    
-                    log.error("An exception occurred whilst waiting for processors", e);
-                    // retry 3 times
-                    if(retries == 3) {
-                        throw e;
-                    } else {
-                        
-                        retries++;
-                    }
-                }
-
-            } while (!ready);
+    private void timelineSpan(TaskConfig taskConfig, String category, String name, long start, 
+            Map<String, Object> args) {
+        if(this.timeline != null) {
+            this.timeline.taskSpan(this.getTaskName(taskConfig), category, name, start, System.currentTimeMillis(), 
+                    args);
+        }
+    }
+    
+    /**
+     * Record the start of the provisioning of VMs in the timeline
+     * @param configs - the VMs configs
+     */
+    private void timelineProvisionStarted(List<VmConfig> configs) {
+        if(this.timeline != null) {
+            List<String> instanceIds = new ArrayList<>();
+            for(VmConfig config: configs) {
+                instanceIds.add(config.getInstanceId());
+            }
+            this.timeline.provisionStarted(instanceIds);
+        }
+    }
+    
+    /**
+     * Record the end of the provisioning of a VM in the timeline
+     * @param config - the VM config
+     * @param failed - true if the VM has failed to start
+     */
+    private void timelineProvisionCompleted(VmConfig config, boolean failed) {
+        if(this.timeline != null) {
+            this.timeline.provisionCompleted(config.getInstanceId(), failed);
+        }
+    }
+    
+    /**
+     * Record the shutdown of VMs in the timeline, ending now
+     * @param configs - the VMs configs
+     * @param start - the time the shutdown has started in milliseconds
+     */
+    private void timelineShutdown(List<VmConfig> configs, long start) {
+        if(this.timeline != null) {
+            long end = System.currentTimeMillis();
+            for(VmConfig config: configs) {
+                this.timeline.processorSpan(config.getInstanceId(), Timeline.SHUTDOWN, Timeline.SHUTDOWN, start, 
+                        end, null);
+            }
         }
-
-        return processorException;
     }
 
     /**
@@ -649,13 +2806,14 @@ public class Coordinator extends CommonExecutable {
      * @param taskConfig - the current task config
      * @param partitionConfig - the partition config for the task
      * @param itemsKey - the key for the partition items, this is specified in the partitionConfig
+     * @param weights - populated with the weight of each item if known, e.g. for partition functions
      * @return Collection partition items
      * @throws ClassInstantiationException if the population of the bean fails
      * @throws InstancePopulationException if the population of the bean fails
      */
     @SuppressWarnings("unchecked")
     private Collection<String> getPartitionItems(TaskConfig taskConfig, PartitionConfig partitionConfig, 
-            String itemsKey) throws ClassInstantiationException, InstancePopulationException {
+            String itemsKey, List<Long> weights) throws ClassInstantiationException, InstancePopulationException {
 
         PartitionType partitionType = partitionConfig.getType();
 
@@ -691,6 +2849,10 @@ public class Coordinator extends CommonExecutable {
                 break;
     
             case FUNCTION:
+                if(partitionConfig.getPlan() != null) {
+                    this.planProcessors(taskConfig, partitionConfig);
+                }
+                
                 PartitionFunction partitionFunction = this.partitionFunctionFactory.getPartitionFunction(
                         partitionConfig, context);
                 List<Partition> partitions = partitionFunction.partition();
@@ -699,6 +2861,10 @@ public class Coordinator extends CommonExecutable {
                 }
     
                 items = Partition.joinPartitionItems(partitions);
+                
+                for(Partition partition: partitions) {
+                    weights.add(partition.sum());
+                }
     
                 // add the output of the partition function to the context
                 String output = partitionConfig.getOutput();
@@ -758,6 +2924,23 @@ public class Coordinator extends CommonExecutable {
         return (task != null) ? task.getClass().getName() : NO_TASK;
     }
 
+    /**
+     * Get the name of a task metric
+     * @param taskConfig - the task config
+     * @param parts - the parts of the metric name that follow the task name
+     * @return task.[task id or class simple name].[parts]
+     */
+    private static String getTaskMetricName(TaskConfig taskConfig, String... parts) {
+        String task = taskConfig.getId();
+        
+        if(task == null) {
+            task = StringUtils.substringAfterLast(taskConfig.getClassName(), ".");
+            task = StringUtils.isEmpty(task) ? StringUtils.defaultString(taskConfig.getClassName(), NO_TASK) : task;
+        }
+        
+        return MetricsRegistry.name(TASK_METRICS, task, MetricsRegistry.name(parts));
+    }
+
     /**
      * Get task name from a task config
      * @param taskConfig - the task config
@@ -797,6 +2980,82 @@ public class Coordinator extends CommonExecutable {
         return this.job.getData().get(key);
     }
 
+    /**
+     * Records the outcome of starting pre-warmed processors, the VMs are started in the background
+     */
+    private static class Prewarm implements ProvisioningListener {
+
+        private List<VmConfig> configs;
+
+        private List<VmConfig> failed = Collections.synchronizedList(new ArrayList<VmConfig>());
+
+        private CountDownLatch latch;
+
+        private Timeline timeline;
+
+        /**
+         * @param configs - the configs of the pre-warmed processors
+         * @param timeline - the job timeline or null
+         */
+        Prewarm(List<VmConfig> configs, Timeline timeline) {
+            this.configs = configs;
+            this.latch = new CountDownLatch(configs.size());
+            this.timeline = timeline;
+        }
+
+        @Override
+        public void instanceReady(VmConfig config) {
+            if(this.timeline != null) {
+                this.timeline.provisionCompleted(config.getInstanceId(), false);
+            }
+            this.latch.countDown();
+        }
+
+        @Override
+        public void instanceFailed(VmConfig config, IOException exception) {
+            log.warn("Failed to start pre-warmed processor " + config.getInstanceId(), exception);
+            if(this.timeline != null) {
+                this.timeline.provisionCompleted(config.getInstanceId(), true);
+            }
+            this.failed.add(config);
+            this.latch.countDown();
+        }
+
+        /**
+         * Block until all the VMs are running or have failed to start
+         * @return the configs of the VMs that have failed to start
+         * @throws IOException if interrupted
+         */
+        List<VmConfig> await() throws IOException {
+            try {
+                this.latch.await();
+
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted whilst waiting for pre-warmed processors", e);
+            }
+
+            return this.failed;
+        }
+    }
+
+    /**
+     * A failed item waiting to be retried
+     */
+    private static class Retry {
+        
+        private WorkItem workItem;
+        
+        // the time the item can be retried
+        private long due;
+        
+        Retry(WorkItem workItem, long due) {
+            super();
+            this.workItem = workItem;
+            this.due = due;
+        }
+    }
+
     /**
      * Builder for {@link Coordinator}
      * <p>
@@ -817,6 +3076,38 @@ public class Coordinator extends CommonExecutable {
 
         private boolean shutdownProcessors;
 
+        private int maxParallelTasks;
+
+        private Checkpoint checkpoint;
+
+        private boolean streamingProvisioning;
+
+        private boolean batchApiCalls;
+
+        private boolean listPolling;
+
+        private boolean prewarmProcessors;
+
+        private boolean reapIdleProcessors;
+
+        private long reapMargin = DEFAULT_REAP_MARGIN;
+
+        private boolean dataAffinity;
+
+        private boolean multiSlotProcessors;
+
+        private int quarantineThreshold = DEFAULT_QUARANTINE_THRESHOLD;
+
+        private long heartbeatTimeout;
+
+        private int maxRequestsPerSecond = ProcessorTracker.DEFAULT_MAX_REQUESTS_PER_SECOND;
+
+        private MetricsRegistry metrics;
+
+        private Timeline timeline;
+
+        private TaskChannel taskChannel;
+
         /**
          * @param job - the job to execute
          * @param cloudService - the cloud service implementation
@@ -927,6 +3218,258 @@ public class Coordinator extends CommonExecutable {
             return this;
         }
 
+        /**
+         * @return the maxParallelTasks
+         */
+        public final int getMaxParallelTasks() {
+            return maxParallelTasks;
+        }
+
+        /**
+         * @param maxParallelTasks the maximum number of tasks to run at the same time 
+         * in parallel mode, 0 for no limit
+         */
+        public final Builder setMaxParallelTasks(int maxParallelTasks) {
+            this.maxParallelTasks = maxParallelTasks;
+            return this;
+        }
+
+        /**
+         * @return the checkpoint
+         */
+        public final Checkpoint getCheckpoint() {
+            return checkpoint;
+        }
+
+        /**
+         * @param checkpoint the checkpoint used to record the progress of the job and to resume it
+         */
+        public final Builder setCheckpoint(Checkpoint checkpoint) {
+            this.checkpoint = checkpoint;
+            return this;
+        }
+
+        /**
+         * @return the streamingProvisioning
+         */
+        public final boolean isStreamingProvisioning() {
+            return streamingProvisioning;
+        }
+
+        /**
+         * @param streamingProvisioning true to start new processors concurrently and give each processor
+         * its work as soon as it's running rather than waiting for all the processors to start
+         */
+        public final Builder setStreamingProvisioning(boolean streamingProvisioning) {
+            this.streamingProvisioning = streamingProvisioning;
+            return this;
+        }
+
+        /**
+         * @return the batchApiCalls
+         */
+        public final boolean isBatchApiCalls() {
+            return batchApiCalls;
+        }
+
+        /**
+         * @param batchApiCalls true to re-program and poll the processors with batch api calls
+         */
+        public final Builder setBatchApiCalls(boolean batchApiCalls) {
+            this.batchApiCalls = batchApiCalls;
+            return this;
+        }
+
+        /**
+         * @return the listPolling
+         */
+        public final boolean isListPolling() {
+            return listPolling;
+        }
+
+        /**
+         * @param listPolling true to poll the status of all the processors with a single list call, this
+         * keeps the number of api calls per round constant regardless of the number of processors
+         */
+        public final Builder setListPolling(boolean listPolling) {
+            this.listPolling = listPolling;
+            return this;
+        }
+
+        /**
+         * @return the prewarmProcessors
+         */
+        public final boolean isPrewarmProcessors() {
+            return prewarmProcessors;
+        }
+
+        /**
+         * @param prewarmProcessors true to start the processors of the next processor task whilst the 
+         * coordinator tasks before it are running
+         */
+        public final Builder setPrewarmProcessors(boolean prewarmProcessors) {
+            this.prewarmProcessors = prewarmProcessors;
+            return this;
+        }
+
+        /**
+         * @return the reapIdleProcessors
+         */
+        public final boolean isReapIdleProcessors() {
+            return reapIdleProcessors;
+        }
+
+        /**
+         * @param reapIdleProcessors true to shutdown idle processors that are not needed by the remaining tasks
+         */
+        public final Builder setReapIdleProcessors(boolean reapIdleProcessors) {
+            this.reapIdleProcessors = reapIdleProcessors;
+            return this;
+        }
+
+        /**
+         * @return the reapMargin
+         */
+        public final long getReapMargin() {
+            return reapMargin;
+        }
+
+        /**
+         * @param reapMargin how long before the next billing increment in milliseconds an idle processor 
+         * is shutdown, this should be larger than the time it takes to shutdown a VM
+         */
+        public final Builder setReapMargin(long reapMargin) {
+            this.reapMargin = reapMargin;
+            return this;
+        }
+
+        /**
+         * @return the dataAffinity
+         */
+        public final boolean isDataAffinity() {
+            return dataAffinity;
+        }
+
+        /**
+         * @param dataAffinity true to give items to the processors that have their keys in their local cache
+         */
+        public final Builder setDataAffinity(boolean dataAffinity) {
+            this.dataAffinity = dataAffinity;
+            return this;
+        }
+
+        /**
+         * @return the multiSlotProcessors
+         */
+        public final boolean isMultiSlotProcessors() {
+            return multiSlotProcessors;
+        }
+
+        /**
+         * @param multiSlotProcessors true to give each new processor VM as many items as it has slots, the 
+         * cloud service is wrapped with a {@link SlotCloudService}
+         */
+        public final Builder setMultiSlotProcessors(boolean multiSlotProcessors) {
+            this.multiSlotProcessors = multiSlotProcessors;
+            return this;
+        }
+
+        /**
+         * @return the quarantineThreshold
+         */
+        public final int getQuarantineThreshold() {
+            return quarantineThreshold;
+        }
+
+        /**
+         * @param quarantineThreshold the number of failed items after which a processor is shutdown
+         * and no longer used, only items of tasks that retry failed items are counted
+         */
+        public final Builder setQuarantineThreshold(int quarantineThreshold) {
+            this.quarantineThreshold = quarantineThreshold;
+            return this;
+        }
+
+        /**
+         * @return the heartbeatTimeout
+         */
+        public final long getHeartbeatTimeout() {
+            return heartbeatTimeout;
+        }
+
+        /**
+         * @param heartbeatTimeout the maximum time in milliseconds the heartbeat of a busy processor can stay 
+         * unchanged before the processor is considered lost, 0 to disable. The processors must publish their 
+         * heartbeat more often than this, see {@link Processor.Builder#setHeartbeatInterval(long)}
+         */
+        public final Builder setHeartbeatTimeout(long heartbeatTimeout) {
+            this.heartbeatTimeout = heartbeatTimeout;
+            return this;
+        }
+
+        /**
+         * @return the maxRequestsPerSecond
+         */
+        public final int getMaxRequestsPerSecond() {
+            return maxRequestsPerSecond;
+        }
+
+        /**
+         * @param maxRequestsPerSecond the maximum number of processor status checks per second whilst waiting 
+         * for processors, 0 for no limit. The limit is applied by sleeping between polling rounds
+         */
+        public final Builder setMaxRequestsPerSecond(int maxRequestsPerSecond) {
+            this.maxRequestsPerSecond = maxRequestsPerSecond;
+            return this;
+        }
+
+        /**
+         * @return the metrics
+         */
+        public final MetricsRegistry getMetrics() {
+            return metrics;
+        }
+
+        /**
+         * @param metrics the registry to record the job, tasks and api calls metrics in, the cloud service
+         * is wrapped with an {@link InstrumentedCloudService}
+         */
+        public final Builder setMetrics(MetricsRegistry metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @return the timeline
+         */
+        public final Timeline getTimeline() {
+            return timeline;
+        }
+
+        /**
+         * @param timeline the timeline to record the job phases in, it's analysed and written at the end of the job
+         */
+        public final Builder setTimeline(Timeline timeline) {
+            this.timeline = timeline;
+            return this;
+        }
+
+        /**
+         * @return the taskChannel
+         */
+        public final TaskChannel getTaskChannel() {
+            return taskChannel;
+        }
+
+        /**
+         * @param taskChannel the channel the items are sent to idle processors through, the processors 
+         * metadata by default
+         */
+        public final Builder setTaskChannel(TaskChannel taskChannel) {
+            this.taskChannel = taskChannel;
+            return this;
+        }
+
     }
 
     /**
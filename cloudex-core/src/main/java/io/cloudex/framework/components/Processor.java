@@ -20,17 +20,39 @@
 package io.cloudex.framework.components;
 
 import io.cloudex.framework.CommonExecutable;
-import io.cloudex.framework.cloud.api.ApiUtils;
+import io.cloudex.framework.channel.MetaDataTaskChannel;
+import io.cloudex.framework.channel.TaskChannel;
 import io.cloudex.framework.cloud.api.CloudService;
 import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.metrics.InstrumentedCloudService;
+import io.cloudex.framework.metrics.MetricsRegistry;
+import io.cloudex.framework.task.CommonTask;
 import io.cloudex.framework.task.Task;
 import io.cloudex.framework.task.factory.TaskFactory;
 import io.cloudex.framework.task.factory.TaskFactoryImpl;
 import io.cloudex.framework.types.ProcessorStatus;
+import io.cloudex.framework.utils.Constants;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -41,6 +63,24 @@ import org.apache.commons.logging.LogFactory;
 /**
  * The CloudEx Processor component. Use the Processor.Builder to create a new instance of this class
  * 
+ * Tasks can report the items or storage objects they leave in the processor local cache, the most recent 
+ * keys are reported back to the coordinator in the processor metadata when it becomes READY.
+ * 
+ * If a heartbeat interval is set, the processor publishes the current time and the task progress in its 
+ * metadata at that interval whilst a task is running, so the coordinator can detect processors that are lost.
+ * 
+ * If a {@link MetricsRegistry} is set, the cloud service is wrapped with an {@link InstrumentedCloudService}, 
+ * the duration of each task is recorded as task.[class simple name].duration and the metrics are reported 
+ * after each task.
+ * 
+ * If the VM metadata advertises slots, see {@link VmMetaData#getSlots()}, the processor is a multi-slot 
+ * processor. Each slot runs in its own thread as a processor of its own that reads and updates its slot 
+ * metadata through a {@link SlotCloudService}, so the VM works on as many items as it has slots at the same time.
+ * 
+ * The processor receives its items through a {@link TaskChannel}, by default it waits for the coordinator to 
+ * write the items to its metadata, see {@link MetaDataTaskChannel}. The slots of a multi-slot processor always 
+ * use the metadata.
+ * 
  * @author Omer Dawelbeit (omerio)
  *
  */
@@ -48,10 +88,32 @@ public class Processor extends CommonExecutable {
 
     private static final Log log = LogFactory.getLog(Processor.class);
 
+    // the default maximum number of cached keys reported in the metadata
+    public static final int DEFAULT_MAX_CACHED_KEYS = 100;
+
     private TaskFactory taskFactory;
 
     private boolean stop;
 
+    private int maxCachedKeys;
+
+    // in milliseconds, 0 for no heartbeat
+    private long heartbeatInterval;
+
+    private ScheduledExecutorService heartbeatExecutor;
+
+    // optional, the tasks and api calls metrics
+    private MetricsRegistry metrics;
+
+    // the keys cached by the tasks, least recently used first
+    private Set<String> cachedKeys = new LinkedHashSet<>();
+
+    // the channel the items are received through
+    private TaskChannel taskChannel;
+
+    // the processors of the slots of a multi-slot processor
+    private List<Processor> slots = new CopyOnWriteArrayList<>();
+
     /**
      * 
      * @param cloudService - cloud service implementation
@@ -72,7 +134,16 @@ public class Processor extends CommonExecutable {
         Validate.notNull(builder.getCloudService(), "cloudService is required");
         
         this.taskFactory = builder.getTaskFactory();
-        this.setCloudService(builder.getCloudService());
+        this.maxCachedKeys = builder.getMaxCachedKeys();
+        this.heartbeatInterval = builder.getHeartbeatInterval();
+        this.metrics = builder.getMetrics();
+        
+        if(this.metrics != null) {
+            this.setCloudService(new InstrumentedCloudService(builder.getCloudService(), this.metrics));
+            
+        } else {
+            this.setCloudService(builder.getCloudService());
+        }
         
         if(builder.getMetaData() != null) {
             this.setMetaData(builder.getMetaData());
@@ -81,18 +152,33 @@ public class Processor extends CommonExecutable {
         if(this.taskFactory == null) {
             this.taskFactory = new TaskFactoryImpl();
         }
+        
+        this.taskChannel = builder.getTaskChannel();
+        
+        if(this.taskChannel == null) {
+            this.taskChannel = new MetaDataTaskChannel();
+        }
 
     }
 
 
     @Override
     public void run() throws IOException {
+        
+        int slots = this.getMetaData().getSlots();
+        
+        if(slots > 0) {
+            this.runSlots(slots);
+            return;
+        }
 
         String status = null;
         Stopwatch stopwatch = Stopwatch.createUnstarted();
         
         VmMetaData metaData = this.getMetaData();
         CloudService cloudService = this.getCloudService();
+        
+        this.taskChannel.open(cloudService);
 
         while(true) {
             try {
@@ -101,6 +187,7 @@ public class Processor extends CommonExecutable {
 
                     // set status to BUSY
                     metaData.setProcessorStatus(ProcessorStatus.BUSY);
+                    this.taskChannel.advertise(metaData);
                     cloudService.updateMetadata(metaData);
 
                     // run the task
@@ -109,9 +196,27 @@ public class Processor extends CommonExecutable {
                         stopwatch.start();
                         log.info("Starting processor task: " + task);
                         
-                        task.run();
+                        Heartbeat heartbeat = this.startHeartbeat(metaData, task);
+                        
+                        try {
+                            task.run();
+                            
+                        } finally {
+                            if(heartbeat != null) {
+                                heartbeat.stop();
+                            }
+                        }
+                        
+                        this.addCachedKeys(task);
                         
                         log.info("TIMER# Task " + task + " completed in: " + stopwatch);
+                        
+                        if(this.metrics != null) {
+                            this.metrics.histogram(MetricsRegistry.name("task", task.getClass().getSimpleName(), 
+                                    "duration")).record(stopwatch.elapsed(TimeUnit.MILLISECONDS));
+                            this.metrics.report();
+                        }
+                        
                         stopwatch.reset();
 
                     } else {
@@ -123,24 +228,21 @@ public class Processor extends CommonExecutable {
                     // blank the task type and set the status to READY
                     metaData.clearValues();
                     metaData.setProcessorStatus(ProcessorStatus.READY);
+                    
+                    if(!this.cachedKeys.isEmpty()) {
+                        metaData.setCachedKeys(this.cachedKeys);
+                    }
 
+                    this.taskChannel.advertise(metaData);
                     cloudService.updateMetadata(metaData);
 
                 } else {
                     log.info("will continue waiting for instructions as status is currently: " + status);
                 }
 
-                // now wait for any change in the metadata
+                // now wait for the next item
                 log.info("Waiting for new instructions from the Coordinator");
-
-                // FIXME better solution for race condition
-                // avoid race condition
-                ApiUtils.block(2);
-                metaData = cloudService.getMetaData(false);
-                // if we still have a status then wait, otherwise proceed
-                if(StringUtils.isNotBlank(metaData.getStatus())) {
-                    metaData = cloudService.getMetaData(true);
-                }
+                metaData = this.taskChannel.receive(cloudService, metaData);
 
                 // check the status in the metadata
                 status = metaData.getStatus();
@@ -157,12 +259,12 @@ public class Processor extends CommonExecutable {
                     // blank the task type and set the status to ERROR
                     metaData.clearValues();
                     metaData.exceptionToCloudExError(e);
+                    this.taskChannel.advertise(metaData);
                     cloudService.updateMetadata(metaData);
 
                     // wait until we get further instructions
-                    // now wait for any change in the metadata
                     log.info("Waiting for new instructions from the Coordinator");
-                    metaData = cloudService.getMetaData(true);
+                    metaData = this.taskChannel.receive(cloudService, metaData);
                     status = metaData.getStatus();
 
                 } catch(Exception e1) {
@@ -178,9 +280,116 @@ public class Processor extends CommonExecutable {
                 break;
             }
         }
+        
+        this.taskChannel.close();
+
+    }
 
+
+    /**
+     * Run a processor for each slot of a multi-slot processor and wait for all of them to stop
+     * @param slots - the number of slots
+     * @throws IOException if any of the slots fails
+     */
+    private void runSlots(int slots) throws IOException {
+        
+        log.info("Running " + slots + " processor slots");
+        
+        SlotCloudService cloudService = new SlotCloudService(this.getCloudService());
+        
+        ExecutorService executor = Executors.newFixedThreadPool(slots, 
+                new ThreadFactoryBuilder().setNameFormat("cloudex-slot-%d").build());
+        
+        List<Future<Void>> futures = new ArrayList<>();
+        
+        try {
+            for(int i = 0; i < slots; i++) {
+                
+                // the cloud service is already instrumented if metrics are enabled
+                final Processor processor = new Builder(cloudService.forSlot(i)).setTaskFactory(this.taskFactory)
+                        .setMaxCachedKeys(this.maxCachedKeys).setHeartbeatInterval(this.heartbeatInterval).build();
+                processor.metrics = this.metrics;
+                processor.stop = this.stop;
+                this.slots.add(processor);
+                
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        processor.run();
+                        return null;
+                    }
+                }));
+            }
+            
+            for(Future<Void> future: futures) {
+                future.get();
+            }
+            
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted whilst running the processor slots", e);
+            
+        } catch(ExecutionException e) {
+            throw new IOException("A processor slot has failed", e.getCause());
+            
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
+    /**
+     * Start publishing heartbeats for a running task if enabled
+     * @param metaData - the processor metadata
+     * @param task - the running task
+     * @return the heartbeat or null if heartbeats are disabled
+     */
+    private Heartbeat startHeartbeat(VmMetaData metaData, Task task) {
+        
+        Heartbeat heartbeat = null;
+        
+        if(this.heartbeatInterval > 0) {
+            
+            if(this.heartbeatExecutor == null) {
+                this.heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("cloudex-heartbeat").build());
+            }
+            
+            heartbeat = new Heartbeat(metaData, task);
+            heartbeat.future = this.heartbeatExecutor.scheduleWithFixedDelay(heartbeat, 0, 
+                    this.heartbeatInterval, TimeUnit.MILLISECONDS);
+        }
+        
+        return heartbeat;
+    }
+    
+    /**
+     * Add the keys cached by a task, only the most recent keys are kept
+     * @param task - the completed task
+     */
+    private void addCachedKeys(Task task) {
+        Object keys = (task.getOutput() != null) ? task.getOutput().get(Constants.CACHED_KEYS_KEY) : null;
+        
+        if(keys instanceof Collection) {
+            for(Object key: (Collection<?>) keys) {
+                // move existing keys to the end
+                this.cachedKeys.remove(key.toString());
+                this.cachedKeys.add(key.toString());
+            }
+            
+            Iterator<String> iterator = this.cachedKeys.iterator();
+            while(this.cachedKeys.size() > this.maxCachedKeys) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+    
+    /**
+     * @return the keys cached by the tasks run by this processor
+     */
+    public Set<String> getCachedKeys() {
+        return Collections.unmodifiableSet(this.cachedKeys);
+    }
 
     /**
      * Set to true to stop this processor if it's already running
@@ -188,9 +397,75 @@ public class Processor extends CommonExecutable {
      */
     public final void setStop(boolean stop) {
         this.stop = stop;
+        
+        // stop waiting for items that are pushed to the processor
+        if(stop) {
+            this.taskChannel.close();
+        }
+        
+        for(Processor slot: this.slots) {
+            slot.setStop(stop);
+        }
     }
 
 
+    /**
+     * Publishes the time and the progress of the running task in the processor metadata
+     */
+    private class Heartbeat implements Runnable {
+        
+        private VmMetaData metaData;
+        
+        private Task task;
+        
+        private ScheduledFuture<?> future;
+        
+        private boolean stopped;
+        
+        Heartbeat(VmMetaData metaData, Task task) {
+            super();
+            this.metaData = metaData;
+            this.task = task;
+        }
+
+        @Override
+        public synchronized void run() {
+            
+            if(this.stopped) {
+                return;
+            }
+            
+            this.metaData.setHeartbeat(System.currentTimeMillis());
+            
+            if(this.task instanceof CommonTask) {
+                this.metaData.setProgress(((CommonTask) this.task).getProgress());
+            }
+            
+            try {
+                CloudService cloudService = getCloudService();
+                
+                if(cloudService instanceof SlotCloudService) {
+                    // the slots of the VM write their heartbeats together
+                    ((SlotCloudService) cloudService).updateHeartbeat(this.metaData, heartbeatInterval);
+                    
+                } else {
+                    cloudService.updateMetadata(this.metaData);
+                }
+                
+            } catch(Exception e) {
+                log.warn("Failed to publish the processor heartbeat", e);
+            }
+        }
+        
+        /**
+         * Stop publishing heartbeats, once this returns no heartbeat is being published
+         */
+        synchronized void stop() {
+            this.stopped = true;
+            this.future.cancel(false);
+        }
+    }
+
     /**
      * Builder for {@link Coordinator}
      * <p>
@@ -205,6 +480,14 @@ public class Processor extends CommonExecutable {
 
         private TaskFactory taskFactory;
 
+        private int maxCachedKeys = DEFAULT_MAX_CACHED_KEYS;
+
+        private long heartbeatInterval;
+
+        private MetricsRegistry metrics;
+
+        private TaskChannel taskChannel;
+
         /**
          * @param cloudService - the cloud service implementation
          */
@@ -246,6 +529,41 @@ public class Processor extends CommonExecutable {
             return this;
         }
 
+        /**
+         * @param maxCachedKeys the maximum number of cached keys reported in the metadata, this must be
+         * small enough for the keys to fit in the metadata
+         */
+        public Builder setMaxCachedKeys(int maxCachedKeys) {
+            this.maxCachedKeys = maxCachedKeys;
+            return this;
+        }
+
+        /**
+         * @param heartbeatInterval how often in milliseconds the heartbeat is published whilst a task is 
+         * running, 0 for no heartbeat
+         */
+        public Builder setHeartbeatInterval(long heartbeatInterval) {
+            this.heartbeatInterval = heartbeatInterval;
+            return this;
+        }
+
+        /**
+         * @param metrics the registry to record the tasks and api calls metrics in, the cloud service is
+         * wrapped with an {@link InstrumentedCloudService}
+         */
+        public Builder setMetrics(MetricsRegistry metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param taskChannel the channel the items are received through, the metadata by default
+         */
+        public Builder setTaskChannel(TaskChannel taskChannel) {
+            this.taskChannel = taskChannel;
+            return this;
+        }
+
         /**
          * @return the metaData
          */
@@ -267,6 +585,34 @@ public class Processor extends CommonExecutable {
             return taskFactory;
         }
 
+        /**
+         * @return the maxCachedKeys
+         */
+        public final int getMaxCachedKeys() {
+            return maxCachedKeys;
+        }
+
+        /**
+         * @return the heartbeatInterval
+         */
+        public final long getHeartbeatInterval() {
+            return heartbeatInterval;
+        }
+
+        /**
+         * @return the metrics
+         */
+        public final MetricsRegistry getMetrics() {
+            return metrics;
+        }
+
+        /**
+         * @return the taskChannel
+         */
+        public final TaskChannel getTaskChannel() {
+            return taskChannel;
+        }
+
     }
 
 
@@ -0,0 +1,272 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.framework.components;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Assigns work items to processors based on the data each processor holds in its local cache. Processors
+ * report the keys of the items or storage objects they have cached, the keys of an item are the comma
+ * separated parts of the partition item, e.g. the files of a bin. An item is preferably given to the
+ * processor that has most of its keys cached.
+ *
+ * Items that don't overlap with any of the caches are assigned using a consistent hash ring of the processors
+ * instance ids, so the same item goes to the same processor across the tasks of a run of the job, as long as
+ * that processor is available. The processors of another run have other instance ids, so the assignment isn't
+ * kept across runs.
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+class ProcessorAffinity {
+
+    // the number of points each processor has on the hash ring
+    static final int VIRTUAL_NODES = 64;
+
+    private static final char KEY_SEPARATOR = ',';
+
+    private static final HashFunction HASH = Hashing.murmur3_32();
+
+    // processor => the keys it has cached
+    private Map<String, Set<String>> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Record the keys a processor has cached
+     * @param instanceId - the processor instance id
+     * @param keys - the cached keys
+     */
+    void setCachedKeys(String instanceId, Set<String> keys) {
+        if(keys.isEmpty()) {
+            this.caches.remove(instanceId);
+
+        } else {
+            this.caches.put(instanceId, keys);
+        }
+    }
+
+    /**
+     * @param instanceId - the processor instance id
+     * @return the keys the processor has cached, empty if none
+     */
+    Set<String> getCachedKeys(String instanceId) {
+        Set<String> keys = this.caches.get(instanceId);
+        return (keys != null) ? keys : Collections.<String>emptySet();
+    }
+
+    /**
+     * Forget the cache of a processor, e.g. when it's shutdown
+     * @param instanceId - the processor instance id
+     */
+    void remove(String instanceId) {
+        this.caches.remove(instanceId);
+    }
+
+    /**
+     * Assign work items to idle processors, items are first matched with the processors that have most
+     * of their keys cached, the remaining items are then placed on the hash ring of the processors that are
+     * still free. Each processor is assigned at most one item, items are left unassigned if there are more
+     * items than processors.
+     * @param workItems - the work items
+     * @param idleProcessors - the idle processors
+     * @return item => processor, keyed by identity
+     */
+    Map<WorkItem, String> assign(List<WorkItem> workItems, List<String> idleProcessors) {
+
+        Map<WorkItem, String> assigned = new IdentityHashMap<>();
+        Set<String> free = new HashSet<>(idleProcessors);
+
+        // all the (item, processor) pairs that share keys, most shared keys first
+        List<Match> matches = new ArrayList<>();
+
+        for(WorkItem workItem: workItems) {
+            Set<String> keys = getKeys(workItem);
+
+            for(String instanceId: idleProcessors) {
+                int score = getScore(keys, instanceId);
+                if(score > 0) {
+                    matches.add(new Match(workItem, instanceId, score));
+                }
+            }
+        }
+
+        Collections.sort(matches, new Comparator<Match>() {
+            @Override
+            public int compare(Match match1, Match match2) {
+                return Integer.compare(match2.score, match1.score);
+            }
+        });
+
+        for(Match match: matches) {
+            if(!assigned.containsKey(match.workItem) && free.contains(match.instanceId)) {
+                assigned.put(match.workItem, match.instanceId);
+                free.remove(match.instanceId);
+            }
+        }
+
+        // consistent hash fallback for the rest
+        TreeMap<Integer, String> ring = createRing(free);
+
+        for(WorkItem workItem: workItems) {
+
+            if(free.isEmpty()) {
+                break;
+            }
+
+            if(!assigned.containsKey(workItem)) {
+                String instanceId = getOwner(ring, workItem.getItem(), free);
+                assigned.put(workItem, instanceId);
+                free.remove(instanceId);
+            }
+        }
+
+        return assigned;
+    }
+
+    /**
+     * Remove and return the queued item that has most of its keys cached by the provided processor, if none
+     * of the queued items overlaps with the processor cache then the head of the queue is returned. Only the
+     * queued items that share keys with the cache are considered, using the key index of the queue
+     * @param queue - the items waiting for a processor
+     * @param instanceId - the idle processor instance id
+     * @return the next item or null if the queue is empty
+     */
+    WorkItem poll(AffinityQueue queue, String instanceId) {
+        return queue.poll(this.getCachedKeys(instanceId));
+    }
+
+    /**
+     * @param keys - the keys of an item
+     * @param instanceId - the processor instance id
+     * @return the number of keys the processor has cached
+     */
+    private int getScore(Set<String> keys, String instanceId) {
+        int score = 0;
+        Set<String> cached = this.getCachedKeys(instanceId);
+
+        if(!cached.isEmpty()) {
+            for(String key: keys) {
+                if(cached.contains(key)) {
+                    score++;
+                }
+            }
+        }
+
+        return score;
+    }
+
+    /**
+     * @param workItem - the work item
+     * @return the keys of the item
+     */
+    static Set<String> getKeys(WorkItem workItem) {
+        Set<String> keys = new HashSet<>();
+
+        if(workItem.getItem() != null) {
+            for(String key: StringUtils.split(workItem.getItem(), KEY_SEPARATOR)) {
+                keys.add(key.trim());
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * Create a hash ring with a number of virtual nodes for each processor
+     * @param instanceIds - the processors instance ids
+     * @return hash => processor
+     */
+    static TreeMap<Integer, String> createRing(Collection<String> instanceIds) {
+        TreeMap<Integer, String> ring = new TreeMap<>();
+
+        for(String instanceId: instanceIds) {
+            for(int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.put(hash(instanceId + '#' + i), instanceId);
+            }
+        }
+
+        return ring;
+    }
+
+    /**
+     * Get the processor that owns a key, the first free processor clockwise from the key hash. The processors 
+     * that are no longer free are skipped rather than removed from the ring
+     * @param ring - the hash ring
+     * @param key - the key
+     * @param free - the free processors, must be on the ring
+     * @return the processor instance id or null if none of the processors is free
+     */
+    static String getOwner(TreeMap<Integer, String> ring, String key, Set<String> free) {
+        int hash = hash(key);
+
+        for(String instanceId: ring.tailMap(hash, true).values()) {
+            if(free.contains(instanceId)) {
+                return instanceId;
+            }
+        }
+
+        for(String instanceId: ring.headMap(hash, false).values()) {
+            if(free.contains(instanceId)) {
+                return instanceId;
+            }
+        }
+
+        return null;
+    }
+
+    private static int hash(String value) {
+        return HASH.hashString(StringUtils.defaultString(value), Charsets.UTF_8).asInt();
+    }
+
+    /**
+     * An item and a processor that has some of its keys cached
+     */
+    private static class Match {
+
+        private WorkItem workItem;
+
+        private String instanceId;
+
+        private int score;
+
+        Match(WorkItem workItem, String instanceId, int score) {
+            super();
+            this.workItem = workItem;
+            this.instanceId = instanceId;
+            this.score = score;
+        }
+    }
+
+}
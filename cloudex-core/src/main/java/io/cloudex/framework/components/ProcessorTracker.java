@@ -0,0 +1,796 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.framework.components;
+
+import io.cloudex.framework.cloud.api.ApiUtils;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.api.ProvisioningListener;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.config.VmConfig;
+import io.cloudex.framework.exceptions.ProcessorException;
+import io.cloudex.framework.exceptions.ProcessorLostException;
+import io.cloudex.framework.metrics.InstrumentedCloudService;
+import io.cloudex.framework.metrics.MetricsRegistry;
+import io.cloudex.framework.types.ProcessorStatus;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Tracks the completion of busy processors. Rather than waiting on one processor at a time, every
+ * pending processor is checked in each polling round, so a READY or ERROR transition is reported to
+ * the {@link Listener} as soon as it's observed, regardless of the order in which the processors were
+ * programmed.
+ *
+ * Per-task and per-processor timeouts are enforced, a processor that exceeds its timeout is still busy
+ * and can't be given more work, so it's reported as lost with a {@link ProcessorLostException} caused by
+ * a {@link TimeoutException}. Once the task has timed out {@link #isTimedOut()} is true.
+ *
+ * The delay between rounds starts at the api recheck delay and backs off exponentially whilst no
+ * processor changes state, it's also kept above the delay needed to stay within the maximum api
+ * request rate.
+ *
+ * When batch polling is enabled the status of all the pending processors is retrieved with a single
+ * batch call per round rather than a call per processor.
+ *
+ * A processor whose VM is reported as terminated or stopped, or whose heartbeat hasn't changed within the 
+ * heartbeat timeout, is reported as failed with a {@link ProcessorLostException}.
+ *
+ * A processor that is pushed its item through a {@link io.cloudex.framework.channel.TaskChannel} can be 
+ * tracked before it has published its BUSY status, its item is then tracked by the delivery id the processor 
+ * publishes with its status, and a READY or ERROR status published for a different delivery, i.e. for the 
+ * previous item of the processor, is ignored.
+ *
+ * Processors that are still being provisioned can also be awaited, these are only polled once the
+ * {@link ProvisioningListener} of the tracker is notified that they are running.
+ *
+ * <p>
+ * Implementation is not thread-safe.
+ * </p>
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class ProcessorTracker {
+
+    private static final Log log = LogFactory.getLog(ProcessorTracker.class);
+
+    /**
+     * The default maximum delay between polling rounds in milliseconds
+     */
+    public static final long DEFAULT_MAX_DELAY = 30_000L;
+
+    /**
+     * The default maximum number of status requests per second
+     */
+    public static final int DEFAULT_MAX_REQUESTS_PER_SECOND = 20;
+
+    // the number of consecutive api errors before giving up on a processor
+    private static final int MAX_RETRIES = 3;
+
+    // the number of instances returned by each page of a list call
+    private static final int LIST_PAGE_SIZE = 500;
+
+    // the statuses of VMs that will never complete their work
+    static final Set<String> LOST_STATUSES = Sets.newHashSet("STOPPING", "STOPPED", "TERMINATED");
+
+    // the api methods used to poll the processors, as recorded by the instrumented cloud service
+    private static final String GET_META_DATA = "getMetaData";
+
+    private static final String GET_META_DATA_BATCH = "getMetaDataBatch";
+
+    private static final String GET_PROCESSORS_META_DATA = "getProcessorsMetaData";
+
+    private CloudService cloudService;
+
+    private String zoneId;
+
+    private Listener listener;
+
+    // instance id => time tracking has started
+    private Map<String, Long> pending = new LinkedHashMap<>();
+
+    // instance id => the delivery id of the item it's working on if known
+    private Map<String, String> deliveries = new HashMap<>();
+
+    // instance id => consecutive api errors
+    private Map<String, Integer> errors = new HashMap<>();
+
+    // processors that are still being provisioned
+    private Set<String> provisioning = new HashSet<>();
+
+    // provisioning notifications, these can arrive from any thread
+    private Queue<String> provisioned = new ConcurrentLinkedQueue<>();
+
+    private Map<String, IOException> provisioningFailures = new ConcurrentHashMap<>();
+
+    // timeouts in milliseconds, 0 means no timeout
+    private long taskTimeout;
+
+    private long processorTimeout;
+
+    private long heartbeatTimeout;
+
+    // true once the task has timed out
+    private boolean timedOut;
+
+    // instance id => the last heartbeat seen
+    private Map<String, Long> heartbeats = new HashMap<>();
+
+    // instance id => the time the heartbeat has last changed
+    private Map<String, Long> heartbeatTimes = new HashMap<>();
+
+    private long maxDelay = DEFAULT_MAX_DELAY;
+
+    private int maxRequestsPerSecond = DEFAULT_MAX_REQUESTS_PER_SECOND;
+
+    private boolean batchPolling;
+
+    private boolean listPolling;
+
+    // processors tracked since the last batch call
+    private Set<String> tracked = new HashSet<>();
+
+    // optional, records the api calls that are retried
+    private MetricsRegistry metrics;
+
+    /**
+     *
+     * @param cloudService - the cloud service implementation
+     * @param zoneId - the cloud zoneId of the processors
+     * @param listener - the listener to notify with processors transitions
+     */
+    public ProcessorTracker(CloudService cloudService, String zoneId, Listener listener) {
+        super();
+        Validate.notNull(cloudService, "cloudService is required");
+        Validate.notNull(listener, "listener is required");
+        this.cloudService = cloudService;
+        this.zoneId = zoneId;
+        this.listener = listener;
+    }
+
+    /**
+     * Start tracking a processor, tracking can be started whilst {@link #await()} is in progress,
+     * for example from the listener when a processor is given a new item
+     * @param instanceId - the processor instance id
+     */
+    public void track(String instanceId) {
+        this.track(instanceId, null);
+    }
+
+    /**
+     * Start tracking a processor that was sent an item with a delivery id, a status published by the processor 
+     * for a different delivery is ignored
+     * @param instanceId - the processor instance id
+     * @param delivery - the delivery id of the item or null if the item has none
+     */
+    public void track(String instanceId, String delivery) {
+        this.pending.put(instanceId, System.currentTimeMillis());
+        this.deliveries.put(instanceId, delivery);
+        this.errors.remove(instanceId);
+        this.heartbeats.remove(instanceId);
+        this.heartbeatTimes.remove(instanceId);
+        this.tracked.add(instanceId);
+    }
+
+    /**
+     * Start tracking a number of processors
+     * @param instanceIds - the processors instance ids
+     */
+    public void track(Collection<String> instanceIds) {
+        for(String instanceId: instanceIds) {
+            this.track(instanceId);
+        }
+    }
+
+    /**
+     * Stop tracking a processor without notifying the listener
+     * @param instanceId - the processor instance id
+     */
+    public void untrack(String instanceId) {
+        this.pending.remove(instanceId);
+        this.deliveries.remove(instanceId);
+        this.errors.remove(instanceId);
+        this.provisioning.remove(instanceId);
+    }
+
+    /**
+     * Wait for processors that are still being provisioned, each processor is tracked as soon as
+     * the listener returned by {@link #getProvisioningListener()} is notified that it's running
+     * @param instanceIds - the processors instance ids
+     */
+    public void provision(Collection<String> instanceIds) {
+        this.provisioning.addAll(instanceIds);
+    }
+
+    /**
+     * @return a thread-safe listener to pass to the cloud service when starting the provisioned processors
+     */
+    public ProvisioningListener getProvisioningListener() {
+        return new ProvisioningListener() {
+
+            @Override
+            public void instanceReady(VmConfig config) {
+                provisioned.add(config.getInstanceId());
+            }
+
+            @Override
+            public void instanceFailed(VmConfig config, IOException exception) {
+                provisioningFailures.put(config.getInstanceId(), exception);
+            }
+        };
+    }
+
+    /**
+     * @param instanceId - the processor instance id
+     * @return true if the processor is being tracked
+     */
+    public boolean isTracking(String instanceId) {
+        return this.pending.containsKey(instanceId);
+    }
+
+    /**
+     * @return the number of processors that are still busy
+     */
+    public int getPendingCount() {
+        return this.pending.size();
+    }
+
+    /**
+     * Block until all the tracked and provisioned processors are either ready, have failed or timed out
+     * @throws IOException if the cloud api calls fail or if thrown by the listener
+     */
+    public void await() throws IOException {
+
+        long start = System.currentTimeMillis();
+        long minDelay = TimeUnit.SECONDS.toMillis(this.cloudService.getApiRecheckDelay());
+        long delay = minDelay;
+
+        while(!this.pending.isEmpty() || !this.provisioning.isEmpty()) {
+
+            ApiUtils.block(delay, TimeUnit.MILLISECONDS);
+
+            boolean changed = this.checkProvisioning();
+
+            changed = this.poll() || changed;
+
+            if((this.taskTimeout > 0) && (!this.pending.isEmpty() || !this.provisioning.isEmpty())
+                    && ((System.currentTimeMillis() - start) > this.taskTimeout)) {
+
+                log.error("Task has timed out, busy processors: " + this.pending.keySet() 
+                        + ", provisioning processors: " + this.provisioning);
+
+                List<String> instanceIds = new ArrayList<>(this.pending.keySet());
+                instanceIds.addAll(this.provisioning);
+
+                this.timedOut = true;
+
+                for(String instanceId: instanceIds) {
+                    this.timeout(instanceId, "Task has timed out after " + this.taskTimeout + "ms");
+                }
+            }
+
+            if(!this.pending.isEmpty()) {
+                this.listener.roundCompleted(Collections.unmodifiableSet(this.pending.keySet()));
+            }
+
+            delay = this.getNextDelay(delay, minDelay, changed);
+        }
+    }
+
+    /**
+     * Start tracking the processors that are now running and report the ones that have failed to start
+     * @return true if any of the provisioned processors has changed state
+     * @throws IOException if thrown by the listener
+     */
+    private boolean checkProvisioning() throws IOException {
+
+        boolean changed = false;
+        String instanceId;
+
+        while((instanceId = this.provisioned.poll()) != null) {
+            if(this.provisioning.remove(instanceId)) {
+                log.info("Processor " + instanceId + " is running");
+                changed = true;
+                this.track(instanceId);
+            }
+        }
+
+        for(String failed: new ArrayList<>(this.provisioningFailures.keySet())) {
+
+            IOException exception = this.provisioningFailures.remove(failed);
+
+            if(this.provisioning.remove(failed)) {
+                changed = true;
+                log.error(failed + " processor has failed to start", exception);
+                this.listener.processorFailed(failed, new ProcessorException(exception.getMessage(), exception, failed));
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Check the status of every pending processor once
+     * @return true if any of the processors has changed state
+     * @throws IOException if the cloud api calls fail or if thrown by the listener
+     */
+    private boolean poll() throws IOException {
+
+        boolean changed = false;
+
+        // the listener might start tracking new processors whilst we iterate
+        List<String> instanceIds = new ArrayList<>(this.pending.keySet());
+
+        this.tracked.clear();
+        Map<String, VmMetaData> batch = null;
+
+        if(this.listPolling) {
+            batch = this.listMetaData(instanceIds);
+
+        } else if(this.batchPolling) {
+            batch = this.getMetaData(instanceIds);
+        }
+
+        for(String instanceId: instanceIds) {
+
+            Long started = this.pending.get(instanceId);
+
+            // processors tracked again by the listener after the batch call are checked next round
+            if((started == null) || ((batch != null) && this.tracked.contains(instanceId))) {
+                continue;
+            }
+
+            VmMetaData metaData = (batch != null) ? batch.get(instanceId) : this.getMetaData(instanceId);
+
+            if(metaData == null) {
+                continue;
+            }
+
+            ProcessorStatus status = this.isCurrent(instanceId, metaData) ? metaData.getProcessorStatus() : null;
+
+            if(ProcessorStatus.READY.equals(status)) {
+                changed = true;
+                this.pending.remove(instanceId);
+                this.listener.processorReady(instanceId, metaData);
+
+            } else if(ProcessorStatus.ERROR.equals(status)) {
+                changed = true;
+                this.pending.remove(instanceId);
+                IOException exception = ApiUtils.exceptionFromCloudExError(metaData, instanceId);
+                log.error(instanceId + " processor has failed", exception);
+                this.listener.processorFailed(instanceId, exception);
+
+            } else if(LOST_STATUSES.contains(metaData.getInstanceStatus())) {
+                changed = true;
+                this.lost(instanceId, "Processor instance is " + metaData.getInstanceStatus());
+
+            } else if(this.isHeartbeatStalled(instanceId, metaData, started)) {
+                changed = true;
+                this.lost(instanceId, "Processor heartbeat has stalled for more than " 
+                        + this.heartbeatTimeout + "ms");
+
+            } else if((this.processorTimeout > 0)
+                    && ((System.currentTimeMillis() - started) > this.processorTimeout)) {
+                changed = true;
+                this.timeout(instanceId, "Processor has timed out after " + this.processorTimeout + "ms");
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * @param instanceId - the processor instance id
+     * @param metaData - the processor metadata
+     * @return false if the processor has published its status for a different delivery than the one tracked
+     */
+    private boolean isCurrent(String instanceId, VmMetaData metaData) {
+        String expected = this.deliveries.get(instanceId);
+        String published = metaData.getValue(VmMetaData.CLOUDEX_DELIVERY);
+
+        return (expected == null) || (published == null) || expected.equals(published);
+    }
+
+    /**
+     * Get the metadata of a processor, api errors are retried on the next round
+     * @param instanceId - the processor instance id
+     * @return the metadata or null if it can't be retrieved this round
+     * @throws IOException if the cloud api call fails 3 times in a row
+     */
+    private VmMetaData getMetaData(String instanceId) throws IOException {
+
+        VmMetaData metaData = null;
+
+        try {
+            metaData = this.cloudService.getMetaData(instanceId, this.zoneId);
+            this.errors.remove(instanceId);
+
+        } catch(SocketTimeoutException e) {
+            log.warn("Timeout exception whilst waiting for processor metadata update", e);
+
+        } catch(IOException e) {
+            this.apiError(GET_META_DATA, instanceId, e);
+        }
+
+        return metaData;
+    }
+
+    /**
+     * Get the metadata of a number of processors with a single batch call, api errors are retried
+     * on the next round
+     * @param instanceIds - the processors instance ids
+     * @return instance id => metadata for the processors that could be retrieved this round
+     * @throws IOException if the cloud api calls fail 3 times in a row for any of the processors
+     */
+    private Map<String, VmMetaData> getMetaData(List<String> instanceIds) throws IOException {
+
+        Map<String, VmMetaData> metaData = new HashMap<>();
+
+        try {
+            metaData = this.cloudService.getMetaData(instanceIds, this.zoneId);
+
+        } catch(SocketTimeoutException e) {
+            log.warn("Timeout exception whilst waiting for processors metadata update", e);
+            return metaData;
+
+        } catch(IOException e) {
+            for(String instanceId: instanceIds) {
+                this.apiError(GET_META_DATA_BATCH, instanceId, e);
+            }
+            return metaData;
+        }
+
+        this.checkMetaData(GET_META_DATA_BATCH, instanceIds, metaData);
+
+        return metaData;
+    }
+
+    /**
+     * Get the metadata of all the processors in the zone with a single list call, api errors are retried
+     * on the next round
+     * @param instanceIds - the pending processors instance ids
+     * @return instance id => metadata for all the processors in the zone
+     * @throws IOException if the cloud api calls fail 3 times in a row for any of the pending processors
+     */
+    private Map<String, VmMetaData> listMetaData(List<String> instanceIds) throws IOException {
+
+        Map<String, VmMetaData> metaData = new HashMap<>();
+
+        try {
+            metaData = this.cloudService.getProcessorsMetaData(this.zoneId);
+
+        } catch(SocketTimeoutException e) {
+            log.warn("Timeout exception whilst listing processors metadata", e);
+            return metaData;
+
+        } catch(IOException e) {
+            for(String instanceId: instanceIds) {
+                this.apiError(GET_PROCESSORS_META_DATA, instanceId, e);
+            }
+            return metaData;
+        }
+
+        this.checkMetaData(GET_PROCESSORS_META_DATA, instanceIds, metaData);
+
+        return metaData;
+    }
+
+    /**
+     * Record an api error for each of the pending processors that is missing from a batch or list call
+     * @param method - the api method that was called
+     * @param instanceIds - the pending processors instance ids
+     * @param metaData - instance id => metadata returned by the call
+     * @throws IOException if a processor has been missing 3 times in a row
+     */
+    private void checkMetaData(String method, List<String> instanceIds, Map<String, VmMetaData> metaData) 
+            throws IOException {
+        for(String instanceId: instanceIds) {
+            if(metaData.containsKey(instanceId)) {
+                this.errors.remove(instanceId);
+
+            } else {
+                this.apiError(method, instanceId, 
+                        new IOException("Unable to get the metadata of processor " + instanceId));
+            }
+        }
+    }
+
+    /**
+     * Record an api error for a processor
+     * @param method - the api method that was called
+     * @param instanceId - the processor instance id
+     * @param e - the api error
+     * @throws IOException the api error if it has occurred 3 times in a row
+     */
+    private void apiError(String method, String instanceId, IOException e) throws IOException {
+
+        log.error("An exception occurred whilst waiting for processor: " + instanceId, e);
+
+        Integer retries = this.errors.get(instanceId);
+        retries = (retries == null) ? 1 : (retries + 1);
+
+        // retry 3 times
+        if(retries > MAX_RETRIES) {
+            throw e;
+        }
+
+        this.errors.put(instanceId, retries);
+
+        if(this.metrics != null) {
+            this.metrics.counter(InstrumentedCloudService.getRetriesName(method)).inc();
+        }
+    }
+
+    /**
+     * Check if the heartbeat of a busy processor hasn't changed within the heartbeat timeout. The time is
+     * measured locally from when the heartbeat was last seen to change, so clock skew doesn't matter
+     * @param instanceId - the processor instance id
+     * @param metaData - the processor metadata
+     * @param started - the time tracking has started
+     * @return true if heartbeat checks are enabled and the heartbeat has stalled
+     */
+    private boolean isHeartbeatStalled(String instanceId, VmMetaData metaData, long started) {
+        
+        if(this.heartbeatTimeout <= 0) {
+            return false;
+        }
+        
+        long now = System.currentTimeMillis();
+        Long heartbeat = metaData.getHeartbeat();
+        
+        if((heartbeat != null) && !heartbeat.equals(this.heartbeats.get(instanceId))) {
+            log.debug(instanceId + " processor heartbeat: " + heartbeat + ", progress: " + metaData.getProgress());
+            this.heartbeats.put(instanceId, heartbeat);
+            this.heartbeatTimes.put(instanceId, now);
+            return false;
+        }
+        
+        Long changed = this.heartbeatTimes.get(instanceId);
+        
+        return (now - ((changed != null) ? changed : started)) > this.heartbeatTimeout;
+    }
+
+    /**
+     * Stop tracking the processor and report it as lost
+     * @param instanceId - the processor instance id
+     * @param message - the reason
+     * @throws IOException if thrown by the listener
+     */
+    private void lost(String instanceId, String message) throws IOException {
+        this.untrack(instanceId);
+        IOException exception = new ProcessorLostException(message, instanceId);
+        log.error(instanceId + " processor is lost", exception);
+        this.listener.processorFailed(instanceId, exception);
+    }
+
+    /**
+     * Stop tracking the processor and report it as lost, the processor is still busy with its item
+     * @param instanceId - the processor instance id
+     * @param message - the timeout message
+     * @throws IOException if thrown by the listener
+     */
+    private void timeout(String instanceId, String message) throws IOException {
+        this.untrack(instanceId);
+        IOException exception = new ProcessorLostException(message, new TimeoutException(message), instanceId);
+        log.error(instanceId + " processor has timed out", exception);
+        this.listener.processorFailed(instanceId, exception);
+    }
+
+    /**
+     * Calculate the delay before the next polling round. The delay is reset to the minimum once a
+     * processor changes state, otherwise it's doubled up to the maximum delay. The delay is never less
+     * than the time needed to poll the pending processors at the maximum request rate, with list polling
+     * a round costs a request per page of processors rather than a request per processor.
+     * @param delay - the current delay
+     * @param minDelay - the minimum delay
+     * @param changed - true if a processor has changed state during the last round
+     * @return the next delay in milliseconds
+     */
+    long getNextDelay(long delay, long minDelay, boolean changed) {
+        long next = changed ? minDelay : Math.min(this.maxDelay, Math.max(delay * 2, minDelay));
+
+        if(this.maxRequestsPerSecond > 0) {
+            int requests = this.pending.size();
+
+            if(this.listPolling) {
+                requests = (requests + LIST_PAGE_SIZE - 1) / LIST_PAGE_SIZE;
+            }
+
+            long rateDelay = TimeUnit.SECONDS.toMillis(requests) / this.maxRequestsPerSecond;
+            next = Math.max(next, rateDelay);
+        }
+
+        return next;
+    }
+
+    /**
+     * @return true if the task has timed out, the processors that were busy have been reported as lost
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * @return the taskTimeout in milliseconds
+     */
+    public long getTaskTimeout() {
+        return taskTimeout;
+    }
+
+    /**
+     * @param taskTimeout the taskTimeout to set in milliseconds, 0 for no timeout
+     */
+    public void setTaskTimeout(long taskTimeout) {
+        this.taskTimeout = taskTimeout;
+    }
+
+    /**
+     * @return the processorTimeout in milliseconds
+     */
+    public long getProcessorTimeout() {
+        return processorTimeout;
+    }
+
+    /**
+     * @param processorTimeout the processorTimeout to set in milliseconds, 0 for no timeout
+     */
+    public void setProcessorTimeout(long processorTimeout) {
+        this.processorTimeout = processorTimeout;
+    }
+
+    /**
+     * @return the heartbeatTimeout in milliseconds
+     */
+    public long getHeartbeatTimeout() {
+        return heartbeatTimeout;
+    }
+
+    /**
+     * @param heartbeatTimeout the maximum time in milliseconds a busy processor heartbeat can stay unchanged,
+     * 0 to disable heartbeat checks. This should allow for the time a processor takes to pick up its item
+     */
+    public void setHeartbeatTimeout(long heartbeatTimeout) {
+        this.heartbeatTimeout = heartbeatTimeout;
+    }
+
+    /**
+     * @return the maxDelay in milliseconds
+     */
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    /**
+     * @param maxDelay the maxDelay to set in milliseconds
+     */
+    public void setMaxDelay(long maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * @return the maxRequestsPerSecond
+     */
+    public int getMaxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+
+    /**
+     * @param maxRequestsPerSecond the maxRequestsPerSecond to set, 0 for unlimited
+     */
+    public void setMaxRequestsPerSecond(int maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    /**
+     * @return the metrics
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param metrics the registry to record the retried processor status checks in, null for none
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the batchPolling
+     */
+    public boolean isBatchPolling() {
+        return batchPolling;
+    }
+
+    /**
+     * @param batchPolling true to get the status of all the pending processors with a single batch call
+     */
+    public void setBatchPolling(boolean batchPolling) {
+        this.batchPolling = batchPolling;
+    }
+
+    /**
+     * @return the listPolling
+     */
+    public boolean isListPolling() {
+        return listPolling;
+    }
+
+    /**
+     * @param listPolling true to get the status of all the processors in the zone with a single list call
+     * each round, this takes precedence over batch polling
+     */
+    public void setListPolling(boolean listPolling) {
+        this.listPolling = listPolling;
+    }
+
+    /**
+     * Notified as soon as a tracked processor changes state. Throwing an exception from the listener
+     * stops the tracking and propagates the exception to the caller of {@link ProcessorTracker#await()}
+     */
+    public interface Listener {
+
+        /**
+         * Called when a processor has completed its task
+         * @param instanceId - the processor instance id
+         * @param metaData - the processor metadata
+         * @throws IOException to abort tracking
+         */
+        public void processorReady(String instanceId, VmMetaData metaData) throws IOException;
+
+        /**
+         * Called when a processor has failed or timed out
+         * @param instanceId - the processor instance id
+         * @param exception - the processor exception
+         * @throws IOException to abort tracking
+         */
+        public void processorFailed(String instanceId, IOException exception) throws IOException;
+
+        /**
+         * Called at the end of each polling round whilst processors are still busy
+         * @param pending - the processors that are still busy
+         * @throws IOException to abort tracking
+         */
+        public void roundCompleted(Set<String> pending) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,814 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import io.cloudex.framework.cloud.api.ApiUtils;
+import io.cloudex.framework.cloud.api.AuthenticationProvider;
+import io.cloudex.framework.cloud.api.Callback;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.api.ProvisioningListener;
+import io.cloudex.framework.cloud.entities.BigDataTable;
+import io.cloudex.framework.cloud.entities.QueryStats;
+import io.cloudex.framework.cloud.entities.StorageObject;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.config.VmConfig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A {@link CloudService} that presents each slot of a multi-slot processor VM as a processor of its own, so
+ * the {@link Coordinator} can give a VM as many items as it has slots. A slot is identified by the VM instance 
+ * id and its index, e.g. cloudex-processor-1234#2, and its metadata is stored in the VM metadata with the keys 
+ * prefixed by its index, see {@link VmMetaData#getSlotMetaData(int)}.
+ * 
+ * The coordinator view translates the slot ids of the api calls:
+ * <ul>
+ * <li>metadata reads return the slot metadata, metadata updates replace the slot metadata in the VM metadata, 
+ * the VM metadata is read and written back with its fingerprint and the update is retried with an exponential 
+ * backoff until the update timeout if it fails, e.g. because a processor slot has updated the metadata in the 
+ * meantime</li>
+ * <li>the slots configs of a VM are started as one VM that advertises its slots in its metadata, the 
+ * provisioning listener is notified of each slot</li>
+ * <li>a VM is shutdown once all its slots are shutdown</li>
+ * </ul>
+ * 
+ * The slot view, see {@link #forSlot(int)}, is used by a {@link Processor} slot to read and update its own 
+ * metadata, the slots of a processor share the lock of their VM so their updates don't overwrite each other. The 
+ * coordinator view also locks each VM on its own whilst it updates its slots, so a slow update of one VM doesn't 
+ * hold up the updates of the others. The heartbeats 
+ * of the slots, see {@link #updateHeartbeat(VmMetaData, long)}, are written together at most once per heartbeat 
+ * interval for the whole VM, so adding slots doesn't add metadata updates that compete with each other.
+ * 
+ * Ids that are not slot ids are passed through unchanged.
+ * 
+ * <p>
+ * Implementation is thread-safe.
+ * </p>
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class SlotCloudService implements CloudService {
+
+    private static final Log log = LogFactory.getLog(SlotCloudService.class);
+
+    public static final char SLOT_SEPARATOR = '#';
+
+    // the initial and the maximum delay in milliseconds between the attempts of a metadata update
+    private static final long UPDATE_BACKOFF = 100;
+
+    private static final long MAX_UPDATE_BACKOFF = 5_000;
+
+    // how long in milliseconds a failed metadata update is retried for
+    static final long UPDATE_TIMEOUT = 60_000;
+
+    private CloudService cloudService;
+
+    // the slot of the processor view or -1 for the coordinator view
+    private int slot = -1;
+
+    // VM instance id => the lock of its metadata updates
+    private ConcurrentMap<String, ReentrantLock> locks;
+
+    // VM instance id => the ids of its slots that are not yet shutdown
+    private Map<String, Set<String>> openSlots;
+
+    // slot => the heartbeat and progress it has published that are not yet written, guarded by the lock of 
+    // the current VM and only used by the slot views
+    private Map<Integer, Map<String, Object>> heartbeats;
+
+    // the last time the VM metadata was written by a slot
+    private AtomicLong lastUpdate;
+
+    private long updateTimeout = UPDATE_TIMEOUT;
+
+    /**
+     * @param cloudService - the cloud service of the VMs
+     */
+    public SlotCloudService(CloudService cloudService) {
+        super();
+        Validate.notNull(cloudService, "cloudService is required");
+        this.cloudService = cloudService;
+        this.locks = new ConcurrentHashMap<>();
+        this.openSlots = new HashMap<>();
+        this.heartbeats = new HashMap<>();
+        this.lastUpdate = new AtomicLong();
+    }
+
+    /**
+     * @param parent - the service whose locks are shared
+     * @param slot - the slot index
+     */
+    private SlotCloudService(SlotCloudService parent, int slot) {
+        super();
+        this.cloudService = parent.cloudService;
+        this.locks = parent.locks;
+        this.openSlots = parent.openSlots;
+        this.heartbeats = parent.heartbeats;
+        this.lastUpdate = parent.lastUpdate;
+        this.updateTimeout = parent.updateTimeout;
+        this.slot = slot;
+    }
+
+    /**
+     * Get a view of the metadata of a slot of the current VM, for the processor slots
+     * @param slot - the slot index
+     * @return the slot view of this service
+     */
+    public SlotCloudService forSlot(int slot) {
+        Validate.isTrue(slot >= 0, "slot must not be negative");
+        return new SlotCloudService(this, slot);
+    }
+
+    /**
+     * @param instanceId - the VM instance id
+     * @param slot - the slot index
+     * @return the slot id
+     */
+    public static String getSlotId(String instanceId, int slot) {
+        return instanceId + SLOT_SEPARATOR + slot;
+    }
+
+    /**
+     * @param processorId - the processor id
+     * @return true if the id is the id of a slot
+     */
+    public static boolean isSlotId(String processorId) {
+        return (processorId != null) && (processorId.indexOf(SLOT_SEPARATOR) > 0);
+    }
+
+    /**
+     * @param processorId - a slot id or a VM instance id
+     * @return the instance id of the VM of the processor
+     */
+    public static String getInstanceId(String processorId) {
+        return isSlotId(processorId) ? StringUtils.substringBeforeLast(processorId, 
+                String.valueOf(SLOT_SEPARATOR)) : processorId;
+    }
+
+    /**
+     * @param slotId - the slot id
+     * @return the slot index
+     */
+    static int getSlot(String slotId) {
+        return Integer.parseInt(StringUtils.substringAfterLast(slotId, String.valueOf(SLOT_SEPARATOR)));
+    }
+
+    /**
+     * Record the slots of a VM the first time its metadata is seen, e.g. a VM adopted from a checkpoint
+     * @param instanceId - the VM instance id
+     * @param metaData - the VM metadata
+     */
+    private void addSlots(String instanceId, VmMetaData metaData) {
+        int slots = metaData.getSlots();
+
+        if(slots > 0) {
+            synchronized(this.openSlots) {
+                if(!this.openSlots.containsKey(instanceId)) {
+                    Set<String> slotIds = new HashSet<>();
+                    for(int i = 0; i < slots; i++) {
+                        slotIds.add(getSlotId(instanceId, i));
+                    }
+                    this.openSlots.put(instanceId, slotIds);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param instanceId - the VM instance id
+     * @return the lock of the metadata updates of the VM
+     */
+    private ReentrantLock getLock(String instanceId) {
+        ReentrantLock lock = this.locks.get(instanceId);
+
+        if(lock == null) {
+            lock = new ReentrantLock();
+            ReentrantLock existing = this.locks.putIfAbsent(instanceId, lock);
+
+            if(existing != null) {
+                lock = existing;
+            }
+        }
+
+        return lock;
+    }
+
+    /**
+     * Replace the metadata of a slot of the VM, the VM metadata is read, updated and written back with its 
+     * fingerprint. For the slot views, the heartbeats the other slots have published since the last update are 
+     * written with it.
+     * If the update fails, e.g. the fingerprint has changed, it's retried with an exponential backoff until
+     * the update timeout
+     * @param metaData - the slot metadata or null to only write the published heartbeats
+     * @param zoneId - the VM zone id
+     * @param instanceId - the VM instance id
+     * @param slot - the slot index
+     * @param block - true to wait for the update to complete
+     * @return the reference of the update operation
+     * @throws IOException if the update still fails at the update timeout
+     */
+    private String updateSlotMetaData(VmMetaData metaData, String zoneId, String instanceId, int slot, 
+            boolean block) throws IOException {
+
+        // the heartbeats are those of the slots of the current VM
+        boolean heartbeats = this.slot >= 0;
+        ReentrantLock lock = this.getLock(instanceId);
+        lock.lock();
+
+        try {
+            if(heartbeats && (metaData != null)) {
+                // the slot metadata has the latest heartbeat of the slot
+                this.heartbeats.remove(slot);
+            }
+
+            long deadline = System.currentTimeMillis() + this.updateTimeout;
+            long backoff = UPDATE_BACKOFF;
+
+            while(true) {
+                try {
+                    VmMetaData current = this.cloudService.getMetaData(instanceId, zoneId);
+
+                    if(metaData != null) {
+                        current.setSlotMetaData(slot, metaData);
+                    }
+
+                    if(heartbeats) {
+                        for(Entry<Integer, Map<String, Object>> entry: this.heartbeats.entrySet()) {
+                            VmMetaData slotMetaData = current.getSlotMetaData(entry.getKey());
+                            slotMetaData.getAttributes().putAll(entry.getValue());
+                            current.setSlotMetaData(entry.getKey(), slotMetaData);
+                        }
+                    }
+
+                    String operation = this.cloudService.updateMetadata(current, zoneId, instanceId, block);
+
+                    if(metaData != null) {
+                        metaData.setFingerprint(current.getFingerprint());
+                    }
+
+                    if(heartbeats) {
+                        this.heartbeats.clear();
+                        this.lastUpdate.set(System.currentTimeMillis());
+                    }
+
+                    return operation;
+
+                } catch(IOException e) {
+                    backoff = backoff(e, deadline, backoff, "slot " + slot + " of processor " + instanceId);
+                }
+            }
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait before retrying a failed metadata update, the wait is random up to the backoff so the slots that have 
+     * failed together don't retry together
+     * @param e - the update error
+     * @param deadline - the time after which the update is no longer retried
+     * @param backoff - the current backoff in milliseconds
+     * @param processors - the processors being updated
+     * @return the backoff of the next attempt
+     * @throws IOException the update error if the deadline is reached
+     */
+    private static long backoff(IOException e, long deadline, long backoff, String processors) throws IOException {
+        long delay = (long) (Math.random() * backoff) + 1;
+
+        if((System.currentTimeMillis() + delay) > deadline) {
+            throw e;
+        }
+
+        log.warn("Failed to update the metadata of " + processors + ", retrying in " + delay + "ms: " 
+                + e.getMessage());
+        ApiUtils.block(delay, TimeUnit.MILLISECONDS);
+
+        return Math.min(backoff * 2, MAX_UPDATE_BACKOFF);
+    }
+
+    /**
+     * Publish the heartbeat and the progress of the slot of this view. The heartbeat is written with the next
+     * update of the VM metadata by any of its slots, and the VM metadata is only updated for heartbeats if it
+     * hasn't been written within the interval, so the VM gets at most one heartbeat update per interval
+     * regardless of its number of slots
+     * @param metaData - the slot metadata with the heartbeat and the progress to publish
+     * @param interval - the heartbeat interval in milliseconds
+     * @throws IOException if the VM metadata update fails
+     */
+    public void updateHeartbeat(VmMetaData metaData, long interval) throws IOException {
+        Validate.isTrue(this.slot >= 0, "heartbeats are only published by the slot view");
+
+        Map<String, Object> heartbeat = new HashMap<>();
+        for(String key: new String[] {VmMetaData.CLOUDEX_HEARTBEAT, VmMetaData.CLOUDEX_PROGRESS}) {
+            if(metaData.getAttributes().containsKey(key)) {
+                heartbeat.put(key, metaData.getAttributes().get(key));
+            }
+        }
+
+        String instanceId = this.cloudService.getInstanceId();
+        ReentrantLock lock = this.getLock(instanceId);
+        lock.lock();
+
+        try {
+            this.heartbeats.put(this.slot, heartbeat);
+
+            if((System.currentTimeMillis() - this.lastUpdate.get()) >= interval) {
+                this.updateSlotMetaData(null, null, instanceId, this.slot, true);
+            }
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param updateTimeout how long in milliseconds a failed metadata update is retried for, shared with the 
+     * slot views created afterwards
+     */
+    void setUpdateTimeout(long updateTimeout) {
+        this.updateTimeout = updateTimeout;
+    }
+
+    @Override
+    public VmMetaData init() throws IOException {
+        if(this.slot < 0) {
+            return this.cloudService.init();
+        }
+
+        return this.cloudService.getMetaData(false).getSlotMetaData(this.slot);
+    }
+
+    @Override
+    public VmMetaData getMetaData(boolean waitForChange) throws IOException {
+        VmMetaData metaData = this.cloudService.getMetaData(waitForChange);
+        return (this.slot < 0) ? metaData : metaData.getSlotMetaData(this.slot);
+    }
+
+    @Override
+    public void updateMetadata(VmMetaData metaData) throws IOException {
+        if(this.slot < 0) {
+            this.cloudService.updateMetadata(metaData);
+
+        } else {
+            this.updateSlotMetaData(metaData, null, this.cloudService.getInstanceId(), this.slot, true);
+        }
+    }
+
+    @Override
+    public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+        if(!isSlotId(instanceId)) {
+            return this.cloudService.getMetaData(instanceId, zoneId);
+        }
+
+        String vmId = getInstanceId(instanceId);
+        VmMetaData metaData = this.cloudService.getMetaData(vmId, zoneId);
+        this.addSlots(vmId, metaData);
+
+        return metaData.getSlotMetaData(getSlot(instanceId));
+    }
+
+    @Override
+    public String updateMetadata(VmMetaData metaData, String zoneId, String instanceId, boolean block) 
+            throws IOException {
+        if(!isSlotId(instanceId)) {
+            return this.cloudService.updateMetadata(metaData, zoneId, instanceId, block);
+        }
+
+        return this.updateSlotMetaData(metaData, zoneId, getInstanceId(instanceId), getSlot(instanceId), block);
+    }
+
+    @Override
+    public Map<String, VmMetaData> getMetaData(List<String> instanceIds, String zoneId) throws IOException {
+        Set<String> vmIds = new LinkedHashSet<>();
+
+        for(String instanceId: instanceIds) {
+            vmIds.add(getInstanceId(instanceId));
+        }
+
+        Map<String, VmMetaData> vmMetaData = this.cloudService.getMetaData(new ArrayList<>(vmIds), zoneId);
+        Map<String, VmMetaData> metaData = new HashMap<>();
+
+        for(String instanceId: instanceIds) {
+            String vmId = getInstanceId(instanceId);
+            VmMetaData vm = vmMetaData.get(vmId);
+
+            if(vm == null) {
+                continue;
+            }
+
+            if(isSlotId(instanceId)) {
+                this.addSlots(vmId, vm);
+                metaData.put(instanceId, vm.getSlotMetaData(getSlot(instanceId)));
+
+            } else {
+                metaData.put(instanceId, vm);
+            }
+        }
+
+        return metaData;
+    }
+
+    /**
+     * The VMs that advertise slots are returned as one entry per slot
+     */
+    @Override
+    public Map<String, VmMetaData> getProcessorsMetaData(String zoneId) throws IOException {
+        Map<String, VmMetaData> metaData = new HashMap<>();
+
+        for(Entry<String, VmMetaData> entry: this.cloudService.getProcessorsMetaData(zoneId).entrySet()) {
+            VmMetaData vm = entry.getValue();
+            int slots = vm.getSlots();
+
+            if(slots > 0) {
+                this.addSlots(entry.getKey(), vm);
+
+                for(int i = 0; i < slots; i++) {
+                    metaData.put(getSlotId(entry.getKey(), i), vm.getSlotMetaData(i));
+                }
+
+            } else {
+                metaData.put(entry.getKey(), vm);
+            }
+        }
+
+        return metaData;
+    }
+
+    /**
+     * The slots of the same VM are updated with a single update of the VM metadata. The VMs with slots are locked 
+     * in the order of their ids for the duration of the update, so concurrent batches don't deadlock
+     */
+    @Override
+    public Map<String, String> updateMetadata(Map<String, VmMetaData> metaData, String zoneId) 
+            throws IOException {
+
+        // VM => its slots updates
+        Map<String, Map<Integer, VmMetaData>> slots = new LinkedHashMap<>();
+        Map<String, VmMetaData> updates = new LinkedHashMap<>();
+
+        for(Entry<String, VmMetaData> entry: metaData.entrySet()) {
+            if(isSlotId(entry.getKey())) {
+                String vmId = getInstanceId(entry.getKey());
+                if(!slots.containsKey(vmId)) {
+                    slots.put(vmId, new HashMap<Integer, VmMetaData>());
+                }
+                slots.get(vmId).put(getSlot(entry.getKey()), entry.getValue());
+
+            } else {
+                updates.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        Map<String, String> references;
+        List<ReentrantLock> locked = new ArrayList<>();
+
+        for(String vmId: new TreeSet<>(slots.keySet())) {
+            ReentrantLock lock = this.getLock(vmId);
+            lock.lock();
+            locked.add(lock);
+        }
+
+        try {
+            long deadline = System.currentTimeMillis() + this.updateTimeout;
+            long backoff = UPDATE_BACKOFF;
+
+            while(true) {
+                try {
+                    Map<String, VmMetaData> batch = new LinkedHashMap<>(updates);
+
+                    if(!slots.isEmpty()) {
+                        Map<String, VmMetaData> current = this.cloudService.getMetaData(
+                                new ArrayList<>(slots.keySet()), zoneId);
+
+                        for(Entry<String, Map<Integer, VmMetaData>> entry: slots.entrySet()) {
+                            VmMetaData vm = current.get(entry.getKey());
+
+                            if(vm == null) {
+                                throw new IOException("Unable to get the metadata of processor " + entry.getKey());
+                            }
+
+                            for(Entry<Integer, VmMetaData> slot: entry.getValue().entrySet()) {
+                                vm.setSlotMetaData(slot.getKey(), slot.getValue());
+                            }
+
+                            batch.put(entry.getKey(), vm);
+                        }
+                    }
+
+                    references = this.cloudService.updateMetadata(batch, zoneId);
+                    break;
+
+                } catch(IOException e) {
+                    backoff = backoff(e, deadline, backoff, "processors " + metaData.keySet());
+                }
+            }
+
+        } finally {
+            for(ReentrantLock lock: locked) {
+                lock.unlock();
+            }
+        }
+
+        Map<String, String> operations = new HashMap<>();
+
+        for(String instanceId: metaData.keySet()) {
+            operations.put(instanceId, references.get(getInstanceId(instanceId)));
+        }
+
+        return operations;
+    }
+
+    /**
+     * The slots of a VM share the operations of the VM metadata updates, so each operation is only waited 
+     * for once
+     */
+    @Override
+    public void blockOnComputeOperations(List<String> references, String zoneId) throws IOException {
+        this.cloudService.blockOnComputeOperations(new ArrayList<>(new LinkedHashSet<>(references)), zoneId);
+    }
+
+    /**
+     * Group the configs of the slots by VM, each group is started as one VM with the metadata of all its slots
+     * @param configs - the configs of the VMs or slots to start
+     * @param vmConfigs - populated with the VM instance id => the configs it was created from
+     * @return the configs of the VMs to start
+     */
+    private List<VmConfig> getVmConfigs(List<VmConfig> configs, Map<String, List<VmConfig>> vmConfigs) {
+
+        Map<String, List<VmConfig>> groups = new LinkedHashMap<>();
+
+        for(VmConfig config: configs) {
+            String vmId = getInstanceId(config.getInstanceId());
+            if(!groups.containsKey(vmId)) {
+                groups.put(vmId, new ArrayList<VmConfig>());
+            }
+            groups.get(vmId).add(config);
+        }
+
+        List<VmConfig> vms = new ArrayList<>();
+
+        for(Entry<String, List<VmConfig>> entry: groups.entrySet()) {
+            List<VmConfig> group = entry.getValue();
+            VmConfig first = group.get(0);
+            VmConfig vm = first;
+
+            if(isSlotId(first.getInstanceId())) {
+                vm = first.copy();
+                vm.setInstanceId(entry.getKey());
+
+                VmMetaData metaData = new VmMetaData();
+                Set<String> slotIds = new HashSet<>();
+                int slots = 0;
+
+                for(VmConfig config: group) {
+                    int slot = getSlot(config.getInstanceId());
+                    slots = Math.max(slots, slot + 1);
+                    slotIds.add(config.getInstanceId());
+                    metaData.setSlotMetaData(slot, (config.getMetaData() != null) ? 
+                            config.getMetaData() : new VmMetaData());
+                }
+
+                metaData.setSlots(slots);
+                vm.setMetaData(metaData);
+
+                synchronized(this.openSlots) {
+                    this.openSlots.put(entry.getKey(), slotIds);
+                }
+            }
+
+            vms.add(vm);
+            vmConfigs.put(vm.getInstanceId(), group);
+        }
+
+        return vms;
+    }
+
+    @Override
+    public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+        return this.cloudService.startInstance(this.getVmConfigs(configs, 
+                new HashMap<String, List<VmConfig>>()), block);
+    }
+
+    /**
+     * The listener is notified of each slot of the VMs that have started or failed to start
+     */
+    @Override
+    public void startInstance(List<VmConfig> configs, final ProvisioningListener listener) throws IOException {
+
+        final Map<String, List<VmConfig>> vmConfigs = new HashMap<>();
+        List<VmConfig> vms = this.getVmConfigs(configs, vmConfigs);
+
+        this.cloudService.startInstance(vms, new ProvisioningListener() {
+
+            @Override
+            public void instanceReady(VmConfig config) {
+                for(VmConfig slot: vmConfigs.get(config.getInstanceId())) {
+                    listener.instanceReady(slot);
+                }
+            }
+
+            @Override
+            public void instanceFailed(VmConfig config, IOException exception) {
+                for(VmConfig slot: vmConfigs.get(config.getInstanceId())) {
+                    listener.instanceFailed(slot, exception);
+                }
+            }
+        });
+    }
+
+    /**
+     * A VM is only shutdown once all its slots are shutdown
+     */
+    @Override
+    public void shutdownInstance(List<VmConfig> configs) throws IOException {
+
+        List<VmConfig> vms = new ArrayList<>();
+        Set<String> vmIds = new HashSet<>();
+
+        for(VmConfig config: configs) {
+            String instanceId = config.getInstanceId();
+
+            if(!isSlotId(instanceId)) {
+                vms.add(config);
+                continue;
+            }
+
+            String vmId = getInstanceId(instanceId);
+            boolean shutdown;
+
+            synchronized(this.openSlots) {
+                Set<String> open = this.openSlots.get(vmId);
+
+                if(open != null) {
+                    open.remove(instanceId);
+                }
+
+                shutdown = (open == null) || open.isEmpty();
+
+                if(shutdown) {
+                    this.openSlots.remove(vmId);
+                }
+            }
+
+            if(shutdown && vmIds.add(vmId)) {
+                VmConfig vm = new VmConfig();
+                vm.setInstanceId(vmId);
+                vm.setZoneId(config.getZoneId());
+                vms.add(vm);
+            }
+        }
+
+        if(!vms.isEmpty()) {
+            this.cloudService.shutdownInstance(vms);
+        }
+    }
+
+    /**
+     * @return the cloud service of the VMs
+     */
+    public CloudService getCloudService() {
+        return cloudService;
+    }
+
+    @Override
+    public void shutdownInstance() throws IOException {
+        this.cloudService.shutdownInstance();
+    }
+
+    @Override
+    public String getInstanceId() {
+        return this.cloudService.getInstanceId();
+    }
+
+    @Override
+    public void createCloudStorageBucket(String bucket, String location) throws IOException {
+        this.cloudService.createCloudStorageBucket(bucket, location);
+    }
+
+    @Override
+    public StorageObject uploadFileToCloudStorage(String filename, String bucket, Callback callback) 
+            throws IOException {
+        return this.cloudService.uploadFileToCloudStorage(filename, bucket, callback);
+    }
+
+    @Override
+    public StorageObject uploadFileToCloudStorage(String filename, String bucket) throws IOException {
+        return this.cloudService.uploadFileToCloudStorage(filename, bucket);
+    }
+
+    @Override
+    public void downloadObjectFromCloudStorage(String object, String outFile, String bucket, Callback callback) 
+            throws IOException {
+        this.cloudService.downloadObjectFromCloudStorage(object, outFile, bucket, callback);
+    }
+
+    @Override
+    public void downloadObjectFromCloudStorage(String object, String outFile, String bucket) throws IOException {
+        this.cloudService.downloadObjectFromCloudStorage(object, outFile, bucket);
+    }
+
+    @Override
+    public List<StorageObject> listCloudStorageObjects(String bucket) throws IOException {
+        return this.cloudService.listCloudStorageObjects(bucket);
+    }
+
+    @Override
+    public String loadCloudStorageFilesIntoBigData(List<String> files, BigDataTable table, boolean createTable) 
+            throws IOException {
+        return this.cloudService.loadCloudStorageFilesIntoBigData(files, table, createTable);
+    }
+
+    @Override
+    public List<String> loadLocalFilesIntoBigData(List<String> files, BigDataTable table, boolean createTable) 
+            throws IOException {
+        return this.cloudService.loadLocalFilesIntoBigData(files, table, createTable);
+    }
+
+    @Override
+    public String startBigDataQuery(String querySql) throws IOException {
+        return this.cloudService.startBigDataQuery(querySql);
+    }
+
+    @Override
+    public String startBigDataQuery(String querySql, BigDataTable table) throws IOException {
+        return this.cloudService.startBigDataQuery(querySql, table);
+    }
+
+    @Override
+    public QueryStats saveBigQueryResultsToFile(String jobId, String filename) throws IOException {
+        return this.cloudService.saveBigQueryResultsToFile(jobId, filename);
+    }
+
+    @Override
+    public QueryStats saveBigQueryResultsToFile(String jobId, String filename, String bucket, Integer minFiles, 
+            int directDownloadRowLimit) throws IOException {
+        return this.cloudService.saveBigQueryResultsToFile(jobId, filename, bucket, minFiles, directDownloadRowLimit);
+    }
+
+    @Override
+    public QueryStats saveBigQueryResultsToCloudStorage(String jobId, String bucket, String filename) 
+            throws IOException {
+        return this.cloudService.saveBigQueryResultsToCloudStorage(jobId, bucket, filename);
+    }
+
+    @Override
+    public int getMaximumMetaDataSize() {
+        return this.cloudService.getMaximumMetaDataSize();
+    }
+
+    @Override
+    public int getApiRecheckDelay() {
+        return this.cloudService.getApiRecheckDelay();
+    }
+
+    @Override
+    public void setRemote(boolean remote) {
+        this.cloudService.setRemote(remote);
+    }
+
+    @Override
+    public <T> void setAuthenticationProvider(AuthenticationProvider<T> provider) {
+        this.cloudService.setAuthenticationProvider(provider);
+    }
+
+}
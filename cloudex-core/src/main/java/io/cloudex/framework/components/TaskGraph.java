@@ -0,0 +1,298 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.framework.components;
+
+import io.cloudex.framework.config.PartitionConfig;
+import io.cloudex.framework.config.TaskConfig;
+import io.cloudex.framework.types.PartitionType;
+import io.cloudex.framework.types.TargetType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A directed acyclic graph of the tasks of a job. A task depends on an earlier task if it reads a context key
+ * (#key) that the earlier task writes, if it overwrites a key that the earlier task reads or writes, or if it
+ * explicitly lists the id of the earlier task in its dependsOn. Tasks only ever depend on tasks that precede them
+ * in the job, so the graph is acyclic by construction and running it in dependency order produces the same
+ * context as running the tasks serially.
+ *
+ * Tasks can have side effects that are not visible through the context, for example a processor task that
+ * uploads files for a later coordinator task. These must be declared with dependsOn.
+ *
+ * A processor task that is pipelined with the previous processor task runs as part of that task, so the first
+ * task of a pipeline takes over the dependencies of all the tasks in the pipeline.
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class TaskGraph {
+
+    private List<TaskConfig> tasks;
+
+    // task index => the indexes of the tasks it depends on
+    private List<TreeSet<Integer>> dependencies = new ArrayList<>();
+
+    /**
+     * @param tasks - the tasks of the job in their declared order
+     */
+    public TaskGraph(List<TaskConfig> tasks) {
+        super();
+
+        Validate.notNull(tasks, "tasks are required");
+
+        this.tasks = tasks;
+
+        // key => the last task that writes it
+        Map<String, Integer> writers = new HashMap<>();
+        // key => the tasks that read it since it was last written
+        Map<String, Set<Integer>> readers = new HashMap<>();
+        // task id => task index
+        Map<String, Integer> ids = new HashMap<>();
+
+        for(int i = 0; i < tasks.size(); i++) {
+
+            TaskConfig task = tasks.get(i);
+            TreeSet<Integer> depends = new TreeSet<>();
+
+            Set<String> inputKeys = getInputKeys(task);
+            Set<String> outputKeys = getOutputKeys(task);
+
+            for(String key: inputKeys) {
+                // a task can read its own output, for example the output of its partition function
+                if(writers.containsKey(key) && !outputKeys.contains(key)) {
+                    depends.add(writers.get(key));
+                }
+            }
+
+            for(String key: outputKeys) {
+                if(writers.containsKey(key)) {
+                    depends.add(writers.get(key));
+                }
+
+                if(readers.containsKey(key)) {
+                    depends.addAll(readers.get(key));
+                }
+            }
+
+            if(task.getDependsOn() != null) {
+                for(String id: task.getDependsOn()) {
+                    Validate.isTrue(ids.containsKey(id),
+                            "task " + task.getId() + " depends on an unknown or later task: " + id);
+                    depends.add(ids.get(id));
+                }
+            }
+
+            for(String key: inputKeys) {
+                if(!readers.containsKey(key)) {
+                    readers.put(key, new HashSet<Integer>());
+                }
+                readers.get(key).add(i);
+            }
+
+            for(String key: outputKeys) {
+                writers.put(key, i);
+                readers.remove(key);
+            }
+
+            if(task.getId() != null) {
+                ids.put(task.getId(), i);
+            }
+
+            depends.remove(i);
+            this.dependencies.add(depends);
+        }
+
+        // the first task of a pipeline waits for the dependencies of the whole pipeline
+        int first = 0;
+        for(int i = 0; i < tasks.size(); i++) {
+
+            if(isPipelined(tasks, i)) {
+                TreeSet<Integer> depends = this.dependencies.get(i);
+                this.dependencies.get(first).addAll(depends.headSet(first));
+                depends.clear();
+                depends.add(first);
+
+            } else {
+                first = i;
+            }
+        }
+    }
+
+    /**
+     * Check if the task is pipelined with the previous task, both tasks must be processor tasks
+     * @param tasks - the tasks of the job
+     * @param index - the index of the task
+     * @return true if the task at the index is pipelined with the previous task
+     */
+    public static boolean isPipelined(List<TaskConfig> tasks, int index) {
+        return (index > 0) && Boolean.TRUE.equals(tasks.get(index).getPipeline())
+                && TargetType.PROCESSOR.equals(tasks.get(index).getTarget())
+                && TargetType.PROCESSOR.equals(tasks.get(index - 1).getTarget());
+    }
+
+    /**
+     * Get the context keys read by a task
+     * @param task - the task config
+     * @return the resolved keys
+     */
+    static Set<String> getInputKeys(TaskConfig task) {
+        Set<String> keys = new HashSet<>();
+
+        if(task.getInput() != null) {
+            addKeyReferences(keys, task.getInput().values());
+        }
+
+        PartitionConfig partition = task.getPartitioning();
+
+        if(partition != null) {
+            if(partition.getInput() != null) {
+                addKeyReferences(keys, partition.getInput().values());
+            }
+
+            if(partition.getCountRef() != null) {
+                addKeyReferences(keys, Collections.singleton(partition.getCountRef()));
+            }
+        }
+
+        if(task.getVmConfigReference() != null) {
+            addKeyReferences(keys, Collections.singleton(task.getVmConfigReference()));
+        }
+
+        return keys;
+    }
+
+    /**
+     * Get the context keys written by a task
+     * @param task - the task config
+     * @return the keys
+     */
+    static Set<String> getOutputKeys(TaskConfig task) {
+        Set<String> keys = new HashSet<>();
+
+        if(task.getOutput() != null) {
+            keys.addAll(task.getOutput());
+        }
+
+        PartitionConfig partition = task.getPartitioning();
+
+        if((partition != null) && PartitionType.FUNCTION.equals(partition.getType())
+                && (partition.getOutput() != null)) {
+            keys.add(partition.getOutput());
+        }
+
+        // the items that have failed all their retries
+        if(task.getDeadLetter() != null) {
+            keys.add(task.getDeadLetter());
+        }
+
+        // the number of processors chosen by the planner
+        if((partition != null) && (partition.getPlan() != null) && (partition.getPlan().getOutput() != null)) {
+            keys.add(partition.getPlan().getOutput());
+        }
+
+        return keys;
+    }
+
+    /**
+     * Add the keys of the provided values that are context references
+     * @param keys - the keys to add to
+     * @param values - the values, e.g. #key
+     */
+    private static void addKeyReferences(Set<String> keys, Iterable<String> values) {
+        for(String value: values) {
+            if((value != null) && value.startsWith(Context.VARIABLE_PREFIX)) {
+                String key = Context.resolveKey(value);
+                if(!key.equals(value)) {
+                    keys.add(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of tasks in the graph
+     */
+    public int size() {
+        return this.tasks.size();
+    }
+
+    /**
+     * @param index - the task index
+     * @return the task at the provided index
+     */
+    public TaskConfig getTask(int index) {
+        return this.tasks.get(index);
+    }
+
+    /**
+     * @param index - the task index
+     * @return the indexes of the tasks that must complete before this task can start
+     */
+    public Set<Integer> getDependencies(int index) {
+        return Collections.unmodifiableSet(this.dependencies.get(index));
+    }
+
+    /**
+     * Get the task at the provided index along with any tasks pipelined with it
+     * @param index - the task index
+     * @return the pipelined tasks or an empty list if the task is part of the pipeline of an earlier task
+     */
+    public List<TaskConfig> getPipeline(int index) {
+        List<TaskConfig> pipeline = new ArrayList<>();
+
+        if(!isPipelined(this.tasks, index)) {
+            pipeline.add(this.tasks.get(index));
+
+            for(int i = index + 1; (i < this.tasks.size()) && isPipelined(this.tasks, i); i++) {
+                pipeline.add(this.tasks.get(i));
+            }
+        }
+
+        return pipeline;
+    }
+
+    /**
+     * Get the tasks that are ready to run
+     * @param completed - the indexes of the completed tasks
+     * @param started - the indexes of the tasks that are already started or completed
+     * @return the indexes of the tasks that have all their dependencies completed but are not yet started
+     */
+    public List<Integer> getReadyTasks(Set<Integer> completed, Set<Integer> started) {
+        List<Integer> ready = new ArrayList<>();
+
+        for(int i = 0; i < this.tasks.size(); i++) {
+            if(!started.contains(i) && completed.containsAll(this.dependencies.get(i))) {
+                ready.add(i);
+            }
+        }
+
+        return ready;
+    }
+
+}
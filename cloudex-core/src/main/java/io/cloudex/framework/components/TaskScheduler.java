@@ -0,0 +1,146 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.framework.components;
+
+import io.cloudex.framework.config.TaskConfig;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Runs the tasks of a {@link TaskGraph} in parallel, each task is started as soon as all the tasks it depends on
+ * have completed. If any task fails then no further tasks are started, the running tasks are interrupted and the
+ * failure is thrown.
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class TaskScheduler {
+
+    private static final Log log = LogFactory.getLog(TaskScheduler.class);
+
+    private TaskGraph graph;
+
+    private TaskRunner runner;
+
+    private int maxParallelTasks;
+
+    /**
+     * @param graph - the task graph to run
+     * @param runner - runs the individual tasks
+     * @param maxParallelTasks - the maximum number of tasks to run at the same time, 0 for no limit
+     */
+    public TaskScheduler(TaskGraph graph, TaskRunner runner, int maxParallelTasks) {
+        super();
+        Validate.notNull(graph, "graph is required");
+        Validate.notNull(runner, "runner is required");
+        this.graph = graph;
+        this.runner = runner;
+        this.maxParallelTasks = maxParallelTasks;
+    }
+
+    /**
+     * Run all the tasks in the graph
+     * @throws Exception the exception thrown by the first task that fails
+     */
+    public void run() throws Exception {
+
+        int size = this.graph.size();
+
+        if(size == 0) {
+            return;
+        }
+
+        int threads = ((this.maxParallelTasks > 0) && (this.maxParallelTasks < size)) ? this.maxParallelTasks : size;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<Integer> service = new ExecutorCompletionService<>(executor);
+
+        Set<Integer> completed = new HashSet<>();
+        Set<Integer> started = new HashSet<>();
+
+        try {
+
+            while(completed.size() < size) {
+
+                for(final Integer index: this.graph.getReadyTasks(completed, started)) {
+
+                    final TaskConfig taskConfig = this.graph.getTask(index);
+
+                    log.info("Scheduling task: " + taskConfig.getId() + ", dependencies: "
+                            + this.graph.getDependencies(index));
+
+                    started.add(index);
+
+                    service.submit(new Callable<Integer>() {
+
+                        @Override
+                        public Integer call() throws Exception {
+                            runner.runTask(taskConfig);
+                            return index;
+                        }
+                    });
+                }
+
+                try {
+                    completed.add(service.take().get());
+
+                } catch(ExecutionException e) {
+                    Throwable cause = e.getCause();
+
+                    if(cause instanceof Exception) {
+                        throw (Exception) cause;
+
+                    } else {
+                        throw e;
+                    }
+                }
+            }
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs an individual task of the graph
+     */
+    public interface TaskRunner {
+
+        /**
+         * Run the provided task
+         * @param taskConfig - the task config
+         * @throws Exception if the task fails
+         */
+        public void runTask(TaskConfig taskConfig) throws Exception;
+
+    }
+
+}
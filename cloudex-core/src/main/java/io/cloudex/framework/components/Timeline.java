@@ -0,0 +1,604 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import io.cloudex.framework.utils.ObjectUtils;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A timeline of the phases of a job, recorded by the {@link Coordinator} as spans on tracks. Each task has
+ * a track for its coordinator work, e.g. running a coordinator task, computing the partition items, uploading 
+ * long metadata and programming processors. Each processor has a track for its VM provisioning, the 
+ * re-programming of its metadata, the items it works on between BUSY and READY and its shutdown. The spans 
+ * on a processor track never overlap, a span that starts before the previous one has ended, e.g. an item 
+ * given to a VM that is still being provisioned, is started at the end of the previous span.
+ *
+ * The timeline is written as a Chrome trace event file that can be opened in chrome://tracing or the Perfetto 
+ * UI, along with two results of its analysis:
+ * <ul>
+ * <li>The critical path, found by walking back from the span that ended last to the span that ended last 
+ * before it started, and so on. The time on the path is broken down by category and the gaps between the 
+ * spans of the path are reported as waiting. The path is also drawn on its own track of the trace.</li>
+ * <li>The idle percentage of each processor, the time it was running but not working on an item divided by 
+ * the time it was running, i.e. from the end of its provisioning to the start of its shutdown.</li>
+ * </ul>
+ *
+ * <p>
+ * Implementation is thread-safe.
+ * </p>
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class Timeline {
+
+    private static final Log log = LogFactory.getLog(Timeline.class);
+
+    // span categories
+    public static final String TASK = "task";
+
+    public static final String PROCESSOR_TASK = "processor-task";
+
+    public static final String PARTITION = "partition";
+
+    public static final String UPLOAD = "upload";
+
+    public static final String PROVISION = "provision";
+
+    public static final String DISPATCH = "dispatch";
+
+    public static final String ITEM = "item";
+
+    public static final String SHUTDOWN = "shutdown";
+
+    // the critical path time between spans
+    public static final String WAITING = "waiting";
+
+    private static final String COORDINATOR = "coordinator";
+
+    private static final String PROCESSORS = "processors";
+
+    private static final String CRITICAL_PATH = "critical path";
+
+    private String filename;
+
+    private List<Span> spans = new ArrayList<>();
+
+    // processor => the end of the last span on its track
+    private Map<String, Long> trackEnds = new HashMap<>();
+
+    // processor => the time its provisioning has started
+    private Map<String, Long> provisioning = new HashMap<>();
+
+    /**
+     * A timeline that is only analysed, it's not written to a file
+     */
+    public Timeline() {
+        super();
+    }
+
+    /**
+     * @param filename - the trace file to write the timeline to
+     */
+    public Timeline(String filename) {
+        super();
+        Validate.notNull(filename, "filename is required");
+        this.filename = filename;
+    }
+
+    /**
+     * Record a span of the coordinator work for a task
+     * @param task - the task name
+     * @param category - the span category, e.g. {@link #PARTITION}
+     * @param name - the span name
+     * @param start - the start time in milliseconds
+     * @param end - the end time in milliseconds
+     * @param args - optional details of the span
+     */
+    public synchronized void taskSpan(String task, String category, String name, long start, long end, 
+            Map<String, Object> args) {
+        this.spans.add(new Span(false, task, category, name, start, Math.max(start, end), args));
+    }
+
+    /**
+     * Record a span of a processor
+     * @param instanceId - the processor instance id
+     * @param category - the span category, e.g. {@link #ITEM}
+     * @param name - the span name
+     * @param start - the start time in milliseconds
+     * @param end - the end time in milliseconds
+     * @param args - optional details of the span
+     */
+    public synchronized void processorSpan(String instanceId, String category, String name, long start, long end, 
+            Map<String, Object> args) {
+
+        Long trackEnd = this.trackEnds.get(instanceId);
+
+        if(trackEnd != null) {
+            start = Math.max(start, trackEnd);
+        }
+
+        end = Math.max(start, end);
+        this.trackEnds.put(instanceId, end);
+
+        this.spans.add(new Span(true, instanceId, category, name, start, end, args));
+    }
+
+    /**
+     * Record the start of the provisioning of processors
+     * @param instanceIds - the processors instance ids
+     */
+    public synchronized void provisionStarted(Collection<String> instanceIds) {
+        long now = System.currentTimeMillis();
+
+        for(String instanceId: instanceIds) {
+            this.provisioning.put(instanceId, now);
+        }
+    }
+
+    /**
+     * Record the end of the provisioning of a processor started with {@link #provisionStarted(Collection)}
+     * @param instanceId - the processor instance id
+     * @param failed - true if the processor has failed to start
+     */
+    public synchronized void provisionCompleted(String instanceId, boolean failed) {
+        Long start = this.provisioning.remove(instanceId);
+
+        if(start != null) {
+            Map<String, Object> args = null;
+
+            if(failed) {
+                args = new HashMap<>();
+                args.put("status", "failed");
+            }
+
+            this.processorSpan(instanceId, PROVISION, PROVISION, start, System.currentTimeMillis(), args);
+        }
+    }
+
+    /**
+     * @return all the spans recorded so far
+     */
+    public synchronized List<Span> getSpans() {
+        return new ArrayList<>(this.spans);
+    }
+
+    /**
+     * Find the critical path of the job, starting from the span that ended last each span on the path is 
+     * preceded by the span that ended last before it started. Processor task spans are excluded as they 
+     * contain the spans of their processors
+     * @return the spans of the critical path in time order
+     */
+    public synchronized List<Span> getCriticalPath() {
+
+        List<Span> candidates = new ArrayList<>();
+
+        for(Span span: this.spans) {
+            if(!PROCESSOR_TASK.equals(span.category)) {
+                candidates.add(span);
+            }
+        }
+
+        Collections.sort(candidates, new Comparator<Span>() {
+            @Override
+            public int compare(Span span1, Span span2) {
+                return Long.compare(span1.end, span2.end);
+            }
+        });
+
+        List<Span> path = new ArrayList<>();
+        int index = candidates.size() - 1;
+
+        while(index >= 0) {
+            Span span = candidates.get(index);
+            path.add(span);
+
+            // the last span to end no later than the start of this one
+            int low = 0;
+            int high = index - 1;
+            index = -1;
+
+            while(low <= high) {
+                int middle = (low + high) >>> 1;
+
+                if(candidates.get(middle).end <= span.start) {
+                    index = middle;
+                    low = middle + 1;
+
+                } else {
+                    high = middle - 1;
+                }
+            }
+        }
+
+        Collections.reverse(path);
+
+        return path;
+    }
+
+    /**
+     * Break down the time of the critical path by span category
+     * @param path - the critical path
+     * @return category => time in milliseconds, including the {@link #WAITING} time between spans
+     */
+    public static Map<String, Long> getCategoryTimes(List<Span> path) {
+        Map<String, Long> times = new TreeMap<>();
+        long waiting = 0;
+        Span previous = null;
+
+        for(Span span: path) {
+            Long time = times.get(span.category);
+            times.put(span.category, ((time != null) ? time : 0) + span.getDuration());
+
+            if(previous != null) {
+                waiting += span.start - previous.end;
+            }
+
+            previous = span;
+        }
+
+        times.put(WAITING, waiting);
+
+        return times;
+    }
+
+    /**
+     * Get the idle percentage of each processor, the time it was running but not working on an item
+     * divided by the time it was running
+     * @return processor => idle percentage
+     */
+    public synchronized Map<String, Double> getIdle() {
+
+        // processor => running start, running end, busy time
+        Map<String, long []> processors = new TreeMap<>();
+
+        for(Span span: this.spans) {
+
+            if(!span.processor) {
+                continue;
+            }
+
+            long [] times = processors.get(span.track);
+
+            if(times == null) {
+                times = new long [] { Long.MAX_VALUE, Long.MIN_VALUE, 0 };
+                processors.put(span.track, times);
+            }
+
+            if(PROVISION.equals(span.category)) {
+                times[0] = Math.min(times[0], span.end);
+
+            } else if(SHUTDOWN.equals(span.category)) {
+                times[1] = Math.max(times[1], span.start);
+
+            } else {
+                times[0] = Math.min(times[0], span.start);
+                times[1] = Math.max(times[1], span.end);
+
+                if(ITEM.equals(span.category)) {
+                    times[2] += span.getDuration();
+                }
+            }
+        }
+
+        Map<String, Double> idle = new LinkedHashMap<>();
+
+        for(Entry<String, long []> entry: processors.entrySet()) {
+            long [] times = entry.getValue();
+            long running = times[1] - times[0];
+
+            if(running > 0) {
+                idle.put(entry.getKey(), 100d * Math.max(0, running - times[2]) / running);
+            }
+        }
+
+        return idle;
+    }
+
+    /**
+     * Log a summary of the critical path and the processors idle time and write the trace file if any
+     * @throws IOException if the trace file can't be written
+     */
+    public synchronized void write() throws IOException {
+
+        List<Span> path = this.getCriticalPath();
+        Map<String, Long> times = getCategoryTimes(path);
+        Map<String, Double> idle = this.getIdle();
+
+        this.logSummary(path, times, idle);
+
+        if(this.filename == null) {
+            return;
+        }
+
+        long origin = Long.MAX_VALUE;
+        for(Span span: this.spans) {
+            origin = Math.min(origin, span.start);
+        }
+
+        List<Map<String, Object>> events = new ArrayList<>();
+        events.add(createMetadataEvent("process_name", 1, null, COORDINATOR));
+        events.add(createMetadataEvent("process_name", 2, null, PROCESSORS));
+        events.add(createMetadataEvent("process_name", 3, null, CRITICAL_PATH));
+
+        // track => thread id
+        Map<String, Integer> tasks = new HashMap<>();
+        Map<String, Integer> processors = new HashMap<>();
+
+        for(Span span: this.spans) {
+            Map<String, Integer> tracks = span.processor ? processors : tasks;
+            int pid = span.processor ? 2 : 1;
+            Integer tid = tracks.get(span.track);
+
+            if(tid == null) {
+                tid = tracks.size() + 1;
+                tracks.put(span.track, tid);
+                events.add(createMetadataEvent("thread_name", pid, tid, span.track));
+            }
+
+            events.add(createEvent(span, origin, pid, tid));
+        }
+
+        for(Span span: path) {
+            events.add(createEvent(span, origin, 3, 1));
+        }
+
+        Map<String, Object> criticalPath = new LinkedHashMap<>();
+        criticalPath.put("duration", path.isEmpty() ? 0 : (path.get(path.size() - 1).end - path.get(0).start));
+        criticalPath.put("categories", times);
+
+        Map<String, Object> otherData = new LinkedHashMap<>();
+        otherData.put("criticalPath", criticalPath);
+        otherData.put("idlePercentage", idle);
+
+        Map<String, Object> trace = new LinkedHashMap<>();
+        trace.put("traceEvents", events);
+        trace.put("displayTimeUnit", "ms");
+        trace.put("otherData", otherData);
+
+        try(Writer writer = new FileWriter(this.filename)) {
+            ObjectUtils.GSON.toJson(trace, writer);
+        }
+
+        log.info("Job timeline written to " + this.filename);
+    }
+
+    /**
+     * Log the time of the critical path by category, its longest span and the most idle processor
+     * @param path - the critical path
+     * @param times - category => time on the critical path
+     * @param idle - processor => idle percentage
+     */
+    private void logSummary(List<Span> path, Map<String, Long> times, Map<String, Double> idle) {
+
+        if(path.isEmpty()) {
+            return;
+        }
+
+        long duration = path.get(path.size() - 1).end - path.get(0).start;
+        StringBuilder summary = new StringBuilder("TIMER# Critical path: ")
+            .append(String.format("%.1fs", duration / 1000d));
+
+        for(Entry<String, Long> entry: times.entrySet()) {
+            double percentage = (duration > 0) ? (100d * entry.getValue() / duration) : 0;
+            summary.append(String.format(", %s: %.1f%%", entry.getKey(), percentage));
+        }
+
+        Span longest = path.get(0);
+        for(Span span: path) {
+            if(span.getDuration() > longest.getDuration()) {
+                longest = span;
+            }
+        }
+
+        summary.append(", longest: ").append(longest);
+
+        log.info(summary);
+
+        if(!idle.isEmpty()) {
+            double total = 0;
+            Entry<String, Double> most = null;
+
+            for(Entry<String, Double> entry: idle.entrySet()) {
+                total += entry.getValue();
+
+                if((most == null) || (entry.getValue() > most.getValue())) {
+                    most = entry;
+                }
+            }
+
+            log.info(String.format("Processors idle: %.1f%% on average, most idle: %s %.1f%%", 
+                    total / idle.size(), most.getKey(), most.getValue()));
+        }
+    }
+
+    /**
+     * @param name - process_name or thread_name
+     * @param pid - the process id
+     * @param tid - the thread id or null for a process
+     * @param value - the process or thread name
+     * @return a trace metadata event
+     */
+    private static Map<String, Object> createMetadataEvent(String name, int pid, Integer tid, String value) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("name", name);
+        event.put("ph", "M");
+        event.put("pid", pid);
+
+        if(tid != null) {
+            event.put("tid", tid);
+        }
+
+        Map<String, Object> args = new HashMap<>();
+        args.put("name", value);
+        event.put("args", args);
+
+        return event;
+    }
+
+    /**
+     * @param span - the span
+     * @param origin - the start of the timeline in milliseconds
+     * @param pid - the process id
+     * @param tid - the thread id
+     * @return a trace complete event, times are in microseconds from the start of the timeline
+     */
+    private static Map<String, Object> createEvent(Span span, long origin, int pid, int tid) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("name", span.name);
+        event.put("cat", span.category);
+        event.put("ph", "X");
+        event.put("ts", TimeUnit.MILLISECONDS.toMicros(span.start - origin));
+        event.put("dur", TimeUnit.MILLISECONDS.toMicros(span.getDuration()));
+        event.put("pid", pid);
+        event.put("tid", tid);
+
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("track", span.track);
+
+        if(span.args != null) {
+            args.putAll(span.args);
+        }
+
+        event.put("args", args);
+
+        return event;
+    }
+
+    /**
+     * @return the filename
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * A phase of the job on a task or a processor track
+     */
+    public static class Span {
+
+        private boolean processor;
+
+        private String track;
+
+        private String category;
+
+        private String name;
+
+        private long start;
+
+        private long end;
+
+        private Map<String, Object> args;
+
+        Span(boolean processor, String track, String category, String name, long start, long end, 
+                Map<String, Object> args) {
+            super();
+            this.processor = processor;
+            this.track = track;
+            this.category = category;
+            this.name = name;
+            this.start = start;
+            this.end = end;
+            this.args = args;
+        }
+
+        /**
+         * @return true if the span is on a processor track
+         */
+        public boolean isProcessor() {
+            return processor;
+        }
+
+        /**
+         * @return the task name or the processor instance id
+         */
+        public String getTrack() {
+            return track;
+        }
+
+        /**
+         * @return the category
+         */
+        public String getCategory() {
+            return category;
+        }
+
+        /**
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the start time in milliseconds
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * @return the end time in milliseconds
+         */
+        public long getEnd() {
+            return end;
+        }
+
+        /**
+         * @return the duration in milliseconds
+         */
+        public long getDuration() {
+            return end - start;
+        }
+
+        /**
+         * @return the details of the span or null
+         */
+        public Map<String, Object> getArgs() {
+            return args;
+        }
+
+        @Override
+        public String toString() {
+            return category + " " + name + " on " + track + String.format(" (%.1fs)", this.getDuration() / 1000d);
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.framework.components;
+
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.config.TaskConfig;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * A partition item of a processor task along with the metadata used to program a processor with it.
+ * When processor tasks are pipelined, each item links to the item with the same index in the next task.
+ * Work items are ordered by their weight.
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class WorkItem implements Comparable<WorkItem> {
+
+    private TaskConfig taskConfig;
+
+    // the index of the item in the task partition items
+    private int index;
+
+    private String item;
+
+    private VmMetaData metaData;
+
+    // the weight of the item, e.g. the total size of the files in it
+    private long weight = 1;
+
+    // the same item of the next pipelined task
+    private WorkItem next;
+
+    /**
+     * @param taskConfig - the config of the task this item belongs to
+     * @param index - the index of the item
+     * @param item - the partition item
+     * @param metaData - the processor metadata for this item
+     */
+    public WorkItem(TaskConfig taskConfig, int index, String item, VmMetaData metaData) {
+        super();
+        this.taskConfig = taskConfig;
+        this.index = index;
+        this.item = item;
+        this.metaData = metaData;
+    }
+
+    /**
+     * @return the taskConfig
+     */
+    public TaskConfig getTaskConfig() {
+        return taskConfig;
+    }
+
+    /**
+     * @return the index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the item
+     */
+    public String getItem() {
+        return item;
+    }
+
+    /**
+     * @return the metaData
+     */
+    public VmMetaData getMetaData() {
+        return metaData;
+    }
+
+    /**
+     * @return the weight
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    /**
+     * @param weight the weight to set
+     */
+    public void setWeight(long weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * @return the next
+     */
+    public WorkItem getNext() {
+        return next;
+    }
+
+    /**
+     * @param next the next to set
+     */
+    public void setNext(WorkItem next) {
+        this.next = next;
+    }
+
+    @Override
+    public int compareTo(WorkItem item) {
+        return Long.compare(this.weight, item.weight);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+            .append("task", (taskConfig != null) ? taskConfig.getId() : null)
+            .append("index", index)
+            .append("item", item)
+            .append("weight", weight)
+            .toString();
+    }
+
+}
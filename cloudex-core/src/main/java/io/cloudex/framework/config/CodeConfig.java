@@ -22,10 +22,15 @@ package io.cloudex.framework.config;
 import io.cloudex.framework.types.CodeLocation;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
 
 /**
  * 
- * Task code configurations, code is either remote or local
+ * Task code configurations, code is either remote or local. Remote code is a jar in cloud storage 
+ * referenced by its bucket/object url and addressed by the SHA-256 hash of its content
  * 
  * @author Omer Dawelbeit (omerio)
  *
@@ -37,6 +42,8 @@ public class CodeConfig implements Serializable {
     private CodeLocation location;
 
     private String url;
+    
+    private String hash;
 
     /**
      * @return the location
@@ -66,4 +73,48 @@ public class CodeConfig implements Serializable {
         this.url = url;
     }
 
+    /**
+     * @return the hex SHA-256 hash of the jar content
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @param hash the hex SHA-256 hash of the jar content
+     */
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+    
+    /**
+     * Determine if this code is loaded remotely
+     * @return true if the location is remote
+     */
+    public boolean isRemote() {
+        return CodeLocation.REMOTE.equals(this.location);
+    }
+    
+    /**
+     * Determine if this instance is valid
+     * @return true if valid, false otherwise
+     */
+    public boolean valid() {
+        return !this.isRemote() || (StringUtils.isNotBlank(this.url) && StringUtils.isNotBlank(this.hash));
+    }
+    
+    /**
+     * Get any validation errors
+     * @return a list of validation messages
+     */
+    public List<String> getValidationErrors() {
+        List<String> messages = new ArrayList<>();
+        
+        if(!this.valid()) {
+            messages.add("remote code requires the url and the hash of the jar");
+        }
+        
+        return messages;
+    }
+
 }
@@ -61,6 +61,12 @@ public class PartitionConfig implements Serializable    {
     
     private String countRef;
 
+    // the expected number of items, used when the items are not known in advance
+    private Integer estimate;
+
+    // optional planning of the number of processors for FUNCTION partitions
+    private PlanConfig plan;
+
     /**
      * @return the type
      */
@@ -161,6 +167,38 @@ public class PartitionConfig implements Serializable    {
         this.countRef = countRef;
     }
 
+    /**
+     * Get the expected number of partition items, this is used to start processors ahead of the task
+     * when the items are produced by a partition function or are not yet in the job context
+     * @return the estimate
+     */
+    public Integer getEstimate() {
+        return estimate;
+    }
+
+    /**
+     * Set the expected number of partition items
+     * @param estimate the estimate to set
+     */
+    public void setEstimate(Integer estimate) {
+        this.estimate = estimate;
+    }
+
+    /**
+     * @return the plan
+     */
+    public PlanConfig getPlan() {
+        return plan;
+    }
+
+    /**
+     * Set the config used to plan the number of processors before a FUNCTION partition is done
+     * @param plan the plan to set
+     */
+    public void setPlan(PlanConfig plan) {
+        this.plan = plan;
+    }
+
     /**
      * Determine if this instance is valid
      * @return true if valid, false otherwise
@@ -174,7 +212,8 @@ public class PartitionConfig implements Serializable    {
                         || (PartitionType.FUNCTION.equals(this.type) && StringUtils.isNotBlank(this.output)
                                 && BooleanUtils.xor(new boolean [] {StringUtils.isBlank(this.className), 
                                         StringUtils.isBlank(this.functionName)})))
-                && ((this.input != null) && (this.input.get(PartitionFunction.ITEMS_KEY) != null))));
+                && ((this.input != null) && (this.input.get(PartitionFunction.ITEMS_KEY) != null))))
+                && ((this.plan == null) || (PartitionType.FUNCTION.equals(this.type) && this.plan.valid()));
         
     }
     
@@ -214,6 +253,14 @@ public class PartitionConfig implements Serializable    {
             }
         }
         
+        if(this.plan != null) {
+            if(!PartitionType.FUNCTION.equals(this.type)) {
+                messages.add("plan is only supported for Function type partition");
+            }
+            
+            messages.addAll(this.plan.getValidationErrors());
+        }
+        
         return messages;
     }
 
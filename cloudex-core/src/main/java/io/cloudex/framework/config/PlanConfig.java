@@ -0,0 +1,146 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.framework.config;
+
+import io.cloudex.framework.utils.ObjectUtils;
+
+import java.io.Serializable;
+import java.util.List;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Processor planning configurations for FUNCTION partitions. Before the items are partitioned the number
+ * of processors is chosen from the item weights, the throughput of a processor and the billing of the 
+ * task VMs, the chosen number is written to the job context under the output key so it can be referenced
+ * by the partition function input, for example numberOfBins.
+ * 
+ * With a deadline the cheapest plan that completes in time is chosen, with a budget the fastest plan that 
+ * is within budget is chosen, otherwise the cheapest plan is chosen.
+ * 
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class PlanConfig implements Serializable {
+
+    private static final long serialVersionUID = 2546389271829740265L;
+
+    // the item weight units processed per second by each core of a processor
+    @NotNull
+    @DecimalMin("0.000001")
+    private Double throughput;
+
+    // the time in seconds the processors should complete in
+    @Min(1)
+    private Long deadline;
+
+    // the maximum cost of the processors
+    @DecimalMin("0.0")
+    private Double budget;
+
+    // the job context key to write the number of processors to
+    @NotNull
+    private String output;
+
+    /**
+     * @return the throughput
+     */
+    public Double getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * Set the item weight units processed per second by each core of a processor
+     * @param throughput the throughput to set
+     */
+    public void setThroughput(Double throughput) {
+        this.throughput = throughput;
+    }
+
+    /**
+     * @return the deadline
+     */
+    public Long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Set the time in seconds the processors should complete in
+     * @param deadline the deadline to set
+     */
+    public void setDeadline(Long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return the budget
+     */
+    public Double getBudget() {
+        return budget;
+    }
+
+    /**
+     * Set the maximum cost of the processors, in the same currency as the VM hourly cost
+     * @param budget the budget to set
+     */
+    public void setBudget(Double budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * @return the output
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * Set the job context key to write the number of processors to
+     * @param output the output to set
+     */
+    public void setOutput(String output) {
+        this.output = output;
+    }
+
+    /**
+     * Determine if this instance is valid
+     * @return true if valid, false otherwise
+     */
+    public boolean valid() {
+        return ObjectUtils.isValid(PlanConfig.class, this) && ((this.deadline == null) || (this.budget == null));
+    }
+
+    /**
+     * Get any validation errors
+     * @return a list of validation messages
+     */
+    public List<String> getValidationErrors() {
+        List<String> messages = ObjectUtils.getValidationErrors(PlanConfig.class, this);
+
+        if((this.deadline != null) && (this.budget != null)) {
+            messages.add("either a deadline or a budget can be set, but not both");
+        }
+
+        return messages;
+    }
+
+}
@@ -28,6 +28,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 /**
@@ -41,6 +43,9 @@ public class TaskConfig implements Serializable {
 
     private static final long serialVersionUID = 3302466101507343648L;
 
+    // the number of times a failed item is retried if maxRetries is not set
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
     private String id;
     
     private String description;
@@ -77,6 +82,68 @@ public class TaskConfig implements Serializable {
      */
     private String vmConfigReference;
 
+    /**
+     * The maximum number of seconds to wait for all the processors
+     * of this task to complete, null or 0 to wait indefinitely
+     */
+    private Long timeout;
+
+    /**
+     * The maximum number of seconds to wait for each individual processor
+     * to complete, null or 0 to wait indefinitely
+     */
+    private Long processorTimeout;
+
+    /**
+     * The ids of earlier tasks that must complete before this task starts when the
+     * job runs in parallel mode. Only needed for dependencies that are not visible 
+     * through the task input and output, e.g. files created by a processor task
+     */
+    private List<String> dependsOn;
+
+    /**
+     * Pipeline this processor task with the previous processor task, each processor
+     * is given its item of this task as soon as it completes the same item of the 
+     * previous task. Both tasks should be partitioned the same way
+     */
+    private Boolean pipeline;
+
+    /**
+     * The maximum number of processors to use for this task. If there are more partition
+     * items than processors, the items are queued largest first and each processor
+     * is given the next item as soon as it completes its current one
+     */
+    @Min(1)
+    private Integer maxProcessors;
+
+    /**
+     * Enables speculative execution of straggler items. Once most of the items of the task are done,
+     * an item that has been running for longer than this multiple of the median duration of the
+     * completed items is also given to an idle processor, the result of the first processor to
+     * complete is used and the other processor is shut down
+     */
+    @DecimalMin("1.0")
+    private Double speculationThreshold;
+
+    /**
+     * The maximum number of times a failed item is retried when the error action is RETRY, 
+     * defaults to {@link #DEFAULT_MAX_RETRIES}
+     */
+    @Min(0)
+    private Integer maxRetries;
+
+    /**
+     * The number of seconds to wait before the first retry of a failed item, the delay is 
+     * doubled for each subsequent retry. Null or 0 to retry straight away
+     */
+    @Min(0)
+    private Long retryDelay;
+
+    /**
+     * The context key for the list of the items that have failed all their retries
+     */
+    private String deadLetter;
+
     /**
      * @return the id
      */
@@ -232,6 +299,132 @@ public class TaskConfig implements Serializable {
         this.vmConfigReference = vmConfigReference;
     }
 
+    /**
+     * @return the timeout
+     */
+    public Long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @param timeout the timeout to set
+     */
+    public void setTimeout(Long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return the processorTimeout
+     */
+    public Long getProcessorTimeout() {
+        return processorTimeout;
+    }
+
+    /**
+     * @param processorTimeout the processorTimeout to set
+     */
+    public void setProcessorTimeout(Long processorTimeout) {
+        this.processorTimeout = processorTimeout;
+    }
+
+    /**
+     * @return the dependsOn
+     */
+    public List<String> getDependsOn() {
+        return dependsOn;
+    }
+
+    /**
+     * @param dependsOn the dependsOn to set
+     */
+    public void setDependsOn(List<String> dependsOn) {
+        this.dependsOn = dependsOn;
+    }
+
+    /**
+     * @return the pipeline
+     */
+    public Boolean getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * @param pipeline the pipeline to set
+     */
+    public void setPipeline(Boolean pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * @return the maxProcessors
+     */
+    public Integer getMaxProcessors() {
+        return maxProcessors;
+    }
+
+    /**
+     * @param maxProcessors the maxProcessors to set
+     */
+    public void setMaxProcessors(Integer maxProcessors) {
+        this.maxProcessors = maxProcessors;
+    }
+
+    /**
+     * @return the speculationThreshold
+     */
+    public Double getSpeculationThreshold() {
+        return speculationThreshold;
+    }
+
+    /**
+     * @param speculationThreshold the speculationThreshold to set
+     */
+    public void setSpeculationThreshold(Double speculationThreshold) {
+        this.speculationThreshold = speculationThreshold;
+    }
+
+    /**
+     * @return the maxRetries
+     */
+    public Integer getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @param maxRetries the maxRetries to set
+     */
+    public void setMaxRetries(Integer maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * @return the retryDelay
+     */
+    public Long getRetryDelay() {
+        return retryDelay;
+    }
+
+    /**
+     * @param retryDelay the retryDelay to set
+     */
+    public void setRetryDelay(Long retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * @return the deadLetter
+     */
+    public String getDeadLetter() {
+        return deadLetter;
+    }
+
+    /**
+     * @param deadLetter the deadLetter to set
+     */
+    public void setDeadLetter(String deadLetter) {
+        this.deadLetter = deadLetter;
+    }
+
     /**
      * check if this instance is valid
      * @return true if valid
@@ -239,9 +432,10 @@ public class TaskConfig implements Serializable {
     public boolean valid() {
         return ObjectUtils.isValid(TaskConfig.class, this)  
                 && ((TargetType.COORDINATOR.equals(this.target) && (this.vmConfig == null) 
-                        && (this.vmConfigReference == null))
+                        && (this.vmConfigReference == null) && !ErrorAction.RETRY.equals(this.errorAction))
                         || (TargetType.PROCESSOR.equals(this.target) && (this.partitioning != null) 
-                                && this.partitioning.valid() && (this.output == null)));
+                                && this.partitioning.valid() && (this.output == null)))
+                && ((this.code == null) || this.code.valid());
     }
     
     /**
@@ -267,9 +461,17 @@ public class TaskConfig implements Serializable {
             messages.add("vm config is not expected for coordinators");
         }
 
+        if(TargetType.COORDINATOR.equals(this.target) && ErrorAction.RETRY.equals(this.errorAction)) {
+            messages.add("the RETRY error action is only supported for processor tasks");
+        }
+
         if(this.partitioning != null) {
             messages.addAll(this.partitioning.getValidationErrors());
         }
+        
+        if(this.code != null) {
+            messages.addAll(this.code.getValidationErrors());
+        }
 
         return messages;
     }
@@ -93,11 +93,21 @@ public class VmConfig implements Serializable {
     // The number of Virtual CPUs
     private Integer cores;
     
+    // The number of items a multi-slot processor runs at the same time, defaults to the cores
+    private Integer slots;
+    
     // Should this VM be reused, default is true
     private Boolean reuse;
     
     // Set to true to not give the VM an external IP
     private Boolean noExternalIp;
+    
+    // Set to true to use preemptible (spot) VMs, these can be terminated by the cloud provider 
+    // at any time, their items are then rescheduled by the coordinator
+    private Boolean preemptible;
+    
+    // The hourly cost of this VM when it's preemptible
+    private Double preemptibleCost;
 
     /**
      * @return the instanceId
@@ -273,6 +283,33 @@ public class VmConfig implements Serializable {
         this.cores = cores;
     }
 
+    /**
+     * @return the slots
+     */
+    public Integer getSlots() {
+        return slots;
+    }
+
+    /**
+     * Set the number of items a multi-slot processor runs at the same time
+     * @param slots the slots to set
+     */
+    public void setSlots(Integer slots) {
+        this.slots = slots;
+    }
+    
+    /**
+     * Get the number of slots of a multi-slot processor, the slots if set, otherwise the cores
+     * @return the number of slots, at least 1
+     */
+    public int getSlotCount() {
+        if((this.slots != null) && (this.slots > 0)) {
+            return this.slots;
+        }
+        
+        return ((this.cores != null) && (this.cores > 0)) ? this.cores : 1;
+    }
+
     /**
      * @return the reuse
      */
@@ -316,6 +353,50 @@ public class VmConfig implements Serializable {
         this.noExternalIp = noExternalIp;
     }
 
+    /**
+     * @return the preemptible
+     */
+    public Boolean getPreemptible() {
+        return preemptible;
+    }
+
+    /**
+     * @param preemptible the preemptible to set
+     */
+    public void setPreemptible(Boolean preemptible) {
+        this.preemptible = preemptible;
+    }
+
+    /**
+     * @return the preemptibleCost
+     */
+    public Double getPreemptibleCost() {
+        return preemptibleCost;
+    }
+
+    /**
+     * Set the hourly cost of this VM when it's preemptible
+     * @param preemptibleCost the preemptibleCost to set
+     */
+    public void setPreemptibleCost(Double preemptibleCost) {
+        this.preemptibleCost = preemptibleCost;
+    }
+    
+    /**
+     * @return true if this VM is preemptible
+     */
+    public boolean isPreemptible() {
+        return Boolean.TRUE.equals(this.preemptible);
+    }
+    
+    /**
+     * Get the hourly cost of this VM, the preemptible cost is used for preemptible VMs if set
+     * @return the hourly cost or null if not set
+     */
+    public Double getHourlyCost() {
+        return (this.isPreemptible() && (this.preemptibleCost != null)) ? this.preemptibleCost : this.cost;
+    }
+
     /* (non-Javadoc)
      * @see java.lang.Object#toString()
      */
@@ -343,10 +424,13 @@ public class VmConfig implements Serializable {
         
         // settings
         vmConfig.setCores(this.cores);
+        vmConfig.setSlots(this.slots);
         vmConfig.setCost(this.cost);
         vmConfig.setMemory(this.memory);
         vmConfig.setReuse(this.reuse);
         vmConfig.setMinUsage(this.minUsage);
+        vmConfig.setPreemptible(this.preemptible);
+        vmConfig.setPreemptibleCost(this.preemptibleCost);
         return vmConfig;
     }
     
@@ -412,6 +496,18 @@ public class VmConfig implements Serializable {
             vmConfig.setNoExternalIp(this.noExternalIp);
         }
         
+        if(config.getPreemptible() != null) {
+            vmConfig.setPreemptible(config.getPreemptible());
+        }
+        
+        if(config.getSlots() != null) {
+            vmConfig.setSlots(config.getSlots());
+        }
+        
+        if(config.getPreemptibleCost() != null) {
+            vmConfig.setPreemptibleCost(config.getPreemptibleCost());
+        }
+        
         return vmConfig;
         
     }
@@ -454,6 +550,8 @@ public class VmConfig implements Serializable {
             .append(this.startupScript, rhs.getStartupScript())
             .append(this.vmType, rhs.getVmType())
             .append(this.zoneId, rhs.getZoneId())
+            .append(this.isPreemptible(), rhs.isPreemptible())
+            .append(this.slots, rhs.getSlots())
             .isEquals();
     }
 
@@ -0,0 +1,51 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2014, Ecarf.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.framework.exceptions;
+
+/**
+ * Thrown when a processor VM is lost whilst working on an item, for example because it was preempted, 
+ * its instance is terminated, its heartbeat has stalled or it has timed out. The item didn't fail and can 
+ * be rescheduled on a replacement VM
+ * 
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class ProcessorLostException extends ProcessorException {
+
+    private static final long serialVersionUID = 4705319658207435512L;
+
+    /**
+     * @param message
+     * @param processorId
+     */
+    public ProcessorLostException(String message, String processorId) {
+        super(message, null, processorId);
+    }
+    
+    /**
+     * @param message
+     * @param cause
+     * @param processorId
+     */
+    public ProcessorLostException(String message, Throwable cause, String processorId) {
+        super(message, cause, processorId);
+    }
+
+}
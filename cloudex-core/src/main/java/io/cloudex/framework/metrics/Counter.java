@@ -0,0 +1,56 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A count that only goes up, e.g. the number of errors of an api method
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class Counter {
+
+    private AtomicLong count = new AtomicLong();
+
+    /**
+     * Increment the count by one
+     */
+    public void inc() {
+        this.count.incrementAndGet();
+    }
+
+    /**
+     * @param amount - the amount to add to the count
+     */
+    public void inc(long amount) {
+        this.count.addAndGet(amount);
+    }
+
+    /**
+     * @return the count
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+}
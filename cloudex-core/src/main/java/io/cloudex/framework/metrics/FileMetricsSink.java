@@ -0,0 +1,94 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A sink that overwrites a file with the current metrics every time they are reported. The metrics are
+ * written to a temporary file that is then moved over the file, so readers never see a partial file.
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public abstract class FileMetricsSink implements MetricsSink {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private String filename;
+
+    /**
+     * @param filename - the file to write the metrics to
+     */
+    public FileMetricsSink(String filename) {
+        super();
+        Validate.notNull(filename, "filename is required");
+        this.filename = filename;
+    }
+
+    @Override
+    public synchronized void report(MetricsRegistry registry) throws IOException {
+
+        Path target = new File(this.filename).toPath();
+        Path temp = new File(this.filename + TEMP_SUFFIX).toPath();
+
+        try(Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            this.write(registry, writer);
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch(IOException e) {
+            // the file system doesn't support atomic moves
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Write the metrics
+     * @param registry - the metrics registry
+     * @param writer - the writer of the file
+     * @throws IOException if the metrics can't be written
+     */
+    protected abstract void write(MetricsRegistry registry, Writer writer) throws IOException;
+
+    /**
+     * @return the filename
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "[" + this.filename + "]";
+    }
+
+}
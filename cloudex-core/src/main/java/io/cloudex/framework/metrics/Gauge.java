@@ -0,0 +1,47 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.metrics;
+
+/**
+ * A value that can go up and down, e.g. the utilisation of the processors of the last task
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class Gauge {
+
+    private volatile double value;
+
+    /**
+     * @param value the value to set
+     */
+    public void set(double value) {
+        this.value = value;
+    }
+
+    /**
+     * @return the value
+     */
+    public double getValue() {
+        return this.value;
+    }
+
+}
@@ -0,0 +1,156 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * The distribution of a duration in milliseconds, e.g. the latency of an api method. Values are counted
+ * in fixed buckets that range from 1ms to an hour, so recording a value doesn't allocate and the
+ * percentiles are approximate, i.e. the upper bound of the bucket the percentile falls in.
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class Histogram {
+
+    // the upper bounds of the buckets in milliseconds, the last bucket has no upper bound
+    static final long [] BOUNDS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000,
+        60_000, 300_000, 900_000, 3_600_000 };
+
+    private AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+
+    private AtomicLong count = new AtomicLong();
+
+    private AtomicLong sum = new AtomicLong();
+
+    private AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value
+     * @param value - the value in milliseconds
+     */
+    public void record(long value) {
+
+        int index = Arrays.binarySearch(BOUNDS, value);
+
+        if(index < 0) {
+            // the first bound larger than the value
+            index = -index - 1;
+        }
+
+        this.buckets.incrementAndGet(index);
+        this.count.incrementAndGet();
+        this.sum.addAndGet(value);
+
+        long current;
+        while(value > (current = this.max.get())) {
+            if(this.max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * @return the sum of the values recorded
+     */
+    public long getSum() {
+        return this.sum.get();
+    }
+
+    /**
+     * @return the largest value recorded
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * @return the mean of the values recorded, 0 if none
+     */
+    public double getMean() {
+        long count = this.getCount();
+        return (count > 0) ? ((double) this.getSum() / count) : 0;
+    }
+
+    /**
+     * @return the upper bounds of the buckets, the last bucket has no upper bound
+     */
+    public static long [] getBounds() {
+        return BOUNDS.clone();
+    }
+
+    /**
+     * @return the number of values in each bucket, this has one more entry than {@link #getBounds()}
+     */
+    public long [] getBucketCounts() {
+        long [] counts = new long [this.buckets.length()];
+
+        for(int i = 0; i < counts.length; i++) {
+            counts[i] = this.buckets.get(i);
+        }
+
+        return counts;
+    }
+
+    /**
+     * Get an approximate percentile of the values recorded
+     * @param percentile - the percentile between 0 and 1, e.g. 0.99
+     * @return the upper bound of the bucket the percentile falls in, capped at the largest value
+     */
+    public long getPercentile(double percentile) {
+
+        Validate.isTrue((percentile >= 0) && (percentile <= 1), "percentile must be between 0 and 1");
+
+        long [] counts = this.getBucketCounts();
+        long total = 0;
+
+        for(long bucket: counts) {
+            total += bucket;
+        }
+
+        long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        long max = this.getMax();
+
+        for(int i = 0; i < BOUNDS.length; i++) {
+            seen += counts[i];
+
+            if((seen > 0) && (seen >= rank)) {
+                return Math.min(BOUNDS[i], max);
+            }
+        }
+
+        return max;
+    }
+
+}
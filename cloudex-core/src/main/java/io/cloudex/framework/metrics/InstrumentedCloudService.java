@@ -0,0 +1,554 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.metrics;
+
+import io.cloudex.framework.cloud.api.AuthenticationProvider;
+import io.cloudex.framework.cloud.api.Callback;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.api.ProvisioningListener;
+import io.cloudex.framework.cloud.entities.BigDataTable;
+import io.cloudex.framework.cloud.entities.QueryStats;
+import io.cloudex.framework.cloud.entities.StorageObject;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.config.VmConfig;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A {@link CloudService} that records the latency and the errors of every api call made through the
+ * cloud service it wraps. For each api method the following metrics are recorded:
+ * <ul>
+ * <li>cloud.[method].latency - a histogram of the call durations in milliseconds, its count is the number
+ * of calls</li>
+ * <li>cloud.[method].errors - the number of calls that have thrown an exception</li>
+ * <li>cloud.[method].retries - the number of failed calls that were retried. These are recorded by the
+ * callers that retry, e.g. the {@link io.cloudex.framework.components.ProcessorTracker} status checks, and by
+ * cloud services that implement {@link MetricsAware} for the calls they retry internally</li>
+ * </ul>
+ * Waiting on a pending operation or job, e.g. polling a VM until it's running, isn't counted as a retry.
+ * The batch variants of getMetaData and updateMetadata are recorded as getMetaDataBatch and 
+ * updateMetadataBatch. Calls that don't go to the cloud provider, e.g. {@link #getInstanceId()}, 
+ * aren't recorded.
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class InstrumentedCloudService implements CloudService {
+
+    static final String PREFIX = "cloud";
+
+    private CloudService cloudService;
+
+    private MetricsRegistry registry;
+
+    /**
+     * @param cloudService - the cloud service to instrument
+     * @param registry - the registry to record the metrics in
+     */
+    public InstrumentedCloudService(CloudService cloudService, MetricsRegistry registry) {
+        super();
+        Validate.notNull(cloudService, "cloudService is required");
+        Validate.notNull(registry, "registry is required");
+        this.cloudService = cloudService;
+        this.registry = registry;
+
+        if(cloudService instanceof MetricsAware) {
+            ((MetricsAware) cloudService).setMetrics(registry);
+        }
+    }
+
+    /**
+     * @param method - the api method name
+     * @return the name of the latency histogram of the method
+     */
+    public static String getLatencyName(String method) {
+        return MetricsRegistry.name(PREFIX, method, "latency");
+    }
+
+    /**
+     * @param method - the api method name
+     * @return the name of the errors counter of the method
+     */
+    public static String getErrorsName(String method) {
+        return MetricsRegistry.name(PREFIX, method, "errors");
+    }
+
+    /**
+     * @param method - the api method name
+     * @return the name of the retries counter of the method
+     */
+    public static String getRetriesName(String method) {
+        return MetricsRegistry.name(PREFIX, method, "retries");
+    }
+
+    /**
+     * Record the duration of a call
+     * @param method - the api method name
+     * @param start - the start of the call in nanoseconds
+     */
+    private void record(String method, long start) {
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        this.registry.histogram(getLatencyName(method)).record(duration);
+    }
+
+    /**
+     * Record a failed call
+     * @param method - the api method name
+     */
+    private void error(String method) {
+        this.registry.counter(getErrorsName(method)).inc();
+    }
+
+    /**
+     * @return the instrumented cloud service
+     */
+    public CloudService getCloudService() {
+        return cloudService;
+    }
+
+    @Override
+    public VmMetaData init() throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.init();
+
+        } catch(IOException | RuntimeException e) {
+            this.error("init");
+            throw e;
+
+        } finally {
+            this.record("init", start);
+        }
+    }
+
+    @Override
+    public VmMetaData getMetaData(boolean waitForChange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.getMetaData(waitForChange);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("getMetaData");
+            throw e;
+
+        } finally {
+            this.record("getMetaData", start);
+        }
+    }
+
+    @Override
+    public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.getMetaData(instanceId, zoneId);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("getMetaData");
+            throw e;
+
+        } finally {
+            this.record("getMetaData", start);
+        }
+    }
+
+    @Override
+    public void updateMetadata(VmMetaData metaData) throws IOException {
+        long start = System.nanoTime();
+        try {
+            this.cloudService.updateMetadata(metaData);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("updateMetadata");
+            throw e;
+
+        } finally {
+            this.record("updateMetadata", start);
+        }
+    }
+
+    @Override
+    public String updateMetadata(VmMetaData metaData, String zoneId, String instanceId,
+            boolean block) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.updateMetadata(metaData, zoneId, instanceId, block);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("updateMetadata");
+            throw e;
+
+        } finally {
+            this.record("updateMetadata", start);
+        }
+    }
+
+    @Override
+    public Map<String, VmMetaData> getMetaData(List<String> instanceIds, String zoneId) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.getMetaData(instanceIds, zoneId);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("getMetaDataBatch");
+            throw e;
+
+        } finally {
+            this.record("getMetaDataBatch", start);
+        }
+    }
+
+    @Override
+    public Map<String, VmMetaData> getProcessorsMetaData(String zoneId) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.getProcessorsMetaData(zoneId);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("getProcessorsMetaData");
+            throw e;
+
+        } finally {
+            this.record("getProcessorsMetaData", start);
+        }
+    }
+
+    @Override
+    public Map<String, String> updateMetadata(Map<String, VmMetaData> metaData, String zoneId) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.updateMetadata(metaData, zoneId);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("updateMetadataBatch");
+            throw e;
+
+        } finally {
+            this.record("updateMetadataBatch", start);
+        }
+    }
+
+    @Override
+    public void blockOnComputeOperations(List<String> references, String zoneId) throws IOException {
+        long start = System.nanoTime();
+        try {
+            this.cloudService.blockOnComputeOperations(references, zoneId);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("blockOnComputeOperations");
+            throw e;
+
+        } finally {
+            this.record("blockOnComputeOperations", start);
+        }
+    }
+
+    @Override
+    public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.startInstance(configs, block);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("startInstance");
+            throw e;
+
+        } finally {
+            this.record("startInstance", start);
+        }
+    }
+
+    @Override
+    public void startInstance(List<VmConfig> configs, ProvisioningListener listener) throws IOException {
+        long start = System.nanoTime();
+        try {
+            this.cloudService.startInstance(configs, listener);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("startInstance");
+            throw e;
+
+        } finally {
+            this.record("startInstance", start);
+        }
+    }
+
+    @Override
+    public void shutdownInstance(List<VmConfig> configs) throws IOException {
+        long start = System.nanoTime();
+        try {
+            this.cloudService.shutdownInstance(configs);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("shutdownInstance");
+            throw e;
+
+        } finally {
+            this.record("shutdownInstance", start);
+        }
+    }
+
+    @Override
+    public void shutdownInstance() throws IOException {
+        long start = System.nanoTime();
+        try {
+            this.cloudService.shutdownInstance();
+
+        } catch(IOException | RuntimeException e) {
+            this.error("shutdownInstance");
+            throw e;
+
+        } finally {
+            this.record("shutdownInstance", start);
+        }
+    }
+
+    @Override
+    public void createCloudStorageBucket(String bucket, String location) throws IOException {
+        long start = System.nanoTime();
+        try {
+            this.cloudService.createCloudStorageBucket(bucket, location);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("createCloudStorageBucket");
+            throw e;
+
+        } finally {
+            this.record("createCloudStorageBucket", start);
+        }
+    }
+
+    @Override
+    public StorageObject uploadFileToCloudStorage(String filename, String bucket,
+            Callback callback) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.uploadFileToCloudStorage(filename, bucket, callback);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("uploadFileToCloudStorage");
+            throw e;
+
+        } finally {
+            this.record("uploadFileToCloudStorage", start);
+        }
+    }
+
+    @Override
+    public StorageObject uploadFileToCloudStorage(String filename, String bucket) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.uploadFileToCloudStorage(filename, bucket);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("uploadFileToCloudStorage");
+            throw e;
+
+        } finally {
+            this.record("uploadFileToCloudStorage", start);
+        }
+    }
+
+    @Override
+    public void downloadObjectFromCloudStorage(String object, String outFile, String bucket,
+            Callback callback) throws IOException {
+        long start = System.nanoTime();
+        try {
+            this.cloudService.downloadObjectFromCloudStorage(object, outFile, bucket, callback);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("downloadObjectFromCloudStorage");
+            throw e;
+
+        } finally {
+            this.record("downloadObjectFromCloudStorage", start);
+        }
+    }
+
+    @Override
+    public void downloadObjectFromCloudStorage(String object, String outFile, String bucket) throws IOException {
+        long start = System.nanoTime();
+        try {
+            this.cloudService.downloadObjectFromCloudStorage(object, outFile, bucket);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("downloadObjectFromCloudStorage");
+            throw e;
+
+        } finally {
+            this.record("downloadObjectFromCloudStorage", start);
+        }
+    }
+
+    @Override
+    public List<StorageObject> listCloudStorageObjects(String bucket) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.listCloudStorageObjects(bucket);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("listCloudStorageObjects");
+            throw e;
+
+        } finally {
+            this.record("listCloudStorageObjects", start);
+        }
+    }
+
+    @Override
+    public String loadCloudStorageFilesIntoBigData(List<String> files, BigDataTable table,
+            boolean createTable) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.loadCloudStorageFilesIntoBigData(files, table, createTable);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("loadCloudStorageFilesIntoBigData");
+            throw e;
+
+        } finally {
+            this.record("loadCloudStorageFilesIntoBigData", start);
+        }
+    }
+
+    @Override
+    public List<String> loadLocalFilesIntoBigData(List<String> files, BigDataTable table,
+            boolean createTable) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.loadLocalFilesIntoBigData(files, table, createTable);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("loadLocalFilesIntoBigData");
+            throw e;
+
+        } finally {
+            this.record("loadLocalFilesIntoBigData", start);
+        }
+    }
+
+    @Override
+    public String startBigDataQuery(String querySql) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.startBigDataQuery(querySql);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("startBigDataQuery");
+            throw e;
+
+        } finally {
+            this.record("startBigDataQuery", start);
+        }
+    }
+
+    @Override
+    public String startBigDataQuery(String querySql, BigDataTable table) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.startBigDataQuery(querySql, table);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("startBigDataQuery");
+            throw e;
+
+        } finally {
+            this.record("startBigDataQuery", start);
+        }
+    }
+
+    @Override
+    public QueryStats saveBigQueryResultsToFile(String jobId, String filename) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.saveBigQueryResultsToFile(jobId, filename);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("saveBigQueryResultsToFile");
+            throw e;
+
+        } finally {
+            this.record("saveBigQueryResultsToFile", start);
+        }
+    }
+
+    @Override
+    public QueryStats saveBigQueryResultsToFile(String jobId, String filename, String bucket, Integer minFiles,
+            int directDownloadRowLimit) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.saveBigQueryResultsToFile(jobId, filename, bucket, minFiles, 
+                    directDownloadRowLimit);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("saveBigQueryResultsToFile");
+            throw e;
+
+        } finally {
+            this.record("saveBigQueryResultsToFile", start);
+        }
+    }
+
+    @Override
+    public QueryStats saveBigQueryResultsToCloudStorage(String jobId, String bucket,
+            String filename) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return this.cloudService.saveBigQueryResultsToCloudStorage(jobId, bucket, filename);
+
+        } catch(IOException | RuntimeException e) {
+            this.error("saveBigQueryResultsToCloudStorage");
+            throw e;
+
+        } finally {
+            this.record("saveBigQueryResultsToCloudStorage", start);
+        }
+    }
+    @Override
+    public String getInstanceId() {
+        return this.cloudService.getInstanceId();
+    }
+
+    @Override
+    public int getMaximumMetaDataSize() {
+        return this.cloudService.getMaximumMetaDataSize();
+    }
+
+    @Override
+    public int getApiRecheckDelay() {
+        return this.cloudService.getApiRecheckDelay();
+    }
+
+    @Override
+    public void setRemote(boolean remote) {
+        this.cloudService.setRemote(remote);
+    }
+
+    @Override
+    public <T> void setAuthenticationProvider(AuthenticationProvider<T> provider) {
+        this.cloudService.setAuthenticationProvider(provider);
+    }
+
+}
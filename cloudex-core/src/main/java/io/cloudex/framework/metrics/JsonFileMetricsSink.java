@@ -0,0 +1,94 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.metrics;
+
+import io.cloudex.framework.utils.ObjectUtils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Writes the metrics to a json file, for example:
+ * <pre>
+ * {
+ *   "counters": { "cloud.getMetaData.errors": 2 },
+ *   "gauges": { "task.ExportTask.utilisation": 0.93 },
+ *   "histograms": {
+ *     "cloud.getMetaData.latency": { "count": 1200, "sum": 98000, "mean": 81.6, "max": 2300, 
+ *          "p50": 100, "p90": 100, "p99": 500 }
+ *   }
+ * }
+ * </pre>
+ * Histogram values are in milliseconds.
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class JsonFileMetricsSink extends FileMetricsSink {
+
+    /**
+     * @param filename - the json file to write the metrics to
+     */
+    public JsonFileMetricsSink(String filename) {
+        super(filename);
+    }
+
+    @Override
+    protected void write(MetricsRegistry registry, Writer writer) throws IOException {
+
+        Map<String, Object> counters = new LinkedHashMap<>();
+        for(Entry<String, Counter> entry: registry.getCounters().entrySet()) {
+            counters.put(entry.getKey(), entry.getValue().getCount());
+        }
+
+        Map<String, Object> gauges = new LinkedHashMap<>();
+        for(Entry<String, Gauge> entry: registry.getGauges().entrySet()) {
+            gauges.put(entry.getKey(), entry.getValue().getValue());
+        }
+
+        Map<String, Object> histograms = new LinkedHashMap<>();
+        for(Entry<String, Histogram> entry: registry.getHistograms().entrySet()) {
+            Histogram histogram = entry.getValue();
+
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", histogram.getCount());
+            values.put("sum", histogram.getSum());
+            values.put("mean", histogram.getMean());
+            values.put("max", histogram.getMax());
+            values.put("p50", histogram.getPercentile(0.5));
+            values.put("p90", histogram.getPercentile(0.9));
+            values.put("p99", histogram.getPercentile(0.99));
+
+            histograms.put(entry.getKey(), values);
+        }
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("counters", counters);
+        metrics.put("gauges", gauges);
+        metrics.put("histograms", histograms);
+
+        ObjectUtils.GSON.toJson(metrics, writer);
+    }
+
+}
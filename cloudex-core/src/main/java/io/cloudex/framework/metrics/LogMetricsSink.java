@@ -0,0 +1,63 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.metrics;
+
+import java.util.Map.Entry;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Logs a line for each metric, histogram values are in milliseconds
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class LogMetricsSink implements MetricsSink {
+
+    private static final Log log = LogFactory.getLog(LogMetricsSink.class);
+
+    @Override
+    public void report(MetricsRegistry registry) {
+
+        for(Entry<String, Counter> entry: registry.getCounters().entrySet()) {
+            log.info("METRICS# " + entry.getKey() + " count: " + entry.getValue().getCount());
+        }
+
+        for(Entry<String, Gauge> entry: registry.getGauges().entrySet()) {
+            log.info("METRICS# " + entry.getKey() + " value: " + entry.getValue().getValue());
+        }
+
+        for(Entry<String, Histogram> entry: registry.getHistograms().entrySet()) {
+            Histogram histogram = entry.getValue();
+
+            log.info(String.format("METRICS# %s count: %d, mean: %.1fms, p50: %dms, p99: %dms, max: %dms", 
+                    entry.getKey(), histogram.getCount(), histogram.getMean(), histogram.getPercentile(0.5), 
+                    histogram.getPercentile(0.99), histogram.getMax()));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName();
+    }
+
+}
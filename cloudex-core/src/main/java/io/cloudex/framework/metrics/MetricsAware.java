@@ -0,0 +1,39 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.metrics;
+
+/**
+ * Implemented by cloud services that retry api calls internally, e.g. polling a job after a transient error,
+ * so they can record their retries. The registry is set by the {@link InstrumentedCloudService} that wraps
+ * the service.
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public interface MetricsAware {
+
+    /**
+     * Set the registry to record the retries in, see {@link InstrumentedCloudService#getRetriesName(String)}
+     * @param registry - the metrics registry
+     */
+    public void setMetrics(MetricsRegistry registry);
+
+}
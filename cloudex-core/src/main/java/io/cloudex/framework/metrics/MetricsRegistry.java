@@ -0,0 +1,227 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.metrics;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Holds the counters, gauges and histograms of a coordinator or a processor by name and reports them to
+ * the registered sinks. Names are dot separated, e.g. cloud.getMetaData.latency. Metrics are created the
+ * first time they are used and the registry can be safely shared between threads.
+ *
+ * The metrics are reported when {@link #report()} is called, the coordinator and the processor call it
+ * after each task. They can also be reported periodically with {@link #start(long, TimeUnit)}. A sink that
+ * fails is logged and doesn't stop the other sinks or the job.
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class MetricsRegistry {
+
+    private static final Log log = LogFactory.getLog(MetricsRegistry.class);
+
+    private static final char SEPARATOR = '.';
+
+    private ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    private ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    private ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private List<MetricsSink> sinks = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService reporter;
+
+    /**
+     * Join the parts of a metric name
+     * @param parts - the parts of the name, e.g. cloud, getMetaData, latency
+     * @return the dot separated name
+     */
+    public static String name(String... parts) {
+        return StringUtils.join(parts, SEPARATOR);
+    }
+
+    /**
+     * @param name - the counter name
+     * @return the counter with the provided name, created if it doesn't exist
+     */
+    public Counter counter(String name) {
+        Validate.notNull(name, "name is required");
+
+        Counter counter = this.counters.get(name);
+
+        if(counter == null) {
+            Counter created = new Counter();
+            counter = this.counters.putIfAbsent(name, created);
+
+            if(counter == null) {
+                counter = created;
+            }
+        }
+
+        return counter;
+    }
+
+    /**
+     * @param name - the gauge name
+     * @return the gauge with the provided name, created if it doesn't exist
+     */
+    public Gauge gauge(String name) {
+        Validate.notNull(name, "name is required");
+
+        Gauge gauge = this.gauges.get(name);
+
+        if(gauge == null) {
+            Gauge created = new Gauge();
+            gauge = this.gauges.putIfAbsent(name, created);
+
+            if(gauge == null) {
+                gauge = created;
+            }
+        }
+
+        return gauge;
+    }
+
+    /**
+     * @param name - the histogram name
+     * @return the histogram with the provided name, created if it doesn't exist
+     */
+    public Histogram histogram(String name) {
+        Validate.notNull(name, "name is required");
+
+        Histogram histogram = this.histograms.get(name);
+
+        if(histogram == null) {
+            Histogram created = new Histogram();
+            histogram = this.histograms.putIfAbsent(name, created);
+
+            if(histogram == null) {
+                histogram = created;
+            }
+        }
+
+        return histogram;
+    }
+
+    /**
+     * @return name => counter sorted by name
+     */
+    public SortedMap<String, Counter> getCounters() {
+        return new TreeMap<>(this.counters);
+    }
+
+    /**
+     * @return name => gauge sorted by name
+     */
+    public SortedMap<String, Gauge> getGauges() {
+        return new TreeMap<>(this.gauges);
+    }
+
+    /**
+     * @return name => histogram sorted by name
+     */
+    public SortedMap<String, Histogram> getHistograms() {
+        return new TreeMap<>(this.histograms);
+    }
+
+    /**
+     * @param sink - a sink to report the metrics to
+     * @return this registry
+     */
+    public MetricsRegistry addSink(MetricsSink sink) {
+        Validate.notNull(sink, "sink is required");
+        this.sinks.add(sink);
+        return this;
+    }
+
+    /**
+     * Report the metrics to all the sinks
+     */
+    public void report() {
+        for(MetricsSink sink: this.sinks) {
+            try {
+                sink.report(this);
+
+            } catch(Exception e) {
+                log.warn("Failed to report metrics to " + sink, e);
+            }
+        }
+    }
+
+    /**
+     * Report the metrics periodically on a background thread until {@link #stop()} is called
+     * @param period - the time between reports
+     * @param unit - the unit of the period
+     */
+    public synchronized void start(long period, TimeUnit unit) {
+
+        Validate.isTrue(period > 0, "period must be positive");
+        Validate.validState(this.reporter == null, "metrics are already reported periodically");
+
+        this.reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "cloudex-metrics");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        this.reporter.scheduleAtFixedRate(new Runnable() {
+
+            @Override
+            public void run() {
+                MetricsRegistry.this.report();
+            }
+
+        }, period, period, unit);
+    }
+
+    /**
+     * Stop the periodic reports and report the metrics one last time
+     */
+    public synchronized void stop() {
+        if(this.reporter != null) {
+            this.reporter.shutdownNow();
+            this.reporter = null;
+        }
+
+        this.report();
+    }
+
+}
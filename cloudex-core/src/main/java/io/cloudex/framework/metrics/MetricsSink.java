@@ -0,0 +1,40 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.metrics;
+
+import java.io.IOException;
+
+/**
+ * Receives the metrics every time they are reported, e.g. to write them to a log or a file
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public interface MetricsSink {
+
+    /**
+     * Report the current value of the metrics
+     * @param registry - the metrics registry
+     * @throws IOException if the metrics can't be written
+     */
+    public void report(MetricsRegistry registry) throws IOException;
+
+}
@@ -0,0 +1,92 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map.Entry;
+
+/**
+ * Writes the metrics to a file in the Prometheus text format, e.g. for the textfile collector of the node
+ * exporter. Names are prefixed with cloudex_ and any character that is not allowed is replaced with an
+ * underscore, e.g. cloud.getMetaData.latency becomes cloudex_cloud_getMetaData_latency. Histogram buckets
+ * and sums are in milliseconds.
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class PrometheusFileMetricsSink extends FileMetricsSink {
+
+    static final String PREFIX = "cloudex_";
+
+    private static final String NEW_LINE = "\n";
+
+    /**
+     * @param filename - the file to write the metrics to, the textfile collector expects a .prom extension
+     */
+    public PrometheusFileMetricsSink(String filename) {
+        super(filename);
+    }
+
+    @Override
+    protected void write(MetricsRegistry registry, Writer writer) throws IOException {
+
+        for(Entry<String, Counter> entry: registry.getCounters().entrySet()) {
+            String name = getName(entry.getKey());
+            writer.write("# TYPE " + name + " counter" + NEW_LINE);
+            writer.write(name + " " + entry.getValue().getCount() + NEW_LINE);
+        }
+
+        for(Entry<String, Gauge> entry: registry.getGauges().entrySet()) {
+            String name = getName(entry.getKey());
+            writer.write("# TYPE " + name + " gauge" + NEW_LINE);
+            writer.write(name + " " + entry.getValue().getValue() + NEW_LINE);
+        }
+
+        long [] bounds = Histogram.getBounds();
+
+        for(Entry<String, Histogram> entry: registry.getHistograms().entrySet()) {
+            String name = getName(entry.getKey());
+            long [] counts = entry.getValue().getBucketCounts();
+            long cumulative = 0;
+
+            writer.write("# TYPE " + name + " histogram" + NEW_LINE);
+
+            for(int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                String bound = (i < bounds.length) ? Long.toString(bounds[i]) : "+Inf";
+                writer.write(name + "_bucket{le=\"" + bound + "\"} " + cumulative + NEW_LINE);
+            }
+
+            writer.write(name + "_sum " + entry.getValue().getSum() + NEW_LINE);
+            writer.write(name + "_count " + cumulative + NEW_LINE);
+        }
+    }
+
+    /**
+     * @param name - the metric name
+     * @return a valid Prometheus metric name
+     */
+    static String getName(String name) {
+        return PREFIX + name.replaceAll("[^a-zA-Z0-9_]", "_");
+    }
+
+}
@@ -0,0 +1,200 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.framework.partition;
+
+import io.cloudex.framework.cloud.entities.VmInstance;
+import io.cloudex.framework.config.PlanConfig;
+import io.cloudex.framework.config.VmConfig;
+import io.cloudex.framework.partition.entities.Item;
+
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Chooses the number of processors for a set of weighted items based on the VM economics. Each number
+ * of processors from 1 to the number of items is evaluated:
+ * <ul>
+ * <li>the makespan is estimated as the larger of the average processor load and the largest item, 
+ * divided by the processor throughput (throughput per core multiplied by the VM cores)</li>
+ * <li>the cost is the number of processors multiplied by the billed usage of each, usage is rounded up 
+ * to the nearest minute and is at least the VM minUsage, similar to {@link VmInstance#getCost()}</li>
+ * </ul>
+ * For example 40 processors that finish in 3 minutes each cost 4 times as much as 12 processors that 
+ * finish in 10 minutes if the billing minimum is 10 minutes.
+ * 
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class ProcessorPlanner {
+
+    private static final Log log = LogFactory.getLog(ProcessorPlanner.class);
+
+    private static final double SECONDS_IN_HOUR = 3600.0;
+
+    private static final double SECONDS_IN_MINUTE = 60.0;
+
+    // costs that differ by less than this are considered equal
+    private static final double COST_EPSILON = 1e-9;
+
+    private PlanConfig planConfig;
+
+    private VmConfig vmConfig;
+
+    /**
+     * @param planConfig - the planning config
+     * @param vmConfig - the config of the processors VMs
+     */
+    public ProcessorPlanner(PlanConfig planConfig, VmConfig vmConfig) {
+        super();
+        Validate.notNull(planConfig, "planConfig is required");
+        Validate.notNull(planConfig.getThroughput(), "throughput is required");
+        Validate.notNull(vmConfig, "vmConfig is required");
+        this.planConfig = planConfig;
+        this.vmConfig = vmConfig;
+    }
+
+    /**
+     * Choose the number of processors for the provided items
+     * @param items - the weighted items
+     * @return the number of processors, between 1 and the number of items
+     */
+    public int plan(List<? extends Item> items) {
+
+        Validate.notEmpty(items, "items are required");
+
+        long sum = 0;
+        long largest = 0;
+
+        for(Item item: items) {
+            sum += item.getWeight();
+            largest = Math.max(largest, item.getWeight());
+        }
+
+        Long deadline = this.planConfig.getDeadline();
+        Double budget = this.planConfig.getBudget();
+
+        int cheapest = 1;
+        int fastest = 1;
+        // the best plan that meets the deadline or budget if any
+        int best = 0;
+
+        for(int processors = 1; processors <= items.size(); processors++) {
+
+            double makespan = this.getMakespan(sum, largest, processors);
+            double cost = this.getCost(makespan, processors);
+
+            // ties are broken by the makespan, then by the number of processors
+            if(this.isBetter(cost, makespan, cheapest, sum, largest)) {
+                cheapest = processors;
+            }
+
+            if(makespan < this.getMakespan(sum, largest, fastest)) {
+                fastest = processors;
+            }
+
+            if((deadline != null) && (makespan <= deadline) 
+                    && ((best == 0) || this.isBetter(cost, makespan, best, sum, largest))) {
+                best = processors;
+            }
+
+            if((budget != null) && (cost <= budget) 
+                    && ((best == 0) || (makespan < this.getMakespan(sum, largest, best)))) {
+                best = processors;
+            }
+        }
+
+        int processors = cheapest;
+
+        if(best > 0) {
+            processors = best;
+
+        } else if(deadline != null) {
+            log.warn("No plan completes within the deadline of " + deadline + " seconds, using the fastest plan");
+            processors = fastest;
+
+        } else if(budget != null) {
+            log.warn("No plan is within the budget of " + budget + ", using the cheapest plan");
+        }
+
+        double makespan = this.getMakespan(sum, largest, processors);
+        log.info("Planned " + processors + " processors for " + items.size() + " items, estimated makespan: " 
+                + makespan + "s, estimated cost: " + this.getCost(makespan, processors));
+
+        return processors;
+    }
+
+    /**
+     * Estimate the time taken by the provided number of processors to process the items
+     * @param sum - the total weight of the items
+     * @param largest - the weight of the largest item
+     * @param processors - the number of processors
+     * @return the makespan in seconds
+     */
+    public double getMakespan(long sum, long largest, int processors) {
+        double load = Math.max(sum / (double) processors, largest);
+        Integer cores = this.vmConfig.getCores();
+        double throughput = this.planConfig.getThroughput() * (((cores != null) && (cores > 0)) ? cores : 1);
+        return load / throughput;
+    }
+
+    /**
+     * Estimate the billed cost of the provided number of processors each running for the makespan
+     * @param makespan - the time in seconds each processor runs for
+     * @param processors - the number of processors
+     * @return the cost or 0 if the VM cost is not set
+     */
+    public double getCost(double makespan, int processors) {
+        double cost = 0.0;
+        Double hourlyCost = this.vmConfig.getHourlyCost();
+
+        if(hourlyCost != null) {
+            double billed = Math.ceil(makespan / SECONDS_IN_MINUTE) * SECONDS_IN_MINUTE;
+            Long minUsage = this.vmConfig.getMinUsage();
+
+            if((minUsage != null) && (minUsage > billed)) {
+                billed = minUsage;
+            }
+
+            cost = processors * hourlyCost * billed / SECONDS_IN_HOUR;
+        }
+
+        return cost;
+    }
+
+    /**
+     * Check if a plan is cheaper than another plan, or as cheap but faster
+     * @param cost - the cost of the plan
+     * @param makespan - the makespan of the plan
+     * @param other - the number of processors of the other plan
+     * @param sum - the total weight of the items
+     * @param largest - the weight of the largest item
+     * @return true if the plan is better
+     */
+    private boolean isBetter(double cost, double makespan, int other, long sum, long largest) {
+        double otherMakespan = this.getMakespan(sum, largest, other);
+        double otherCost = this.getCost(otherMakespan, other);
+        return (cost < (otherCost - COST_EPSILON)) 
+                || ((Math.abs(cost - otherCost) <= COST_EPSILON) && (makespan < otherMakespan));
+    }
+
+}
@@ -19,6 +19,8 @@
 
 package io.cloudex.framework.partition.entities;
 
+import java.io.Serializable;
+
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
 /**
@@ -26,7 +28,9 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
  * @author Omer Dawelbeit (omerio)
  *
  */
-public class Item implements Comparable<Item>   {
+public class Item implements Comparable<Item>, Serializable {
+
+    private static final long serialVersionUID = -3412839401655724123L;
 
     private String key;
 
@@ -19,6 +19,7 @@
 
 package io.cloudex.framework.partition.entities;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -32,7 +33,9 @@ import org.apache.commons.logging.LogFactory;
  * @author Omer Dawelbeit (omerio)
  *
  */
-public class Partition implements Comparable<Partition>   {
+public class Partition implements Comparable<Partition>, Serializable {
+    
+    private static final long serialVersionUID = 6502114878916213044L;
     
     private static final Log log = LogFactory.getLog(Partition.class);
     
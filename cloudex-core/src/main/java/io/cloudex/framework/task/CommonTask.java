@@ -21,9 +21,12 @@ package io.cloudex.framework.task;
 
 import io.cloudex.framework.cloud.api.CloudService;
 import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.utils.Constants;
 
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 
 /**
@@ -39,6 +42,9 @@ public abstract class CommonTask implements Task {
     // The cloud service
     protected CloudService cloudService;
 
+    // the progress of the task, e.g. the number of records processed so far
+    private volatile long progress;
+
 
     /* (non-Javadoc)
      * @see io.cloudex.framework.task.Task#getOutput()
@@ -59,6 +65,37 @@ public abstract class CommonTask implements Task {
         return output.put(key, value);
     }
 
+    /**
+     * @return the progress of the task, published with the processor heartbeat
+     */
+    public long getProgress() {
+        return progress;
+    }
+
+    /**
+     * Report the progress of a long running task, e.g. the number of records processed so far. This can
+     * be called from any thread
+     * @param progress - the progress of the task
+     */
+    public void setProgress(long progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Record that the processor running this task holds an item or a storage object in its local cache,
+     * the coordinator prefers giving the items that use it to this processor
+     * @param key - the item or storage object key, e.g. the name of a cloud storage file
+     */
+    @SuppressWarnings("unchecked")
+    public void addCachedKey(String key) {
+        Set<String> keys = (Set<String>) output.get(Constants.CACHED_KEYS_KEY);
+        if(keys == null) {
+            keys = new LinkedHashSet<>();
+            output.put(Constants.CACHED_KEYS_KEY, keys);
+        }
+        keys.add(key);
+    }
+
     /* (non-Javadoc)
      * @see io.cloudex.framework.Executable#setCloudService(io.cloudex.framework.cloud.CloudService)
      */
@@ -0,0 +1,255 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.task.factory;
+
+import io.cloudex.framework.exceptions.ClassInstantiationException;
+import io.cloudex.framework.exceptions.InstancePopulationException;
+import io.cloudex.framework.task.Task;
+
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.Converter;
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Creates and populates the tasks of a task class. The class, its constructor and its properties are resolved 
+ * once into method handles and the binder is cached, so creating and populating a task for every item doesn't 
+ * repeat the class lookup and the bean introspection done by {@link io.cloudex.framework.utils.ObjectUtils}. 
+ * 
+ * The binding follows ObjectUtils.populate: each input must be a property of the task with a getter, inputs 
+ * with a getter but no setter are ignored and values that are not of the property type are converted with the 
+ * commons-beanutils converter of the type, e.g. the String values from the processor metadata.
+ * 
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public final class TaskBinder {
+
+    private static final Log log = LogFactory.getLog(TaskBinder.class);
+
+    // class name => binder
+    private static final ConcurrentMap<String, TaskBinder> BINDERS = new ConcurrentHashMap<>();
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Class<?> taskClass;
+
+    private final MethodHandle constructor;
+
+    // property name => property, for the properties that have a getter
+    private final Map<String, Property> properties = new HashMap<>();
+
+    /**
+     * Get the binder of a task class, the binder is created the first time the class is used
+     * @param className - the task full className
+     * @return the binder of the class
+     * @throws ClassInstantiationException if the class isn't a task that can be instantiated
+     */
+    public static TaskBinder forClass(String className) throws ClassInstantiationException {
+        TaskBinder binder = BINDERS.get(className);
+
+        if(binder == null) {
+            binder = new TaskBinder(className, TaskBinder.class.getClassLoader());
+            TaskBinder existing = BINDERS.putIfAbsent(className, binder);
+
+            if(existing != null) {
+                binder = existing;
+            }
+        }
+
+        return binder;
+    }
+
+    /**
+     * Create the binder of a task class loaded by the provided class loader, the binder isn't cached here since 
+     * it's only valid for as long as the class loader is in use, see {@link TaskCodeCache}
+     * @param className - the task full className
+     * @param classLoader - the class loader of the task code
+     * @return the binder of the class
+     * @throws ClassInstantiationException if the class isn't a task that can be instantiated
+     */
+    public static TaskBinder forClass(String className, ClassLoader classLoader) throws ClassInstantiationException {
+        return new TaskBinder(className, classLoader);
+    }
+
+    /**
+     * @param className - the task full className
+     * @param classLoader - the class loader to load the class with
+     * @throws ClassInstantiationException if the class isn't a task that can be instantiated
+     */
+    private TaskBinder(String className, ClassLoader classLoader) throws ClassInstantiationException {
+        try {
+            this.taskClass = Class.forName(className, true, classLoader);
+
+            if(!Task.class.isAssignableFrom(this.taskClass)) {
+                throw new IllegalArgumentException(className + " is not a Task");
+            }
+
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+            Constructor<?> taskConstructor = this.taskClass.getConstructor();
+            taskConstructor.setAccessible(true);
+            this.constructor = lookup.unreflectConstructor(taskConstructor).asType(CONSTRUCTOR_TYPE);
+
+            for(PropertyDescriptor descriptor: Introspector.getBeanInfo(this.taskClass).getPropertyDescriptors()) {
+
+                if(descriptor.getReadMethod() == null) {
+                    continue;
+                }
+
+                Method write = descriptor.getWriteMethod();
+                MethodHandle setter = null;
+
+                if(write != null) {
+                    // the setter might be declared by a class that isn't public
+                    write.setAccessible(true);
+                    setter = lookup.unreflect(write).asType(SETTER_TYPE);
+                }
+
+                this.properties.put(descriptor.getName(), new Property(descriptor.getPropertyType(), setter));
+            }
+
+        } catch(Exception e) {
+            log.error("Failed to resolve the task class: " + className, e);
+            throw new ClassInstantiationException("Invalid className: " + className, e);
+        }
+    }
+
+    /**
+     * Create a new instance of the task class
+     * @return the task
+     * @throws ClassInstantiationException if the constructor of the task fails
+     */
+    public Task newTask() throws ClassInstantiationException {
+        try {
+            Object task = this.constructor.invokeExact();
+            return (Task) task;
+
+        } catch(Error e) {
+            throw e;
+
+        } catch(Throwable e) {
+            log.error("Failed to instantiate task: " + this.taskClass.getName(), e);
+            throw new ClassInstantiationException("Unable to instantiate task: " + this.taskClass.getName(), e);
+        }
+    }
+
+    /**
+     * Set the properties of a task
+     * @param task - a task created by this binder
+     * @param values - property name => value
+     * @throws InstancePopulationException if a value isn't a property of the task or can't be set
+     */
+    public void bind(Task task, Map<String, ? extends Object> values) throws InstancePopulationException {
+
+        for(Entry<String, ? extends Object> entry: values.entrySet()) {
+
+            Property property = this.properties.get(entry.getKey());
+
+            try {
+                if(property == null) {
+                    throw new IllegalArgumentException("Invalid property name '" + entry.getKey() 
+                            + "' on class '" + this.taskClass.getName() + "'");
+                }
+
+                if(property.setter != null) {
+                    property.setter.invokeExact((Object) task, property.convert(entry.getValue()));
+                }
+
+            } catch(Error e) {
+                throw e;
+
+            } catch(Throwable e) {
+                log.error("Failed to populate instance: " + task + ", from map: " + values, e);
+                throw new InstancePopulationException("Unable to populate instance: " + task, e);
+            }
+        }
+    }
+
+    /**
+     * @return the task class
+     */
+    public Class<?> getTaskClass() {
+        return taskClass;
+    }
+
+    /**
+     * A property of the task and the converter of its type
+     */
+    private static class Property {
+
+        private Class<?> type;
+
+        // the type of the values that are set without conversion, the wrapper of a primitive type
+        private Class<?> valueType;
+
+        private Converter converter;
+
+        // null if the property is read only
+        private MethodHandle setter;
+
+        Property(Class<?> type, MethodHandle setter) {
+            this.type = type;
+            this.valueType = ClassUtils.primitiveToWrapper(type);
+            this.converter = ConvertUtils.lookup(type);
+            this.setter = setter;
+        }
+
+        /**
+         * @param value - the value to set
+         * @return the value converted to the property type
+         */
+        Object convert(Object value) {
+            if(value == null) {
+                // primitives are set to the default of the converter
+                return (this.type.isPrimitive() && (this.converter != null)) 
+                        ? this.converter.convert(this.type, null) : null;
+            }
+
+            if(this.valueType.isInstance(value)) {
+                return value;
+            }
+
+            if(this.converter != null) {
+                return this.converter.convert(this.type, value);
+            }
+
+            return (String.class.equals(this.type)) ? value.toString() : value;
+        }
+    }
+
+}
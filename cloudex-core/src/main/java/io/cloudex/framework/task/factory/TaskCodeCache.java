@@ -0,0 +1,437 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.task.factory;
+
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.exceptions.ClassInstantiationException;
+import io.cloudex.framework.utils.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Loads remote task code. The task jars are downloaded from cloud storage into a local folder where they are 
+ * named by the SHA-256 hash of their content, so a jar is only downloaded once per machine and a jar that 
+ * doesn't match its hash is never loaded. Each code version gets one class loader and its own task binders 
+ * which are reused by all the items and the tasks that use that version. The next code version can be preloaded 
+ * in the background whilst the current task runs.
+ * 
+ * The class loader of a code version loads the classes in the jar before those of the processor classpath, so a 
+ * class on the processor image with the same name as a class in the jar doesn't shadow it. Only the JDK and the 
+ * framework classes, io.cloudex.framework.*, are always loaded by the parent class loader, so the tasks share 
+ * the framework types with the processor.
+ * 
+ * At most a maximum number of code versions are kept loaded, the least recently used version is evicted once the 
+ * maximum is exceeded. An evicted version isn't reused, its class loader isn't closed as tasks of other slots might 
+ * still be running and loading classes from it, instead it's unloaded by the garbage collector once these tasks 
+ * have completed. The maximum should allow for the running version and the preloaded one.
+ * 
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class TaskCodeCache {
+
+    private static final Log log = LogFactory.getLog(TaskCodeCache.class);
+
+    public static final String DEFAULT_FOLDER = FileUtils.TEMP_FOLDER + "cloudex-code" + FileUtils.PATH_SEPARATOR;
+
+    private static final String JAR_EXT = ".jar";
+
+    private static final String PART_EXT = ".part";
+
+    private static final char BUCKET_SEPARATOR = '/';
+
+    private static final String URL_SCHEME = "gs://";
+
+    // the default maximum number of code versions kept loaded
+    public static final int DEFAULT_MAX_VERSIONS = 4;
+
+    // a hex SHA-256 hash, it names the cached jar so nothing else is accepted
+    private static final Pattern HASH = Pattern.compile("[0-9a-fA-F]{64}");
+
+    private final String folder;
+
+    private final int maxVersions;
+
+    // hash => code version, the future ensures each version is loaded once
+    private final ConcurrentMap<String, FutureTask<CodeVersion>> versions = new ConcurrentHashMap<>();
+
+    // the hashes of the loaded code versions, least recently used first
+    private final LinkedHashMap<String, Boolean> used = new LinkedHashMap<>(16, 0.75f, true);
+
+    private ExecutorService preloader;
+
+    /**
+     * Cache the code in the default folder
+     */
+    public TaskCodeCache() {
+        this(DEFAULT_FOLDER);
+    }
+
+    /**
+     * @param folder - the local folder to cache the task jars in
+     */
+    public TaskCodeCache(String folder) {
+        this(folder, DEFAULT_MAX_VERSIONS);
+    }
+
+    /**
+     * @param folder - the local folder to cache the task jars in
+     * @param maxVersions - the maximum number of code versions kept loaded
+     */
+    public TaskCodeCache(String folder, int maxVersions) {
+        super();
+        Validate.notBlank(folder, "folder is required");
+        Validate.isTrue(maxVersions > 0, "maxVersions must be positive");
+        this.folder = folder;
+        this.maxVersions = maxVersions;
+    }
+
+    /**
+     * Get the binder of a task class from a remote code version, the code is downloaded if not cached
+     * @param cloudService - the cloud service to download the code with
+     * @param url - the bucket/object of the task jar
+     * @param hash - the hex SHA-256 hash of the task jar
+     * @param className - the task full className
+     * @return the binder of the class
+     * @throws ClassInstantiationException if the code can't be loaded or the class isn't a task
+     */
+    public TaskBinder getBinder(CloudService cloudService, String url, String hash, String className) 
+            throws ClassInstantiationException {
+
+        Validate.notBlank(url, "task code url is required");
+        Validate.notBlank(hash, "task code hash is required");
+
+        CodeVersion version;
+        try {
+            version = this.load(cloudService, url, hash);
+
+        } catch(IOException e) {
+            log.error("Failed to load the task code: " + url, e);
+            throw new ClassInstantiationException("Unable to load the task code: " + url, e);
+        }
+
+        return version.getBinder(className);
+    }
+
+    /**
+     * Load a code version in the background if it's not already loaded or being loaded, failures are 
+     * logged and the code will be loaded again when it's used
+     * @param cloudService - the cloud service to download the code with
+     * @param url - the bucket/object of the task jar
+     * @param hash - the hex SHA-256 hash of the task jar
+     */
+    public void preload(final CloudService cloudService, final String url, final String hash) {
+
+        if(StringUtils.isBlank(url) || StringUtils.isBlank(hash) || this.versions.containsKey(hash)) {
+            return;
+        }
+
+        log.info("Preloading the task code: " + url);
+
+        this.getPreloader().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    load(cloudService, url, hash);
+
+                } catch(IOException e) {
+                    log.warn("Failed to preload the task code: " + url, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Determine if a code version has been loaded, or is being loaded
+     * @param hash - the hex SHA-256 hash of the task jar
+     * @return true if the code version is known to this cache
+     */
+    public boolean isLoaded(String hash) {
+        return this.versions.containsKey(hash);
+    }
+
+    /**
+     * @return the single background thread used for preloading
+     */
+    private synchronized ExecutorService getPreloader() {
+        if(this.preloader == null) {
+            this.preloader = Executors.newSingleThreadExecutor(
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("cloudex-code-preload").build());
+        }
+        return this.preloader;
+    }
+
+    /**
+     * Load a code version, concurrent callers for the same version wait for the first one
+     * @param cloudService - the cloud service to download the code with
+     * @param url - the bucket/object of the task jar
+     * @param hash - the hex SHA-256 hash of the task jar
+     * @return the code version
+     * @throws IOException if the code can't be downloaded or doesn't match its hash
+     */
+    private CodeVersion load(final CloudService cloudService, final String url, final String hash) 
+            throws IOException {
+
+        FutureTask<CodeVersion> future = this.versions.get(hash);
+
+        if(future == null) {
+            FutureTask<CodeVersion> task = new FutureTask<>(new Callable<CodeVersion>() {
+                @Override
+                public CodeVersion call() throws Exception {
+                    return fetch(cloudService, url, hash);
+                }
+            });
+
+            future = this.versions.putIfAbsent(hash, task);
+
+            if(future == null) {
+                future = task;
+                task.run();
+            }
+        }
+
+        try {
+            CodeVersion version = future.get();
+            this.use(hash);
+            return version;
+
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted whilst loading the task code: " + url, e);
+
+        } catch(ExecutionException e) {
+            // don't cache failures, the next caller will try again
+            this.versions.remove(hash, future);
+            Throwable cause = e.getCause();
+            throw (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Record the use of a code version, the least recently used versions are evicted if there are more than 
+     * the maximum
+     * @param hash - the hex SHA-256 hash of the task jar
+     */
+    private void use(String hash) {
+        synchronized(this.used) {
+            this.used.put(hash, Boolean.TRUE);
+
+            for(Iterator<String> iterator = this.used.keySet().iterator(); 
+                    (this.used.size() > this.maxVersions) && iterator.hasNext();) {
+
+                String eldest = iterator.next();
+                iterator.remove();
+
+                if(this.versions.remove(eldest) != null) {
+                    log.info("Evicted the task code version " + eldest);
+                }
+            }
+        }
+    }
+
+    /**
+     * Use the local copy of a task jar if it matches its hash, otherwise download it from cloud storage
+     * @param cloudService - the cloud service to download the code with
+     * @param url - the bucket/object of the task jar
+     * @param hash - the hex SHA-256 hash of the task jar
+     * @return the code version
+     * @throws IOException if the hash is invalid or the code can't be downloaded or doesn't match its hash
+     */
+    private CodeVersion fetch(CloudService cloudService, String url, String hash) throws IOException {
+
+        if(!HASH.matcher(hash).matches()) {
+            throw new IOException("Task code " + url + " has an invalid hash: " + hash);
+        }
+
+        File jar = new File(this.folder, hash + JAR_EXT);
+
+        if(jar.exists() && !hash.equalsIgnoreCase(hash(jar))) {
+            log.warn("Cached task code doesn't match its hash, downloading again: " + jar);
+            jar.delete();
+        }
+
+        if(!jar.exists()) {
+
+            File part = new File(this.folder, hash + JAR_EXT + PART_EXT);
+            part.getParentFile().mkdirs();
+
+            String location = StringUtils.removeStart(url, URL_SCHEME);
+            String bucket = StringUtils.substringBefore(location, String.valueOf(BUCKET_SEPARATOR));
+            String object = StringUtils.substringAfter(location, String.valueOf(BUCKET_SEPARATOR));
+            
+            Validate.notBlank(object, "task code url should be bucket/object: " + url);
+
+            log.info("Downloading the task code " + url + " into " + jar);
+            cloudService.downloadObjectFromCloudStorage(object, part.getPath(), bucket);
+
+            String actual = hash(part);
+
+            if(!hash.equalsIgnoreCase(actual)) {
+                part.delete();
+                throw new IOException("Task code " + url + " has hash " + actual + ", expected " + hash);
+            }
+
+            // another process might have cached the same jar in the meantime
+            if(!part.renameTo(jar) && !jar.exists()) {
+                throw new IOException("Unable to cache the task code in " + jar);
+            }
+            
+            part.delete();
+        }
+
+        URLClassLoader classLoader = new ChildFirstClassLoader(new URL[] { jar.toURI().toURL() }, 
+                TaskCodeCache.class.getClassLoader());
+
+        return new CodeVersion(classLoader);
+    }
+
+    /**
+     * @param file - the file to hash
+     * @return the hex SHA-256 hash of the file content
+     * @throws IOException if the file can't be read
+     */
+    private static String hash(File file) throws IOException {
+        return Files.hash(file, Hashing.sha256()).toString();
+    }
+
+    /**
+     * A loaded code version and the binders of its task classes
+     */
+    private static class CodeVersion {
+
+        private final URLClassLoader classLoader;
+
+        // class name => binder
+        private final ConcurrentMap<String, TaskBinder> binders = new ConcurrentHashMap<>();
+
+        /**
+         * @param classLoader - the class loader of the code version
+         */
+        CodeVersion(URLClassLoader classLoader) {
+            this.classLoader = classLoader;
+        }
+
+        /**
+         * @param className - the task full className
+         * @return the binder of the class from this code version
+         * @throws ClassInstantiationException if the class isn't a task that can be instantiated
+         */
+        TaskBinder getBinder(String className) throws ClassInstantiationException {
+            TaskBinder binder = this.binders.get(className);
+
+            if(binder == null) {
+                binder = TaskBinder.forClass(className, this.classLoader);
+                TaskBinder existing = this.binders.putIfAbsent(className, binder);
+
+                if(existing != null) {
+                    binder = existing;
+                }
+            }
+
+            return binder;
+        }
+    }
+
+    /**
+     * Loads the classes and resources of a task jar before those of its parent, except for the JDK and the 
+     * framework classes which are always loaded by the parent
+     */
+    static class ChildFirstClassLoader extends URLClassLoader {
+
+        // the packages that are always loaded by the parent
+        private static final String[] PARENT_FIRST = { "java.", "javax.", "sun.", "com.sun.", "jdk.", 
+            "org.w3c.dom.", "org.xml.sax.", "io.cloudex.framework." };
+
+        static {
+            ClassLoader.registerAsParallelCapable();
+        }
+
+        /**
+         * @param urls - the urls of the task jar
+         * @param parent - the class loader of the framework
+         */
+        ChildFirstClassLoader(URL[] urls, ClassLoader parent) {
+            super(urls, parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+
+            if(StringUtils.startsWithAny(name, PARENT_FIRST)) {
+                return super.loadClass(name, resolve);
+            }
+
+            synchronized(this.getClassLoadingLock(name)) {
+                Class<?> loaded = this.findLoadedClass(name);
+
+                if(loaded == null) {
+                    try {
+                        loaded = this.findClass(name);
+
+                    } catch(ClassNotFoundException e) {
+                        loaded = super.loadClass(name, false);
+                    }
+                }
+
+                if(resolve) {
+                    this.resolveClass(loaded);
+                }
+
+                return loaded;
+            }
+        }
+
+        @Override
+        public URL getResource(String name) {
+
+            URL resource = null;
+
+            if(!StringUtils.startsWithAny(name.replace('/', '.'), PARENT_FIRST)) {
+                resource = this.findResource(name);
+            }
+
+            return (resource != null) ? resource : super.getResource(name);
+        }
+    }
+
+}
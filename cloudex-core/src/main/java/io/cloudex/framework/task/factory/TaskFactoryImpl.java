@@ -23,13 +23,13 @@ package io.cloudex.framework.task.factory;
 import io.cloudex.framework.cloud.api.CloudService;
 import io.cloudex.framework.cloud.entities.VmMetaData;
 import io.cloudex.framework.components.Context;
+import io.cloudex.framework.config.CodeConfig;
 import io.cloudex.framework.config.TaskConfig;
 import io.cloudex.framework.exceptions.ClassInstantiationException;
 import io.cloudex.framework.exceptions.InstancePopulationException;
-import io.cloudex.framework.task.CommonTask;
 import io.cloudex.framework.task.Task;
+import io.cloudex.framework.types.CodeLocation;
 import io.cloudex.framework.types.TargetType;
-import io.cloudex.framework.utils.ObjectUtils;
 
 import java.io.IOException;
 import java.util.Map;
@@ -38,10 +38,30 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 
 /**
+ * Creates the tasks through a cached {@link TaskBinder} of their class, remote task code is loaded 
+ * through a {@link TaskCodeCache}
  * @author Omer Dawelbeit (omerio)
  *
  */
 public class TaskFactoryImpl implements TaskFactory {
+    
+    private final TaskCodeCache codeCache;
+    
+    /**
+     * Load remote code into the default cache folder
+     */
+    public TaskFactoryImpl() {
+        this(new TaskCodeCache());
+    }
+
+    /**
+     * @param codeCache - the cache of the remote task code
+     */
+    public TaskFactoryImpl(TaskCodeCache codeCache) {
+        super();
+        Validate.notNull(codeCache, "codeCache is required");
+        this.codeCache = codeCache;
+    }
 
     @Override
     public Task getTask(TaskConfig config, Context context, CloudService cloudService) 
@@ -50,17 +70,26 @@ public class TaskFactoryImpl implements TaskFactory {
         Validate.notNull(config);
         Validate.notNull(config.getTarget());
   
-        // TODO Deal with remote code
         Task task = null;
         if(TargetType.COORDINATOR.equals(config.getTarget())) {
             
             String className = config.getClassName();
             Validate.notNull(className, "task className is required");
             
-            task = ObjectUtils.createInstance(CommonTask.class, config.getClassName());;
+            CodeConfig code = config.getCode();
+            TaskBinder binder = null;
+            
+            if((code != null) && code.isRemote()) {
+                binder = this.codeCache.getBinder(cloudService, code.getUrl(), code.getHash(), className);
+                
+            } else {
+                binder = TaskBinder.forClass(className);
+            }
+            
+            task = binder.newTask();
             
             Map<String, Object> input = context.resolveValues(config.getInput());
-            ObjectUtils.populate(task, input);
+            binder.bind(task, input);
             task.setCloudService(cloudService);
             
         }
@@ -82,11 +111,22 @@ public class TaskFactoryImpl implements TaskFactory {
         
         if(StringUtils.isNotBlank(className)) {
             //Validate.notNull(className, "task className is required");
-            // TODO deal with remote code
+            TaskBinder binder = null;
+            
+            if(CodeLocation.REMOTE.equals(metaData.getTaskCodeType())) {
+                binder = this.codeCache.getBinder(cloudService, metaData.getTaskCodeUrl(), 
+                        metaData.getTaskCodeHash(), className);
+                
+            } else {
+                binder = TaskBinder.forClass(className);
+            }
+            
+            // fetch the code of the next task whilst this one runs
+            this.codeCache.preload(cloudService, metaData.getNextTaskCodeUrl(), metaData.getNextTaskCodeHash());
 
-            task = ObjectUtils.createInstance(CommonTask.class, className);
+            task = binder.newTask();
             Map<String, String> input = metaData.getUserMetaData();
-            ObjectUtils.populate(task, input);
+            binder.bind(task, input);
             task.setCloudService(cloudService);
         }
         return task;
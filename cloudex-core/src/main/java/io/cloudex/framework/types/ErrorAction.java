@@ -20,11 +20,14 @@
 package io.cloudex.framework.types;
 
 /**
+ * What to do when a task or a processor fails. RETRY only applies to processor tasks, the failed item is 
+ * given to a different processor a limited number of times.
+ * 
  * @author Omer Dawelbeit (omerio)
  *
  */
 public enum ErrorAction {
 
-    CONTINUE, EXIT;
+    CONTINUE, EXIT, RETRY;
 
 }
@@ -41,6 +41,11 @@ public final class Constants {
     
     public static final String PRCESSORS_KEY = "processors"; 
     
+    /**
+     * The task output key for the keys of the items or storage objects cached by a processor task
+     */
+    public static final String CACHED_KEYS_KEY = "cachedKeys";
+    
     /**
      * Extension for plain text files
      */
@@ -0,0 +1,381 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.cloud.api.ApiUtils;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.components.Processor;
+import io.cloudex.framework.task.CommonTask;
+import io.cloudex.framework.task.Task;
+import io.cloudex.framework.task.factory.TaskFactory;
+import io.cloudex.framework.task.factory.TaskFactoryImpl;
+import io.cloudex.framework.types.ProcessorStatus;
+import io.cloudex.framework.utils.ObjectUtils;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.List;
+
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.integration.junit4.JMockit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+@RunWith(JMockit.class)
+public class SocketTaskChannelTest {
+
+    private static final String INSTANCE_ID = "cloudex-processor-1";
+
+    private static final String TASK_CLASS = "io.cloudex.framework.components.tasks.ProcessorFakeTask";
+
+    // the metadata published by the processor
+    private VmMetaData metaData;
+
+    private int metaDataWrites;
+
+    @Before
+    public void setUp() throws Exception {
+        metaData = new VmMetaData();
+        metaData.setTaskClass(TASK_CLASS);
+        metaData.addUserValue("item", "1");
+    }
+
+    /**
+     * an idle processor is pushed its next item without the coordinator writing to its metadata
+     * @throws Exception
+     */
+    @Test
+    public void testPush() throws Exception {
+        final CloudService cloudService = this.getCloudService().getMockInstance();
+        final List<String> items = new CopyOnWriteArrayList<>();
+        final Processor [] processor = new Processor[1];
+
+        TaskFactory taskFactory = new TaskFactoryImpl() {
+            @Override
+            public Task getTask(final VmMetaData metaData, CloudService cloudService) {
+                return new CommonTask() {
+                    @Override
+                    public void run() throws IOException {
+                        items.add(metaData.getUserMetaData().get("item"));
+
+                        if(items.size() == 2) {
+                            processor[0].setStop(true);
+                        }
+                    }
+                };
+            }
+        };
+
+        // the coordinator has written the token of the job with the first item
+        SocketTaskChannel coordinator = new SocketTaskChannel();
+        metaData.addValue(VmMetaData.CLOUDEX_CHANNEL_TOKEN, coordinator.getToken());
+
+        final SocketTaskChannel channel = new SocketTaskChannel();
+        processor[0] = new Processor.Builder(cloudService).setTaskFactory(taskFactory).setTaskChannel(channel)
+                .build();
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    processor[0].run();
+
+                } catch(IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+
+        // wait for the processor to complete the first item and publish its address
+        while(!ProcessorStatus.READY.equals(this.getPublished().getProcessorStatus())) {
+            ApiUtils.block(100, TimeUnit.MILLISECONDS);
+        }
+
+        assertEquals(channel.getAddress(), this.getPublished().getValue(VmMetaData.CLOUDEX_CHANNEL));
+        int writes = this.getMetaDataWrites();
+
+        VmMetaData item = new VmMetaData();
+        item.setTaskClass(TASK_CLASS);
+        item.addUserValue("item", "2");
+
+        // the processor replies as soon as it has taken the item
+        assertNull(coordinator.send(cloudService, INSTANCE_ID, item, null));
+
+        thread.join(TimeUnit.SECONDS.toMillis(30));
+
+        // only the processor has written to its metadata
+        assertTrue(this.getMetaDataWrites() > writes);
+        assertEquals(2, items.size());
+        assertEquals("2", items.get(1));
+        assertEquals(ProcessorStatus.READY, this.getPublished().getProcessorStatus());
+    }
+
+    /**
+     * the item is written to the processor metadata if the processor isn't listening on its address
+     * @throws IOException
+     */
+    @Test
+    public void testFallback() throws IOException {
+        int port;
+
+        try(ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        metaData.addValue(VmMetaData.CLOUDEX_CHANNEL, "localhost:" + port);
+        metaData.setFingerprint("fingerprint");
+
+        VmMetaData item = new VmMetaData();
+        item.setTaskClass(TASK_CLASS);
+
+        String operation = new SocketTaskChannel().send(this.getCloudService().getMockInstance(), INSTANCE_ID, 
+                item, null);
+
+        assertEquals("operation", operation);
+        assertEquals(TASK_CLASS, this.getPublished().getTaskClass());
+        assertEquals("fingerprint", this.getPublished().getFingerprint());
+    }
+
+    /**
+     * items that don't carry the token of the job are rejected, the address is only published once the token
+     * is known
+     * @throws IOException
+     */
+    @Test
+    public void testToken() throws IOException {
+        SocketTaskChannel channel = new SocketTaskChannel();
+        channel.open(this.getCloudService().getMockInstance());
+
+        try {
+            VmMetaData published = new VmMetaData();
+            channel.advertise(published);
+            assertNull(published.getValue(VmMetaData.CLOUDEX_CHANNEL));
+
+            assertEquals("REJECTED", this.push(channel.getAddress(), "{\"cloudex-task-class\":\"Task\"}"));
+
+            VmMetaData item = new VmMetaData();
+            item.addValue(VmMetaData.CLOUDEX_CHANNEL_TOKEN, "token");
+            channel.advertise(item);
+            assertEquals(channel.getAddress(), item.getValue(VmMetaData.CLOUDEX_CHANNEL));
+
+            assertEquals("REJECTED", this.push(channel.getAddress(), 
+                    "{\"cloudex-task-class\":\"Task\",\"cloudex-channel-token\":\"other\"}"));
+
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * the item isn't written to the metadata if the processor has taken it but its reply is lost
+     * @throws Exception
+     */
+    @Test
+    public void testLostReply() throws Exception {
+
+        try(final ServerSocket server = new ServerSocket(0)) {
+
+            // a processor that publishes BUSY for the item then drops the connection without replying
+            Thread processor = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try(Socket socket = server.accept()) {
+                        String line = SocketTaskChannel.readLine(new InputStreamReader(socket.getInputStream(), 
+                                StandardCharsets.UTF_8), SocketTaskChannel.MAX_ITEM_LENGTH);
+                        Map<String, String> item = ObjectUtils.GSON.fromJson(line, 
+                                new TypeToken<Map<String, String>>(){}.getType());
+
+                        VmMetaData busy = new VmMetaData(new HashMap<String, Object>(item), "fingerprint");
+                        busy.setProcessorStatus(ProcessorStatus.BUSY);
+
+                        synchronized(SocketTaskChannelTest.this) {
+                            metaData = busy;
+                        }
+
+                    } catch(IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            processor.start();
+
+            metaData.addValue(VmMetaData.CLOUDEX_CHANNEL, "localhost:" + server.getLocalPort());
+
+            VmMetaData item = new VmMetaData();
+            item.setTaskClass(TASK_CLASS);
+            item.addUserValue("item", "2");
+
+            assertNull(new SocketTaskChannel().send(this.getCloudService().getMockInstance(), INSTANCE_ID, 
+                    item, null));
+            processor.join();
+
+            assertEquals(ProcessorStatus.BUSY, this.getPublished().getProcessorStatus());
+            assertEquals(item.getValue(VmMetaData.CLOUDEX_DELIVERY), 
+                    this.getPublished().getValue(VmMetaData.CLOUDEX_DELIVERY));
+        }
+    }
+
+    /**
+     * an item in the metadata that the processor has already taken isn't run again, the last status is 
+     * published back instead
+     * @throws Exception
+     */
+    @Test
+    public void testTakenItem() throws Exception {
+        final CloudService cloudService = this.getCloudService().getMockInstance();
+        final SocketTaskChannel channel = new SocketTaskChannel();
+        channel.open(cloudService);
+
+        VmMetaData busy = new VmMetaData();
+        busy.addValue(VmMetaData.CLOUDEX_DELIVERY, "item-1");
+        busy.setProcessorStatus(ProcessorStatus.BUSY);
+        channel.advertise(busy);
+
+        VmMetaData ready = new VmMetaData();
+        ready.setProcessorStatus(ProcessorStatus.READY);
+        channel.advertise(ready);
+        assertEquals("item-1", ready.getValue(VmMetaData.CLOUDEX_DELIVERY));
+
+        // the coordinator has written the item again
+        metaData = new VmMetaData();
+        metaData.setTaskClass(TASK_CLASS);
+        metaData.addValue(VmMetaData.CLOUDEX_DELIVERY, "item-1");
+
+        Thread closer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ApiUtils.block(5);
+                channel.close();
+            }
+        });
+        closer.start();
+
+        VmMetaData received = channel.receive(cloudService, ready);
+        closer.join();
+
+        assertEquals(ProcessorStatus.READY, received.getProcessorStatus());
+        assertEquals(ProcessorStatus.READY, this.getPublished().getProcessorStatus());
+    }
+
+    /**
+     * Push a line to a processor
+     * @param processorAddress - the host:port of the processor
+     * @param line - the line to push
+     * @return the reply of the processor
+     * @throws IOException
+     */
+    private String push(String processorAddress, String line) throws IOException {
+        try(Socket socket = new Socket(StringUtils.substringBeforeLast(processorAddress, ":"), 
+                Integer.parseInt(StringUtils.substringAfterLast(processorAddress, ":")))) {
+
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            writer.write(line + '\n');
+            writer.flush();
+
+            return SocketTaskChannel.readLine(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), 
+                    SocketTaskChannel.MAX_ITEM_LENGTH);
+        }
+    }
+
+    /**
+     * @return the number of metadata writes so far
+     */
+    private synchronized int getMetaDataWrites() {
+        return metaDataWrites;
+    }
+
+    /**
+     * @return the metadata last published
+     */
+    private synchronized VmMetaData getPublished() {
+        return metaData;
+    }
+
+    /**
+     * @return a cloud service that shares the processor metadata between the processor and the coordinator
+     */
+    private MockUp<CloudService> getCloudService() {
+        return new MockUp<CloudService>() {
+
+            @Mock
+            public VmMetaData init() throws IOException { 
+                return metaData; 
+            }
+
+            @Mock
+            public VmMetaData getMetaData(boolean waitForChange) throws IOException {
+                synchronized(SocketTaskChannelTest.this) {
+                    return new VmMetaData(new HashMap<>(metaData.getAttributes()), metaData.getFingerprint());
+                }
+            }
+
+            @Mock
+            public void updateMetadata(VmMetaData vmMetaData) throws IOException {
+                synchronized(SocketTaskChannelTest.this) {
+                    metaData = new VmMetaData(new HashMap<>(vmMetaData.getAttributes()), null);
+                    metaDataWrites++;
+                }
+            }
+
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                assertEquals(INSTANCE_ID, instanceId);
+                return this.getMetaData(false);
+            }
+
+            @Mock
+            public String updateMetadata(VmMetaData vmMetaData, String zoneId, String instanceId, boolean block) 
+                    throws IOException {
+                assertEquals(INSTANCE_ID, instanceId);
+                synchronized(SocketTaskChannelTest.this) {
+                    metaData = vmMetaData;
+                }
+                return "operation";
+            }
+
+        };
+    }
+
+}
@@ -0,0 +1,171 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.entities.StorageObject;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.utils.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.integration.junit4.JMockit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+@RunWith(JMockit.class)
+public class StorageTaskChannelTest {
+
+    private static final String INSTANCE_ID = "cloudex-processor-1";
+
+    private static final String BUCKET = "testBucket";
+
+    private static final String TASK_CLASS = "io.cloudex.framework.components.tasks.ProcessorFakeTask";
+
+    // the processor metadata
+    private VmMetaData metaData;
+
+    // the uploaded objects, object name => content
+    private Map<String, String> objects;
+
+    @Before
+    public void setUp() throws Exception {
+        metaData = new VmMetaData();
+        metaData.setFingerprint("fingerprint");
+        objects = new HashMap<>();
+    }
+
+    /**
+     * an item larger than the maximum metadata size is uploaded and received through a reference
+     * @throws IOException
+     */
+    @Test
+    public void testLargeItem() throws IOException {
+        CloudService cloudService = this.getCloudService().getMockInstance();
+
+        VmMetaData item = new VmMetaData();
+        item.setTaskClass(TASK_CLASS);
+        item.addUserValue("files", StringUtils.repeat("file.txt,", 20));
+
+        assertEquals("operation", new StorageTaskChannel(BUCKET).send(cloudService, INSTANCE_ID, item, null));
+
+        assertEquals(1, objects.size());
+        assertNull(metaData.getTaskClass());
+        assertEquals(BUCKET + '/' + objects.keySet().iterator().next(), metaData.getValue(VmMetaData.CLOUDEX_PAYLOAD));
+        assertEquals("fingerprint", metaData.getFingerprint());
+
+        VmMetaData received = new StorageTaskChannel().receive(cloudService, metaData);
+
+        assertEquals(TASK_CLASS, received.getTaskClass());
+        assertEquals(item.getUserMetaData(), received.getUserMetaData());
+        assertNull(received.getValue(VmMetaData.CLOUDEX_PAYLOAD));
+        assertEquals("fingerprint", received.getFingerprint());
+        assertTrue(!(new File(FileUtils.TEMP_FOLDER + objects.keySet().iterator().next())).exists());
+    }
+
+    /**
+     * an item that fits in the metadata is written to the metadata
+     * @throws IOException
+     */
+    @Test
+    public void testSmallItem() throws IOException {
+        CloudService cloudService = this.getCloudService().getMockInstance();
+
+        VmMetaData item = new VmMetaData();
+        item.setTaskClass(TASK_CLASS);
+
+        assertEquals("operation", new StorageTaskChannel(BUCKET).send(cloudService, INSTANCE_ID, item, null));
+
+        assertTrue(objects.isEmpty());
+        assertEquals(TASK_CLASS, metaData.getTaskClass());
+        assertNotNull(new StorageTaskChannel().receive(cloudService, metaData).getTaskClass());
+    }
+
+    /**
+     * @return a cloud service with the processor metadata and an in memory bucket
+     */
+    private MockUp<CloudService> getCloudService() {
+        return new MockUp<CloudService>() {
+
+            @Mock
+            public int getMaximumMetaDataSize() {
+                return 100;
+            }
+
+            @Mock
+            public VmMetaData getMetaData(boolean waitForChange) throws IOException {
+                return metaData;
+            }
+
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                assertEquals(INSTANCE_ID, instanceId);
+                return metaData;
+            }
+
+            @Mock
+            public String updateMetadata(VmMetaData vmMetaData, String zoneId, String instanceId, boolean block) 
+                    throws IOException {
+                assertEquals(INSTANCE_ID, instanceId);
+                metaData = vmMetaData;
+                return "operation";
+            }
+
+            @Mock
+            public StorageObject uploadFileToCloudStorage(String filename, String bucket) throws IOException {
+                assertEquals(BUCKET, bucket);
+                Path file = Paths.get(filename);
+                objects.put(file.getFileName().toString(), 
+                        new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+                return null;
+            }
+
+            @Mock
+            public void downloadObjectFromCloudStorage(String object, String outFile, String bucket) 
+                    throws IOException {
+                assertEquals(BUCKET, bucket);
+                Files.write(Paths.get(outFile), objects.get(object).getBytes(StandardCharsets.UTF_8));
+            }
+
+        };
+    }
+
+}
@@ -97,4 +97,42 @@ public class VmInstanceTest {
         assertEquals(expected, cost, 0.00001);
     }
 
+    /**
+     * Preemptible VMs are billed at their preemptible cost if set
+     */
+    @Test
+    public void testGetCostPreemptible() {
+        instance.setEnd(DateUtils.addHours(instance.getStart(), 1));
+        instance.getVmConfig().setPreemptible(true);
+        
+        assertEquals(COST, instance.getCost(), 0);
+        
+        instance.getVmConfig().setPreemptibleCost(COST / 4);
+        assertEquals(COST / 4, instance.getCost(), 0);
+        
+        instance.getVmConfig().setPreemptible(false);
+        assertEquals(COST, instance.getCost(), 0);
+    }
+
+    /**
+     * The VM is billed for the minimum usage then for every started minute
+     */
+    @Test
+    public void testNextBillingIncrement() {
+        Date start = instance.getStart();
+        
+        // 5 minutes, still within the minimum usage
+        Date date = DateUtils.addMinutes(start, 5);
+        assertEquals(MIN_USE, instance.getBilledUsage(date));
+        assertEquals(DateUtils.addSeconds(start, (int) MIN_USE), instance.getNextBillingIncrement(date));
+        
+        // 12.5 minutes
+        date = DateUtils.addSeconds(start, (60 * 12) + 30);
+        assertEquals(13 * 60, instance.getBilledUsage(date));
+        assertEquals(DateUtils.addMinutes(start, 13), instance.getNextBillingIncrement(date));
+        
+        instance.setEnd(DateUtils.addMinutes(start, 5));
+        assertEquals(COST * MIN_USE / 3600, instance.getCost(), 0.00001);
+    }
+
 }
@@ -0,0 +1,162 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.framework.cloud.sim;
+
+import static org.junit.Assert.assertEquals;
+import io.cloudex.framework.components.Coordinator;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Runs the coordinator at scale on the {@link SimulatedCloudService} and reports the makespan, the wall time
+ * spent by the coordinator itself and the api calls made for each dispatch policy. Not part of the normal
+ * build, run with:
+ * <pre>
+ * mvn test -Pbenchmark -Dbenchmark.processors=1000,10000 -Dbenchmark.items=100000
+ * </pre>
+ *
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class CoordinatorSimulationBenchmark {
+
+    private static final int [] PROCESSORS = getInts("benchmark.processors", "1000,10000");
+
+    private static final int ITEMS = getInts("benchmark.items", "100000")[0];
+
+    private static final long SEED = 42;
+
+    @BeforeClass
+    public static void setUp() {
+        // the coordinator logs every processor it starts and programs
+        Logger.getLogger("io.cloudex").setLevel(Level.WARNING);
+
+        System.out.println(String.format("%-12s %10s %10s %14s %12s %12s %14s %12s", 
+                "policy", "processors", "items", "makespan (s)", "wall (ms)", "api calls", "calls / item", 
+                "vm hours"));
+    }
+
+    /**
+     * Every processor is polled and programmed with its own api calls
+     * @throws IOException
+     */
+    @Test
+    public void testSinglePolling() throws IOException {
+        for(int processors: PROCESSORS) {
+            run("single", processors, new Coordinator.Builder(null, null));
+        }
+    }
+
+    /**
+     * Processors are polled and programmed with batch api calls
+     * @throws IOException
+     */
+    @Test
+    public void testBatchPolling() throws IOException {
+        for(int processors: PROCESSORS) {
+            run("batch", processors, new Coordinator.Builder(null, null).setBatchApiCalls(true));
+        }
+    }
+
+    /**
+     * Processors are polled with a single list call per round
+     * @throws IOException
+     */
+    @Test
+    public void testListPolling() throws IOException {
+        for(int processors: PROCESSORS) {
+            run("list", processors, new Coordinator.Builder(null, null).setBatchApiCalls(true).setListPolling(true));
+        }
+    }
+
+    /**
+     * Processors are given their items as soon as each is provisioned
+     * @throws IOException
+     */
+    @Test
+    public void testStreamingProvisioning() throws IOException {
+        for(int processors: PROCESSORS) {
+            run("streaming", processors, new Coordinator.Builder(null, null).setBatchApiCalls(true)
+                    .setListPolling(true).setStreamingProvisioning(true));
+        }
+    }
+
+    /**
+     * Run the job on a cloud with typical latencies, 50ms per api call, 30 to 90 seconds to provision a VM,
+     * 1 to 5 seconds to update the metadata and items with a median of 2 minutes and a long tail
+     * @param policy - the name of the dispatch policy
+     * @param processors - the number of processors
+     * @param builder - the coordinator builder with the dispatch policy options set
+     * @throws IOException
+     */
+    private static void run(String policy, int processors, Coordinator.Builder builder) throws IOException {
+
+        SimulatedCloudService cloudService = new SimulatedCloudService.Builder()
+                .setSeed(SEED)
+                .setApiLatency(Distribution.constant(50))
+                .setProvisioningLatency(Distribution.uniform(30_000, 90_000))
+                .setPropagationDelay(Distribution.uniform(1_000, 5_000))
+                .setItemDuration(Distribution.logNormal(TimeUnit.MINUTES.toMillis(2), 0.5))
+                .build();
+
+        Coordinator coordinator = builder.setJob(SimulatedCloudServiceTest.createJob(ITEMS, processors))
+                .setCloudService(cloudService)
+                .setMaxRequestsPerSecond(0)
+                .build();
+
+        long start = System.currentTimeMillis();
+        coordinator.run();
+        long wall = System.currentTimeMillis() - start;
+
+        assertEquals(ITEMS, cloudService.getItemsRun());
+
+        System.out.println(String.format("%-12s %10d %10d %14.1f %12d %12d %14.2f %12.1f", 
+                policy, processors, ITEMS, 
+                cloudService.getClock().now() / 1000.0,
+                wall,
+                cloudService.getApiCallCount(),
+                cloudService.getApiCallCount() / (double) ITEMS,
+                cloudService.getInstanceTime() / (double) TimeUnit.HOURS.toMillis(1)));
+    }
+
+    /**
+     * @param property - the system property
+     * @param defaultValue - the default comma separated values
+     * @return the values of the property
+     */
+    private static int [] getInts(String property, String defaultValue) {
+        String [] values = StringUtils.split(System.getProperty(property, defaultValue), ',');
+        int [] ints = new int[values.length];
+
+        for(int i = 0; i < values.length; i++) {
+            ints[i] = Integer.parseInt(values[i].trim());
+        }
+
+        return ints;
+    }
+
+}
@@ -0,0 +1,167 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.framework.cloud.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.components.Coordinator;
+import io.cloudex.framework.config.Job;
+import io.cloudex.framework.config.JobTest;
+import io.cloudex.framework.config.TaskConfig;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class SimulatedCloudServiceTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * 20 items of one minute each on 4 processors take 5 minutes after the processors are provisioned
+     * @throws IOException
+     */
+    @Test
+    public void testMakespan() throws IOException {
+
+        SimulatedCloudService cloudService = new SimulatedCloudService.Builder()
+                .setProvisioningLatency(Distribution.constant(MINUTE))
+                .setPropagationDelay(Distribution.constant(1000))
+                .setApiLatency(Distribution.constant(100))
+                .setItemDuration(Distribution.constant(MINUTE))
+                .build();
+
+        createCoordinator(createJob(20, 4), cloudService).run();
+
+        long clock = cloudService.getClock().now();
+
+        assertEquals(20, cloudService.getItemsRun());
+        assertEquals(4, cloudService.getInstancesStarted());
+        assertEquals(Long.valueOf(1), cloudService.getApiCalls().get("startInstance"));
+        // 16 queued items each programmed with a read and an update
+        assertEquals(Long.valueOf(16), cloudService.getApiCalls().get("updateMetadata"));
+        
+        assertTrue(clock >= (6 * MINUTE));
+        assertTrue(clock < (7 * MINUTE));
+        // the processors are created once the start call has returned
+        assertEquals(4 * (clock - 100), cloudService.getInstanceTime());
+    }
+
+    /**
+     * Processors over the instance quota fail to start
+     * @throws IOException
+     */
+    @Test
+    public void testInstanceQuota() throws IOException {
+
+        SimulatedCloudService cloudService = new SimulatedCloudService.Builder()
+                .setMaxInstances(2)
+                .build();
+
+        try {
+            createCoordinator(createJob(4, 4), cloudService).run();
+            throw new AssertionError("Expected an IOException");
+
+        } catch(IOException e) {
+            assertEquals("Some processors have failed to start", e.getMessage());
+        }
+
+        assertEquals(2, cloudService.getInstanceCount());
+    }
+
+    /**
+     * Calls over the rate quota wait for the next second of virtual time and failed polls are retried
+     * @throws IOException
+     */
+    @Test
+    public void testRateQuotaAndErrors() throws IOException {
+
+        SimulatedCloudService cloudService = new SimulatedCloudService.Builder()
+                .setSeed(7)
+                .setApiLatency(Distribution.constant(10))
+                .setItemDuration(Distribution.uniform(MINUTE, 2 * MINUTE))
+                .setMaxRequestsPerSecond(10)
+                .setApiErrorRate(0.05)
+                .build();
+
+        createCoordinator(createJob(10, 5), cloudService).run();
+
+        assertEquals(10, cloudService.getItemsRun());
+        assertTrue(cloudService.getThrottledCalls() > 0);
+        assertTrue(cloudService.getApiErrors() > 0);
+        // at most 10 calls a second
+        assertTrue(cloudService.getApiCallCount() <= (10 * (cloudService.getClock().now() / 1000 + 1)));
+    }
+
+    /**
+     * Distributions stay within their bounds
+     */
+    @Test
+    public void testDistributions() {
+        Random random = new Random(1);
+
+        assertEquals(5, Distribution.constant(5).sample(random));
+
+        for(int i = 0; i < 1000; i++) {
+            long sample = Distribution.uniform(10, 20).sample(random);
+            assertTrue((sample >= 10) && (sample <= 20));
+            assertTrue(Distribution.exponential(10).sample(random) >= 0);
+            assertTrue(Distribution.logNormal(10, 1).sample(random) >= 0);
+        }
+
+        assertEquals(10, Distribution.logNormal(10, 0).sample(random));
+    }
+
+    /**
+     * The coordinator polls without the real time rate limit, the simulated cloud service applies its own
+     * @param job - the job
+     * @param cloudService - the simulated cloud service
+     * @return the coordinator
+     * @throws IOException
+     */
+    static Coordinator createCoordinator(Job job, SimulatedCloudService cloudService) throws IOException {
+        return new Coordinator.Builder(job, cloudService).setMaxRequestsPerSecond(0).build();
+    }
+
+    /**
+     * @param items - the number of items
+     * @param processors - the maximum number of processors
+     * @return a job with a single processor task
+     * @throws IOException
+     */
+    static Job createJob(int items, int processors) throws IOException {
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+
+        TaskConfig task = job.getTasks().get(0);
+        task.getPartitioning().setCount(items);
+        task.setMaxProcessors(processors);
+        job.getData().put("schemaTermsFile", "terms.txt");
+
+        return job;
+    }
+
+}
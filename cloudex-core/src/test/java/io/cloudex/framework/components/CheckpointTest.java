@@ -0,0 +1,431 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.config.Job;
+import io.cloudex.framework.config.JobTest;
+import io.cloudex.framework.config.VmConfig;
+import io.cloudex.framework.partition.builtin.BinPackingPartitionTest;
+import io.cloudex.framework.partition.entities.Item;
+import io.cloudex.framework.partition.entities.Partition;
+import io.cloudex.framework.types.ProcessorStatus;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.integration.junit4.JMockit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+
+/**
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+@RunWith(JMockit.class)
+public class CheckpointTest {
+
+    private String filename;
+
+    @Before
+    public void setUp() throws IOException {
+        File file = File.createTempFile("checkpoint", ".json");
+        file.delete();
+        this.filename = file.getAbsolutePath();
+    }
+
+    @After
+    public void tearDown() {
+        new File(this.filename).delete();
+    }
+
+    /**
+     * The state recorded in the journal is restored when the journal is reopened
+     * @throws IOException
+     */
+    @Test
+    public void testReopen() throws IOException {
+        Checkpoint checkpoint = new Checkpoint(this.filename);
+        checkpoint.open(null);
+
+        VmConfig config = new VmConfig();
+        config.setInstanceId("processor1");
+        config.setVmType("n1-standard-1");
+
+        checkpoint.processorStarted(config, new Date(1000));
+        checkpoint.itemStarted(1, 0, "processor1");
+        checkpoint.itemCompleted(1, 0, "processor1");
+        checkpoint.itemStarted(1, 1, "processor1");
+
+        Map<String, Object> output = new HashMap<>();
+        output.put("files", Sets.newHashSet("file1", "file2"));
+        output.put("vmConfig", config);
+        checkpoint.taskCompleted(0, output);
+
+        // the coordinator dies whilst writing a record
+        try(FileWriter writer = new FileWriter(this.filename, true)) {
+            writer.write("{\"type\":\"ITEM_COMP");
+        }
+
+        checkpoint = new Checkpoint(this.filename);
+        checkpoint.open(null);
+
+        assertTrue(checkpoint.isTaskCompleted(0));
+        assertFalse(checkpoint.isTaskCompleted(1));
+        assertTrue(checkpoint.isItemCompleted(1, 0));
+        assertFalse(checkpoint.isItemCompleted(1, 1));
+        assertArrayEquals(new int [] {1, 1}, checkpoint.getRunningItem("processor1"));
+
+        assertEquals(Sets.newHashSet("file1", "file2"), checkpoint.getContext().get("files"));
+        assertEquals("n1-standard-1", ((VmConfig) checkpoint.getContext().get("vmConfig")).getVmType());
+
+        assertEquals(Sets.newHashSet("processor1"), checkpoint.getProcessors().keySet());
+        assertEquals("processor1", checkpoint.getProcessors().get("processor1").getInstanceId());
+        assertEquals(new Date(1000), checkpoint.getProcessorStart("processor1"));
+
+        checkpoint.processorStopped("processor1");
+        assertTrue(checkpoint.getProcessors().isEmpty());
+        assertNull(checkpoint.getRunningItem("processor1"));
+    }
+
+    /**
+     * The journal of a completed job is discarded
+     * @throws IOException
+     */
+    @Test
+    public void testCompletedJob() throws IOException {
+        Checkpoint checkpoint = new Checkpoint(this.filename);
+        checkpoint.open(null);
+        checkpoint.taskCompleted(0, new HashMap<String, Object>());
+        checkpoint.jobCompleted();
+
+        checkpoint = new Checkpoint(this.filename);
+        checkpoint.open(null);
+        assertFalse(checkpoint.isTaskCompleted(0));
+        assertFalse(new File(this.filename).exists());
+    }
+
+    /**
+     * A task with an output that can't be serialized isn't recorded as completed, so it runs again
+     * @throws IOException
+     */
+    @Test
+    public void testNotSerializableOutput() throws IOException {
+        Checkpoint checkpoint = new Checkpoint(this.filename);
+        checkpoint.open(null);
+
+        Map<String, Object> output = new HashMap<>();
+        output.put("files", Sets.newHashSet("file1"));
+        output.put("reader", new Object());
+        checkpoint.taskCompleted(0, output);
+
+        checkpoint = new Checkpoint(this.filename);
+        checkpoint.open(null);
+        assertFalse(checkpoint.isTaskCompleted(0));
+        assertTrue(checkpoint.getContext().isEmpty());
+    }
+
+    /**
+     * A coordinator restarted after the task that lists the items has completed partitions the restored
+     * items, which keep their type
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testResumePartitionItems() throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest1.json");
+        // the coordinator tasks that output the schemaTermsFile and the fileItems, the second can't run
+        job.getTasks().addAll(0, JobTest.loadJob("CoordinatorTest3.json").getTasks().subList(0, 2));
+        assertTrue(job.valid());
+
+        Checkpoint checkpoint = new Checkpoint(this.filename);
+        checkpoint.open(null);
+
+        Map<String, Object> output = new HashMap<>();
+        output.put("schemaTermsFile", "terms.txt");
+        checkpoint.taskCompleted(0, output);
+
+        output = new HashMap<>();
+        output.put("fileItems", BinPackingPartitionTest.createItems());
+        checkpoint.taskCompleted(1, output);
+
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            @Mock(invocations = 1)
+            public VmMetaData init() throws IOException {
+                return new VmMetaData();
+            }
+
+            @Mock
+            public int getMaximumMetaDataSize() {
+                return 10000;
+            }
+
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                VmMetaData metaData = new VmMetaData();
+                metaData.setProcessorStatus(ProcessorStatus.READY);
+                return metaData;
+            }
+
+            @Mock(invocations = 1)
+            public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+                return true;
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+        };
+
+        Coordinator coordinator = new Coordinator.Builder(job, mockup.getMockInstance())
+            .setCheckpoint(new Checkpoint(this.filename)).build();
+        coordinator.run();
+
+        List<Item> items = (List<Item>) coordinator.getContext().get("fileItems");
+        assertEquals(BinPackingPartitionTest.createItems().size(), items.size());
+        assertTrue(items.get(0).getWeight() > 0);
+
+        List<Partition> partitions = (List<Partition>) coordinator.getContext().get("filePartitions");
+        assertFalse(partitions.isEmpty());
+        assertEquals(partitions.size(), coordinator.getProcessors().size());
+    }
+
+    /**
+     * A coordinator restarted mid task waits for the adopted processor that is still busy and
+     * only runs the remaining item on an adopted processor
+     * @throws IOException
+     */
+    @Test
+    public void testResume() throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+
+        Checkpoint checkpoint = new Checkpoint(this.filename);
+        checkpoint.open(null);
+
+        for(String instanceId: new String [] {"processor1", "processor2"}) {
+            VmConfig config = job.getVmConfig().copy();
+            config.setInstanceId(instanceId);
+            checkpoint.processorStarted(config, new Date());
+        }
+
+        checkpoint.itemStarted(0, 0, "processor1");
+        checkpoint.itemCompleted(0, 0, "processor1");
+        checkpoint.itemStarted(0, 1, "processor2");
+
+        final Set<String> polled = Sets.newHashSet();
+
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            @Mock(invocations = 1)
+            public VmMetaData init() throws IOException {
+                return new VmMetaData();
+            }
+
+            @Mock
+            public int getMaximumMetaDataSize() {
+                return 10000;
+            }
+
+            // processor2 is busy the first time it's checked
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                VmMetaData metaData = new VmMetaData();
+                metaData.setProcessorStatus(ProcessorStatus.READY);
+
+                if("processor2".equals(instanceId) && polled.add(instanceId)) {
+                    metaData.setProcessorStatus(ProcessorStatus.BUSY);
+                }
+                return metaData;
+            }
+
+            @Mock(invocations = 0)
+            public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+                return true;
+            }
+
+            @Mock(invocations = 1)
+            public String updateMetadata(VmMetaData metaData, String zoneId, String instanceId, boolean block)
+                    throws IOException {
+                return "operation-" + instanceId;
+            }
+
+            @Mock(invocations = 1)
+            public void blockOnComputeOperations(List<String> references, String zoneId) throws IOException {
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+        };
+
+        Coordinator coordinator = new Coordinator.Builder(job, mockup.getMockInstance())
+            .setCheckpoint(new Checkpoint(this.filename)).build();
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+        coordinator.run();
+
+        assertEquals(Sets.newHashSet("processor1", "processor2"), coordinator.getProcessors());
+
+        // the adopted item and the remaining item are completed
+        String journal = Files.toString(new File(this.filename), Charsets.UTF_8);
+        assertEquals(3, StringUtils.countMatches(journal, "ITEM_COMPLETED"));
+        assertTrue(journal.contains("JOB_COMPLETED"));
+    }
+
+    /**
+     * A restarted coordinator doesn't adopt the processors that are stopped or can't be reused, nor keep the 
+     * adopted processors that fail, these are shutdown and the item of the failed processor runs again
+     * @throws IOException
+     */
+    @Test
+    public void testResumeUnusableProcessors() throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+
+        Checkpoint checkpoint = new Checkpoint(this.filename);
+        checkpoint.open(null);
+
+        for(String instanceId: new String[] {"terminated", "custom", "failed", "processor"}) {
+            VmConfig config = job.getVmConfig().copy();
+            config.setInstanceId(instanceId);
+            config.setReuse("custom".equals(instanceId) ? Boolean.FALSE : null);
+            checkpoint.processorStarted(config, new Date());
+        }
+
+        checkpoint.itemStarted(0, 0, "processor");
+        checkpoint.itemCompleted(0, 0, "processor");
+        checkpoint.itemStarted(0, 2, "processor");
+        checkpoint.itemCompleted(0, 2, "processor");
+        checkpoint.itemStarted(0, 1, "failed");
+
+        final Set<String> polled = Sets.newHashSet();
+        final Set<String> shutdown = Sets.newHashSet();
+        final Set<String> programmed = Sets.newHashSet();
+
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            @Mock(invocations = 1)
+            public VmMetaData init() throws IOException {
+                return new VmMetaData();
+            }
+
+            @Mock
+            public int getMaximumMetaDataSize() {
+                return 10000;
+            }
+
+            // the failed processor is busy the first time it's checked
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                VmMetaData metaData = new VmMetaData();
+                metaData.setProcessorStatus(ProcessorStatus.READY);
+                metaData.setInstanceStatus("RUNNING");
+
+                if("terminated".equals(instanceId)) {
+                    metaData.setInstanceStatus("TERMINATED");
+
+                } else if("failed".equals(instanceId)) {
+                    if(polled.add(instanceId)) {
+                        metaData.setProcessorStatus(ProcessorStatus.BUSY);
+
+                    } else {
+                        metaData.exceptionToCloudExError(new IOException("item has failed"));
+                    }
+                }
+                return metaData;
+            }
+
+            @Mock(invocations = 0)
+            public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+                return true;
+            }
+
+            @Mock(invocations = 3)
+            public void shutdownInstance(List<VmConfig> configs) throws IOException {
+                for(VmConfig config: configs) {
+                    shutdown.add(config.getInstanceId());
+                }
+            }
+
+            @Mock(invocations = 1)
+            public String updateMetadata(VmMetaData metaData, String zoneId, String instanceId, boolean block)
+                    throws IOException {
+                programmed.add(instanceId);
+                return "operation-" + instanceId;
+            }
+
+            @Mock(invocations = 1)
+            public void blockOnComputeOperations(List<String> references, String zoneId) throws IOException {
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+        };
+
+        Coordinator coordinator = new Coordinator.Builder(job, mockup.getMockInstance())
+            .setCheckpoint(new Checkpoint(this.filename)).build();
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+        coordinator.run();
+
+        assertEquals(Sets.newHashSet("terminated", "custom", "failed"), shutdown);
+        assertEquals(Sets.newHashSet("processor"), programmed);
+        assertEquals(Sets.newHashSet("processor"), coordinator.getProcessors());
+
+        String journal = Files.toString(new File(this.filename), Charsets.UTF_8);
+        assertEquals(3, StringUtils.countMatches(journal, "PROCESSOR_STOPPED"));
+        assertEquals(3, StringUtils.countMatches(journal, "ITEM_COMPLETED"));
+        assertTrue(journal.contains("JOB_COMPLETED"));
+    }
+
+}
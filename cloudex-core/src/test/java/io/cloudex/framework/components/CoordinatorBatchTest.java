@@ -0,0 +1,210 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.config.Job;
+import io.cloudex.framework.config.JobTest;
+import io.cloudex.framework.config.VmConfig;
+import io.cloudex.framework.types.ProcessorStatus;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.integration.junit4.JMockit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for re-programming and polling processors with batch api calls
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+@RunWith(JMockit.class)
+public class CoordinatorBatchTest {
+
+    private static final String SECOND_TASK_CLASS = "some.package.SomeClass3";
+
+    /**
+     * The processors of the first task are re-programmed for the second task with one batch call
+     * to get their metadata and one batch call to update it
+     * @throws IOException
+     */
+    @Test
+    public void testBatchApiCalls() throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().get(1).setPipeline(null);
+
+        final Set<String> started = new HashSet<>();
+
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            @Mock(invocations = 1)
+            public VmMetaData init() throws IOException {
+                return new VmMetaData();
+            }
+
+            @Mock
+            public int getMaximumMetaDataSize() {
+                return 10000;
+            }
+
+            @Mock(invocations = 1)
+            public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+                for(VmConfig config: configs) {
+                    started.add(config.getInstanceId());
+                }
+                return true;
+            }
+
+            @Mock(invocations = 0)
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                return null;
+            }
+
+            // one poll for each task and one read before re-programming
+            @Mock(invocations = 3)
+            public Map<String, VmMetaData> getMetaData(List<String> instanceIds, String zoneId) throws IOException {
+                assertEquals(started, new HashSet<>(instanceIds));
+                Map<String, VmMetaData> metaData = new HashMap<>();
+                for(String instanceId: instanceIds) {
+                    VmMetaData processorMetaData = new VmMetaData();
+                    processorMetaData.setProcessorStatus(ProcessorStatus.READY);
+                    processorMetaData.setFingerprint("fingerprint-" + instanceId);
+                    metaData.put(instanceId, processorMetaData);
+                }
+                return metaData;
+            }
+
+            @Mock(invocations = 0)
+            public String updateMetadata(VmMetaData metaData, String zoneId, String instanceId, boolean block)
+                    throws IOException {
+                return null;
+            }
+
+            @Mock(invocations = 1)
+            public Map<String, String> updateMetadata(Map<String, VmMetaData> metaData, String zoneId)
+                    throws IOException {
+                assertEquals(started, metaData.keySet());
+                Map<String, String> operations = new HashMap<>();
+                for(Entry<String, VmMetaData> entry: metaData.entrySet()) {
+                    assertEquals(SECOND_TASK_CLASS, entry.getValue().getTaskClass());
+                    assertEquals("fingerprint-" + entry.getKey(), entry.getValue().getFingerprint());
+                    operations.put(entry.getKey(), "operation-" + entry.getKey());
+                }
+                return operations;
+            }
+
+            @Mock(invocations = 1)
+            public void blockOnComputeOperations(List<String> references, String zoneId) throws IOException {
+                assertEquals(3, references.size());
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+        };
+
+        Coordinator coordinator = new Coordinator.Builder(job, mockup.getMockInstance())
+            .setBatchApiCalls(true).build();
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+        coordinator.run();
+
+        assertEquals(started, coordinator.getProcessors());
+    }
+
+    /**
+     * A processor missing from the batch response is retried on the next round
+     * @throws IOException
+     */
+    @Test
+    public void testBatchPollingRetry() throws IOException {
+
+        final Set<String> missing = new HashSet<>();
+
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            @Mock(invocations = 2)
+            public Map<String, VmMetaData> getMetaData(List<String> instanceIds, String zoneId) throws IOException {
+                Map<String, VmMetaData> metaData = new HashMap<>();
+                for(String instanceId: instanceIds) {
+                    // processor2 is missing the first time
+                    if(!"processor2".equals(instanceId) || !missing.add(instanceId)) {
+                        VmMetaData processorMetaData = new VmMetaData();
+                        processorMetaData.setProcessorStatus(ProcessorStatus.READY);
+                        metaData.put(instanceId, processorMetaData);
+                    }
+                }
+                return metaData;
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+        };
+
+        final Set<String> ready = new HashSet<>();
+
+        ProcessorTracker tracker = new ProcessorTracker(mockup.getMockInstance(), "zone", 
+                new ProcessorTracker.Listener() {
+
+            @Override
+            public void processorReady(String instanceId, VmMetaData metaData) throws IOException {
+                assertNotNull(metaData);
+                ready.add(instanceId);
+            }
+
+            @Override
+            public void processorFailed(String instanceId, IOException exception) throws IOException {
+                throw exception;
+            }
+
+            @Override
+            public void roundCompleted(Set<String> pending) throws IOException {
+                assertTrue(pending.contains("processor2"));
+            }
+        });
+
+        tracker.setBatchPolling(true);
+        tracker.track(java.util.Arrays.asList("processor1", "processor2"));
+        tracker.await();
+
+        assertEquals(2, ready.size());
+    }
+
+}
@@ -0,0 +1,249 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.api.ProvisioningListener;
+import io.cloudex.framework.cloud.entities.VmInstance;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.config.Job;
+import io.cloudex.framework.config.JobTest;
+import io.cloudex.framework.config.VmConfig;
+import io.cloudex.framework.types.ProcessorStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.integration.junit4.JMockit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for processors that are lost whilst working on an item
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+@RunWith(JMockit.class)
+public class CoordinatorLostProcessorTest {
+
+    /**
+     * The item of a terminated processor is rescheduled on a replacement VM
+     * @throws IOException
+     */
+    @Test
+    public void testReplaceTerminatedProcessor() throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+
+        final List<VmConfig> started = new ArrayList<>();
+        final List<VmConfig> replacements = new ArrayList<>();
+        final List<String> shutdown = new ArrayList<>();
+
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            @Mock(invocations = 1)
+            public VmMetaData init() throws IOException {
+                return new VmMetaData();
+            }
+
+            @Mock
+            public int getMaximumMetaDataSize() {
+                return 10000;
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+            @Mock(invocations = 1)
+            public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+                started.addAll(configs);
+                return true;
+            }
+
+            @Mock(invocations = 1)
+            public void startInstance(List<VmConfig> configs, ProvisioningListener listener) throws IOException {
+                assertEquals(1, configs.size());
+                replacements.addAll(configs);
+                listener.instanceReady(configs.get(0));
+            }
+
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                VmMetaData metaData = new VmMetaData();
+
+                if(instanceId.equals(started.get(0).getInstanceId())) {
+                    metaData.setProcessorStatus(ProcessorStatus.BUSY);
+                    metaData.setInstanceStatus("TERMINATED");
+
+                } else if(replacements.isEmpty()) {
+                    // keep the other processors busy so none is idle to take over the lost item
+                    metaData.setProcessorStatus(ProcessorStatus.BUSY);
+                    metaData.setInstanceStatus("RUNNING");
+
+                } else {
+                    metaData.setProcessorStatus(ProcessorStatus.READY);
+                    metaData.setInstanceStatus("RUNNING");
+                }
+
+                return metaData;
+            }
+
+            @Mock(invocations = 1)
+            public void shutdownInstance(List<VmConfig> configs) throws IOException {
+                for(VmConfig config: configs) {
+                    shutdown.add(config.getInstanceId());
+                }
+            }
+
+        };
+
+        Coordinator coordinator = new Coordinator(job, mockup.getMockInstance());
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+        coordinator.run();
+
+        String lost = started.get(0).getInstanceId();
+        VmConfig replacement = replacements.get(0);
+
+        assertEquals(3, started.size());
+        assertEquals(1, shutdown.size());
+        assertEquals(lost, shutdown.get(0));
+
+        // the replacement is given the item of the lost processor
+        assertSame(started.get(0).getMetaData(), replacement.getMetaData());
+        assertFalse(lost.equals(replacement.getInstanceId()));
+
+        VmInstance instance = coordinator.getProcessorInstances().get(lost);
+        assertNotNull(instance.getFailure());
+        assertNotNull(instance.getEnd());
+        assertNull(coordinator.getProcessorInstances().get(replacement.getInstanceId()).getFailure());
+
+        assertEquals(3, coordinator.getProcessors().size());
+        assertFalse(coordinator.getProcessors().contains(lost));
+        assertTrue(coordinator.getProcessors().contains(replacement.getInstanceId()));
+    }
+
+    /**
+     * The item of a preempted processor is re-run on a processor that has completed its item
+     * @throws IOException
+     */
+    @Test
+    public void testPreemptedItemOnIdleProcessor() throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+        job.getVmConfig().setPreemptible(true);
+
+        final List<VmConfig> started = new ArrayList<>();
+        final List<String> programmed = new ArrayList<>();
+
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            private int polls;
+
+            @Mock
+            public VmMetaData init() throws IOException {
+                return new VmMetaData();
+            }
+
+            @Mock
+            public int getMaximumMetaDataSize() {
+                return 10000;
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+            @Mock(invocations = 1)
+            public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+                for(VmConfig config: configs) {
+                    assertTrue(config.isPreemptible());
+                    started.add(config);
+                }
+                return true;
+            }
+
+            @Mock(invocations = 0)
+            public void startInstance(List<VmConfig> configs, ProvisioningListener listener) throws IOException {
+            }
+
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                VmMetaData metaData = new VmMetaData();
+                metaData.setProcessorStatus(ProcessorStatus.READY);
+                metaData.setInstanceStatus("RUNNING");
+
+                if(instanceId.equals(started.get(0).getInstanceId())) {
+                    // preempted once the other processors are done
+                    polls++;
+                    metaData.setProcessorStatus(ProcessorStatus.BUSY);
+                    metaData.setInstanceStatus((polls > 1) ? "TERMINATED" : "RUNNING");
+                }
+
+                return metaData;
+            }
+
+            @Mock(invocations = 1)
+            public String updateMetadata(VmMetaData metaData, String zoneId, String instanceId, boolean block)
+                    throws IOException {
+                assertSame(started.get(0).getMetaData(), metaData);
+                programmed.add(instanceId);
+                return "operation-" + instanceId;
+            }
+
+            @Mock
+            public void blockOnComputeOperations(List<String> references, String zoneId) throws IOException {
+            }
+
+            @Mock(invocations = 1)
+            public void shutdownInstance(List<VmConfig> configs) throws IOException {
+                assertEquals(started.get(0).getInstanceId(), configs.get(0).getInstanceId());
+            }
+
+        };
+
+        Coordinator coordinator = new Coordinator(job, mockup.getMockInstance());
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+        coordinator.run();
+
+        String lost = started.get(0).getInstanceId();
+
+        assertEquals(1, programmed.size());
+        assertFalse(lost.equals(programmed.get(0)));
+        assertNotNull(coordinator.getProcessorInstances().get(lost).getFailure());
+        assertEquals(2, coordinator.getProcessors().size());
+    }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.cloud.sim.Distribution;
+import io.cloudex.framework.cloud.sim.SimulatedCloudService;
+import io.cloudex.framework.config.Job;
+import io.cloudex.framework.config.JobTest;
+import io.cloudex.framework.config.TaskConfig;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for running several items on each processor VM
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class CoordinatorMultiSlotTest {
+
+    /**
+     * each VM gets one item per core and the spare slot of the last VM is not given an item
+     * @throws IOException
+     */
+    @Test
+    public void testSlotsPerCore() throws IOException {
+        SimulatedCloudService single = this.getCloudService();
+        this.run(single, 10, null, false, false);
+
+        SimulatedCloudService slots = this.getCloudService();
+        this.run(slots, 10, null, true, false);
+
+        assertEquals(10, single.getInstancesStarted());
+        assertEquals(3, slots.getInstancesStarted());
+        assertEquals(10, slots.getItemsRun());
+        assertEquals(0, slots.getInstanceCount());
+        assertTrue(slots.getInstanceTime() < single.getInstanceTime());
+    }
+
+    /**
+     * the queued items are given to the slots as they complete their items, including the spare slots
+     * @throws IOException
+     */
+    @Test
+    public void testQueuedItems() throws IOException {
+        SimulatedCloudService cloudService = this.getCloudService();
+        this.run(cloudService, 10, 6, true, false);
+
+        assertEquals(2, cloudService.getInstancesStarted());
+        assertEquals(10, cloudService.getItemsRun());
+        assertEquals(0, cloudService.getInstanceCount());
+    }
+
+    /**
+     * the slots of a VM that is still being provisioned are tracked as soon as the VM is running
+     * @throws IOException
+     */
+    @Test
+    public void testStreamingProvisioning() throws IOException {
+        SimulatedCloudService cloudService = this.getCloudService();
+        this.run(cloudService, 10, 6, true, true);
+
+        assertEquals(2, cloudService.getInstancesStarted());
+        assertEquals(10, cloudService.getItemsRun());
+        assertEquals(0, cloudService.getInstanceCount());
+    }
+
+    /**
+     * @return a simulated cloud where items take 1 to 2 minutes
+     */
+    private SimulatedCloudService getCloudService() {
+        return new SimulatedCloudService.Builder()
+                .setSeed(11)
+                .setApiLatency(Distribution.constant(10))
+                .setProvisioningLatency(Distribution.constant(TimeUnit.SECONDS.toMillis(30)))
+                .setItemDuration(Distribution.uniform(TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(2)))
+                .build();
+    }
+
+    /**
+     * Run a processor task on VMs with 4 cores
+     * @param cloudService - the simulated cloud
+     * @param items - the number of items
+     * @param maxProcessors - the maximum number of processors or null for one per item
+     * @param multiSlot - true to use multi-slot processors
+     * @param streaming - true to use streaming provisioning
+     * @return the coordinator
+     * @throws IOException
+     */
+    private Coordinator run(SimulatedCloudService cloudService, int items, Integer maxProcessors, 
+            boolean multiSlot, boolean streaming) throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+        job.getVmConfig().setCores(4);
+
+        TaskConfig task = job.getTasks().get(0);
+        task.getPartitioning().setCount(items);
+        task.setMaxProcessors(maxProcessors);
+        job.getData().put("schemaTermsFile", "terms.txt");
+
+        Coordinator coordinator = new Coordinator.Builder(job, cloudService).setMaxRequestsPerSecond(0)
+            .setMultiSlotProcessors(multiSlot).setStreamingProvisioning(streaming).setShutdownProcessors(true)
+            .build();
+        coordinator.run();
+
+        return coordinator;
+    }
+
+}
@@ -0,0 +1,222 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.config.Job;
+import io.cloudex.framework.config.JobTest;
+import io.cloudex.framework.config.VmConfig;
+import io.cloudex.framework.types.ProcessorStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.integration.junit4.JMockit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests for pipelined processor tasks
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+@RunWith(JMockit.class)
+public class CoordinatorPipelineTest {
+
+    private static final String FIRST_TASK_CLASS = "some.package.SomeClass2";
+
+    private static final String SECOND_TASK_CLASS = "some.package.SomeClass3";
+
+    /**
+     * Each processor is given its item of the second task as soon as it's ready
+     * @throws IOException
+     */
+    @Test
+    public void testPipelinedTasks() throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        assertTrue(job.valid());
+
+        final Set<String> started = new HashSet<>();
+        final List<String> programmed = new ArrayList<>();
+
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            @Mock(invocations = 1)
+            public VmMetaData init() throws IOException {
+                return new VmMetaData();
+            }
+
+            @Mock(invocations = 2)
+            public int getMaximumMetaDataSize() {
+                return 10000;
+            }
+
+            @Mock(invocations = 1)
+            public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+                assertEquals(3, configs.size());
+                for(VmConfig config: configs) {
+                    assertEquals(FIRST_TASK_CLASS, config.getMetaData().getTaskClass());
+                    started.add(config.getInstanceId());
+                }
+                return true;
+            }
+
+            // 3 polls for each task and 3 reads before re-programming
+            @Mock(invocations = 9)
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                assertTrue(started.contains(instanceId));
+                VmMetaData metaData = new VmMetaData();
+                metaData.setProcessorStatus(ProcessorStatus.READY);
+                return metaData;
+            }
+
+            @Mock(invocations = 3)
+            public String updateMetadata(VmMetaData metaData, String zoneId, String instanceId, boolean block)
+                    throws IOException {
+                assertFalse(block);
+                assertEquals(SECOND_TASK_CLASS, metaData.getTaskClass());
+                programmed.add(instanceId);
+                return "operation-" + instanceId;
+            }
+
+            // one for each pipelined item
+            @Mock(invocations = 3)
+            public void blockOnComputeOperations(List<String> references, String zoneId) throws IOException {
+                assertEquals(1, references.size());
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+            @Mock(invocations = 0)
+            public void shutdownInstance(List<VmConfig> configs) throws IOException {
+            }
+
+        };
+
+        Coordinator coordinator = new Coordinator(job, mockup.getMockInstance());
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+        coordinator.run();
+
+        assertEquals(started, new HashSet<>(programmed));
+        assertEquals(3, coordinator.getProcessors().size());
+    }
+
+    /**
+     * Tasks with a different number of items fall back to running one after the other
+     * @throws IOException
+     */
+    @Test
+    public void testPipelineDifferentPartitions() throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().get(1).getPartitioning().setCount(2);
+
+        final Set<String> started = new HashSet<>();
+
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            @Mock(invocations = 1)
+            public VmMetaData init() throws IOException {
+                return new VmMetaData();
+            }
+
+            @Mock(invocations = 1)
+            public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+                assertEquals(3, configs.size());
+                for(VmConfig config: configs) {
+                    started.add(config.getInstanceId());
+                }
+                return true;
+            }
+
+            // 3 polls for the first task, 2 reads and 2 polls for the second
+            @Mock(invocations = 7)
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                assertNotNull(instanceId);
+                VmMetaData metaData = new VmMetaData();
+                metaData.setProcessorStatus(ProcessorStatus.READY);
+                return metaData;
+            }
+
+            @Mock(invocations = 2)
+            public String updateMetadata(VmMetaData metaData, String zoneId, String instanceId, boolean block)
+                    throws IOException {
+                assertTrue(started.contains(instanceId));
+                assertEquals(SECOND_TASK_CLASS, metaData.getTaskClass());
+                return "operation-" + instanceId;
+            }
+
+            @Mock(invocations = 1)
+            public void blockOnComputeOperations(List<String> references, String zoneId) throws IOException {
+                assertEquals(2, references.size());
+            }
+
+            @Mock
+            public int getMaximumMetaDataSize() {
+                return 10000;
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+        };
+
+        Coordinator coordinator = new Coordinator(job, mockup.getMockInstance());
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+        coordinator.run();
+
+        assertEquals(3, coordinator.getProcessors().size());
+    }
+
+    /**
+     * The pipelined task is part of the first task in the graph
+     * @throws IOException
+     */
+    @Test
+    public void testPipelineGraph() throws IOException {
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        TaskGraph graph = new TaskGraph(job.getTasks());
+
+        assertEquals(Lists.newArrayList(job.getTasks()), graph.getPipeline(0));
+        assertTrue(graph.getPipeline(1).isEmpty());
+        assertEquals(new HashSet<>(Lists.newArrayList(0)), graph.getDependencies(1));
+    }
+
+}
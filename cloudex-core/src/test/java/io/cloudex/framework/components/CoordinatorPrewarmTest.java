@@ -0,0 +1,226 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.api.ProvisioningListener;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.config.Job;
+import io.cloudex.framework.config.JobTest;
+import io.cloudex.framework.config.VmConfig;
+import io.cloudex.framework.types.ProcessorStatus;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.integration.junit4.JMockit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for starting processors whilst coordinator tasks are running
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+@RunWith(JMockit.class)
+public class CoordinatorPrewarmTest {
+
+    private static final String PROCESSOR_TASK_CLASS = "some.package.SomeClass2";
+
+    /**
+     * The processors of the processor task are started before the coordinator task runs and are 
+     * re-programmed once they are ready
+     * @throws IOException
+     */
+    @Test
+    public void testPrewarmProcessors() throws IOException {
+
+        Job job = getJob();
+
+        final Set<String> warmed = new HashSet<>();
+
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            @Mock(invocations = 1)
+            public VmMetaData init() throws IOException {
+                return new VmMetaData();
+            }
+
+            @Mock(invocations = 1)
+            public void startInstance(List<VmConfig> configs, ProvisioningListener listener) throws IOException {
+                assertEquals(3, configs.size());
+                for(VmConfig config: configs) {
+                    // the processors start with no task
+                    assertNull(config.getMetaData().getTaskClass());
+                    warmed.add(config.getInstanceId());
+                    listener.instanceReady(config);
+                }
+            }
+
+            @Mock(invocations = 0)
+            public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+                return true;
+            }
+
+            // 3 polls for the pre-warmed processors, 3 reads before re-programming and 3 polls for the task
+            @Mock(invocations = 9)
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                assertTrue(warmed.contains(instanceId));
+                VmMetaData metaData = new VmMetaData();
+                metaData.setProcessorStatus(ProcessorStatus.READY);
+                return metaData;
+            }
+
+            @Mock(invocations = 3)
+            public String updateMetadata(VmMetaData metaData, String zoneId, String instanceId, boolean block)
+                    throws IOException {
+                assertTrue(warmed.contains(instanceId));
+                assertEquals(PROCESSOR_TASK_CLASS, metaData.getTaskClass());
+                return "operation-" + instanceId;
+            }
+
+            @Mock(invocations = 1)
+            public void blockOnComputeOperations(List<String> references, String zoneId) throws IOException {
+                assertEquals(3, references.size());
+            }
+
+            @Mock(invocations = 0)
+            public void shutdownInstance(List<VmConfig> configs) throws IOException {
+            }
+
+            @Mock
+            public int getMaximumMetaDataSize() {
+                return 10000;
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+        };
+
+        Coordinator coordinator = new Coordinator.Builder(job, mockup.getMockInstance())
+            .setPrewarmProcessors(true).build();
+        coordinator.run();
+
+        assertEquals(warmed, coordinator.getProcessors());
+        assertEquals(3, coordinator.getProcessorInstances().size());
+    }
+
+    /**
+     * A pre-warmed processor that fails to start is shutdown and replaced when the processor task runs
+     * @throws IOException
+     */
+    @Test
+    public void testPrewarmFailure() throws IOException {
+
+        Job job = getJob();
+
+        final Set<String> failed = new HashSet<>();
+
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            @Mock(invocations = 1)
+            public VmMetaData init() throws IOException {
+                return new VmMetaData();
+            }
+
+            @Mock(invocations = 1)
+            public void startInstance(List<VmConfig> configs, ProvisioningListener listener) throws IOException {
+                listener.instanceFailed(configs.get(0), new IOException("Quota exceeded"));
+                failed.add(configs.get(0).getInstanceId());
+                
+                for(VmConfig config: configs.subList(1, configs.size())) {
+                    listener.instanceReady(config);
+                }
+            }
+
+            @Mock(invocations = 1)
+            public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+                assertEquals(1, configs.size());
+                assertEquals(PROCESSOR_TASK_CLASS, configs.get(0).getMetaData().getTaskClass());
+                return true;
+            }
+
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                assertFalse(failed.contains(instanceId));
+                VmMetaData metaData = new VmMetaData();
+                metaData.setProcessorStatus(ProcessorStatus.READY);
+                return metaData;
+            }
+
+            @Mock(invocations = 2)
+            public String updateMetadata(VmMetaData metaData, String zoneId, String instanceId, boolean block)
+                    throws IOException {
+                return "operation-" + instanceId;
+            }
+
+            @Mock(invocations = 1)
+            public void shutdownInstance(List<VmConfig> configs) throws IOException {
+                assertEquals(1, configs.size());
+                assertTrue(failed.contains(configs.get(0).getInstanceId()));
+            }
+
+            @Mock
+            public int getMaximumMetaDataSize() {
+                return 10000;
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+        };
+
+        Coordinator coordinator = new Coordinator.Builder(job, mockup.getMockInstance())
+            .setPrewarmProcessors(true).build();
+        coordinator.run();
+
+        assertEquals(3, coordinator.getProcessors().size());
+        assertFalse(coordinator.getProcessors().containsAll(failed));
+    }
+
+    /**
+     * @return a job with a coordinator task followed by a processor task with 3 items
+     * @throws IOException
+     */
+    private Job getJob() throws IOException {
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+        // the coordinator task outputs the schemaTermsFile used by the processor task
+        job.getTasks().add(0, JobTest.loadJob("CoordinatorTest.json").getTasks().get(0));
+        assertTrue(job.valid());
+        return job;
+    }
+
+}
@@ -0,0 +1,178 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.cloud.api.ApiUtils;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.api.ProvisioningListener;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.config.Job;
+import io.cloudex.framework.config.JobTest;
+import io.cloudex.framework.config.VmConfig;
+import io.cloudex.framework.exceptions.ProcessorException;
+import io.cloudex.framework.types.ProcessorStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.integration.junit4.JMockit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for starting processors whilst waiting for them
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+@RunWith(JMockit.class)
+public class CoordinatorProvisioningTest {
+
+    private final Set<String> running = Collections.synchronizedSet(new HashSet<String>());
+
+    private final List<String> polled = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * Each processor is tracked as soon as it's running, the last one to be created is the first to run
+     * @throws IOException
+     */
+    @Test
+    public void testStreamingProvisioning() throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+
+        Coordinator coordinator = new Coordinator.Builder(job, this.getCloudService(null))
+            .setStreamingProvisioning(true).build();
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+        coordinator.run();
+
+        assertEquals(3, running.size());
+        assertEquals(3, polled.size());
+        assertEquals(running, coordinator.getProcessors());
+        assertEquals(new HashSet<>(polled), coordinator.getProcessors());
+    }
+
+    /**
+     * A processor fails to start, the task fails and the processor is not reused
+     * @throws IOException
+     */
+    @Test
+    public void testProvisioningFailure() throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+
+        final List<String> failed = new ArrayList<>();
+
+        Coordinator coordinator = new Coordinator.Builder(job, this.getCloudService(failed))
+            .setStreamingProvisioning(true).build();
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+
+        try {
+            coordinator.run();
+            throw new AssertionError("Expected a ProcessorException");
+
+        } catch(ProcessorException e) {
+            assertEquals(failed.get(0), e.getProcessorId());
+        }
+
+        assertFalse(coordinator.getProcessors().contains(failed.get(0)));
+    }
+
+    /**
+     * The processors are reported as running in the reverse order of their creation
+     * @param failed - if not null then the first processor fails to start and its id is added to this list
+     * @return a cloud service mock
+     */
+    private CloudService getCloudService(final List<String> failed) {
+
+        return new MockUp<CloudService>() {
+
+            @Mock(invocations = 1)
+            public VmMetaData init() throws IOException {
+                return new VmMetaData();
+            }
+
+            @Mock
+            public int getMaximumMetaDataSize() {
+                return 10000;
+            }
+
+            @Mock(invocations = 0)
+            public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+                return true;
+            }
+
+            @Mock(invocations = 1)
+            public void startInstance(final List<VmConfig> configs, final ProvisioningListener listener)
+                    throws IOException {
+
+                assertEquals(3, configs.size());
+
+                new Thread() {
+                    @Override
+                    public void run() {
+                        for(int i = configs.size() - 1; i >= 0; i--) {
+                            ApiUtils.block(50, TimeUnit.MILLISECONDS);
+                            VmConfig config = configs.get(i);
+
+                            if((failed != null) && (i == 0)) {
+                                failed.add(config.getInstanceId());
+                                listener.instanceFailed(config, new IOException("failed to start"));
+
+                            } else {
+                                running.add(config.getInstanceId());
+                                listener.instanceReady(config);
+                            }
+                        }
+                    }
+                }.start();
+            }
+
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                assertTrue(running.contains(instanceId));
+                polled.add(instanceId);
+                VmMetaData metaData = new VmMetaData();
+                metaData.setProcessorStatus(ProcessorStatus.READY);
+                return metaData;
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+        }.getMockInstance();
+    }
+
+}
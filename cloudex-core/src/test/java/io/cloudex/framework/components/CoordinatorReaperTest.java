@@ -0,0 +1,183 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.entities.VmInstance;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.config.Job;
+import io.cloudex.framework.config.JobTest;
+import io.cloudex.framework.config.VmConfig;
+import io.cloudex.framework.types.ProcessorStatus;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.integration.junit4.JMockit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for shutting down idle processors that are not needed by the remaining tasks
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+@RunWith(JMockit.class)
+public class CoordinatorReaperTest {
+
+    private static final long ONE_HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private Set<String> started = new HashSet<>();
+
+    private Set<String> shutdown = new HashSet<>();
+
+    /**
+     * The processors are shutdown as soon as the processor task is completed as the coordinator task after
+     * it doesn't need them
+     * @throws IOException
+     */
+    @Test
+    public void testReapAfterLastProcessorTask() throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+        job.getTasks().add(JobTest.loadJob("CoordinatorTest.json").getTasks().get(0));
+        assertTrue(job.valid());
+
+        Coordinator coordinator = new Coordinator.Builder(job, getCloudService())
+            .setReapIdleProcessors(true).setReapMargin(ONE_HOUR).build();
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+        coordinator.run();
+
+        assertTrue(coordinator.getProcessors().isEmpty());
+        assertEquals(started, shutdown);
+
+        for(VmInstance instance: coordinator.getProcessorInstances().values()) {
+            assertNotNull(instance.getEnd());
+        }
+    }
+
+    /**
+     * The processors are kept for the second processor task then shutdown
+     * @throws IOException
+     */
+    @Test
+    public void testKeepProcessorsForNextTask() throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().get(1).setPipeline(null);
+
+        Coordinator coordinator = new Coordinator.Builder(job, getCloudService())
+            .setReapIdleProcessors(true).setReapMargin(ONE_HOUR).build();
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+        coordinator.run();
+
+        assertEquals(3, started.size());
+        assertEquals(started, shutdown);
+        assertTrue(coordinator.getProcessors().isEmpty());
+    }
+
+    /**
+     * The processors are paid for until the minimum usage so they are not shutdown yet
+     * @throws IOException
+     */
+    @Test
+    public void testKeepProcessorsUntilBillingIncrement() throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+        job.getVmConfig().setMinUsage(600L);
+
+        Coordinator coordinator = new Coordinator.Builder(job, getCloudService())
+            .setReapIdleProcessors(true).build();
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+        coordinator.run();
+
+        assertEquals(started, coordinator.getProcessors());
+        assertFalse(started.isEmpty());
+        assertTrue(shutdown.isEmpty());
+    }
+
+    /**
+     * @return a cloud service mock
+     */
+    private CloudService getCloudService() {
+        return new MockUp<CloudService>() {
+
+            @Mock(invocations = 1)
+            public VmMetaData init() throws IOException {
+                return new VmMetaData();
+            }
+
+            @Mock(invocations = 1)
+            public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+                for(VmConfig config: configs) {
+                    started.add(config.getInstanceId());
+                }
+                return true;
+            }
+
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                assertFalse(shutdown.contains(instanceId));
+                VmMetaData metaData = new VmMetaData();
+                metaData.setProcessorStatus(ProcessorStatus.READY);
+                return metaData;
+            }
+
+            @Mock
+            public String updateMetadata(VmMetaData metaData, String zoneId, String instanceId, boolean block)
+                    throws IOException {
+                assertFalse(shutdown.contains(instanceId));
+                return "operation-" + instanceId;
+            }
+
+            @Mock
+            public void shutdownInstance(List<VmConfig> configs) throws IOException {
+                for(VmConfig config: configs) {
+                    shutdown.add(config.getInstanceId());
+                }
+            }
+
+            @Mock
+            public int getMaximumMetaDataSize() {
+                return 10000;
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+        }.getMockInstance();
+    }
+
+}
@@ -0,0 +1,220 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.config.Job;
+import io.cloudex.framework.config.JobTest;
+import io.cloudex.framework.config.TaskConfig;
+import io.cloudex.framework.config.VmConfig;
+import io.cloudex.framework.types.ErrorAction;
+import io.cloudex.framework.types.ProcessorStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.integration.junit4.JMockit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for retrying the failed items of processor tasks
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+@RunWith(JMockit.class)
+public class CoordinatorRetryTest {
+
+    private static final String DEAD_LETTER = "failedItems";
+
+    /**
+     * The failed item is retried on a different processor after the backoff delay
+     * @throws IOException
+     */
+    @Test
+    public void testRetryOnDifferentProcessor() throws IOException {
+
+        Job job = loadJob(3, 1L);
+
+        final ItemFailures failures = new ItemFailures();
+
+        Coordinator coordinator = new Coordinator.Builder(job, failures.getMockInstance()).build();
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+
+        long start = System.currentTimeMillis();
+        coordinator.run();
+
+        assertTrue((System.currentTimeMillis() - start) >= 1000);
+        // the item has failed once on the first processor then completed on another one
+        assertEquals(1, failures.retriedOn.size());
+        assertFalse(failures.retriedOn.contains(failures.failing));
+        assertTrue(failures.shutdown.isEmpty());
+        assertEquals(new ArrayList<String>(), coordinator.getContext().get(DEAD_LETTER));
+        assertEquals(3, coordinator.getProcessors().size());
+    }
+
+    /**
+     * The item fails all its retries and is added to the dead letters, the processors it has failed on
+     * are quarantined
+     * @throws IOException
+     */
+    @Test
+    public void testDeadLetterAndQuarantine() throws IOException {
+
+        Job job = loadJob(1, null);
+
+        final ItemFailures failures = new ItemFailures();
+        failures.alwaysFail = true;
+
+        Coordinator coordinator = new Coordinator.Builder(job, failures.getMockInstance())
+            .setQuarantineThreshold(1).build();
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+        coordinator.run();
+
+        assertEquals(1, failures.retriedOn.size());
+        assertEquals(2, failures.shutdown.size());
+        assertTrue(failures.shutdown.contains(failures.failing));
+        assertTrue(failures.shutdown.containsAll(failures.retriedOn));
+        assertEquals(1, ((List<?>) coordinator.getContext().get(DEAD_LETTER)).size());
+        assertEquals(1, coordinator.getProcessors().size());
+    }
+
+    /**
+     * RETRY is not supported for coordinator tasks
+     * @throws IOException
+     */
+    @Test
+    public void testRetryCoordinatorTask() throws IOException {
+        Job job = JobTest.loadJob("CoordinatorTest.json");
+        TaskConfig taskConfig = job.getTasks().get(0);
+        taskConfig.setErrorAction(ErrorAction.RETRY);
+
+        assertFalse(taskConfig.valid());
+        assertEquals(1, taskConfig.getValidationErrors().size());
+    }
+
+    private Job loadJob(int maxRetries, Long retryDelay) throws IOException {
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+
+        TaskConfig taskConfig = job.getTasks().get(0);
+        taskConfig.setErrorAction(ErrorAction.RETRY);
+        taskConfig.setMaxRetries(maxRetries);
+        taskConfig.setRetryDelay(retryDelay);
+        taskConfig.setDeadLetter(DEAD_LETTER);
+
+        assertTrue(job.valid());
+        return job;
+    }
+
+    /**
+     * The first item of the task fails on its first processor, or on every processor if alwaysFail is set
+     */
+    private static class ItemFailures extends MockUp<CloudService> {
+
+        // processor => the item it's working on
+        private Map<String, VmMetaData> items = new HashMap<>();
+
+        private VmMetaData failingItem;
+
+        private String failing;
+
+        private boolean alwaysFail;
+
+        // the processors the failing item was retried on
+        private Set<String> retriedOn = new HashSet<>();
+
+        private Set<String> shutdown = new HashSet<>();
+
+        @Mock
+        public VmMetaData init() throws IOException {
+            return new VmMetaData();
+        }
+
+        @Mock
+        public int getMaximumMetaDataSize() {
+            return 10000;
+        }
+
+        @Mock
+        public int getApiRecheckDelay() {
+            return 0;
+        }
+
+        @Mock(invocations = 1)
+        public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+            assertEquals(3, configs.size());
+            for(VmConfig config: configs) {
+                items.put(config.getInstanceId(), config.getMetaData());
+            }
+            this.failing = configs.get(0).getInstanceId();
+            this.failingItem = configs.get(0).getMetaData();
+            return true;
+        }
+
+        @Mock
+        public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+            VmMetaData metaData = new VmMetaData();
+
+            if((items.get(instanceId) == failingItem) && (instanceId.equals(failing) || alwaysFail)) {
+                metaData.exceptionToCloudExError(new IOException("item has failed"));
+
+            } else {
+                metaData.setProcessorStatus(ProcessorStatus.READY);
+            }
+
+            return metaData;
+        }
+
+        @Mock
+        public String updateMetadata(VmMetaData metaData, String zoneId, String instanceId, boolean block)
+                throws IOException {
+            assertTrue(metaData == failingItem);
+            items.put(instanceId, metaData);
+            retriedOn.add(instanceId);
+            return "operation-" + instanceId;
+        }
+
+        @Mock
+        public void blockOnComputeOperations(List<String> references, String zoneId) throws IOException {
+        }
+
+        @Mock
+        public void shutdownInstance(List<VmConfig> configs) throws IOException {
+            for(VmConfig config: configs) {
+                shutdown.add(config.getInstanceId());
+            }
+        }
+    }
+
+}
@@ -31,6 +31,7 @@ import io.cloudex.framework.cloud.entities.VmInstance;
 import io.cloudex.framework.cloud.entities.VmMetaData;
 import io.cloudex.framework.config.Job;
 import io.cloudex.framework.config.JobTest;
+import io.cloudex.framework.config.PlanConfig;
 import io.cloudex.framework.config.TaskConfig;
 import io.cloudex.framework.config.VmConfig;
 import io.cloudex.framework.exceptions.ProcessorException;
@@ -164,6 +165,41 @@ public class CoordinatorRunProcessorTaskTest {
         this.checkCost(config, coordinator);
     }
     
+    /**
+     * The planner chooses 2 bins, the cheapest plan that completes within the deadline
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testTaskPartitionPlan() throws IOException {
+
+        Job job = getJob("CoordinatorTest1.json");
+        PlanConfig plan = new PlanConfig();
+        // the largest item takes 2500 seconds
+        plan.setThroughput(0.01);
+        plan.setDeadline(4000L);
+        plan.setOutput("plannedProcessors");
+        job.getTasks().get(0).getPartitioning().setPlan(plan);
+        Map<String, String> input = job.getTasks().get(0).getPartitioning().getInput();
+        input.put("numberOfBins", "#plannedProcessors");
+        // the bin size is derived from the number of bins
+        input.remove("maxBinItems");
+        assertTrue(job.valid());
+
+        VmConfig config = job.getVmConfig();
+        config.setCost(0.25);
+        config.setMinUsage(600L);
+        final CloudService service = getCloudService(config, 2).getMockInstance();
+        Coordinator coordinator = new Coordinator(job, service);        
+        Context context = populateContext(coordinator);
+        coordinator.run();
+        assertEquals(2, coordinator.getProcessors().size());
+        assertEquals(2, context.get("plannedProcessors"));
+
+        List<Partition> partitions = (List<Partition>) context.get("filePartitions");
+        assertEquals(2, partitions.size());
+    }
+    
     @SuppressWarnings("unchecked")
     @Test
     public void testTaskVmConfig() throws IOException {
@@ -0,0 +1,261 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.config.Job;
+import io.cloudex.framework.config.JobTest;
+import io.cloudex.framework.config.TaskConfig;
+import io.cloudex.framework.config.VmConfig;
+import io.cloudex.framework.types.ProcessorStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.integration.junit4.JMockit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for the speculative execution of straggler items
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+@RunWith(JMockit.class)
+public class CoordinatorSpeculationTest {
+
+    private static final String TASK_CLASS = "some.package.SomeClass2";
+
+    /**
+     * Two of the three processors complete straightaway, the straggler item is given to an idle
+     * processor which completes first, so the straggler is shut down and the task completes without 
+     * waiting for it
+     * @throws IOException
+     */
+    @Test
+    public void testStragglerIsSpeculated() throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+
+        TaskConfig task = job.getTasks().get(0);
+        task.setSpeculationThreshold(1.5);
+        assertTrue(job.valid());
+
+        final List<String> started = new ArrayList<>();
+        final List<String> shutdown = new ArrayList<>();
+        final List<String> programmed = new ArrayList<>();
+
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            @Mock(invocations = 1)
+            public VmMetaData init() throws IOException {
+                return new VmMetaData();
+            }
+
+            @Mock
+            public int getMaximumMetaDataSize() {
+                return 10000;
+            }
+
+            @Mock(invocations = 1)
+            public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+                assertEquals(3, configs.size());
+                for(VmConfig config: configs) {
+                    started.add(config.getInstanceId());
+                }
+                return true;
+            }
+
+            // the last processor never completes
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                assertTrue(started.contains(instanceId));
+                VmMetaData metaData = new VmMetaData();
+                if(instanceId.equals(started.get(2))) {
+                    metaData.setProcessorStatus(ProcessorStatus.BUSY);
+                    metaData.setTaskClass(TASK_CLASS);
+
+                } else {
+                    metaData.setProcessorStatus(ProcessorStatus.READY);
+                }
+                return metaData;
+            }
+
+            // the speculative item
+            @Mock(invocations = 1)
+            public String updateMetadata(VmMetaData metaData, String zoneId, String instanceId, boolean block)
+                    throws IOException {
+                assertFalse(block);
+                assertEquals(TASK_CLASS, metaData.getTaskClass());
+                programmed.add(instanceId);
+                return "operation-" + instanceId;
+            }
+
+            @Mock(invocations = 1)
+            public void blockOnComputeOperations(List<String> references, String zoneId) throws IOException {
+                assertEquals(1, references.size());
+            }
+
+            @Mock(invocations = 1)
+            public void shutdownInstance(List<VmConfig> configs) throws IOException {
+                assertEquals(1, configs.size());
+                shutdown.add(configs.get(0).getInstanceId());
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+        };
+
+        Coordinator coordinator = new Coordinator(job, mockup.getMockInstance());
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+        coordinator.run();
+
+        assertEquals(1, programmed.size());
+        assertFalse(programmed.contains(started.get(2)));
+        assertEquals(Collections.singletonList(started.get(2)), shutdown);
+        assertEquals(2, coordinator.getProcessors().size());
+        assertFalse(coordinator.getProcessors().contains(started.get(2)));
+    }
+
+    /**
+     * The speculative copy of the straggler item fails while the straggler is still running, the failure 
+     * counts towards quarantining the speculative processor and the straggler goes on to complete the item
+     * @throws IOException
+     */
+    @Test
+    public void testSpeculativeCopyFails() throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+
+        TaskConfig task = job.getTasks().get(0);
+        task.setSpeculationThreshold(1.5);
+        assertTrue(job.valid());
+
+        final List<String> started = new ArrayList<>();
+        final List<String> shutdown = new ArrayList<>();
+        final List<String> programmed = new ArrayList<>();
+        final boolean[] failed = new boolean[1];
+
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            @Mock(invocations = 1)
+            public VmMetaData init() throws IOException {
+                return new VmMetaData();
+            }
+
+            @Mock
+            public int getMaximumMetaDataSize() {
+                return 10000;
+            }
+
+            @Mock(invocations = 1)
+            public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+                assertEquals(3, configs.size());
+                for(VmConfig config: configs) {
+                    started.add(config.getInstanceId());
+                }
+                return true;
+            }
+
+            // the last processor completes once the speculative copy has failed
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                assertTrue(started.contains(instanceId));
+                VmMetaData metaData = new VmMetaData();
+                if(programmed.contains(instanceId)) {
+                    metaData.exceptionToCloudExError(new IOException("speculative copy has failed"));
+                    failed[0] = true;
+
+                } else if(instanceId.equals(started.get(2)) && !failed[0]) {
+                    metaData.setProcessorStatus(ProcessorStatus.BUSY);
+                    metaData.setTaskClass(TASK_CLASS);
+
+                } else {
+                    metaData.setProcessorStatus(ProcessorStatus.READY);
+                }
+                return metaData;
+            }
+
+            // the speculative item
+            @Mock(invocations = 1)
+            public String updateMetadata(VmMetaData metaData, String zoneId, String instanceId, boolean block)
+                    throws IOException {
+                assertEquals(TASK_CLASS, metaData.getTaskClass());
+                programmed.add(instanceId);
+                return "operation-" + instanceId;
+            }
+
+            @Mock(invocations = 1)
+            public void blockOnComputeOperations(List<String> references, String zoneId) throws IOException {
+                assertEquals(1, references.size());
+            }
+
+            @Mock(invocations = 1)
+            public void shutdownInstance(List<VmConfig> configs) throws IOException {
+                assertEquals(1, configs.size());
+                shutdown.add(configs.get(0).getInstanceId());
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+        };
+
+        Coordinator coordinator = new Coordinator.Builder(job, mockup.getMockInstance())
+            .setQuarantineThreshold(1).build();
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+        coordinator.run();
+
+        assertEquals(1, programmed.size());
+        // the speculative processor is quarantined, the straggler is kept
+        assertEquals(programmed, shutdown);
+        assertEquals(2, coordinator.getProcessors().size());
+        assertTrue(coordinator.getProcessors().contains(started.get(2)));
+    }
+
+    /**
+     * The speculation threshold must be at least 1
+     * @throws IOException
+     */
+    @Test
+    public void testInvalidSpeculationThreshold() throws IOException {
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().get(0).setSpeculationThreshold(0.5);
+        assertFalse(job.valid());
+    }
+
+}
@@ -0,0 +1,256 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.config.Job;
+import io.cloudex.framework.config.JobTest;
+import io.cloudex.framework.config.TaskConfig;
+import io.cloudex.framework.config.VmConfig;
+import io.cloudex.framework.types.ProcessorStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.integration.junit4.JMockit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for processor tasks with more items than processors
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+@RunWith(JMockit.class)
+public class CoordinatorWorkQueueTest {
+
+    /**
+     * 5 items are processed by 2 processors, each processor is given the next
+     * queued item as soon as it's ready
+     * @throws IOException
+     */
+    @Test
+    public void testQueuedItems() throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+        
+        TaskConfig task = job.getTasks().get(0);
+        task.getPartitioning().setCount(5);
+        task.setMaxProcessors(2);
+        assertTrue(job.valid());
+
+        final Set<String> started = new HashSet<>();
+        final List<String> programmed = new ArrayList<>();
+
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            @Mock(invocations = 1)
+            public VmMetaData init() throws IOException {
+                return new VmMetaData();
+            }
+
+            @Mock(invocations = 1)
+            public int getMaximumMetaDataSize() {
+                return 10000;
+            }
+
+            @Mock(invocations = 1)
+            public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+                assertEquals(2, configs.size());
+                for(VmConfig config: configs) {
+                    started.add(config.getInstanceId());
+                }
+                return true;
+            }
+
+            // 5 polls, one for each item and 3 reads before re-programming
+            @Mock(invocations = 8)
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                assertTrue(started.contains(instanceId));
+                VmMetaData metaData = new VmMetaData();
+                metaData.setProcessorStatus(ProcessorStatus.READY);
+                return metaData;
+            }
+
+            @Mock(invocations = 3)
+            public String updateMetadata(VmMetaData metaData, String zoneId, String instanceId, boolean block)
+                    throws IOException {
+                assertFalse(block);
+                programmed.add(instanceId);
+                return "operation-" + instanceId;
+            }
+
+            // one for each queued item
+            @Mock(invocations = 3)
+            public void blockOnComputeOperations(List<String> references, String zoneId) throws IOException {
+                assertEquals(1, references.size());
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+        };
+
+        Coordinator coordinator = new Coordinator(job, mockup.getMockInstance());
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+        coordinator.run();
+
+        assertTrue(started.containsAll(programmed));
+        assertEquals(2, coordinator.getProcessors().size());
+    }
+
+    /**
+     * A processor that never completes its item times out, it's shut down rather than given more
+     * items and its item is rescheduled on the processor that has drained the queue
+     * @throws IOException
+     */
+    @Test
+    public void testHungProcessor() throws IOException {
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+        
+        TaskConfig task = job.getTasks().get(0);
+        task.getPartitioning().setCount(5);
+        task.setMaxProcessors(2);
+        task.setProcessorTimeout(1L);
+        assertTrue(job.valid());
+
+        final List<String> started = new ArrayList<>();
+        final List<String> programmed = new ArrayList<>();
+        final List<String> shutdown = new ArrayList<>();
+
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            @Mock
+            public VmMetaData init() throws IOException {
+                return new VmMetaData();
+            }
+
+            @Mock
+            public int getMaximumMetaDataSize() {
+                return 10000;
+            }
+
+            @Mock(invocations = 1)
+            public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
+                for(VmConfig config: configs) {
+                    started.add(config.getInstanceId());
+                }
+                return true;
+            }
+
+            // the first processor stays busy
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                VmMetaData metaData = new VmMetaData();
+                metaData.setProcessorStatus(instanceId.equals(started.get(0)) ? 
+                        ProcessorStatus.BUSY : ProcessorStatus.READY);
+                metaData.setInstanceStatus("RUNNING");
+                return metaData;
+            }
+
+            @Mock
+            public String updateMetadata(VmMetaData metaData, String zoneId, String instanceId, boolean block)
+                    throws IOException {
+                programmed.add(instanceId);
+                return "operation-" + instanceId;
+            }
+
+            @Mock
+            public void blockOnComputeOperations(List<String> references, String zoneId) throws IOException {
+            }
+
+            @Mock(invocations = 1)
+            public void shutdownInstance(List<VmConfig> configs) throws IOException {
+                for(VmConfig config: configs) {
+                    shutdown.add(config.getInstanceId());
+                }
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+        };
+
+        Coordinator coordinator = new Coordinator(job, mockup.getMockInstance());
+        coordinator.getContext().put("schemaTermsFile", "terms.txt");
+        coordinator.run();
+
+        String hung = started.get(0);
+        
+        // the 3 queued items and the item of the hung processor
+        assertEquals(4, programmed.size());
+        assertFalse(programmed.contains(hung));
+        assertEquals(Collections.singletonList(hung), shutdown);
+        assertFalse(coordinator.getProcessors().contains(hung));
+    }
+
+    /**
+     * The heaviest items are dispatched first, items with the same weight keep their order
+     */
+    @Test
+    public void testWorkItemOrder() {
+        List<WorkItem> items = new ArrayList<>();
+        long [] weights = {5, 20, 5, 100};
+
+        for(int i = 0; i < weights.length; i++) {
+            WorkItem item = new WorkItem(null, i, "item" + i, null);
+            item.setWeight(weights[i]);
+            items.add(item);
+        }
+
+        Collections.sort(items, Collections.reverseOrder());
+
+        assertEquals(3, items.get(0).getIndex());
+        assertEquals(1, items.get(1).getIndex());
+        assertEquals(0, items.get(2).getIndex());
+        assertEquals(2, items.get(3).getIndex());
+    }
+
+    /**
+     * The maximum number of processors must be positive
+     * @throws IOException
+     */
+    @Test
+    public void testInvalidMaxProcessors() throws IOException {
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().get(0).setMaxProcessors(0);
+        assertFalse(job.valid());
+    }
+
+}
@@ -0,0 +1,171 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cloudex.framework.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class ProcessorAffinityTest {
+
+    /**
+     * items go to the processors that have most of their keys cached
+     */
+    @Test
+    public void testAssignCachedItems() {
+        ProcessorAffinity affinity = new ProcessorAffinity();
+        affinity.setCachedKeys("cloudex-processor-1", Sets.newHashSet("file1", "file2"));
+        affinity.setCachedKeys("cloudex-processor-2", Sets.newHashSet("file3", "file4", "file5"));
+        affinity.setCachedKeys("cloudex-processor-3", Sets.newHashSet("file5"));
+
+        WorkItem item1 = new WorkItem(null, 0, "file3,file5", null);
+        WorkItem item2 = new WorkItem(null, 1, "file5,file6", null);
+        WorkItem item3 = new WorkItem(null, 2, "file1, file2", null);
+
+        Map<WorkItem, String> assigned = affinity.assign(Lists.newArrayList(item1, item2, item3), 
+                Lists.newArrayList("cloudex-processor-1", "cloudex-processor-2", "cloudex-processor-3"));
+
+        assertEquals(3, assigned.size());
+        assertEquals("cloudex-processor-2", assigned.get(item1));
+        assertEquals("cloudex-processor-3", assigned.get(item2));
+        assertEquals("cloudex-processor-1", assigned.get(item3));
+    }
+
+    /**
+     * items with no cached keys are assigned with a consistent hash, removing a processor only moves 
+     * the items it owned
+     */
+    @Test
+    public void testConsistentHashFallback() {
+        ProcessorAffinity affinity = new ProcessorAffinity();
+
+        List<String> processors = Lists.newArrayList();
+        List<WorkItem> items = Lists.newArrayList();
+
+        for(int i = 0; i < 20; i++) {
+            processors.add("cloudex-processor-" + i);
+            items.add(new WorkItem(null, i, "file" + i, null));
+        }
+
+        Map<WorkItem, String> assigned = affinity.assign(items, processors);
+        assertEquals(20, assigned.size());
+        assertEquals(20, new HashSet<>(assigned.values()).size());
+
+        // the same assignment every time
+        assertEquals(assigned, affinity.assign(items, Lists.reverse(processors)));
+
+        TreeMap<Integer, String> ring = ProcessorAffinity.createRing(processors);
+        Set<String> all = new HashSet<>(processors);
+
+        for(WorkItem item: items) {
+            // a single item always goes to its owner on the ring
+            String owner = ProcessorAffinity.getOwner(ring, item.getItem(), all);
+            assertEquals(owner, affinity.assign(Lists.newArrayList(item), processors).get(item));
+
+            // a processor that isn't free is skipped as if it wasn't on the ring
+            Set<String> others = new HashSet<>(all);
+            others.remove(owner);
+            assertEquals(ProcessorAffinity.getOwner(ProcessorAffinity.createRing(others), item.getItem(), others), 
+                    ProcessorAffinity.getOwner(ring, item.getItem(), others));
+        }
+
+        assertNull(ProcessorAffinity.getOwner(ring, "file1", Collections.<String>emptySet()));
+
+        // more items than processors
+        Map<WorkItem, String> partial = affinity.assign(items, processors.subList(0, 5));
+        assertEquals(5, partial.size());
+        assertEquals(5, new HashSet<>(partial.values()).size());
+    }
+
+    /**
+     * a processor polls the queued item that overlaps most with its cache, otherwise the head of the queue
+     */
+    @Test
+    public void testPoll() {
+        ProcessorAffinity affinity = new ProcessorAffinity();
+        affinity.setCachedKeys("cloudex-processor-1", Sets.newHashSet("file3"));
+
+        WorkItem item1 = new WorkItem(null, 0, "file1", null);
+        WorkItem item2 = new WorkItem(null, 1, "file2,file3", null);
+        WorkItem item3 = new WorkItem(null, 2, "file4", null);
+
+        AffinityQueue queue = new AffinityQueue();
+        queue.addAll(Lists.newArrayList(item1, item2, item3));
+
+        assertSame(item2, affinity.poll(queue, "cloudex-processor-1"));
+        assertSame(item1, affinity.poll(queue, "cloudex-processor-1"));
+        assertSame(item3, affinity.poll(queue, "cloudex-processor-2"));
+        assertNull(affinity.poll(queue, "cloudex-processor-1"));
+
+        affinity.remove("cloudex-processor-1");
+        assertFalse(affinity.getCachedKeys("cloudex-processor-1").contains("file3"));
+    }
+
+    /**
+     * items with the same overlap are polled in queue order and removed items are dropped from the key index
+     */
+    @Test
+    public void testPollQueueOrder() {
+        ProcessorAffinity affinity = new ProcessorAffinity();
+        affinity.setCachedKeys("cloudex-processor-1", Sets.newHashSet("file1", "file2"));
+
+        WorkItem item1 = new WorkItem(null, 0, "file5", null);
+        WorkItem item2 = new WorkItem(null, 1, "file1,file6", null);
+        WorkItem item3 = new WorkItem(null, 2, "file2, file7", null);
+        WorkItem item4 = new WorkItem(null, 3, "file1,file2", null);
+        WorkItem item5 = new WorkItem(null, 4, "file1 ,file8", null);
+
+        AffinityQueue queue = new AffinityQueue();
+        queue.addAll(Lists.newArrayList(item1, item2, item3, item4, item5));
+        assertEquals(5, queue.size());
+
+        // most overlap first, then queue order
+        assertSame(item4, affinity.poll(queue, "cloudex-processor-1"));
+        assertSame(item2, affinity.poll(queue, "cloudex-processor-1"));
+
+        assertTrue(queue.remove(item3));
+        assertFalse(queue.contains(item3));
+        assertSame(item5, affinity.poll(queue, "cloudex-processor-1"));
+
+        // no overlap left, the head of the queue
+        assertSame(item1, affinity.poll(queue, "cloudex-processor-1"));
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll(Sets.newHashSet("file1")));
+    }
+
+}
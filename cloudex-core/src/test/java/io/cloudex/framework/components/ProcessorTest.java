@@ -29,12 +29,19 @@ import io.cloudex.framework.cloud.api.CloudService;
 import io.cloudex.framework.cloud.entities.VmMetaData;
 import io.cloudex.framework.exceptions.ClassInstantiationException;
 import io.cloudex.framework.exceptions.InstancePopulationException;
+import io.cloudex.framework.task.CommonTask;
+import io.cloudex.framework.task.Task;
 import io.cloudex.framework.task.factory.TaskFactory;
 import io.cloudex.framework.task.factory.TaskFactoryImpl;
 import io.cloudex.framework.types.ProcessorStatus;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import mockit.Mock;
 import mockit.MockUp;
@@ -45,6 +52,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
 /**
  * @author Omer Dawelbeit (omerio)
  *
@@ -293,6 +303,195 @@ public class ProcessorTest {
 
     }
 
+    /**
+     * the keys cached by the task are reported in the READY metadata, most recent first
+     * @throws IOException
+     */
+    @Test
+    public void testReportCachedKeys() throws IOException {
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            @Mock(invocations = 1)
+            public VmMetaData init() throws IOException { 
+                return metaData; 
+            }
+
+            @Mock(minInvocations = 1)
+            public VmMetaData getMetaData(boolean waitForChange) throws IOException {
+                return metaData;
+            }
+
+            @Mock(invocations = 2)
+            public void updateMetadata(VmMetaData metaData) throws IOException {
+            }
+
+        };
+
+        TaskFactory taskFactory = new TaskFactoryImpl() {
+            @Override
+            public Task getTask(VmMetaData metaData, CloudService cloudService) {
+                return new CommonTask() {
+                    @Override
+                    public void run() throws IOException {
+                        this.addCachedKey("file1.txt");
+                        this.addCachedKey("file2.txt");
+                        this.addCachedKey("file3.txt");
+                    }
+                };
+            }
+        };
+
+        processor = new Processor.Builder(mockup.getMockInstance()).setTaskFactory(taskFactory)
+                .setMaxCachedKeys(2).build();
+        processor.setStop(true);
+        populateMetaData();
+
+        processor.run();
+
+        assertEquals(ProcessorStatus.READY, metaData.getProcessorStatus());
+        assertEquals(Sets.newLinkedHashSet(Lists.newArrayList("file2.txt", "file3.txt")), metaData.getCachedKeys());
+        assertEquals(metaData.getCachedKeys(), processor.getCachedKeys());
+    }
+
+    /**
+     * heartbeats with the task progress are published whilst the task is running
+     * @throws IOException
+     */
+    @Test
+    public void testHeartbeat() throws IOException {
+        final List<Long> progress = new ArrayList<>();
+
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            @Mock(invocations = 1)
+            public VmMetaData init() throws IOException { 
+                return metaData; 
+            }
+
+            @Mock(minInvocations = 1)
+            public VmMetaData getMetaData(boolean waitForChange) throws IOException {
+                return metaData;
+            }
+
+            @Mock
+            public void updateMetadata(VmMetaData metaData) throws IOException {
+                if(metaData.getHeartbeat() != null) {
+                    assertEquals(ProcessorStatus.BUSY, metaData.getProcessorStatus());
+                    progress.add(metaData.getProgress());
+                }
+            }
+
+        };
+
+        TaskFactory taskFactory = new TaskFactoryImpl() {
+            @Override
+            public Task getTask(VmMetaData metaData, CloudService cloudService) {
+                return new CommonTask() {
+                    @Override
+                    public void run() throws IOException {
+                        for(int i = 1; i <= 5; i++) {
+                            ApiUtils.block(100, TimeUnit.MILLISECONDS);
+                            this.setProgress(i);
+                        }
+                    }
+                };
+            }
+        };
+
+        processor = new Processor.Builder(mockup.getMockInstance()).setTaskFactory(taskFactory)
+                .setHeartbeatInterval(50).build();
+        processor.setStop(true);
+        populateMetaData();
+
+        processor.run();
+
+        assertEquals(ProcessorStatus.READY, metaData.getProcessorStatus());
+        assertNull(metaData.getHeartbeat());
+        assertTrue(progress.size() > 3);
+        assertTrue(progress.get(progress.size() - 1) >= 4);
+    }
+
+    /**
+     * each slot of a multi-slot processor runs the item in its metadata at the same time and reports READY in 
+     * its own part of the VM metadata
+     * @throws IOException
+     */
+    @Test
+    public void testRunSlots() throws IOException {
+        for(int i = 0; i < 2; i++) {
+            VmMetaData slot = new VmMetaData();
+            slot.setTaskClass("io.cloudex.framework.components.tasks.ProcessorFakeTask");
+            metaData.setSlotMetaData(i, slot);
+        }
+        metaData.setSlots(2);
+
+        final MockUp<CloudService> mockup = new MockUp<CloudService>() {
+
+            @Mock(invocations = 1)
+            public VmMetaData init() throws IOException { 
+                return metaData; 
+            }
+
+            @Mock(minInvocations = 2)
+            public synchronized VmMetaData getMetaData(boolean waitForChange) throws IOException {
+                return new VmMetaData(new HashMap<>(metaData.getAttributes()), null);
+            }
+
+            @Mock(minInvocations = 4)
+            public synchronized VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                assertEquals("processor", instanceId);
+                return new VmMetaData(new HashMap<>(metaData.getAttributes()), null);
+            }
+
+            @Mock(invocations = 4)
+            public synchronized String updateMetadata(VmMetaData vmMetaData, String zoneId, String instanceId, 
+                    boolean block) throws IOException {
+                assertEquals("processor", instanceId);
+                metaData = vmMetaData;
+                return null;
+            }
+
+            @Mock
+            public String getInstanceId() {
+                return "processor";
+            }
+
+        };
+
+        final CountDownLatch running = new CountDownLatch(2);
+
+        TaskFactory taskFactory = new TaskFactoryImpl() {
+            @Override
+            public Task getTask(VmMetaData metaData, CloudService cloudService) {
+                return new CommonTask() {
+                    @Override
+                    public void run() throws IOException {
+                        running.countDown();
+
+                        try {
+                            // only completes if the other slot is running at the same time
+                            assertTrue(running.await(5, TimeUnit.SECONDS));
+
+                        } catch(InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                    }
+                };
+            }
+        };
+
+        processor = new Processor.Builder(mockup.getMockInstance()).setTaskFactory(taskFactory).build();
+        processor.setStop(true);
+
+        processor.run();
+
+        assertEquals(0, running.getCount());
+        assertEquals(ProcessorStatus.READY, metaData.getSlotMetaData(0).getProcessorStatus());
+        assertEquals(ProcessorStatus.READY, metaData.getSlotMetaData(1).getProcessorStatus());
+        assertNull(metaData.getSlotMetaData(0).getTaskClass());
+        assertEquals(2, metaData.getSlots());
+    }
+
     private final void populateMetaData() {
         metaData.addUserValue(BUCKET_KEY, BUCKET_VALUE);
         metaData.addUserValue(SCHEMA_KEY, SCHEMA_VALUE);
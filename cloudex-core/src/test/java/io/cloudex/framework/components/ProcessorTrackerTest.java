@@ -0,0 +1,413 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.exceptions.ProcessorException;
+import io.cloudex.framework.exceptions.ProcessorLostException;
+import io.cloudex.framework.types.ProcessorStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.integration.junit4.JMockit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.google.common.collect.Lists;
+
+/**
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+@RunWith(JMockit.class)
+public class ProcessorTrackerTest {
+
+    private static final String ERROR = "error";
+
+    private static final String BUSY = "busy";
+
+    private List<String> events = new ArrayList<>();
+
+    /**
+     * A processor failure is reported before earlier processors are ready
+     * @throws IOException
+     */
+    @Test
+    public void testFailureReportedImmediately() throws IOException {
+
+        // processor1 is busy for 3 rounds, processor2 fails straightaway
+        ProcessorTracker tracker = new ProcessorTracker(getCloudService(3), "zone", getListener(false));
+        tracker.track(Lists.newArrayList("processor1", "processor2" + ERROR));
+        tracker.await();
+
+        assertEquals(Lists.newArrayList("failed:processor2" + ERROR, "ready:processor1"), events);
+        assertEquals(0, tracker.getPendingCount());
+    }
+
+    /**
+     * The listener throws to abort
+     * @throws IOException
+     */
+    @Test(expected = ProcessorException.class)
+    public void testFailFast() throws IOException {
+        ProcessorTracker tracker = new ProcessorTracker(getCloudService(1000), "zone", getListener(true));
+        tracker.track(Lists.newArrayList("processor1", "processor2" + ERROR));
+        tracker.await();
+    }
+
+    /**
+     * a processor that never completes times out
+     * @throws IOException
+     */
+    @Test
+    public void testProcessorTimeout() throws IOException {
+
+        final List<IOException> exceptions = new ArrayList<>();
+
+        ProcessorTracker tracker = new ProcessorTracker(getCloudService(0), "zone", new ProcessorTracker.Listener() {
+
+            @Override
+            public void processorReady(String instanceId, VmMetaData metaData) throws IOException {
+                events.add("ready:" + instanceId);
+            }
+
+            @Override
+            public void processorFailed(String instanceId, IOException exception) throws IOException {
+                events.add("failed:" + instanceId);
+                exceptions.add(exception);
+            }
+
+            @Override
+            public void roundCompleted(Set<String> pending) throws IOException {
+            }
+        });
+
+        tracker.setProcessorTimeout(100);
+        tracker.track(Lists.newArrayList("processor1", "processor2" + BUSY));
+        tracker.await();
+
+        assertEquals(Lists.newArrayList("ready:processor1", "failed:processor2" + BUSY), events);
+        assertTrue(exceptions.get(0) instanceof ProcessorLostException);
+        assertTrue(exceptions.get(0).getCause() instanceof TimeoutException);
+        assertFalse(tracker.isTimedOut());
+        assertEquals("processor2" + BUSY, ((ProcessorException) exceptions.get(0)).getProcessorId());
+    }
+
+    /**
+     * the task times out with processors still busy
+     * @throws IOException
+     */
+    @Test
+    public void testTaskTimeout() throws IOException {
+        ProcessorTracker tracker = new ProcessorTracker(getCloudService(0), "zone", getListener(false));
+        tracker.setTaskTimeout(100);
+        tracker.track(Lists.newArrayList("processor1" + BUSY, "processor2" + BUSY));
+        tracker.await();
+
+        assertEquals(Lists.newArrayList("failed:processor1" + BUSY, "failed:processor2" + BUSY), events);
+        assertTrue(tracker.isTimedOut());
+    }
+
+    /**
+     * All the pending processors are polled with one list call per round, processors that are not tracked
+     * are ignored and processors missing from the list are retried
+     * @throws IOException
+     */
+    @Test
+    public void testListPolling() throws IOException {
+
+        CloudService cloudService = new MockUp<CloudService>() {
+
+            private int rounds;
+
+            // processor1 is busy for 2 rounds, processor2 is missing from the first list
+            @Mock(invocations = 3)
+            public Map<String, VmMetaData> getProcessorsMetaData(String zoneId) throws IOException {
+                rounds++;
+                Map<String, VmMetaData> metaData = new HashMap<>();
+                metaData.put("processor1", getMetaData((rounds <= 2) ? ProcessorStatus.BUSY : ProcessorStatus.READY));
+                if(rounds > 1) {
+                    metaData.put("processor2", getMetaData(ProcessorStatus.READY));
+                }
+                metaData.put("processor3", getMetaData(ProcessorStatus.READY));
+                return metaData;
+            }
+
+            @Mock(invocations = 0)
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                return null;
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+            private VmMetaData getMetaData(ProcessorStatus status) {
+                VmMetaData metaData = new VmMetaData();
+                metaData.setProcessorStatus(status);
+                return metaData;
+            }
+
+        }.getMockInstance();
+
+        ProcessorTracker tracker = new ProcessorTracker(cloudService, "zone", getListener(false));
+        tracker.setListPolling(true);
+        tracker.track(Lists.newArrayList("processor1", "processor2"));
+        tracker.await();
+
+        assertEquals(Lists.newArrayList("ready:processor2", "ready:processor1"), events);
+    }
+
+    /**
+     * processors whose VM is terminated or whose heartbeat stalls are lost, busy processors with a live 
+     * heartbeat are still waited for
+     * @throws IOException
+     */
+    @Test
+    public void testLostProcessors() throws IOException {
+
+        final List<IOException> exceptions = new ArrayList<>();
+
+        CloudService cloudService = new MockUp<CloudService>() {
+
+            private int polls;
+
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                VmMetaData metaData = new VmMetaData();
+                metaData.setProcessorStatus(ProcessorStatus.BUSY);
+                metaData.setInstanceStatus("RUNNING");
+
+                if("terminated".equals(instanceId)) {
+                    metaData.setInstanceStatus("TERMINATED");
+
+                } else if("stalled".equals(instanceId)) {
+                    metaData.setHeartbeat(1000L);
+
+                } else {
+                    polls++;
+                    metaData.setHeartbeat(1000L + polls);
+                    metaData.setProgress(polls);
+
+                    if(polls > 8) {
+                        metaData.setProcessorStatus(ProcessorStatus.READY);
+                    }
+                }
+
+                return metaData;
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+        }.getMockInstance();
+
+        ProcessorTracker tracker = new ProcessorTracker(cloudService, "zone", new ProcessorTracker.Listener() {
+
+            @Override
+            public void processorReady(String instanceId, VmMetaData metaData) throws IOException {
+                events.add("ready:" + instanceId);
+            }
+
+            @Override
+            public void processorFailed(String instanceId, IOException exception) throws IOException {
+                events.add("failed:" + instanceId);
+                exceptions.add(exception);
+            }
+
+            @Override
+            public void roundCompleted(Set<String> pending) throws IOException {
+            }
+        });
+
+        tracker.setHeartbeatTimeout(300);
+        tracker.track(Lists.newArrayList("terminated", "stalled", "alive"));
+        tracker.await();
+
+        assertEquals(Lists.newArrayList("failed:terminated", "failed:stalled", "ready:alive"), events);
+        assertTrue(exceptions.get(0) instanceof ProcessorLostException);
+        assertTrue(exceptions.get(1) instanceof ProcessorLostException);
+        assertEquals("stalled", ((ProcessorException) exceptions.get(1)).getProcessorId());
+    }
+
+    /**
+     * a processor that was pushed its item is still READY with its previous item for a few polls, that status
+     * is ignored until the processor publishes the status of the new item
+     * @throws IOException
+     */
+    @Test
+    public void testPreviousDelivery() throws IOException {
+
+        CloudService cloudService = new MockUp<CloudService>() {
+
+            private int polls;
+
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                polls++;
+                VmMetaData metaData = new VmMetaData();
+                metaData.setProcessorStatus(ProcessorStatus.READY);
+                metaData.addValue(VmMetaData.CLOUDEX_DELIVERY, (polls > 3) ? "item-2" : "item-1");
+                return metaData;
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+        }.getMockInstance();
+
+        final List<String> deliveries = new ArrayList<>();
+
+        ProcessorTracker tracker = new ProcessorTracker(cloudService, "zone", new ProcessorTracker.Listener() {
+
+            @Override
+            public void processorReady(String instanceId, VmMetaData metaData) throws IOException {
+                events.add("ready:" + instanceId);
+                deliveries.add(metaData.getValue(VmMetaData.CLOUDEX_DELIVERY));
+            }
+
+            @Override
+            public void processorFailed(String instanceId, IOException exception) throws IOException {
+                events.add("failed:" + instanceId);
+            }
+
+            @Override
+            public void roundCompleted(Set<String> pending) throws IOException {
+            }
+        });
+
+        tracker.track("processor1", "item-2");
+        tracker.await();
+
+        assertEquals(Lists.newArrayList("ready:processor1"), events);
+        assertEquals(Lists.newArrayList("item-2"), deliveries);
+    }
+
+    /**
+     * The poll delay backs off when nothing changes and respects the request rate
+     */
+    @Test
+    public void testGetNextDelay() {
+        ProcessorTracker tracker = new ProcessorTracker(getCloudService(0), "zone", getListener(false));
+        tracker.setMaxDelay(10_000);
+
+        assertEquals(2000, tracker.getNextDelay(1000, 1000, false));
+        assertEquals(1000, tracker.getNextDelay(8000, 1000, true));
+        assertEquals(10_000, tracker.getNextDelay(8000, 1000, false));
+
+        // 100 pending processors at 20 requests per second
+        for(int i = 0; i < 100; i++) {
+            tracker.track("processor" + i);
+        }
+        assertEquals(5000, tracker.getNextDelay(1000, 1000, true));
+
+        // 1000 pending processors are polled with 2 list pages
+        for(int i = 100; i < 1000; i++) {
+            tracker.track("processor" + i);
+        }
+        tracker.setListPolling(true);
+        assertEquals(1000, tracker.getNextDelay(1000, 1000, true));
+        tracker.setMaxRequestsPerSecond(1);
+        assertEquals(2000, tracker.getNextDelay(1000, 1000, true));
+    }
+
+    private ProcessorTracker.Listener getListener(final boolean failFast) {
+        return new ProcessorTracker.Listener() {
+
+            @Override
+            public void processorReady(String instanceId, VmMetaData metaData) throws IOException {
+                events.add("ready:" + instanceId);
+            }
+
+            @Override
+            public void processorFailed(String instanceId, IOException exception) throws IOException {
+                events.add("failed:" + instanceId);
+                if(failFast) {
+                    throw exception;
+                }
+            }
+
+            @Override
+            public void roundCompleted(Set<String> pending) throws IOException {
+                assertFalse(pending.isEmpty());
+            }
+        };
+    }
+
+    /**
+     * Processors with an id ending with ERROR fail, ones ending with BUSY never complete, all other processors
+     * complete after the provided number of polls
+     * @param busyPolls - the number of polls a processor is busy for
+     * @return a cloud service mock
+     */
+    private CloudService getCloudService(final int busyPolls) {
+        return new MockUp<CloudService>() {
+
+            private Map<String, Integer> polls = new HashMap<>();
+
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                VmMetaData metaData = new VmMetaData();
+
+                Integer count = polls.get(instanceId);
+                count = (count == null) ? 1 : (count + 1);
+                polls.put(instanceId, count);
+
+                if(instanceId.endsWith(ERROR)) {
+                    metaData.exceptionToCloudExError(new IOException("Processor has failed"));
+
+                } else if(instanceId.endsWith(BUSY) || (count <= busyPolls)) {
+                    metaData.setProcessorStatus(ProcessorStatus.BUSY);
+
+                } else {
+                    metaData.setProcessorStatus(ProcessorStatus.READY);
+                }
+
+                return metaData;
+            }
+
+            @Mock
+            public int getApiRecheckDelay() {
+                return 0;
+            }
+
+        }.getMockInstance();
+    }
+
+}
@@ -0,0 +1,250 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.types.ProcessorStatus;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.integration.junit4.JMockit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+@RunWith(JMockit.class)
+public class SlotCloudServiceTest {
+
+    private static final String INSTANCE_ID = "cloudex-processor-1";
+
+    // the metadata of the VM
+    private VmMetaData metaData;
+
+    // the number of updates that fail because the fingerprint has changed in the meantime
+    private int conflicts;
+
+    private int updates;
+
+    private int fingerprint;
+
+    @Before
+    public void setUp() {
+        this.metaData = new VmMetaData(new HashMap<String, Object>(), "0");
+        this.metaData.setSlots(4);
+        this.conflicts = 0;
+        this.updates = 0;
+        this.fingerprint = 0;
+    }
+
+    /**
+     * a slot update is retried for as long as other writers keep changing the fingerprint
+     * @throws IOException
+     */
+    @Test
+    public void testUpdateConflicts() throws IOException {
+        SlotCloudService cloudService = new SlotCloudService(this.getCloudService().getMockInstance());
+        this.conflicts = 6;
+
+        VmMetaData slotMetaData = new VmMetaData();
+        slotMetaData.setProcessorStatus(ProcessorStatus.READY);
+        cloudService.forSlot(2).updateMetadata(slotMetaData);
+
+        assertEquals(1, this.updates);
+        assertEquals(ProcessorStatus.READY, this.metaData.getSlotMetaData(2).getProcessorStatus());
+        assertEquals(this.metaData.getFingerprint(), slotMetaData.getFingerprint());
+    }
+
+    /**
+     * the update fails once it has been retried for the update timeout
+     * @throws IOException
+     */
+    @Test
+    public void testUpdateTimeout() throws IOException {
+        SlotCloudService cloudService = new SlotCloudService(this.getCloudService().getMockInstance());
+        cloudService.setUpdateTimeout(TimeUnit.SECONDS.toMillis(1));
+        this.conflicts = Integer.MAX_VALUE;
+
+        long start = System.currentTimeMillis();
+
+        try {
+            cloudService.forSlot(0).updateMetadata(new VmMetaData());
+            fail("IOException expected");
+
+        } catch(IOException e) {
+            long elapsed = System.currentTimeMillis() - start;
+            assertEquals(0, this.updates);
+            assertTrue(elapsed <= TimeUnit.SECONDS.toMillis(2));
+        }
+    }
+
+    /**
+     * the slots of a VM write their heartbeats together at most once per interval, the heartbeats that are
+     * not written yet go with the next update of any slot
+     * @throws IOException
+     */
+    @Test
+    public void testHeartbeats() throws IOException {
+        SlotCloudService cloudService = new SlotCloudService(this.getCloudService().getMockInstance());
+        long interval = TimeUnit.MINUTES.toMillis(1);
+
+        for(int slot = 0; slot < 4; slot++) {
+            VmMetaData slotMetaData = new VmMetaData();
+            slotMetaData.setProcessorStatus(ProcessorStatus.BUSY);
+            slotMetaData.setHeartbeat(slot + 1);
+            slotMetaData.setProgress(10 * slot);
+            cloudService.forSlot(slot).updateHeartbeat(slotMetaData, interval);
+        }
+
+        // only the first heartbeat is written straight away
+        assertEquals(1, this.updates);
+        assertEquals(1L, this.metaData.getSlotMetaData(0).getHeartbeat().longValue());
+        assertNull(this.metaData.getSlotMetaData(1).getHeartbeat());
+
+        VmMetaData slotMetaData = new VmMetaData();
+        slotMetaData.setProcessorStatus(ProcessorStatus.READY);
+        cloudService.forSlot(3).updateMetadata(slotMetaData);
+
+        assertEquals(2, this.updates);
+        assertEquals(2L, this.metaData.getSlotMetaData(1).getHeartbeat().longValue());
+        assertEquals(20L, this.metaData.getSlotMetaData(2).getProgress().longValue());
+        assertEquals(3L, this.metaData.getSlotMetaData(2).getHeartbeat().longValue());
+
+        // the slot metadata replaces its pending heartbeat
+        assertEquals(ProcessorStatus.READY, this.metaData.getSlotMetaData(3).getProcessorStatus());
+        assertNull(this.metaData.getSlotMetaData(3).getHeartbeat());
+    }
+
+    /**
+     * the coordinator view only locks the VM it updates, so a slow update of a VM doesn't hold up the slots of 
+     * the other VMs
+     * @throws Exception
+     */
+    @Test
+    public void testVmLocks() throws Exception {
+        final CountDownLatch slowStarted = new CountDownLatch(1);
+        final CountDownLatch fastUpdated = new CountDownLatch(1);
+        final boolean[] waited = new boolean[1];
+
+        final SlotCloudService cloudService = new SlotCloudService(new MockUp<CloudService>() {
+
+            // the update of the slow VM waits for the update of the fast one
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                if("slow".equals(instanceId)) {
+                    slowStarted.countDown();
+                    try {
+                        waited[0] = fastUpdated.await(10, TimeUnit.SECONDS);
+
+                    } catch(InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return new VmMetaData(new HashMap<String, Object>(), "0");
+            }
+
+            @Mock
+            public String updateMetadata(VmMetaData vmMetaData, String zoneId, String instanceId, boolean block) 
+                    throws IOException {
+                if("fast".equals(instanceId)) {
+                    fastUpdated.countDown();
+                }
+                return "operation-" + instanceId;
+            }
+        }.getMockInstance());
+
+        Thread slow = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    cloudService.updateMetadata(new VmMetaData(), null, SlotCloudService.getSlotId("slow", 0), false);
+
+                } catch(IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        slow.start();
+
+        assertTrue(slowStarted.await(10, TimeUnit.SECONDS));
+        assertEquals("operation-fast", cloudService.updateMetadata(new VmMetaData(), null, 
+                SlotCloudService.getSlotId("fast", 1), false));
+
+        slow.join();
+        assertTrue(waited[0]);
+    }
+
+    /**
+     * @return a cloud service whose VM metadata updates fail if the fingerprint has changed
+     */
+    private MockUp<CloudService> getCloudService() {
+        return new MockUp<CloudService>() {
+
+            @Mock
+            public String getInstanceId() {
+                return INSTANCE_ID;
+            }
+
+            @Mock
+            public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
+                assertEquals(INSTANCE_ID, instanceId);
+                return new VmMetaData(new HashMap<>(metaData.getAttributes()), metaData.getFingerprint());
+            }
+
+            @Mock
+            public String updateMetadata(VmMetaData vmMetaData, String zoneId, String instanceId, boolean block) 
+                    throws IOException {
+                assertEquals(INSTANCE_ID, instanceId);
+
+                if(conflicts > 0) {
+                    // another writer has updated the metadata in the meantime
+                    conflicts--;
+                    metaData = new VmMetaData(metaData.getAttributes(), Integer.toString(++fingerprint));
+                }
+
+                if(!metaData.getFingerprint().equals(vmMetaData.getFingerprint())) {
+                    throw new IOException("Fingerprint mismatch");
+                }
+
+                metaData = new VmMetaData(new HashMap<>(vmMetaData.getAttributes()), Integer.toString(++fingerprint));
+                vmMetaData.setFingerprint(metaData.getFingerprint());
+                updates++;
+
+                return "operation-" + updates;
+            }
+        };
+    }
+
+}
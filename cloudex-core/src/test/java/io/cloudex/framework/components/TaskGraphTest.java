@@ -0,0 +1,194 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.config.Job;
+import io.cloudex.framework.config.JobTest;
+import io.cloudex.framework.config.TaskConfig;
+import io.cloudex.framework.types.TargetType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class TaskGraphTest {
+
+    /**
+     * Each task of the job uses the output of the previous one
+     * @throws IOException
+     */
+    @Test
+    public void testChainedTasks() throws IOException {
+        Job job = JobTest.loadJob("CoordinatorTest.json");
+        TaskGraph graph = new TaskGraph(job.getTasks());
+
+        assertEquals(3, graph.size());
+        assertEquals(Collections.emptySet(), graph.getDependencies(0));
+        assertEquals(Sets.newHashSet(0), graph.getDependencies(1));
+        // the processor task reads its own partition output
+        assertEquals(Sets.newHashSet(0, 1), graph.getDependencies(2));
+    }
+
+    /**
+     * independent tasks, overwritten keys and explicit dependencies
+     */
+    @Test
+    public void testDependencies() {
+        List<TaskConfig> tasks = Lists.newArrayList(
+                createTask("export1", "#table1", "file1"),
+                createTask("export2", "#table2", "file2"),
+                createTask("load", "#file1", "result"),
+                // overwrites file1 so must wait for the reader
+                createTask("export3", "#table3", "file1"),
+                createTask("cleanup", "#bucket", null));
+
+        tasks.get(4).setDependsOn(Lists.newArrayList("export2"));
+
+        TaskGraph graph = new TaskGraph(tasks);
+
+        assertEquals(Collections.emptySet(), graph.getDependencies(0));
+        assertEquals(Collections.emptySet(), graph.getDependencies(1));
+        assertEquals(Sets.newHashSet(0), graph.getDependencies(2));
+        assertEquals(Sets.newHashSet(0, 2), graph.getDependencies(3));
+        assertEquals(Sets.newHashSet(1), graph.getDependencies(4));
+
+        Set<Integer> completed = new HashSet<>();
+        Set<Integer> started = new HashSet<>();
+        assertEquals(Lists.newArrayList(0, 1), graph.getReadyTasks(completed, started));
+
+        completed.add(0);
+        started.addAll(Lists.newArrayList(0, 1));
+        assertEquals(Lists.newArrayList(2), graph.getReadyTasks(completed, started));
+    }
+
+    /**
+     * dependsOn must refer to an earlier task
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDependsOn() {
+        List<TaskConfig> tasks = Lists.newArrayList(
+                createTask("export1", "#table1", "file1"),
+                createTask("export2", "#table2", "file2"));
+
+        tasks.get(0).setDependsOn(Lists.newArrayList("export2"));
+        new TaskGraph(tasks);
+    }
+
+    /**
+     * independent tasks run at the same time
+     * @throws Exception
+     */
+    @Test
+    public void testSchedulerRunsInParallel() throws Exception {
+        List<TaskConfig> tasks = Lists.newArrayList(
+                createTask("export1", "#table1", "file1"),
+                createTask("export2", "#table2", "file2"),
+                createTask("load", "#file1", "result"));
+
+        final CountDownLatch latch = new CountDownLatch(2);
+        final List<String> completed = Collections.synchronizedList(new ArrayList<String>());
+
+        TaskScheduler scheduler = new TaskScheduler(new TaskGraph(tasks), new TaskScheduler.TaskRunner() {
+
+            @Override
+            public void runTask(TaskConfig taskConfig) throws Exception {
+                if(taskConfig.getId().startsWith("export")) {
+                    // both exports have to be running at the same time for this to return
+                    latch.countDown();
+                    assertTrue(latch.await(10, TimeUnit.SECONDS));
+                }
+                completed.add(taskConfig.getId());
+            }
+
+        }, 0);
+
+        scheduler.run();
+
+        assertEquals(3, completed.size());
+        // load only waits for export1
+        assertTrue(completed.indexOf("load") > completed.indexOf("export1"));
+    }
+
+    /**
+     * the failure of a task is thrown and dependent tasks don't run
+     * @throws Exception
+     */
+    @Test
+    public void testSchedulerFailure() throws Exception {
+        List<TaskConfig> tasks = Lists.newArrayList(
+                createTask("export1", "#table1", "file1"),
+                createTask("load", "#file1", "result"));
+
+        final List<String> started = Collections.synchronizedList(new ArrayList<String>());
+
+        TaskScheduler scheduler = new TaskScheduler(new TaskGraph(tasks), new TaskScheduler.TaskRunner() {
+
+            @Override
+            public void runTask(TaskConfig taskConfig) throws Exception {
+                started.add(taskConfig.getId());
+                throw new IOException("export failed");
+            }
+
+        }, 1);
+
+        try {
+            scheduler.run();
+            throw new AssertionError("Expected an IOException");
+
+        } catch(IOException e) {
+            assertEquals("export failed", e.getMessage());
+        }
+
+        assertEquals(Lists.newArrayList("export1"), started);
+    }
+
+    private TaskConfig createTask(String id, String input, String output) {
+        TaskConfig task = new TaskConfig();
+        task.setId(id);
+        task.setTarget(TargetType.COORDINATOR);
+        Map<String, String> inputs = new HashMap<>();
+        inputs.put("input", input);
+        task.setInput(inputs);
+        if(output != null) {
+            task.setOutput(Sets.newHashSet(output));
+        }
+        return task;
+    }
+
+}
@@ -0,0 +1,194 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.components;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.cloud.sim.Distribution;
+import io.cloudex.framework.cloud.sim.SimulatedCloudService;
+import io.cloudex.framework.components.Timeline.Span;
+import io.cloudex.framework.config.Job;
+import io.cloudex.framework.config.JobTest;
+import io.cloudex.framework.config.TaskConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+
+/**
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class TimelineTest {
+
+    /**
+     * the critical path goes through the slowest processor and the processor task container is ignored
+     */
+    @Test
+    public void testCriticalPath() {
+        Timeline timeline = createTimeline();
+
+        List<Span> path = timeline.getCriticalPath();
+        List<String> categories = new ArrayList<>();
+        for(Span span: path) {
+            categories.add(span.getCategory());
+        }
+
+        assertEquals(Lists.newArrayList(Timeline.TASK, Timeline.PARTITION, Timeline.PROVISION, Timeline.ITEM, 
+                Timeline.SHUTDOWN), categories);
+        assertEquals("p2", path.get(2).getTrack());
+        assertEquals("p2", path.get(3).getTrack());
+
+        Map<String, Long> times = Timeline.getCategoryTimes(path);
+        assertEquals(10, times.get(Timeline.TASK).longValue());
+        assertEquals(2, times.get(Timeline.PARTITION).longValue());
+        assertEquals(8, times.get(Timeline.PROVISION).longValue());
+        assertEquals(40, times.get(Timeline.ITEM).longValue());
+        assertEquals(5, times.get(Timeline.SHUTDOWN).longValue());
+        assertEquals(0, times.get(Timeline.WAITING).longValue());
+    }
+
+    /**
+     * processors are idle between their provisioning and shutdown when not working on an item
+     */
+    @Test
+    public void testIdle() {
+        Map<String, Double> idle = createTimeline().getIdle();
+
+        assertEquals(2, idle.size());
+        assertEquals(100d / 3, idle.get("p1"), 0.001);
+        assertEquals(0, idle.get("p2"), 0.001);
+    }
+
+    /**
+     * spans on a processor track never overlap and the gaps on the critical path are waiting time
+     */
+    @Test
+    public void testOverlapAndWaiting() {
+        Timeline timeline = new Timeline();
+        timeline.processorSpan("p1", Timeline.ITEM, "item 0", 0, 10, null);
+        timeline.processorSpan("p1", Timeline.DISPATCH, Timeline.DISPATCH, 5, 8, null);
+        timeline.taskSpan("task", Timeline.TASK, "task", 15, 20, null);
+
+        Span dispatch = timeline.getSpans().get(1);
+        assertEquals(10, dispatch.getStart());
+        assertEquals(0, dispatch.getDuration());
+
+        Map<String, Long> times = Timeline.getCategoryTimes(timeline.getCriticalPath());
+        assertEquals(5, times.get(Timeline.WAITING).longValue());
+        assertEquals(10, times.get(Timeline.ITEM).longValue());
+    }
+
+    /**
+     * the coordinator records the phases of the job and writes them as a trace file
+     * @throws IOException
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCoordinatorTimeline() throws IOException {
+
+        SimulatedCloudService cloudService = new SimulatedCloudService.Builder()
+                .setSeed(7)
+                .setApiLatency(Distribution.constant(10))
+                .setItemDuration(Distribution.uniform(TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(2)))
+                .build();
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+
+        TaskConfig task = job.getTasks().get(0);
+        task.getPartitioning().setCount(10);
+        task.setMaxProcessors(5);
+        job.getData().put("schemaTermsFile", "terms.txt");
+
+        File file = File.createTempFile("timeline", ".json");
+        Timeline timeline = new Timeline(file.getAbsolutePath());
+
+        new Coordinator.Builder(job, cloudService).setMaxRequestsPerSecond(0).setShutdownProcessors(true)
+            .setTimeline(timeline).build().run();
+
+        int items = 0;
+        int shutdowns = 0;
+        for(Span span: timeline.getSpans()) {
+            if(Timeline.ITEM.equals(span.getCategory())) {
+                items++;
+                assertEquals("completed", span.getArgs().get("status"));
+
+            } else if(Timeline.SHUTDOWN.equals(span.getCategory())) {
+                shutdowns++;
+            }
+        }
+
+        assertEquals(10, items);
+        assertEquals(5, shutdowns);
+        assertEquals(5, timeline.getIdle().size());
+        assertFalse(timeline.getCriticalPath().isEmpty());
+
+        Map<String, Object> trace = new Gson().fromJson(
+                new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), Map.class);
+        List<Map<String, Object>> events = (List<Map<String, Object>>) trace.get("traceEvents");
+        Map<String, Object> otherData = (Map<String, Object>) trace.get("otherData");
+
+        int complete = 0;
+        for(Map<String, Object> event: events) {
+            if("X".equals(event.get("ph"))) {
+                complete++;
+                assertTrue(((Double) event.get("ts")) >= 0);
+            }
+        }
+
+        assertEquals(timeline.getSpans().size() + timeline.getCriticalPath().size(), complete);
+        assertTrue(otherData.containsKey("criticalPath"));
+        assertEquals(5, ((Map<String, Object>) otherData.get("idlePercentage")).size());
+
+        assertTrue(file.delete());
+    }
+
+    /**
+     * a task, its partitioning and two processors, p2 is the slowest
+     * @return the timeline
+     */
+    private Timeline createTimeline() {
+        Timeline timeline = new Timeline();
+        timeline.taskSpan("export", Timeline.TASK, "export", 0, 10, null);
+        timeline.taskSpan("load", Timeline.PROCESSOR_TASK, "load", 10, 65, null);
+        timeline.taskSpan("load", Timeline.PARTITION, Timeline.PARTITION, 10, 12, null);
+        timeline.processorSpan("p1", Timeline.PROVISION, Timeline.PROVISION, 12, 30, null);
+        timeline.processorSpan("p2", Timeline.PROVISION, Timeline.PROVISION, 12, 20, null);
+        timeline.processorSpan("p1", Timeline.ITEM, "item 0", 30, 50, null);
+        timeline.processorSpan("p2", Timeline.ITEM, "item 1", 20, 60, null);
+        timeline.processorSpan("p1", Timeline.SHUTDOWN, Timeline.SHUTDOWN, 60, 62, null);
+        timeline.processorSpan("p2", Timeline.SHUTDOWN, Timeline.SHUTDOWN, 60, 65, null);
+        return timeline;
+    }
+
+}
@@ -122,6 +122,23 @@ public class TaskConfigTest {
         assertEquals("vm config is not expected for coordinators", config.getValidationErrors().get(0));
     }
     
+    /**
+     * Test method for {@link io.cloudex.framework.config.TaskConfig#getValidationErrors()}.
+     */
+    @Test
+    public void testInvalidRemoteCode() {
+        TaskConfig config = setup(TargetType.PROCESSOR);
+        config.getCode().setLocation(CodeLocation.REMOTE);
+        config.getCode().setUrl("bucket/task.jar");
+        assertFalse(config.valid());
+        assertEquals(1, config.getValidationErrors().size());
+        assertEquals("remote code requires the url and the hash of the jar", config.getValidationErrors().get(0));
+        
+        config.getCode().setHash("8f434346648f6b96df89dda901c5176b10a6d83961dd3c1ac88b59b2dc327aa4");
+        assertTrue(config.valid());
+        assertTrue(config.getValidationErrors().isEmpty());
+    }
+    
     /**
      * 
      * @param target
@@ -0,0 +1,125 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package io.cloudex.framework.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.sim.Distribution;
+import io.cloudex.framework.cloud.sim.SimulatedCloudService;
+import io.cloudex.framework.components.Coordinator;
+import io.cloudex.framework.config.Job;
+import io.cloudex.framework.config.JobTest;
+import io.cloudex.framework.config.TaskConfig;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class InstrumentedCloudServiceTest {
+
+    /**
+     * every api call of the coordinator is recorded along with the task and item durations
+     * @throws IOException
+     */
+    @Test
+    public void testCoordinatorMetrics() throws IOException {
+
+        SimulatedCloudService cloudService = new SimulatedCloudService.Builder()
+                .setSeed(7)
+                .setApiLatency(Distribution.constant(10))
+                .setItemDuration(Distribution.uniform(TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(2)))
+                .setApiErrorRate(0.05)
+                .build();
+
+        Job job = JobTest.loadJob("CoordinatorTest8.json");
+        job.getTasks().remove(1);
+
+        TaskConfig task = job.getTasks().get(0);
+        task.getPartitioning().setCount(10);
+        task.setMaxProcessors(5);
+        job.getData().put("schemaTermsFile", "terms.txt");
+
+        MetricsRegistry metrics = new MetricsRegistry();
+
+        new Coordinator.Builder(job, cloudService).setMaxRequestsPerSecond(0).setMetrics(metrics).build().run();
+
+        long calls = 0;
+        for(Entry<String, Histogram> entry: metrics.getHistograms().entrySet()) {
+            if(entry.getKey().startsWith("cloud.") && !entry.getKey().equals("cloud.init.latency")) {
+                calls += entry.getValue().getCount();
+            }
+        }
+
+        assertEquals(cloudService.getApiCallCount(), calls);
+        assertEquals(cloudService.getApiCalls().get("getMetaData").longValue(), 
+                metrics.histogram("cloud.getMetaData.latency").getCount());
+        assertEquals(1, metrics.histogram("cloud.startInstance.latency").getCount());
+
+        // the errors are all injected into the processors status checks, which are retried
+        assertEquals(cloudService.getApiErrors(), metrics.counter("cloud.getMetaData.errors").getCount());
+        assertTrue(metrics.counter("cloud.getMetaData.retries").getCount() > 0);
+
+        assertEquals(1, metrics.histogram("job.duration").getCount());
+        assertEquals(1, metrics.histogram("task.first-task.duration").getCount());
+        assertEquals(10, metrics.histogram("task.first-task.item.duration").getCount());
+
+        double utilisation = metrics.gauge("task.first-task.utilisation").getValue();
+        assertTrue((utilisation >= 0) && (utilisation <= 1));
+    }
+
+    /**
+     * a cloud service that retries calls internally is given the registry to count its retries in
+     */
+    @Test
+    public void testMetricsAware() {
+
+        final MetricsRegistry metrics = new MetricsRegistry();
+
+        CloudService cloudService = (CloudService) Proxy.newProxyInstance(this.getClass().getClassLoader(), 
+                new Class<?>[] { CloudService.class, MetricsAware.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        // count a retry in the provided registry
+                        if("setMetrics".equals(method.getName())) {
+                            ((MetricsRegistry) args[0]).counter(InstrumentedCloudService.getRetriesName("init")).inc();
+                        }
+                        return null;
+                    }
+                });
+
+        new InstrumentedCloudService(cloudService, metrics);
+
+        assertEquals(1, metrics.counter("cloud.init.retries").getCount());
+    }
+
+}
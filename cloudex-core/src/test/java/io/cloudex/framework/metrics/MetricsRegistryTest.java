@@ -0,0 +1,142 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package io.cloudex.framework.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+/**
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class MetricsRegistryTest {
+
+    /**
+     * values are counted in their buckets and the percentiles are the bucket bounds
+     */
+    @Test
+    public void testHistogram() {
+        Histogram histogram = new Histogram();
+
+        assertEquals(0, histogram.getPercentile(0.5));
+
+        for(int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getSum());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 0.001);
+        assertEquals(50, histogram.getPercentile(0.5));
+        assertEquals(100, histogram.getPercentile(0.99));
+        assertEquals(1, histogram.getPercentile(0));
+
+        // larger than the largest bound
+        histogram.record(5_000_000);
+        long [] counts = histogram.getBucketCounts();
+        assertEquals(1, counts[counts.length - 1]);
+        assertEquals(5_000_000, histogram.getPercentile(1));
+    }
+
+    /**
+     * metrics are created once and sorted by name
+     */
+    @Test
+    public void testRegistry() {
+        MetricsRegistry registry = new MetricsRegistry();
+
+        registry.counter("b").inc();
+        registry.counter(MetricsRegistry.name("a", "errors")).inc(2);
+        registry.counter("a.errors").inc();
+        registry.gauge("c").set(0.5);
+
+        assertEquals(3, registry.counter("a.errors").getCount());
+        assertEquals("a.errors", registry.getCounters().firstKey());
+        assertEquals(0.5, registry.gauge("c").getValue(), 0);
+        assertEquals(registry.histogram("d"), registry.histogram("d"));
+    }
+
+    /**
+     * the file sinks write all the metrics and a failing sink doesn't stop the others
+     * @throws IOException
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSinks() throws IOException {
+        File json = File.createTempFile("metrics", ".json");
+        File prom = File.createTempFile("metrics", ".prom");
+
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("cloud.getMetaData.errors").inc();
+        registry.gauge("task.first-task.utilisation").set(0.75);
+        registry.histogram("cloud.getMetaData.latency").record(3);
+        registry.histogram("cloud.getMetaData.latency").record(40);
+
+        registry.addSink(new MetricsSink() {
+            @Override
+            public void report(MetricsRegistry registry) throws IOException {
+                throw new IOException("sink has failed");
+            }
+        });
+        registry.addSink(new LogMetricsSink());
+        registry.addSink(new JsonFileMetricsSink(json.getAbsolutePath()));
+        registry.addSink(new PrometheusFileMetricsSink(prom.getAbsolutePath()));
+
+        registry.report();
+
+        Map<String, Object> metrics = new Gson().fromJson(
+                new String(Files.readAllBytes(json.toPath()), StandardCharsets.UTF_8), Map.class);
+        Map<String, Object> histograms = (Map<String, Object>) metrics.get("histograms");
+        Map<String, Object> latency = (Map<String, Object>) histograms.get("cloud.getMetaData.latency");
+
+        assertEquals(1d, ((Map<String, Object>) metrics.get("counters")).get("cloud.getMetaData.errors"));
+        assertEquals(2d, latency.get("count"));
+        assertEquals(40d, latency.get("p99"));
+
+        List<String> lines = Files.readAllLines(prom.toPath(), StandardCharsets.UTF_8);
+
+        assertTrue(lines.contains("# TYPE cloudex_cloud_getMetaData_errors counter"));
+        assertTrue(lines.contains("cloudex_cloud_getMetaData_errors 1"));
+        assertTrue(lines.contains("cloudex_task_first_task_utilisation 0.75"));
+        assertTrue(lines.contains("cloudex_cloud_getMetaData_latency_bucket{le=\"2\"} 0"));
+        assertTrue(lines.contains("cloudex_cloud_getMetaData_latency_bucket{le=\"5\"} 1"));
+        assertTrue(lines.contains("cloudex_cloud_getMetaData_latency_bucket{le=\"+Inf\"} 2"));
+        assertTrue(lines.contains("cloudex_cloud_getMetaData_latency_sum 43"));
+        assertTrue(lines.contains("cloudex_cloud_getMetaData_latency_count 2"));
+
+        assertTrue(json.delete());
+        assertTrue(prom.delete());
+    }
+
+}
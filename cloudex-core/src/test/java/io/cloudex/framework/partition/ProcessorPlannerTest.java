@@ -0,0 +1,115 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.partition;
+
+import static org.junit.Assert.assertEquals;
+import io.cloudex.framework.config.PlanConfig;
+import io.cloudex.framework.config.VmConfig;
+import io.cloudex.framework.partition.entities.Item;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 40 items that take 3 minutes each on a processor, billed per minute with a minimum of 10 minutes
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class ProcessorPlannerTest {
+
+    private List<Item> items;
+
+    private PlanConfig planConfig;
+
+    private VmConfig vmConfig;
+
+    @Before
+    public void setUp() {
+        items = new ArrayList<>();
+        for(int i = 0; i < 40; i++) {
+            items.add(new Item("key" + i, 180L));
+        }
+
+        planConfig = new PlanConfig();
+        planConfig.setThroughput(1.0);
+        planConfig.setOutput("numberOfProcessors");
+
+        vmConfig = new VmConfig();
+        vmConfig.setCost(1.0);
+        vmConfig.setMinUsage(600L);
+    }
+
+    /**
+     * 12 processors that run for 10 minutes cost the same as 1 processor for 2 hours, 
+     * 40 processors cost more than 3 times as much
+     */
+    @Test
+    public void testCheapestPlan() {
+        ProcessorPlanner planner = new ProcessorPlanner(planConfig, vmConfig);
+        assertEquals(12, planner.plan(items));
+
+        assertEquals(600, planner.getMakespan(7200, 180, 12), 0.0001);
+        assertEquals(2.0, planner.getCost(600, 12), 0.0001);
+        assertEquals(2.0, planner.getCost(7200, 1), 0.0001);
+        assertEquals(40 / 6.0, planner.getCost(180, 40), 0.0001);
+    }
+
+    /**
+     * The cheapest plan that completes within 5 minutes
+     */
+    @Test
+    public void testDeadline() {
+        planConfig.setDeadline(300L);
+        assertEquals(24, new ProcessorPlanner(planConfig, vmConfig).plan(items));
+
+        // no plan is fast enough, the largest item takes 3 minutes
+        planConfig.setDeadline(100L);
+        assertEquals(40, new ProcessorPlanner(planConfig, vmConfig).plan(items));
+    }
+
+    /**
+     * The fastest plan within the budget
+     */
+    @Test
+    public void testBudget() {
+        planConfig.setBudget(3.0);
+        assertEquals(18, new ProcessorPlanner(planConfig, vmConfig).plan(items));
+
+        // nothing is within budget so the cheapest plan is used
+        planConfig.setBudget(1.0);
+        assertEquals(12, new ProcessorPlanner(planConfig, vmConfig).plan(items));
+    }
+
+    /**
+     * Processors with 2 cores are twice as fast
+     */
+    @Test
+    public void testCores() {
+        vmConfig.setCores(2);
+        ProcessorPlanner planner = new ProcessorPlanner(planConfig, vmConfig);
+        assertEquals(6, planner.plan(items));
+        assertEquals(90, planner.getMakespan(7200, 180, 40), 0.0001);
+    }
+
+}
@@ -0,0 +1,223 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.task.factory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.exceptions.ClassInstantiationException;
+import io.cloudex.framework.exceptions.InstancePopulationException;
+import io.cloudex.framework.task.CommonTask;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+public class TaskBinderTest {
+
+    /**
+     * the String values from the metadata are converted to the property types
+     * @throws Exception
+     */
+    @Test
+    public void testBindStrings() throws Exception {
+        TaskBinder binder = TaskBinder.forClass(TypedTask.class.getName());
+        TypedTask task = (TypedTask) binder.newTask();
+
+        Map<String, String> values = new HashMap<>();
+        values.put("bucket", "testBucket");
+        values.put("count", "12");
+        values.put("size", "1024");
+        values.put("ratio", "0.5");
+        values.put("enabled", "true");
+        values.put("files", "a.txt,b.txt");
+
+        binder.bind(task, values);
+
+        assertEquals("testBucket", task.getBucket());
+        assertEquals(12, task.getCount());
+        assertEquals(Long.valueOf(1024), task.getSize());
+        assertEquals(0.5, task.getRatio(), 0);
+        assertTrue(task.isEnabled());
+        assertArrayEquals(new String [] {"a.txt", "b.txt"}, task.getFiles());
+    }
+
+    /**
+     * the values resolved by the coordinator are set as they are or converted if needed
+     * @throws Exception
+     */
+    @Test
+    public void testBindObjects() throws Exception {
+        TaskBinder binder = TaskBinder.forClass(TypedTask.class.getName());
+        TypedTask task = (TypedTask) binder.newTask();
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("bucket", 5);
+        values.put("count", 7);
+        values.put("size", null);
+        values.put("ratio", 2L);
+
+        binder.bind(task, values);
+
+        assertEquals("5", task.getBucket());
+        assertEquals(7, task.getCount());
+        assertNull(task.getSize());
+        assertEquals(2, task.getRatio(), 0);
+    }
+
+    /**
+     * an input that isn't a property of the task fails like ObjectUtils.populate
+     * @throws Exception
+     */
+    @Test(expected = InstancePopulationException.class)
+    public void testBindInvalidProperty() throws Exception {
+        TaskBinder binder = TaskBinder.forClass(TypedTask.class.getName());
+
+        Map<String, String> values = new HashMap<>();
+        values.put("table", "testTable");
+
+        binder.bind(binder.newTask(), values);
+    }
+
+    /**
+     * a property with a getter but no setter is ignored
+     * @throws Exception
+     */
+    @Test
+    public void testBindReadOnlyProperty() throws Exception {
+        TaskBinder binder = TaskBinder.forClass(TypedTask.class.getName());
+        TypedTask task = (TypedTask) binder.newTask();
+
+        Map<String, String> values = new HashMap<>();
+        values.put("readOnly", "value");
+
+        binder.bind(task, values);
+
+        assertEquals("readOnly", task.getReadOnly());
+    }
+
+    /**
+     * the binder of a class is only created once and creates a new task each time
+     * @throws ClassInstantiationException
+     */
+    @Test
+    public void testCache() throws ClassInstantiationException {
+        TaskBinder binder = TaskBinder.forClass(TypedTask.class.getName());
+
+        assertSame(binder, TaskBinder.forClass(TypedTask.class.getName()));
+        assertTrue(binder.newTask() != binder.newTask());
+        assertEquals(TypedTask.class, binder.getTaskClass());
+    }
+
+    @Test(expected = ClassInstantiationException.class)
+    public void testInvalidClass() throws ClassInstantiationException {
+        TaskBinder.forClass("io.cloudex.framework.task.factory.MissingTask");
+    }
+
+    @Test(expected = ClassInstantiationException.class)
+    public void testNotTask() throws ClassInstantiationException {
+        TaskBinder.forClass(String.class.getName());
+    }
+
+    /**
+     * A task with properties of different types
+     */
+    public static class TypedTask extends CommonTask {
+
+        private String bucket;
+
+        private int count;
+
+        private Long size;
+
+        private double ratio;
+
+        private boolean enabled;
+
+        private String [] files;
+
+        public String getBucket() {
+            return bucket;
+        }
+
+        public void setBucket(String bucket) {
+            this.bucket = bucket;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public Long getSize() {
+            return size;
+        }
+
+        public void setSize(Long size) {
+            this.size = size;
+        }
+
+        public double getRatio() {
+            return ratio;
+        }
+
+        public void setRatio(double ratio) {
+            this.ratio = ratio;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String [] getFiles() {
+            return files;
+        }
+
+        public void setFiles(String [] files) {
+            this.files = files;
+        }
+
+        public String getReadOnly() {
+            return "readOnly";
+        }
+
+        @Override
+        public void run() throws IOException {
+            // nothing to run
+        }
+    }
+
+}
@@ -0,0 +1,345 @@
+/**
+ * The contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2015, cloudex.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.cloudex.framework.task.factory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import io.cloudex.framework.cloud.api.CloudService;
+import io.cloudex.framework.cloud.entities.VmMetaData;
+import io.cloudex.framework.exceptions.ClassInstantiationException;
+import io.cloudex.framework.task.CommonTask;
+import io.cloudex.framework.task.Task;
+import io.cloudex.framework.types.CodeLocation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import mockit.Mock;
+import mockit.MockUp;
+import mockit.integration.junit4.JMockit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * @author Omer Dawelbeit (omerio)
+ *
+ */
+@RunWith(JMockit.class)
+public class TaskCodeCacheTest {
+
+    private static final String BUCKET = "testBucket";
+
+    private static final String TASK_CLASS = "remote.RemoteTask";
+
+    private static final String TASK_SOURCE = "package remote;\n"
+            + "public class RemoteTask extends io.cloudex.framework.task.CommonTask {\n"
+            + "    private String name;\n"
+            + "    public String getName() { return name; }\n"
+            + "    public void setName(String name) { this.name = name; }\n"
+            + "    public void run() { this.addOutput(\"name\", name); }\n"
+            + "}\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // object name => local jar
+    private Map<String, File> objects;
+
+    // object name => number of downloads
+    private Map<String, Integer> downloads;
+
+    private File cacheFolder;
+
+    @Before
+    public void setUp() throws Exception {
+        objects = new HashMap<>();
+        downloads = new HashMap<>();
+        cacheFolder = folder.newFolder("cache");
+
+        File classes = folder.newFolder("classes");
+        File source = new File(folder.newFolder("src", "remote"), "RemoteTask.java");
+        Files.write(source.toPath(), TASK_SOURCE.getBytes(StandardCharsets.UTF_8));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        String classpath = new File(CommonTask.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+            .getPath() + File.pathSeparator + System.getProperty("java.class.path");
+        assertEquals(0, compiler.run(null, null, null, "-d", classes.getPath(), "-cp", classpath, source.getPath()));
+
+        File taskClass = new File(classes, "remote/RemoteTask.class");
+        objects.put("v1.jar", this.createJar(taskClass, "v1"));
+        objects.put("v2.jar", this.createJar(taskClass, "v2"));
+    }
+
+    /**
+     * the task is loaded from the downloaded jar and the code version is reused
+     * @throws Exception
+     */
+    @Test
+    public void testGetBinder() throws Exception {
+        CloudService cloudService = this.getCloudService().getMockInstance();
+        TaskCodeCache cache = new TaskCodeCache(cacheFolder.getPath());
+
+        TaskBinder binder = cache.getBinder(cloudService, BUCKET + "/v1.jar", this.hash("v1.jar"), TASK_CLASS);
+
+        assertEquals(TASK_CLASS, binder.getTaskClass().getName());
+        assertNotSame(TaskCodeCacheTest.class.getClassLoader(), binder.getTaskClass().getClassLoader());
+
+        Task task = binder.newTask();
+        Map<String, String> values = new HashMap<>();
+        values.put("name", "remote");
+        binder.bind(task, values);
+        task.run();
+        assertEquals("remote", task.getOutput().get("name"));
+
+        assertSame(binder, cache.getBinder(cloudService, "gs://" + BUCKET + "/v1.jar", this.hash("v1.jar"), 
+                TASK_CLASS));
+        assertEquals(1, (int) downloads.get("v1.jar"));
+        assertTrue(new File(cacheFolder, this.hash("v1.jar") + ".jar").exists());
+    }
+
+    /**
+     * a jar cached on disk by an earlier process isn't downloaded again
+     * @throws Exception
+     */
+    @Test
+    public void testCachedJar() throws Exception {
+        CloudService cloudService = this.getCloudService().getMockInstance();
+        String hash = this.hash("v1.jar");
+
+        TaskBinder binder = new TaskCodeCache(cacheFolder.getPath())
+            .getBinder(cloudService, BUCKET + "/v1.jar", hash, TASK_CLASS);
+        TaskBinder other = new TaskCodeCache(cacheFolder.getPath())
+            .getBinder(cloudService, BUCKET + "/v1.jar", hash, TASK_CLASS);
+
+        assertEquals(1, (int) downloads.get("v1.jar"));
+        assertNotSame(binder.getTaskClass(), other.getTaskClass());
+    }
+
+    /**
+     * a jar that doesn't match its hash is neither loaded nor cached
+     * @throws Exception
+     */
+    @Test
+    public void testHashMismatch() throws Exception {
+        CloudService cloudService = this.getCloudService().getMockInstance();
+        TaskCodeCache cache = new TaskCodeCache(cacheFolder.getPath());
+        String hash = this.hash("v2.jar");
+
+        try {
+            cache.getBinder(cloudService, BUCKET + "/v1.jar", hash, TASK_CLASS);
+            throw new AssertionError("expecting ClassInstantiationException");
+
+        } catch(ClassInstantiationException e) {
+            // expected
+        }
+
+        assertFalse(cache.isLoaded(hash));
+        assertEquals(0, cacheFolder.list().length);
+    }
+
+    /**
+     * a hash that isn't a hex SHA-256 hash is rejected before any file is used
+     * @throws Exception
+     */
+    @Test
+    public void testInvalidHash() throws Exception {
+        CloudService cloudService = this.getCloudService().getMockInstance();
+        TaskCodeCache cache = new TaskCodeCache(cacheFolder.getPath());
+
+        for(String hash: new String[] { "../../v1", this.hash("v1.jar").substring(1), this.hash("v1.jar") + "/" }) {
+            try {
+                cache.getBinder(cloudService, BUCKET + "/v1.jar", hash, TASK_CLASS);
+                throw new AssertionError("expecting ClassInstantiationException");
+
+            } catch(ClassInstantiationException e) {
+                // expected
+            }
+        }
+
+        assertTrue(downloads.isEmpty());
+        assertEquals(0, cacheFolder.list().length);
+    }
+
+    /**
+     * the factory loads remote processor tasks and preloads the next code version
+     * @throws Exception
+     */
+    @Test
+    public void testProcessorTask() throws Exception {
+        CloudService cloudService = this.getCloudService().getMockInstance();
+        TaskCodeCache cache = new TaskCodeCache(cacheFolder.getPath());
+
+        VmMetaData metaData = new VmMetaData();
+        metaData.setTaskClass(TASK_CLASS);
+        metaData.setTaskCodeType(CodeLocation.REMOTE);
+        metaData.setTaskCodeUrl(BUCKET + "/v1.jar");
+        metaData.setTaskCodeHash(this.hash("v1.jar"));
+        metaData.setNextTaskCode(BUCKET + "/v2.jar", this.hash("v2.jar"));
+        metaData.addUserValue("name", "remote");
+
+        Task task = new TaskFactoryImpl(cache).getTask(metaData, cloudService);
+        task.run();
+        assertEquals("remote", task.getOutput().get("name"));
+        assertTrue(cache.isLoaded(this.hash("v1.jar")));
+
+        // wait for the preloading
+        for(int i = 0; (i < 50) && !cache.isLoaded(this.hash("v2.jar")); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(cache.isLoaded(this.hash("v2.jar")));
+
+        TaskBinder next = cache.getBinder(cloudService, BUCKET + "/v2.jar", this.hash("v2.jar"), TASK_CLASS);
+        assertNotSame(task.getClass(), next.getTaskClass());
+        assertEquals(1, (int) downloads.get("v1.jar"));
+        assertEquals(1, (int) downloads.get("v2.jar"));
+    }
+
+    /**
+     * the class in the jar is loaded even though a class with the same name is on the processor classpath, the 
+     * framework classes are shared with the processor
+     * @throws Exception
+     */
+    @Test
+    public void testShadowedClass() throws Exception {
+        CloudService cloudService = this.getCloudService().getMockInstance();
+        TaskCodeCache cache = new TaskCodeCache(cacheFolder.getPath());
+
+        Class<?> classpathTask = Class.forName(TASK_CLASS);
+        assertSame(TaskCodeCacheTest.class.getClassLoader(), classpathTask.getClassLoader());
+
+        TaskBinder binder = cache.getBinder(cloudService, BUCKET + "/v1.jar", this.hash("v1.jar"), TASK_CLASS);
+        assertNotSame(classpathTask, binder.getTaskClass());
+
+        Task task = binder.newTask();
+        Map<String, String> values = new HashMap<>();
+        values.put("name", "remote");
+        binder.bind(task, values);
+        task.run();
+        assertEquals("remote", task.getOutput().get("name"));
+
+        ClassLoader classLoader = binder.getTaskClass().getClassLoader();
+        assertSame(CommonTask.class, classLoader.loadClass(CommonTask.class.getName()));
+        assertTrue(classLoader.getResource("version.txt").toString().contains(this.hash("v1.jar")));
+    }
+
+    /**
+     * the least recently used code version is evicted and closed once there are more than the maximum
+     * @throws Exception
+     */
+    @Test
+    public void testEviction() throws Exception {
+        CloudService cloudService = this.getCloudService().getMockInstance();
+        TaskCodeCache cache = new TaskCodeCache(cacheFolder.getPath(), 1);
+
+        TaskBinder v1 = cache.getBinder(cloudService, BUCKET + "/v1.jar", this.hash("v1.jar"), TASK_CLASS);
+        assertTrue(cache.isLoaded(this.hash("v1.jar")));
+        assertNotNull(v1.getTaskClass().getClassLoader().getResource("version.txt"));
+
+        cache.getBinder(cloudService, BUCKET + "/v2.jar", this.hash("v2.jar"), TASK_CLASS);
+        assertTrue(cache.isLoaded(this.hash("v2.jar")));
+        assertFalse(cache.isLoaded(this.hash("v1.jar")));
+
+        // the tasks of the evicted version can still run and load their classes
+        assertNotNull(((URLClassLoader) v1.getTaskClass().getClassLoader()).findResource("version.txt"));
+        assertNotNull(v1.newTask());
+
+        // an evicted version is loaded again from the local cache
+        TaskBinder reloaded = cache.getBinder(cloudService, BUCKET + "/v1.jar", this.hash("v1.jar"), TASK_CLASS);
+        assertNotSame(v1.getTaskClass(), reloaded.getTaskClass());
+        assertEquals(1, (int) downloads.get("v1.jar"));
+    }
+
+    /**
+     * @param object - the object name
+     * @return the hex SHA-256 hash of the object
+     * @throws IOException
+     */
+    private String hash(String object) throws IOException {
+        return com.google.common.io.Files.hash(objects.get(object), Hashing.sha256()).toString();
+    }
+
+    /**
+     * @param taskClass - the compiled task class
+     * @param version - a version marker, so that each jar has a different hash
+     * @return the jar
+     * @throws IOException
+     */
+    private File createJar(File taskClass, String version) throws IOException {
+        File jar = folder.newFile(version + ".jar");
+
+        try(JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new JarEntry("remote/RemoteTask.class"));
+            Files.copy(taskClass.toPath(), out);
+            out.closeEntry();
+
+            out.putNextEntry(new JarEntry("version.txt"));
+            out.write(version.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+
+        return jar;
+    }
+
+    /**
+     * @return a cloud service that downloads the jars and counts the downloads
+     */
+    private MockUp<CloudService> getCloudService() {
+        return new MockUp<CloudService>() {
+
+            @Mock
+            public void downloadObjectFromCloudStorage(String object, String outFile, String bucket) 
+                    throws IOException {
+                assertEquals(BUCKET, bucket);
+
+                synchronized(downloads) {
+                    Integer count = downloads.get(object);
+                    downloads.put(object, (count == null) ? 1 : count + 1);
+                }
+
+                Files.copy(objects.get(object).toPath(), new File(outFile).toPath(), 
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        };
+    }
+
+}
@@ -41,6 +41,7 @@ import static io.cloudex.cloud.impl.google.compute.GoogleMetaData.PROJECT_ID_PAT
 import static io.cloudex.cloud.impl.google.compute.GoogleMetaData.RESOURCE_BASE_URL;
 import static io.cloudex.cloud.impl.google.compute.GoogleMetaData.SCOPES;
 import static io.cloudex.cloud.impl.google.compute.GoogleMetaData.SERVICE_ACCOUNTS;
+import static io.cloudex.cloud.impl.google.compute.GoogleMetaData.TERMINATE;
 import static io.cloudex.cloud.impl.google.compute.GoogleMetaData.WAIT_FOR_CHANGE;
 import static io.cloudex.cloud.impl.google.compute.GoogleMetaData.WILDCARD_SUFFIX;
 import static io.cloudex.cloud.impl.google.compute.GoogleMetaData.WRITE_APPEND;
@@ -57,11 +58,15 @@ import io.cloudex.framework.cloud.api.AuthenticationProvider;
 import io.cloudex.framework.cloud.api.Callback;
 import io.cloudex.framework.cloud.api.CloudService;
 import io.cloudex.framework.cloud.api.FutureTask;
+import io.cloudex.framework.cloud.api.ProvisioningListener;
 import io.cloudex.framework.cloud.entities.BigDataColumn;
 import io.cloudex.framework.cloud.entities.BigDataTable;
 import io.cloudex.framework.cloud.entities.QueryStats;
 import io.cloudex.framework.cloud.entities.VmMetaData;
 import io.cloudex.framework.config.VmConfig;
+import io.cloudex.framework.metrics.InstrumentedCloudService;
+import io.cloudex.framework.metrics.MetricsAware;
+import io.cloudex.framework.metrics.MetricsRegistry;
 import io.cloudex.framework.utils.Constants;
 import io.cloudex.framework.utils.FileUtils;
 
@@ -79,6 +84,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.compress.compressors.gzip.GzipUtils;
@@ -91,10 +98,14 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
 import com.google.api.client.googleapis.json.GoogleJsonError;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.http.FileContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpHeaders;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.InputStreamContent;
 import com.google.api.client.json.JsonFactory;
@@ -129,6 +140,7 @@ import com.google.api.services.compute.model.AccessConfig;
 import com.google.api.services.compute.model.AttachedDisk;
 import com.google.api.services.compute.model.AttachedDiskInitializeParams;
 import com.google.api.services.compute.model.Instance;
+import com.google.api.services.compute.model.InstanceList;
 import com.google.api.services.compute.model.Metadata;
 import com.google.api.services.compute.model.Metadata.Items;
 import com.google.api.services.compute.model.NetworkInterface;
@@ -147,18 +159,49 @@ import com.google.common.collect.Lists;
 /**
  * A Google Cloud Platform specific implementation of cloudex {@link CloudService}
  *
+ * When a metrics registry is set, the calls that are retried internally are counted as
+ * cloud.[method].retries: fetching the instance details in init, fetching a VM that isn't found yet whilst
+ * starting it (startInstance), streaming rows into BigQuery after a rate limit error or failed rows
+ * (streamObjectsIntoBigData) and getting the status of a BigQuery job after an error or rerunning a failed
+ * job (getBigDataJob).
+ *
  * TODO add multi-threading option to upload and download files from cloud storage
  *
  * @author Omer Dawelbeit (omerio)
  *
  */
-public class GoogleCloudServiceImpl implements GoogleCloudService {
+public class GoogleCloudServiceImpl implements GoogleCloudService, MetricsAware {
 
     private final static Log log = LogFactory.getLog(GoogleCloudServiceImpl.class);
 
     /** Global instance of the JSON factory. */
     private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
 
+    // the maximum number of VMs that are provisioned concurrently
+    private static final int MAX_PROVISIONING_THREADS = 20;
+
+    // the maximum number of requests in a batch request
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private static final String COMPUTE_BATCH_URL = "https://www.googleapis.com/batch/compute/v1";
+
+    // the maximum number of instances returned in a page of a list call
+    private static final long MAX_LIST_RESULTS = 500L;
+
+    // only the name, metadata and status of the processor instances are returned by list calls
+    private static final String PROCESSORS_LIST_FIELDS = "items(name,metadata,status),nextPageToken";
+
+    // the api methods the internal retries are counted against
+    private static final String INIT = "init";
+
+    private static final String START_INSTANCE = "startInstance";
+
+    private static final String STREAM_INTO_BIG_DATA = "streamObjectsIntoBigData";
+
+    private static final String GET_BIG_DATA_JOB = "getBigDataJob";
+
+    private static final String PROCESSORS_LIST_FILTER = "name eq " + VmMetaData.CLOUDEX_VM_PREFIX + ".*";
+
     // the maximum size in bytes for metadata
     private int maximumMetaDataSize = 32_768;
 
@@ -192,6 +235,9 @@ public class GoogleCloudServiceImpl implements GoogleCloudService {
 
     private boolean remote;
 
+    // the registry to count the internally retried calls in, null for none
+    private MetricsRegistry metrics;
+
     @SuppressWarnings("rawtypes")
     private AuthenticationProvider authenticationProvider;
 
@@ -269,6 +315,7 @@ public class GoogleCloudServiceImpl implements GoogleCloudService {
                     if(retries > 3) {
                         throw e;
                     }
+                    this.retried(INIT);
                     ApiUtils.block(this.getApiRecheckDelay());
                 }
 
@@ -666,13 +713,7 @@ public class GoogleCloudServiceImpl implements GoogleCloudService {
     public VmMetaData getMetaData(String instanceId, String zoneId) throws IOException {
         Instance instance = this.getInstance(instanceId != null ? instanceId : this.instanceId,
                 zoneId != null ? zoneId : this.zone);
-        List<Items> items = instance.getMetadata().getItems();
-        Map<String, Object> attributes = new HashMap<>();
-        for(Items item: items) {
-            attributes.put(item.getKey(), item.getValue());
-        }
-        String fingerprint = instance.getMetadata().getFingerprint();
-        return new VmMetaData(attributes, fingerprint);
+        return this.getVmMetaData(instance);
     }
 
     /**
@@ -719,6 +760,164 @@ public class GoogleCloudServiceImpl implements GoogleCloudService {
         return operation.getName();
     }
 
+    /**
+     * Get the meta data for the provided instances using batch requests
+     * @param instanceIds
+     * @param zoneId
+     * @return
+     * @throws IOException
+     */
+    @Override
+    public Map<String, VmMetaData> getMetaData(List<String> instanceIds, String zoneId) throws IOException {
+
+        final Map<String, VmMetaData> metaData = new HashMap<>();
+        final String zone = zoneId != null ? zoneId : this.zone;
+
+        for(List<String> partition: Lists.partition(instanceIds, MAX_BATCH_SIZE)) {
+
+            BatchRequest batch = this.getComputeBatch();
+
+            for(final String instanceId: partition) {
+
+                this.getCompute().instances().get(this.projectId, zone, instanceId)
+                .setOauthToken(this.getOAuthToken())
+                .queue(batch, new JsonBatchCallback<Instance>() {
+
+                    @Override
+                    public void onSuccess(Instance instance, HttpHeaders responseHeaders) throws IOException {
+                        metaData.put(instanceId, getVmMetaData(instance));
+                    }
+
+                    @Override
+                    public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) throws IOException {
+                        log.warn("Failed to get metadata for instance: " + instanceId + ", " + error.getMessage());
+                    }
+                });
+            }
+
+            batch.execute();
+        }
+
+        return metaData;
+    }
+
+    /**
+     * Get the meta data of all the processor instances in the provided zone, the instances are listed
+     * using a name filter and only their names and metadata are returned
+     * @param zoneId
+     * @return
+     * @throws IOException
+     */
+    @Override
+    public Map<String, VmMetaData> getProcessorsMetaData(String zoneId) throws IOException {
+
+        Map<String, VmMetaData> metaData = new HashMap<>();
+        String zone = zoneId != null ? zoneId : this.zone;
+        String pageToken = null;
+
+        do {
+            InstanceList instances = this.getCompute().instances().list(this.projectId, zone)
+                    .setFilter(PROCESSORS_LIST_FILTER)
+                    .setFields(PROCESSORS_LIST_FIELDS)
+                    .setMaxResults(MAX_LIST_RESULTS)
+                    .setPageToken(pageToken)
+                    .setOauthToken(this.getOAuthToken())
+                    .execute();
+
+            if(instances.getItems() != null) {
+                for(Instance instance: instances.getItems()) {
+                    metaData.put(instance.getName(), this.getVmMetaData(instance));
+                }
+            }
+
+            pageToken = instances.getNextPageToken();
+
+        } while(pageToken != null);
+
+        log.debug("Listed the metadata of " + metaData.size() + " processors");
+
+        return metaData;
+    }
+
+    /**
+     * Convert the metadata of a compute instance to VmMetaData
+     * @param instance
+     * @return
+     */
+    private VmMetaData getVmMetaData(Instance instance) {
+        Map<String, Object> attributes = new HashMap<>();
+        List<Items> items = instance.getMetadata().getItems();
+        if(items != null) {
+            for(Items item: items) {
+                attributes.put(item.getKey(), item.getValue());
+            }
+        }
+        String fingerprint = instance.getMetadata().getFingerprint();
+        VmMetaData metaData = new VmMetaData(attributes, fingerprint);
+        metaData.setInstanceStatus(instance.getStatus());
+        return metaData;
+    }
+
+    /**
+     * Update the meta data of the provided instances using batch requests
+     * @param metaData
+     * @param zoneId
+     * @return
+     * @throws IOException
+     */
+    @Override
+    public Map<String, String> updateMetadata(Map<String, VmMetaData> metaData, String zoneId) throws IOException {
+
+        final Map<String, String> operations = new HashMap<>();
+        final List<String> errors = new ArrayList<>();
+        final String zone = zoneId != null ? zoneId : this.zone;
+
+        List<String> instanceIds = new ArrayList<>(metaData.keySet());
+
+        for(List<String> partition: Lists.partition(instanceIds, MAX_BATCH_SIZE)) {
+
+            BatchRequest batch = this.getComputeBatch();
+
+            for(final String instanceId: partition) {
+
+                Metadata metadata = this.getGoogleMetaData(metaData.get(instanceId));
+
+                this.getCompute().instances().setMetadata(this.projectId, zone, instanceId, metadata)
+                .setOauthToken(this.getOAuthToken())
+                .queue(batch, new JsonBatchCallback<Operation>() {
+
+                    @Override
+                    public void onSuccess(Operation operation, HttpHeaders responseHeaders) throws IOException {
+                        log.debug("Successuflly initiated operation: " + operation);
+                        operations.put(instanceId, operation.getName());
+                    }
+
+                    @Override
+                    public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) throws IOException {
+                        errors.add(instanceId + ": " + error.getMessage());
+                    }
+                });
+            }
+
+            batch.execute();
+        }
+
+        if(!errors.isEmpty()) {
+            throw new IOException("Failed to update the metadata of instances: " + errors);
+        }
+
+        return operations;
+    }
+
+    /**
+     * Create a batch request for the compute api
+     * @return
+     * @throws IOException
+     */
+    private BatchRequest getComputeBatch() throws IOException {
+        return this.getCompute().batch().setBatchUrl(new GenericUrl(COMPUTE_BATCH_URL));
+    }
+
     /**
      * Block and wait the operations with the provided references to complete
      * @param references
@@ -798,132 +997,214 @@ public class GoogleCloudServiceImpl implements GoogleCloudService {
      * @param configs
      * @param block
      * @throws IOException
-     * TODO start VMs in parallel
      */
     @Override
     public boolean startInstance(List<VmConfig> configs, boolean block) throws IOException {
 
         for(VmConfig config: configs) {
-            log.debug("Creating VM for config: " + config);
-            String zoneId = config.getZoneId();
-            zoneId = zoneId != null ? zoneId : this.zone;
-            Instance content = new Instance();
-
-            // Instance config
-            content.setMachineType(RESOURCE_BASE_URL +
-                    this.projectId + ZONES + zoneId + MACHINE_TYPES+ config.getVmType());
-            content.setName(config.getInstanceId());
-            //content.setZone(zoneId);
-            // startup script
-            if(StringUtils.isNoneBlank(config.getStartupScript())) {
-                config.getMetaData().addValue(GoogleMetaData.STARTUP_SCRIPT, config.getStartupScript());
-            }
-            content.setMetadata(this.getGoogleMetaData(config.getMetaData()));
-
-            // service account
-            ServiceAccount sa = new ServiceAccount();
-            sa.setEmail(this.serviceAccount).setScopes(this.scopes);
-            content.setServiceAccounts(Lists.newArrayList(sa));
-
-            // network
-            NetworkInterface inf = new NetworkInterface();
-            inf.setNetwork(RESOURCE_BASE_URL +
-                    this.projectId + NETWORK + config.getNetworkId());
-            // add ability to turn off external IP addresses
-            if(config.getNoExternalIp() == null || Boolean.FALSE.equals(config.getNoExternalIp())) {
-                AccessConfig accessConf = new AccessConfig();
-                accessConf.setType(ONE_TO_ONE_NAT).setName(EXT_NAT);
-                inf.setAccessConfigs(Lists.newArrayList(accessConf));
-            }
+            this.insertInstance(config);
+        }
 
-            content.setNetworkInterfaces(Lists.newArrayList(inf));
+        boolean success = true;
 
-            // scheduling
-            Scheduling scheduling = new Scheduling();
-            scheduling.setAutomaticRestart(false);
-            scheduling.setOnHostMaintenance(MIGRATE);
-            content.setScheduling(scheduling);
+        // we have to block until all instances are provisioned
+        if(block) {
 
-            // Disk
-            AttachedDisk disk = new AttachedDisk();
+            for(VmConfig config: configs) {
 
-            AttachedDiskInitializeParams params = new AttachedDiskInitializeParams();
-            params.setDiskName(config.getInstanceId());
-            params.setSourceImage(RESOURCE_BASE_URL + config.getImageId());
-            if(config.getDiskSize() != null) {
-                params.setDiskSizeGb(config.getDiskSize());
+                String status = this.waitForInstance(config);
+
+                if(InstanceStatus.TERMINATED.equals(status)) {
+                    success = false;
+                }
             }
+        }
 
-            disk.setAutoDelete(true).setBoot(true)
-            .setDeviceName(config.getInstanceId())
-            .setType(PERSISTENT)
-            .setInitializeParams(params);
+        return success;
+    }
 
-            if(StringUtils.isNotBlank(config.getDiskType())) {
-                // standard or SSD based disks
-                params.setDiskType(RESOURCE_BASE_URL +
-                        this.projectId + ZONES + zoneId + DISK_TYPES + config.getDiskType());
-            }
+    /**
+     * Create the VMs concurrently, each VM is inserted then polled until it's provisioned
+     * on its own thread, the listener is notified as soon as each VM is provisioned
+     * @param configs
+     * @param listener
+     * @throws IOException
+     */
+    @Override
+    public void startInstance(List<VmConfig> configs, final ProvisioningListener listener) throws IOException {
+
+        if(configs.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(configs.size(), MAX_PROVISIONING_THREADS));
+
+        for(final VmConfig config: configs) {
+
+            executor.execute(new Runnable() {
 
-            content.setDisks(Lists.newArrayList(disk));
+                @Override
+                public void run() {
+                    try {
+                        insertInstance(config);
+                        String status = waitForInstance(config);
+
+                        if(InstanceStatus.TERMINATED.equals(status)) {
+                            listener.instanceFailed(config, new IOException("Instance " + config.getInstanceId()
+                                    + " has failed to start, status: " + status));
+
+                        } else {
+                            listener.instanceReady(config);
+                        }
 
-            Insert insert = this.getCompute().instances()
-                    .insert(this.projectId, zoneId, content)
-                    .setOauthToken(this.getOAuthToken());
+                    } catch(IOException e) {
+                        log.error("Failed to start instance: " + config.getInstanceId(), e);
+                        listener.instanceFailed(config, e);
 
-            Operation operation = insert.execute();
-            log.debug("Successuflly initiated operation: " + operation);
+                    } catch(RuntimeException e) {
+                        log.error("Failed to start instance: " + config.getInstanceId(), e);
+                        listener.instanceFailed(config, new IOException(e));
+                    }
+                }
+            });
         }
 
-        boolean success = true;
+        // the threads exit once all the VMs are provisioned
+        executor.shutdown();
+    }
 
-        // we have to block until all instances are provisioned
-        if(block) {
+    /**
+     * Send the insert request for a VM
+     * @param config
+     * @throws IOException
+     */
+    private void insertInstance(VmConfig config) throws IOException {
+
+        log.debug("Creating VM for config: " + config);
+        String zoneId = config.getZoneId();
+        zoneId = zoneId != null ? zoneId : this.zone;
+        Instance content = new Instance();
+
+        // Instance config
+        content.setMachineType(RESOURCE_BASE_URL +
+                this.projectId + ZONES + zoneId + MACHINE_TYPES+ config.getVmType());
+        content.setName(config.getInstanceId());
+        //content.setZone(zoneId);
+        // startup script
+        if(StringUtils.isNoneBlank(config.getStartupScript())) {
+            config.getMetaData().addValue(GoogleMetaData.STARTUP_SCRIPT, config.getStartupScript());
+        }
+        content.setMetadata(this.getGoogleMetaData(config.getMetaData()));
+
+        // service account
+        ServiceAccount sa = new ServiceAccount();
+        sa.setEmail(this.serviceAccount).setScopes(this.scopes);
+        content.setServiceAccounts(Lists.newArrayList(sa));
+
+        // network
+        NetworkInterface inf = new NetworkInterface();
+        inf.setNetwork(RESOURCE_BASE_URL +
+                this.projectId + NETWORK + config.getNetworkId());
+        // add ability to turn off external IP addresses
+        if(config.getNoExternalIp() == null || Boolean.FALSE.equals(config.getNoExternalIp())) {
+            AccessConfig accessConf = new AccessConfig();
+            accessConf.setType(ONE_TO_ONE_NAT).setName(EXT_NAT);
+            inf.setAccessConfigs(Lists.newArrayList(accessConf));
+        }
 
-            for(VmConfig config: configs) {
-                String status = InstanceStatus.PROVISIONING.toString();
+        content.setNetworkInterfaces(Lists.newArrayList(inf));
 
-                int retries = 20;
+        // scheduling
+        Scheduling scheduling = new Scheduling();
+        scheduling.setAutomaticRestart(false);
 
-                do {
+        if(config.isPreemptible()) {
+            // preemptible instances can't be live migrated
+            scheduling.setPreemptible(true);
+            scheduling.setOnHostMaintenance(TERMINATE);
 
-                    // sleep for some seconds before checking the vm status
-                    ApiUtils.block(this.getApiRecheckDelay());
+        } else {
+            scheduling.setOnHostMaintenance(MIGRATE);
+        }
+        content.setScheduling(scheduling);
 
-                    String zoneId = config.getZoneId();
-                    zoneId = zoneId != null ? zoneId : this.zone;
-                    // check the instance status
-                    Instance instance = null;
+        // Disk
+        AttachedDisk disk = new AttachedDisk();
 
-                    // seems the Api sometimes return a not found exception
-                    try {
-                        instance = this.getInstance(config.getInstanceId(), zoneId);
-                        status = instance.getStatus();
-                        log.debug(config.getInstanceId() + ", current status is: " + status);
-
-                    } catch(GoogleJsonResponseException e) {
-                        if(e.getMessage().indexOf(NOT_FOUND) == 0) {
-                            log.warn("Instance not found: " + config.getInstanceId());
-                            if(retries <= 0) {
-                                throw e;
-                            }
-                            retries--;
-                            ApiUtils.block(5);
+        AttachedDiskInitializeParams params = new AttachedDiskInitializeParams();
+        params.setDiskName(config.getInstanceId());
+        params.setSourceImage(RESOURCE_BASE_URL + config.getImageId());
+        if(config.getDiskSize() != null) {
+            params.setDiskSizeGb(config.getDiskSize());
+        }
 
-                        } else {
-                            throw e;
-                        }
+        disk.setAutoDelete(true).setBoot(true)
+        .setDeviceName(config.getInstanceId())
+        .setType(PERSISTENT)
+        .setInitializeParams(params);
+
+        if(StringUtils.isNotBlank(config.getDiskType())) {
+            // standard or SSD based disks
+            params.setDiskType(RESOURCE_BASE_URL +
+                    this.projectId + ZONES + zoneId + DISK_TYPES + config.getDiskType());
+        }
+
+        content.setDisks(Lists.newArrayList(disk));
+
+        Insert insert = this.getCompute().instances()
+                .insert(this.projectId, zoneId, content)
+                .setOauthToken(this.getOAuthToken());
+
+        Operation operation = insert.execute();
+        log.debug("Successuflly initiated operation: " + operation);
+    }
+
+    /**
+     * Block until a VM is no longer provisioning or staging
+     * @param config
+     * @return the status of the VM
+     * @throws IOException
+     */
+    private String waitForInstance(VmConfig config) throws IOException {
+
+        String status = InstanceStatus.PROVISIONING.toString();
+
+        int retries = 20;
+
+        do {
+
+            // sleep for some seconds before checking the vm status
+            ApiUtils.block(this.getApiRecheckDelay());
+
+            String zoneId = config.getZoneId();
+            zoneId = zoneId != null ? zoneId : this.zone;
+            // check the instance status
+            Instance instance = null;
+
+            // seems the Api sometimes return a not found exception
+            try {
+                instance = this.getInstance(config.getInstanceId(), zoneId);
+                status = instance.getStatus();
+                log.debug(config.getInstanceId() + ", current status is: " + status);
+
+            } catch(GoogleJsonResponseException e) {
+                if(e.getMessage().indexOf(NOT_FOUND) == 0) {
+                    log.warn("Instance not found: " + config.getInstanceId());
+                    if(retries <= 0) {
+                        throw e;
                     }
-                    // FIXME INFO: ecarf-evm-1422261030407, current status is: null
-                } while (InstanceStatus.IN_PROGRESS.contains(status));
+                    retries--;
+                    this.retried(START_INSTANCE);
+                    ApiUtils.block(5);
 
-                if(InstanceStatus.TERMINATED.equals(status)) {
-                    success = false;
+                } else {
+                    throw e;
                 }
             }
-        }
+            // FIXME INFO: ecarf-evm-1422261030407, current status is: null
+        } while (InstanceStatus.IN_PROGRESS.contains(status));
 
-        return success;
+        return status;
     }
 
     /**
@@ -1378,6 +1659,7 @@ public class GoogleCloudServiceImpl implements GoogleCloudService {
                         log.debug("Backing off for " + period + " seconds.");
                         ApiUtils.block(period);
                         retrying = true;
+                        this.retried(STREAM_INTO_BIG_DATA);
                     }
 
                 } else {
@@ -1407,6 +1689,7 @@ public class GoogleCloudServiceImpl implements GoogleCloudService {
             } else {
                 retries++;
                 log.warn(failedList.size() + " rows failed to be inserted retrying again. Retries = " + retries);
+                this.retried(STREAM_INTO_BIG_DATA);
                 this.streamRowsIntoBigQuery(datasetId, tableId, failedList, retries);
             }
         }
@@ -1530,6 +1813,7 @@ public class GoogleCloudServiceImpl implements GoogleCloudService {
                 if(retries > 3) {
                     throw e;
                 }
+                this.retried(GET_BIG_DATA_JOB);
             }
             //  Error handling
 
@@ -1634,6 +1918,7 @@ public class GoogleCloudServiceImpl implements GoogleCloudService {
             // get the query
             String query = config.getQuery().getQuery();
             // re-execute the query
+            this.retried(GET_BIG_DATA_JOB);
             ApiUtils.block(this.getApiRecheckDelay());
 
             BigDataTable table = null;
@@ -2181,6 +2466,21 @@ public class GoogleCloudServiceImpl implements GoogleCloudService {
         this.remote = remote;
     }
 
+    @Override
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Count a call that is retried internally, if a metrics registry is set
+     * @param method - the api method the retried call belongs to
+     */
+    private void retried(String method) {
+        if(this.metrics != null) {
+            this.metrics.counter(InstrumentedCloudService.getRetriesName(method)).inc();
+        }
+    }
+
 
     @SuppressWarnings("rawtypes")
     @Override
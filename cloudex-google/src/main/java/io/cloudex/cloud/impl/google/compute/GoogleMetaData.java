@@ -75,6 +75,7 @@ public class GoogleMetaData {
     public static final String IMAGE = "image";
     public static final String PERSISTENT = "PERSISTENT";
     public static final String MIGRATE = "MIGRATE";
+    public static final String TERMINATE = "TERMINATE";
     public static final String EXT_NAT = "External NAT";
     public static final String ONE_TO_ONE_NAT = "ONE_TO_ONE_NAT";
     public static final String STARTUP_SCRIPT = "startup-script";